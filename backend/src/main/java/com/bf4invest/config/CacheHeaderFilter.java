@@ -47,8 +47,9 @@ public class CacheHeaderFilter extends OncePerRequestFilter {
         else if (path.contains("/settings") && !path.contains("/settings/data/")) {
             response.setHeader("Cache-Control", "private, max-age=1800"); // 30 minutes
         }
-        // Par défaut - pas de cache pour les autres endpoints
-        else if (!path.contains("/files/") && !path.endsWith(".pdf") && !path.endsWith(".xlsx")) {
+        // Par défaut - pas de cache pour les autres endpoints (site vitrine : cache fixé par PublicController)
+        else if (!path.contains("/files/") && !path.contains("/public/")
+                && !path.endsWith(".pdf") && !path.endsWith(".xlsx")) {
             response.setHeader("Cache-Control", "no-cache, no-store, must-revalidate");
             response.setHeader("Pragma", "no-cache");
         }
@@ -1,7 +1,9 @@
 package com.bf4invest.controller;
 
+import com.bf4invest.dto.PageResponse;
 import com.bf4invest.model.AuditLog;
-import com.bf4invest.repository.AuditLogRepository;
+import com.bf4invest.service.AuditService;
+import com.bf4invest.service.EcrivainAuditLogs;
 import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
@@ -10,15 +12,17 @@ import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/audit-logs")
 @RequiredArgsConstructor
 @PreAuthorize("hasRole('ADMIN')")
 public class AuditController {
-    
-    private final AuditLogRepository auditLogRepository;
-    
+
+    private final AuditService auditService;
+    private final EcrivainAuditLogs ecrivainAuditLogs;
+
     @GetMapping
     public ResponseEntity<List<AuditLog>> getAuditLogs(
             @RequestParam(required = false) String entityType,
@@ -27,36 +31,26 @@ public class AuditController {
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to
     ) {
-        List<AuditLog> logs;
-        
-        // Optimisation: utiliser findByEntityTypeAndEntityId si les deux paramètres sont fournis
-        if (entityType != null && entityId != null) {
-            logs = auditLogRepository.findByEntityTypeAndEntityId(entityType, entityId);
-        } else {
-            logs = auditLogRepository.findAll();
-        }
-        
-        // Appliquer les autres filtres si nécessaire
-        if (entityType != null && entityId == null) {
-            logs = logs.stream().filter(l -> l.getEntityType().equals(entityType)).toList();
-        }
-        if (entityId != null && entityType == null) {
-            logs = logs.stream().filter(l -> l.getEntityId() != null && l.getEntityId().equals(entityId)).toList();
-        }
-        if (userId != null) {
-            logs = logs.stream().filter(l -> l.getUserId().equals(userId)).toList();
-        }
-        if (from != null) {
-            logs = logs.stream().filter(l -> l.getTimestamp() != null && !l.getTimestamp().isBefore(from)).toList();
-        }
-        if (to != null) {
-            logs = logs.stream().filter(l -> l.getTimestamp() != null && !l.getTimestamp().isAfter(to)).toList();
-        }
-        
-        return ResponseEntity.ok(logs);
+        // Filtres appliqués par MongoDB (plus de chargement de tout le journal en mémoire)
+        return ResponseEntity.ok(auditService.rechercher(entityType, entityId, userId, from, to));
     }
-}
-
-
 
+    @GetMapping("/page")
+    public ResponseEntity<PageResponse<AuditLog>> getAuditLogsPage(
+            @RequestParam(required = false) String entityType,
+            @RequestParam(required = false) String entityId,
+            @RequestParam(required = false) String userId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "50") int size
+    ) {
+        return ResponseEntity.ok(auditService.findPage(entityType, entityId, userId, from, to, page, size));
+    }
 
+    /** File d'écriture du journal : entrées en attente, lots écrits, saturations (backpressure), échecs. */
+    @GetMapping("/statistiques")
+    public ResponseEntity<Map<String, Object>> getStatistiques() {
+        return ResponseEntity.ok(ecrivainAuditLogs.statistiques());
+    }
+}
@@ -2,36 +2,39 @@ package com.bf4invest.controller;
 
 import com.bf4invest.excel.ExcelExportService;
 import com.bf4invest.model.BandeCommande;
-import com.bf4invest.model.Charge;
-import com.bf4invest.model.Client;
 import com.bf4invest.model.OperationComptable;
 import com.bf4invest.model.Product;
-import com.bf4invest.model.Supplier;
+import com.bf4invest.model.Sauvegarde;
 import com.bf4invest.model.TransactionBancaire;
 import com.bf4invest.repository.BandeCommandeRepository;
-import com.bf4invest.repository.ChargeRepository;
-import com.bf4invest.repository.ClientRepository;
 import com.bf4invest.repository.OperationComptableRepository;
 import com.bf4invest.repository.ProductRepository;
-import com.bf4invest.repository.SupplierRepository;
 import com.bf4invest.repository.TransactionBancaireRepository;
+import com.bf4invest.service.SauvegardeService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.ByteArrayResource;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
 import java.util.List;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/backup")
@@ -45,9 +48,7 @@ public class BackupController {
     private final BandeCommandeRepository bandeCommandeRepository;
     private final OperationComptableRepository operationComptableRepository;
     private final TransactionBancaireRepository transactionBancaireRepository;
-    private final ClientRepository clientRepository;
-    private final SupplierRepository supplierRepository;
-    private final ChargeRepository chargeRepository;
+    private final SauvegardeService sauvegardeService;
 
     @GetMapping("/produits")
     public ResponseEntity<byte[]> exportProduits() {
@@ -117,55 +118,128 @@ public class BackupController {
         }
     }
 
+    /**
+     * Sauvegarde complète écrite en flux : classeurs réimportables et de référence ({@code format=xlsx}),
+     * ou dump NDJSON de toutes les collections ({@code format=ndjson}).
+     */
     @GetMapping("/complet")
-    public ResponseEntity<ByteArrayResource> exportBackupComplet() {
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
-             ZipOutputStream zos = new ZipOutputStream(baos)) {
-
-            // Fichiers réimportables
-            addEntry(zos, "Catalogue_Produits.xlsx",
-                    excelExportService.exportProductsToImportFormat(productRepository.findAll()));
-            addEntry(zos, "Historique_BC.xlsx",
-                    excelExportService.exportBCsToImportFormat(bandeCommandeRepository.findAll()));
-            addEntry(zos, "Operations_Comptables.xlsx",
-                    excelExportService.exportOperationsToImportFormat(operationComptableRepository.findAll()));
-            addEntry(zos, "Releve_Bancaire.xlsx",
-                    excelExportService.exportReleveBancaireToImportFormat(transactionBancaireRepository.findAll()));
-
-            // Fichiers de référence
-            addEntry(zos, "Clients.xlsx",
-                    excelExportService.exportClientsToExcel(clientRepository.findAll()));
-            addEntry(zos, "Fournisseurs.xlsx",
-                    excelExportService.exportSuppliersToExcel(supplierRepository.findAll()));
-            addEntry(zos, "Charges.xlsx",
-                    excelExportService.exportChargesToExcel(chargeRepository.findAll()));
-
-            zos.finish();
-
-            byte[] zipBytes = baos.toByteArray();
-
-            String dateStr = LocalDate.now().format(DateTimeFormatter.ISO_DATE);
-            String fileName = "Sauvegarde_BF4Invest_" + dateStr + ".zip";
+    public ResponseEntity<StreamingResponseBody> exportBackupComplet(
+            @RequestParam(defaultValue = "xlsx") String format
+    ) {
+        SauvegardeService.Format formatSauvegarde;
+        try {
+            formatSauvegarde = SauvegardeService.Format.valueOf(format.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
 
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
-            headers.set(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + fileName);
+        StreamingResponseBody body = out -> {
+            try {
+                sauvegardeService.ecrireArchive(formatSauvegarde, out);
+            } catch (Exception e) {
+                // Réponse déjà commencée : le statut ne peut plus changer, l'archive reste tronquée
+                log.error("Erreur lors de la génération de la sauvegarde complète ZIP", e);
+                throw e;
+            }
+        };
+
+        String dateStr = LocalDate.now().format(DateTimeFormatter.ISO_DATE);
+        String suffixe = formatSauvegarde == SauvegardeService.Format.NDJSON ? "_ndjson" : "";
+        String fileName = "Sauvegarde_BF4Invest_" + dateStr + suffixe + ".zip";
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        headers.set(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + fileName);
+
+        return ResponseEntity.ok().headers(headers).body(body);
+    }
+
+    /**
+     * Sauvegarde incrémentale NDJSON : documents créés, modifiés ou supprimés depuis la dernière sauvegarde NDJSON.
+     */
+    @GetMapping("/incrementale")
+    public ResponseEntity<StreamingResponseBody> exportBackupIncrementale() {
+        Optional<Sauvegarde> precedente = sauvegardeService.derniereSauvegarde();
+        if (precedente.isEmpty()) {
+            // Pas de filigrane : une sauvegarde complète NDJSON doit servir de base
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+
+        StreamingResponseBody body = out -> {
+            try {
+                sauvegardeService.ecrireIncrementale(out);
+            } catch (Exception e) {
+                log.error("Erreur lors de la génération de la sauvegarde incrémentale", e);
+                throw e;
+            }
+        };
+
+        String horodatage = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd_HHmmss"));
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        headers.set(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=Sauvegarde_BF4Invest_incrementale_" + horodatage + ".zip");
+        return ResponseEntity.ok().headers(headers).body(body);
+    }
 
-            return ResponseEntity.ok()
-                    .headers(headers)
-                    .contentLength(zipBytes.length)
-                    .body(new ByteArrayResource(zipBytes));
+    /**
+     * Dernière sauvegarde NDJSON (filigrane de la prochaine incrémentale).
+     */
+    @GetMapping("/derniere")
+    public ResponseEntity<Sauvegarde> getDerniereSauvegarde() {
+        return sauvegardeService.derniereSauvegarde()
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.noContent().build());
+    }
+
+    /**
+     * Rejoue une sauvegarde complète NDJSON et ses incrémentales (dans n'importe quel ordre) dans une base vide.
+     */
+    @PostMapping("/restaurer-chaine")
+    public ResponseEntity<Map<String, Object>> restaurerChaine(
+            @RequestParam("files") List<MultipartFile> files,
+            @RequestParam(defaultValue = "false") boolean forcer
+    ) {
+        if (files == null || files.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Aucune archive fournie"));
+        }
+        try {
+            List<Map<String, Object>> archives = sauvegardeService.restaurerChaine(files, forcer);
+            Map<String, Object> response = new HashMap<>();
+            response.put("archives", archives);
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
-            log.error("Erreur lors de la génération de la sauvegarde complète ZIP", e);
-            return ResponseEntity.internalServerError().build();
+            log.error("Erreur lors de la restauration de la chaîne de sauvegardes", e);
+            return ResponseEntity.internalServerError()
+                    .body(Map.of("error", "Erreur lors de la restauration: " + e.getMessage()));
         }
     }
 
-    private void addEntry(ZipOutputStream zos, String entryName, byte[] content) throws Exception {
-        ZipEntry entry = new ZipEntry(entryName);
-        zos.putNextEntry(entry);
-        zos.write(content);
-        zos.closeEntry();
+    /**
+     * Restaure une archive NDJSON complète ou incrémentale (documents remplacés ou créés par _id,
+     * suppressions rejouées).
+     */
+    @PostMapping("/restaurer")
+    public ResponseEntity<Map<String, Object>> restaurerBackup(@RequestParam("file") MultipartFile file) {
+        if (file.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Le fichier ne peut pas être vide"));
+        }
+        try (InputStream is = file.getInputStream()) {
+            Map<String, Long> restaures = sauvegardeService.restaurerArchive(is);
+            Map<String, Object> response = new HashMap<>();
+            response.put("collections", restaures);
+            response.put("documents", restaures.values().stream().mapToLong(Long::longValue).sum());
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Erreur lors de la restauration de la sauvegarde", e);
+            return ResponseEntity.internalServerError()
+                    .body(Map.of("error", "Erreur lors de la restauration: " + e.getMessage()));
+        }
     }
 }
-
@@ -1,21 +1,23 @@
 package com.bf4invest.controller;
 
+import com.bf4invest.dto.PageResponse;
 import com.bf4invest.excel.ExcelExportService;
 import com.bf4invest.model.BandeCommande;
 import com.bf4invest.service.BandeCommandeService;
 import lombok.RequiredArgsConstructor;
-import org.springframework.core.io.ByteArrayResource;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 @RestController
 @RequestMapping("/bandes-commandes")
@@ -55,6 +57,25 @@ public class BandeCommandeController {
         return ResponseEntity.ok(bcs);
     }
     
+    /**
+     * Liste paginée (filtres, tri et pagination côté MongoDB, sans les lignes).
+     */
+    @GetMapping("/page")
+    public ResponseEntity<PageResponse<BandeCommande>> getBCsPage(
+            @RequestParam(required = false) String clientId,
+            @RequestParam(required = false) String fournisseurId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateMin,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateMax,
+            @RequestParam(required = false) String etat,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "50") int size,
+            @RequestParam(defaultValue = "date") String sort,
+            @RequestParam(defaultValue = "desc") String direction
+    ) {
+        return ResponseEntity.ok(bcService.findPage(clientId, fournisseurId, etat, dateMin, dateMax,
+                page, size, sort, direction));
+    }
+    
     @GetMapping("/{id}")
     public ResponseEntity<BandeCommande> getBC(@PathVariable String id) {
         return bcService.findById(id)
@@ -112,102 +133,53 @@ public class BandeCommandeController {
         return ResponseEntity.ok(Map.of("message", "BC ready to send", "bcId", id, "pdfUrl", "/pdf/bandes-commandes/" + id));
     }
     
+    /**
+     * Export des transactions des BCs filtrés : BCs lus par curseur et classeur SXSSF écrit directement dans la réponse.
+     */
     @GetMapping("/export/excel")
-    public ResponseEntity<ByteArrayResource> exportBCsToExcel(
+    public ResponseEntity<StreamingResponseBody> exportBCsToExcel(
             @RequestParam(required = false) String clientId,
             @RequestParam(required = false) String fournisseurId,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateMin,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateMax,
             @RequestParam(required = false) String etat
     ) {
-        try {
-            // Récupérer toutes les BCs
-            List<BandeCommande> bcs = bcService.findAll();
-            
-            // Appliquer les mêmes filtres que getAllBCs
-            if (clientId != null) {
-                bcs = bcs.stream().filter(bc -> bc.getClientId() != null && bc.getClientId().equals(clientId)).toList();
-            }
-            if (fournisseurId != null) {
-                bcs = bcs.stream().filter(bc -> bc.getFournisseurId() != null && bc.getFournisseurId().equals(fournisseurId)).toList();
-            }
-            if (etat != null) {
-                bcs = bcs.stream().filter(bc -> bc.getEtat() != null && bc.getEtat().equals(etat)).toList();
-            }
-            if (dateMin != null) {
-                bcs = bcs.stream().filter(bc -> bc.getDateBC() != null && !bc.getDateBC().isBefore(dateMin)).toList();
-            }
-            if (dateMax != null) {
-                bcs = bcs.stream().filter(bc -> bc.getDateBC() != null && !bc.getDateBC().isAfter(dateMax)).toList();
+        StreamingResponseBody body = out -> {
+            try (Stream<BandeCommande> bcs = bcService.streamFiltres(clientId, fournisseurId, etat, dateMin, dateMax)) {
+                excelExportService.exportBCsToExcelStreaming(bcs, out);
             }
-            
-            // Générer le fichier Excel
-            byte[] excelBytes = excelExportService.exportBCsToExcel(bcs);
-            
-            // Créer le nom de fichier avec la date actuelle
-            String fileName = "Export_BCs_" + LocalDate.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd")) + ".xlsx";
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.add(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + fileName);
-            headers.add(HttpHeaders.CONTENT_TYPE, "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
-            
-            return ResponseEntity.ok()
-                    .headers(headers)
-                    .contentLength(excelBytes.length)
-                    .contentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
-                    .body(new ByteArrayResource(excelBytes));
-        } catch (Exception e) {
-            return ResponseEntity.internalServerError().build();
-        }
+        };
+        String fileName = "Export_BCs_" + LocalDate.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd")) + ".xlsx";
+        return fichierExcel(fileName, body);
     }
     
+    /**
+     * Export des BCs filtrés au format import, en flux (curseur MongoDB, classeur SXSSF).
+     */
     @GetMapping("/export/import-format")
-    public ResponseEntity<ByteArrayResource> exportBCsToImportFormat(
+    public ResponseEntity<StreamingResponseBody> exportBCsToImportFormat(
             @RequestParam(required = false) String clientId,
             @RequestParam(required = false) String fournisseurId,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateMin,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateMax,
             @RequestParam(required = false) String etat
     ) {
-        try {
-            // Récupérer toutes les BCs
-            List<BandeCommande> bcs = bcService.findAll();
-            
-            // Appliquer les mêmes filtres que getAllBCs
-            if (clientId != null) {
-                bcs = bcs.stream().filter(bc -> bc.getClientId() != null && bc.getClientId().equals(clientId)).toList();
-            }
-            if (fournisseurId != null) {
-                bcs = bcs.stream().filter(bc -> bc.getFournisseurId() != null && bc.getFournisseurId().equals(fournisseurId)).toList();
-            }
-            if (etat != null) {
-                bcs = bcs.stream().filter(bc -> bc.getEtat() != null && bc.getEtat().equals(etat)).toList();
-            }
-            if (dateMin != null) {
-                bcs = bcs.stream().filter(bc -> bc.getDateBC() != null && !bc.getDateBC().isBefore(dateMin)).toList();
+        StreamingResponseBody body = out -> {
+            try (Stream<BandeCommande> bcs = bcService.streamFiltres(clientId, fournisseurId, etat, dateMin, dateMax)) {
+                excelExportService.exportBCsToImportFormatStreaming(bcs, out);
             }
-            if (dateMax != null) {
-                bcs = bcs.stream().filter(bc -> bc.getDateBC() != null && !bc.getDateBC().isAfter(dateMax)).toList();
-            }
-            
-            // Générer le fichier Excel au format import
-            byte[] excelBytes = excelExportService.exportBCsToImportFormat(bcs);
-            
-            // Créer le nom de fichier avec la date actuelle
-            String fileName = "Export_Import_Format_" + LocalDate.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd")) + ".xlsx";
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.add(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + fileName);
-            headers.add(HttpHeaders.CONTENT_TYPE, "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
-            
-            return ResponseEntity.ok()
-                    .headers(headers)
-                    .contentLength(excelBytes.length)
-                    .contentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
-                    .body(new ByteArrayResource(excelBytes));
-        } catch (Exception e) {
-            return ResponseEntity.internalServerError().build();
-        }
+        };
+        String fileName = "Export_Import_Format_" + LocalDate.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd")) + ".xlsx";
+        return fichierExcel(fileName, body);
+    }
+    
+    private static ResponseEntity<StreamingResponseBody> fichierExcel(String fileName, StreamingResponseBody body) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + fileName);
+        return ResponseEntity.ok()
+                .headers(headers)
+                .contentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
+                .body(body);
     }
 }
 
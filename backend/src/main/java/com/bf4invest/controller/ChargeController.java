@@ -1,5 +1,6 @@
 package com.bf4invest.controller;
 
+import com.bf4invest.dto.PageResponse;
 import com.bf4invest.model.Charge;
 import com.bf4invest.service.ChargeService;
 import lombok.RequiredArgsConstructor;
@@ -36,6 +37,28 @@ public class ChargeController {
         }
     }
 
+    /**
+     * Liste paginée (filtres, tri et pagination côté MongoDB).
+     */
+    @GetMapping("/page")
+    public ResponseEntity<PageResponse<Charge>> getChargesPage(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String statut,
+            @RequestParam(required = false) Boolean imposable,
+            @RequestParam(required = false, name = "q") String q,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "50") int size,
+            @RequestParam(defaultValue = "desc") String direction
+    ) {
+        try {
+            return ResponseEntity.ok(chargeService.findPage(from, to, statut, imposable, q, page, size, direction));
+        } catch (Exception e) {
+            log.error("Erreur lors du chargement paginé des charges", e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<Charge> getCharge(@PathVariable String id) {
         return chargeService.findById(id)
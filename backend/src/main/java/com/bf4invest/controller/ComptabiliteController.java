@@ -3,6 +3,7 @@ package com.bf4invest.controller;
 import com.bf4invest.model.CompteComptable;
 import com.bf4invest.model.EcritureComptable;
 import com.bf4invest.model.ExerciceComptable;
+import com.bf4invest.service.BalancePeriodeService;
 import com.bf4invest.service.ComptabiliteService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -11,12 +12,15 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Slf4j
 @RestController
@@ -25,6 +29,7 @@ import java.util.Optional;
 public class ComptabiliteController {
 
     private final ComptabiliteService comptabiliteService;
+    private final BalancePeriodeService balancePeriodeService;
     private final com.bf4invest.excel.ExcelExportService excelExportService;
 
     // ========== COMPTES COMPTABLES ==========
@@ -197,6 +202,20 @@ public class ComptabiliteController {
         }
     }
 
+    /**
+     * Compare la balance matérialisée par période au journal ; corriger=true la reconstruit en cas d'écart.
+     */
+    @PostMapping("/balance/reconciliation")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> reconcilierBalance(@RequestParam(defaultValue = "false") boolean corriger) {
+        try {
+            return ResponseEntity.ok(balancePeriodeService.reconcilier(corriger));
+        } catch (Exception e) {
+            log.error("Erreur lors de la réconciliation de la balance par période", e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
     // ========== BILAN ==========
 
     @GetMapping("/bilan")
@@ -256,6 +275,35 @@ public class ComptabiliteController {
         }
     }
 
+    /**
+     * Export du journal en flux : écritures lues par curseur et classeur SXSSF écrit directement dans la réponse.
+     */
+    @GetMapping("/export/journal/stream")
+    public ResponseEntity<StreamingResponseBody> exportJournalStream(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateDebut,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateFin,
+            @RequestParam(required = false) String journal,
+            @RequestParam(required = false) String exerciceId,
+            @RequestParam(required = false) String pieceType,
+            @RequestParam(required = false) String pieceId
+    ) {
+        StreamingResponseBody body = out -> {
+            try (Stream<com.bf4invest.model.EcritureComptable> ecritures =
+                         comptabiliteService.streamEcritures(dateDebut, dateFin, journal, exerciceId, pieceType, pieceId)) {
+                int lignes = excelExportService.exportJournalComptableStreaming(ecritures, out);
+                log.info("Export journal en flux: {} lignes", lignes);
+            }
+        };
+        
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        String fileName = pieceType != null && pieceId != null ? 
+            "journal_" + pieceType + "_" + pieceId + ".xlsx" : 
+            "journal_comptable.xlsx";
+        headers.setContentDispositionFormData("attachment", fileName);
+        return ResponseEntity.ok().headers(headers).body(body);
+    }
+
     @GetMapping("/export/balance")
     public ResponseEntity<byte[]> exportBalance(
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateDebut,
@@ -299,6 +347,29 @@ public class ComptabiliteController {
         }
     }
 
+    /**
+     * Export du grand livre en flux (curseur MongoDB + SXSSF).
+     */
+    @GetMapping("/export/grand-livre/stream")
+    public ResponseEntity<StreamingResponseBody> exportGrandLivreStream(
+            @RequestParam String compteCode,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateDebut,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateFin,
+            @RequestParam(required = false) String exerciceId
+    ) {
+        StreamingResponseBody body = out -> {
+            try (Stream<com.bf4invest.model.EcritureComptable> ecritures =
+                         comptabiliteService.streamGrandLivre(compteCode, dateDebut, dateFin, exerciceId)) {
+                excelExportService.exportGrandLivreStreaming(ecritures, compteCode, out);
+            }
+        };
+        
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        headers.setContentDispositionFormData("attachment", "grand_livre_" + compteCode + ".xlsx");
+        return ResponseEntity.ok().headers(headers).body(body);
+    }
+
     // ========== INITIALISATION ==========
 
     @PostMapping("/init")
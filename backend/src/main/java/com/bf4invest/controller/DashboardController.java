@@ -2,6 +2,8 @@ package com.bf4invest.controller;
 
 import com.bf4invest.dto.DashboardKpiResponse;
 import com.bf4invest.pdf.PdfService;
+import com.bf4invest.service.CacheKpisDashboard;
+import com.bf4invest.service.DashboardAggregateService;
 import com.bf4invest.service.DashboardService;
 import com.bf4invest.service.SoldeService;
 import lombok.RequiredArgsConstructor;
@@ -10,10 +12,12 @@ import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDate;
 import java.util.Arrays;
+import java.util.Map;
 
 @Slf4j
 @RestController
@@ -24,6 +28,8 @@ public class DashboardController {
     private final DashboardService dashboardService;
     private final PdfService pdfService;
     private final SoldeService soldeService;
+    private final DashboardAggregateService dashboardAggregateService;
+    private final CacheKpisDashboard cacheKpisDashboard;
     
     @GetMapping("/kpis")
     public ResponseEntity<DashboardKpiResponse> getKPIs(
@@ -34,6 +40,39 @@ public class DashboardController {
         return ResponseEntity.ok(kpis);
     }
     
+    /**
+     * Statistiques du cache serveur des KPIs (hits, misses, calculs partagés, durées de calcul).
+     */
+    @GetMapping("/kpis/cache")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> statistiquesCacheKpis() {
+        return ResponseEntity.ok(cacheKpisDashboard.statistiques());
+    }
+    
+    /**
+     * Reconstruit les agrégats mensuels des KPIs depuis les factures et BCs
+     * (après un import massif, une suppression de collections ou une dérive détectée).
+     */
+    @PostMapping("/agregats/reconstruire")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> reconstruireAgregats() {
+        Map<String, Object> resultat = dashboardAggregateService.reconstruireTout();
+        cacheKpisDashboard.vider();
+        return ResponseEntity.ok(resultat);
+    }
+    
+    /**
+     * Compare les agrégats mensuels au calcul par lecture complète des collections.
+     */
+    @GetMapping("/agregats/verification")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> verifierAgregats(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
+    ) {
+        return ResponseEntity.ok(dashboardAggregateService.verifierCoherence(from, to));
+    }
+    
     @GetMapping("/report/pdf")
     public ResponseEntity<byte[]> generateDashboardReport(
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
@@ -0,0 +1,43 @@
+package com.bf4invest.controller;
+
+import com.bf4invest.service.MongoIndexService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * Diagnostics techniques (index MongoDB).
+ */
+@Slf4j
+@RestController
+@RequestMapping("/admin/diagnostics")
+@RequiredArgsConstructor
+@PreAuthorize("hasRole('ADMIN')")
+public class DiagnosticsController {
+
+    private final MongoIndexService mongoIndexService;
+
+    /**
+     * Plan d'exécution de chaque requête des repositories ; "collscans" doit rester à 0.
+     */
+    @GetMapping("/index")
+    public ResponseEntity<Map<String, Object>> diagnostiquerIndex() {
+        return ResponseEntity.ok(mongoIndexService.diagnostiquerRequetes());
+    }
+
+    /**
+     * Recrée les index déclarés sur les modèles (normalement fait au démarrage).
+     */
+    @PostMapping("/index")
+    public ResponseEntity<Map<String, Object>> creerIndex() {
+        log.info("Création des index MongoDB via API...");
+        return ResponseEntity.ok(mongoIndexService.creerIndex());
+    }
+}
@@ -4,6 +4,7 @@ import com.bf4invest.dto.SupabaseFileResult;
 import com.bf4invest.model.FactureAchat;
 import com.bf4invest.repository.FactureAchatRepository;
 import com.bf4invest.service.CloudinaryStorageService;
+import com.bf4invest.service.DashboardAggregateService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
@@ -25,6 +26,7 @@ public class FactureAchatFileController {
 
     private final CloudinaryStorageService cloudinaryStorageService;
     private final FactureAchatRepository factureAchatRepository;
+    private final DashboardAggregateService dashboardAggregateService;
 
     private boolean isAllowedContentType(String contentType) {
         if (contentType == null) return false;
@@ -74,6 +76,8 @@ public class FactureAchatFileController {
                     facture.setFichierFactureType(result.getContentType());
                     facture.setFichierFactureUrl(result.getSignedUrl());
                     FactureAchat saved = factureAchatRepository.save(facture);
+                    // Document entier réécrit : l'agrégat du mois repart de l'état enregistré
+                    dashboardAggregateService.rafraichirPourFactureAchat(saved);
                     log.info("💾 Facture mise à jour - ID: {}, FileId: {}, Filename: {}", 
                             saved.getId(), saved.getFichierFactureId(), saved.getFichierFactureNom());
                 } else {
@@ -155,7 +159,7 @@ public class FactureAchatFileController {
                     f.setFichierFactureNom(null);
                     f.setFichierFactureType(null);
                     f.setFichierFactureUrl(null);
-                    factureAchatRepository.save(f);
+                    dashboardAggregateService.rafraichirPourFactureAchat(factureAchatRepository.save(f));
                 }
             });
         }
@@ -1,10 +1,12 @@
 package com.bf4invest.controller;
 
 import com.bf4invest.dto.FacturerBonsLivraisonGroupesRequest;
+import com.bf4invest.dto.PageResponse;
 import com.bf4invest.model.FactureVente;
 import com.bf4invest.service.FactureVenteService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -54,6 +56,25 @@ public class FactureVenteController {
         return ResponseEntity.ok(factures);
     }
     
+    /**
+     * Liste paginée (filtres, tri et pagination côté MongoDB, sans lignes ni paiements).
+     */
+    @GetMapping("/page")
+    public ResponseEntity<PageResponse<FactureVente>> getFacturesPage(
+            @RequestParam(required = false) String clientId,
+            @RequestParam(required = false) String etatPaiement,
+            @RequestParam(required = false) String statut,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateMin,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateMax,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "50") int size,
+            @RequestParam(defaultValue = "date") String sort,
+            @RequestParam(defaultValue = "desc") String direction
+    ) {
+        return ResponseEntity.ok(factureService.findPage(clientId, etatPaiement, statut, dateMin, dateMax,
+                page, size, sort, direction));
+    }
+    
     @GetMapping("/{id}")
     public ResponseEntity<FactureVente> getFacture(@PathVariable String id) {
         return factureService.findById(id)
@@ -2,19 +2,23 @@ package com.bf4invest.controller;
 
 import com.bf4invest.dto.ImportResult;
 import com.bf4invest.excel.ExcelImportService;
+import com.bf4invest.excel.ImportJob;
+import com.bf4invest.excel.ImportJobService;
 import com.bf4invest.model.ImportLog;
 import com.bf4invest.repository.ImportLogRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.io.ByteArrayResource;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/import")
@@ -24,6 +28,7 @@ public class ImportController {
     
     private final ExcelImportService excelImportService;
     private final ImportLogRepository importLogRepository;
+    private final ImportJobService importJobService;
     
     @PostMapping("/excel")
     public ResponseEntity<?> importExcel(@RequestParam("file") MultipartFile file) {
@@ -41,47 +46,9 @@ public class ImportController {
                 return ResponseEntity.badRequest().body(result);
             }
             
-            log.info("Début import historique commandes (BC): {}", filename);
-            ImportResult result = excelImportService.importExcel(file);
-            log.info("Fin import historique commandes (BC): {} succès, {} erreurs", result.getSuccessCount(), result.getErrorCount());
-            
-            // Store import log
-            ImportLog importLog = ImportLog.builder()
-                    .fileName(file.getOriginalFilename())
-                    .details(String.format("%d ligne(s) importée(s) avec succès, %d erreur(s)", 
-                            result.getSuccessCount(), result.getErrorCount()))
-                    .success(result.getErrorCount() == 0 && result.getSuccessCount() > 0)
-                    .successCount(result.getSuccessCount())
-                    .errorCount(result.getErrorCount())
-                    .createdAt(LocalDateTime.now())
-                    .build();
-            importLogRepository.save(importLog);
-            
-            // Générer le fichier de rapport si il y a des erreurs ou des succès
-            if (!result.getErrorRows().isEmpty() || !result.getSuccessRows().isEmpty()) {
-                try {
-                    byte[] reportBytes = excelImportService.generateImportReport(result, file);
-                    
-                    HttpHeaders headers = new HttpHeaders();
-                    String reportFileName = file.getOriginalFilename() != null 
-                            ? file.getOriginalFilename().replace(".xlsx", "_rapport.xlsx").replace(".xls", "_rapport.xlsx")
-                            : "rapport_import.xlsx";
-                    headers.add(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + reportFileName);
-                    headers.add(HttpHeaders.CONTENT_TYPE, "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
-                    
-                    return ResponseEntity.ok()
-                            .headers(headers)
-                            .contentLength(reportBytes.length)
-                            .contentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
-                            .body(new ByteArrayResource(reportBytes));
-                } catch (Exception e) {
-                    log.error("Erreur lors de la génération du rapport Excel: {}", e.getMessage(), e);
-                    // Si erreur lors de la génération du rapport, retourner juste le résultat JSON
-                    return ResponseEntity.ok(result);
-                }
-            }
-            
-            return ResponseEntity.ok(result);
+            return reponseSynchrone(importJobService.attendre(importJobService.soumettre(ImportJob.Type.BC, file)));
+        } catch (IllegalStateException e) {
+            return fileAttentePleine(e);
         } catch (Exception e) {
             log.error("Erreur lors de l'import des historiques commandes (BC): {}", e.getMessage(), e);
             ImportResult errorResult = new ImportResult();
@@ -148,44 +115,16 @@ public class ImportController {
             return ResponseEntity.badRequest().body(result);
         }
         
-        ImportResult result = excelImportService.importProductCatalog(file);
-        
-        // Store import log
-        ImportLog importLog = ImportLog.builder()
-                .fileName(file.getOriginalFilename())
-                .details(String.format("%d produit(s) importé(s) avec succès, %d erreur(s)", 
-                        result.getSuccessCount(), result.getErrorCount()))
-                .success(result.getErrorCount() == 0 && result.getSuccessCount() > 0)
-                .successCount(result.getSuccessCount())
-                .errorCount(result.getErrorCount())
-                .createdAt(LocalDateTime.now())
-                .build();
-        importLogRepository.save(importLog);
-        
-        // Générer le fichier de rapport si il y a des erreurs ou des succès
-        if (!result.getErrorRows().isEmpty() || !result.getSuccessRows().isEmpty()) {
-            try {
-                byte[] reportBytes = excelImportService.generateImportReport(result, file);
-                
-                HttpHeaders headers = new HttpHeaders();
-                String reportFileName = file.getOriginalFilename() != null 
-                        ? file.getOriginalFilename().replace(".xlsx", "_rapport.xlsx").replace(".xls", "_rapport.xlsx")
-                        : "rapport_import.xlsx";
-                headers.add(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + reportFileName);
-                headers.add(HttpHeaders.CONTENT_TYPE, "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
-                
-                return ResponseEntity.ok()
-                        .headers(headers)
-                        .contentLength(reportBytes.length)
-                        .contentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
-                        .body(new ByteArrayResource(reportBytes));
-            } catch (Exception e) {
-                // Si erreur lors de la génération du rapport, retourner juste le résultat
-                return ResponseEntity.ok(result);
-            }
+        try {
+            return reponseSynchrone(importJobService.attendre(importJobService.soumettre(ImportJob.Type.PRODUITS, file)));
+        } catch (IllegalStateException e) {
+            return fileAttentePleine(e);
+        } catch (Exception e) {
+            log.error("Erreur lors de l'import du catalogue produits: {}", e.getMessage(), e);
+            ImportResult errorResult = new ImportResult();
+            errorResult.getErrors().add("Erreur lors de l'import: " + (e.getMessage() != null ? e.getMessage() : "Erreur inconnue"));
+            return ResponseEntity.internalServerError().body(errorResult);
         }
-        
-        return ResponseEntity.ok(result);
     }
     
     @GetMapping("/template/operations")
@@ -223,46 +162,9 @@ public class ImportController {
                 return ResponseEntity.badRequest().body(result);
             }
             
-            log.info("Début import opérations comptables: {}", filename);
-            ImportResult result = excelImportService.importOperationsComptables(file);
-            log.info("Fin import opérations comptables: {} succès, {} erreurs", result.getSuccessCount(), result.getErrorCount());
-        
-        // Store import log
-        ImportLog importLog = ImportLog.builder()
-                .fileName(file.getOriginalFilename())
-                .details(String.format("%d opération(s) importée(s) avec succès, %d erreur(s)", 
-                        result.getSuccessCount(), result.getErrorCount()))
-                .success(result.getErrorCount() == 0 && result.getSuccessCount() > 0)
-                .successCount(result.getSuccessCount())
-                .errorCount(result.getErrorCount())
-                .createdAt(LocalDateTime.now())
-                .build();
-        importLogRepository.save(importLog);
-        
-        // Générer le fichier de rapport si il y a des erreurs ou des succès
-        if (!result.getErrorRows().isEmpty() || !result.getSuccessRows().isEmpty()) {
-            try {
-                byte[] reportBytes = excelImportService.generateImportReport(result, file);
-                
-                HttpHeaders headers = new HttpHeaders();
-                String reportFileName = file.getOriginalFilename() != null 
-                        ? file.getOriginalFilename().replace(".xlsx", "_rapport.xlsx").replace(".xls", "_rapport.xlsx")
-                        : "rapport_import.xlsx";
-                headers.add(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + reportFileName);
-                headers.add(HttpHeaders.CONTENT_TYPE, "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
-                
-                return ResponseEntity.ok()
-                        .headers(headers)
-                        .contentLength(reportBytes.length)
-                        .contentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
-                        .body(new ByteArrayResource(reportBytes));
-            } catch (Exception e) {
-                // Si erreur lors de la génération du rapport, retourner juste le résultat
-                return ResponseEntity.ok(result);
-            }
-        }
-        
-        return ResponseEntity.ok(result);
+            return reponseSynchrone(importJobService.attendre(importJobService.soumettre(ImportJob.Type.OPERATIONS, file)));
+        } catch (IllegalStateException e) {
+            return fileAttentePleine(e);
         } catch (Exception e) {
             log.error("Erreur lors de l'import des opérations comptables: {}", e.getMessage(), e);
             ImportResult errorResult = new ImportResult();
@@ -270,6 +172,121 @@ public class ImportController {
             return ResponseEntity.internalServerError().body(errorResult);
         }
     }
+    
+    /**
+     * Lance un import en arrière-plan et renvoie immédiatement le job (202) ; l'avancement se suit
+     * via GET /import/jobs/{id}.
+     */
+    @PostMapping("/jobs")
+    public ResponseEntity<?> soumettreImport(@RequestParam("file") MultipartFile file,
+                                             @RequestParam(defaultValue = "BC") ImportJob.Type type) {
+        if (file.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Fichier vide"));
+        }
+        String filename = file.getOriginalFilename();
+        if (filename == null || (!filename.endsWith(".xlsx") && !filename.endsWith(".xls"))) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Format de fichier non supporté. Utilisez .xlsx ou .xls"));
+        }
+        try {
+            ImportJob job = importJobService.soumettre(type, file);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(vue(job));
+        } catch (IllegalStateException e) {
+            return fileAttentePleine(e);
+        } catch (Exception e) {
+            log.error("Erreur lors de la mise en file de l'import: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().body(Map.of("error", "Erreur lors de l'import: " + e.getMessage()));
+        }
+    }
+    
+    @GetMapping("/jobs")
+    public ResponseEntity<List<Map<String, Object>>> listerImports() {
+        return ResponseEntity.ok(importJobService.lister().stream().map(this::vue).toList());
+    }
+    
+    @GetMapping("/jobs/{id}")
+    public ResponseEntity<Map<String, Object>> suivreImport(@PathVariable String id) {
+        return importJobService.trouver(id)
+                .map(job -> ResponseEntity.ok(vue(job)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+    
+    @DeleteMapping("/jobs/{id}")
+    public ResponseEntity<Map<String, Object>> annulerImport(@PathVariable String id) {
+        return importJobService.annuler(id)
+                .map(job -> ResponseEntity.ok(vue(job)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+    
+    @GetMapping("/jobs/{id}/rapport")
+    public ResponseEntity<ByteArrayResource> telechargerRapport(@PathVariable String id) {
+        return importJobService.trouver(id)
+                .filter(ImportJob::isRapportDisponible)
+                .map(this::rapport)
+                .orElse(ResponseEntity.notFound().build());
+    }
+    
+    /**
+     * Réponse des endpoints synchrones historiques : rapport Excel s'il existe, sinon le résultat JSON ; le job
+     * (202) si l'import n'est pas terminé dans le délai d'attente.
+     */
+    private ResponseEntity<?> reponseSynchrone(ImportJob job) {
+        if (!job.estFini()) {
+            // Délai d'attente dépassé : l'import continue, le client le suit via GET /import/jobs/{id}
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(vue(job));
+        }
+        if (job.getStatut() == ImportJob.Statut.ECHOUE) {
+            return ResponseEntity.internalServerError().body(job.getResultat());
+        }
+        if (job.isRapportDisponible()) {
+            return rapport(job);
+        }
+        return ResponseEntity.ok(job.getResultat() != null ? job.getResultat() : new ImportResult());
+    }
+    
+    private ResponseEntity<ByteArrayResource> rapport(ImportJob job) {
+        byte[] reportBytes = job.getRapport();
+        String reportFileName = job.getNomFichier() != null
+                ? job.getNomFichier().replace(".xlsx", "_rapport.xlsx").replace(".xls", "_rapport.xlsx")
+                : "rapport_import.xlsx";
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + reportFileName);
+        
+        return ResponseEntity.ok()
+                .headers(headers)
+                .contentLength(reportBytes.length)
+                .contentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
+                .body(new ByteArrayResource(reportBytes));
+    }
+    
+    private ResponseEntity<Map<String, Object>> fileAttentePleine(IllegalStateException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(Map.of("error", e.getMessage()));
+    }
+    
+    private Map<String, Object> vue(ImportJob job) {
+        Map<String, Object> vue = new LinkedHashMap<>();
+        vue.put("id", job.getId());
+        vue.put("type", job.getType());
+        vue.put("fileName", job.getNomFichier());
+        vue.put("statut", job.getStatut());
+        vue.put("pourcentage", job.getPourcentage());
+        vue.put("lignesTraitees", job.getLignesTraitees());
+        vue.put("totalLignes", job.getTotalLignes());
+        vue.put("creeLe", job.getCreeLe());
+        vue.put("debut", job.getDebut());
+        vue.put("fin", job.getFin());
+        vue.put("message", job.getMessage());
+        vue.put("rapportDisponible", job.isRapportDisponible());
+        ImportResult result = job.getResultat();
+        if (result != null) {
+            // Résumé seulement : les lignes détaillées sont dans le rapport Excel
+            vue.put("totalRows", result.getTotalRows());
+            vue.put("successCount", result.getSuccessCount());
+            vue.put("errorCount", result.getErrorCount());
+            vue.put("errors", result.getErrors());
+            vue.put("warnings", result.getWarnings());
+            vue.put("dureeMs", result.getDureeMs());
+            vue.put("lignesParSeconde", result.getLignesParSeconde());
+        }
+        return vue;
+    }
 }
-
-
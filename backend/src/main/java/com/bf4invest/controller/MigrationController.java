@@ -6,6 +6,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.Map;
@@ -119,5 +120,41 @@ public class MigrationController {
             return ResponseEntity.internalServerError().body(response);
         }
     }
+    
+    /**
+     * Recalcule les champs comptables persistés (solde, bilan, htPaye...) des factures dont le
+     * marqueur calcSchemaVersion est obsolète. Avec force=true, toutes les factures sont recalculées
+     * (à utiliser après une modification des paramètres de calcul).
+     * 
+     * @return Statistiques du recalcul
+     */
+    @PostMapping("/recalcul-champs-comptables")
+    public ResponseEntity<Map<String, Object>> recalculerChampsComptables(
+            @RequestParam(defaultValue = "false") boolean force) {
+        log.info("🔄 Démarrage du recalcul des champs comptables via API (force={})...", force);
+        
+        try {
+            Map<String, Integer> stats = force
+                    ? migrationService.recalculerTousChampsComptables()
+                    : migrationService.recalculerChampsComptablesObsoletes();
+            
+            Map<String, Object> response = Map.of(
+                "success", true,
+                "message", "Recalcul des champs comptables terminé avec succès",
+                "statistics", stats
+            );
+            
+            return ResponseEntity.ok(response);
+            
+        } catch (Exception e) {
+            log.error("❌ Erreur lors du recalcul des champs comptables: {}", e.getMessage(), e);
+            
+            Map<String, Object> response = Map.of(
+                "success", false,
+                "message", "Erreur lors du recalcul: " + e.getMessage()
+            );
+            
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
 }
-
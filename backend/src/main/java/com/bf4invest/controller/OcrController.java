@@ -1,17 +1,26 @@
 package com.bf4invest.controller;
 
 import com.bf4invest.dto.OcrExtractResult;
+import com.bf4invest.service.OcrJob;
+import com.bf4invest.service.OcrJobService;
 import com.bf4invest.service.OcrOrchestratorService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/ocr")
@@ -20,6 +29,7 @@ import java.util.Map;
 public class OcrController {
 
     private final OcrOrchestratorService ocrOrchestratorService;
+    private final OcrJobService ocrJobService;
 
     /**
      * Liste des modèles Gemini (diagnostic historique, clé GEMINI_API_KEY requise).
@@ -44,6 +54,15 @@ public class OcrController {
         return ResponseEntity.ok(ocrOrchestratorService.getDiagnosticStatus());
     }
 
+    /**
+     * Cache des résultats OCR : hits (mémoire, MongoDB, appels partagés), misses, latence économisée.
+     */
+    @GetMapping("/cache/statistiques")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> cacheStatistics() {
+        return ResponseEntity.ok(ocrOrchestratorService.getCacheStatistics());
+    }
+
     @PostMapping("/extract-bc")
     public ResponseEntity<?> extractFromImage(
             @RequestParam("file") MultipartFile file) {
@@ -51,16 +70,9 @@ public class OcrController {
         log.info("📄 [OCR] Requête d'extraction OCR - Fichier: {}, Taille: {} bytes",
                 file.getOriginalFilename(), file.getSize());
 
-        if (file.isEmpty()) {
-            log.warn("⚠️ [OCR] Fichier vide");
-            return ResponseEntity.badRequest().body(Map.of("error", "Le fichier est vide"));
-        }
-
-        String contentType = file.getContentType();
-        if (contentType == null || !contentType.startsWith("image/")) {
-            log.warn("⚠️ [OCR] Type de fichier non supporté: {}", contentType);
-            return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE)
-                    .body(Map.of("error", "Type de fichier non supporté. Seules les images sont acceptées."));
+        ResponseEntity<?> refus = fichierRefuse(file);
+        if (refus != null) {
+            return refus;
         }
 
         try {
@@ -80,6 +92,126 @@ public class OcrController {
         }
     }
 
+    /**
+     * Lance l'extraction de plusieurs images en arrière-plan et renvoie immédiatement un job par image (202) ;
+     * les résultats se suivent via GET /ocr/jobs/{id} ou en flux via GET /ocr/jobs/flux?ids=...
+     */
+    @PostMapping("/jobs")
+    public ResponseEntity<?> soumettreExtractions(@RequestParam("files") List<MultipartFile> files,
+                                                  Authentication authentication) {
+        if (files.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Aucun fichier reçu"));
+        }
+        for (MultipartFile file : files) {
+            ResponseEntity<?> refus = fichierRefuse(file);
+            if (refus != null) {
+                return refus;
+            }
+        }
+        try {
+            List<OcrJob> jobs = ocrJobService.soumettre(files, authentication != null ? authentication.getName() : null);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(jobs.stream().map(this::vue).toList());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(Map.of("error", e.getMessage()));
+        } catch (IOException e) {
+            log.error("❌ [OCR] Erreur lors de la mise en file des extractions", e);
+            return ResponseEntity.internalServerError().body(Map.of("error", "Erreur lors de l'envoi: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Extractions demandées (ids) ou, sans ids, celles de l'utilisateur connecté ; un administrateur voit tous les
+     * jobs. Les résultats contiennent le texte des factures : un utilisateur ne liste pas ceux des autres.
+     */
+    @GetMapping("/jobs")
+    public ResponseEntity<List<Map<String, Object>>> listerExtractions(@RequestParam(required = false) List<String> ids,
+                                                                       Authentication authentication) {
+        List<OcrJob> jobs;
+        if (ids != null) {
+            jobs = ocrJobService.trouver(ids);
+        } else if (estAdmin(authentication)) {
+            jobs = ocrJobService.lister();
+        } else {
+            jobs = ocrJobService.lister(authentication != null ? authentication.getName() : null);
+        }
+        return ResponseEntity.ok(jobs.stream().map(this::vue).toList());
+    }
+
+    @GetMapping("/jobs/statistiques")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> statistiquesExtractions() {
+        return ResponseEntity.ok(ocrJobService.statistiques());
+    }
+
+    @GetMapping("/jobs/{id}")
+    public ResponseEntity<Map<String, Object>> suivreExtraction(@PathVariable String id) {
+        return ocrJobService.trouver(id)
+                .map(job -> ResponseEntity.ok(vue(job)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Flux Server-Sent Events : un évènement "job" par extraction dès qu'elle est terminée (ou en échec),
+     * puis fermeture du flux une fois toutes les extractions demandées terminées.
+     */
+    @GetMapping(value = "/jobs/flux", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> fluxExtractions(@RequestParam List<String> ids) {
+        List<OcrJob> jobs = ocrJobService.trouver(ids);
+        if (jobs.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        SseEmitter emitter = new SseEmitter();
+        CompletableFuture<?>[] envois = jobs.stream()
+                .map(job -> job.achevement().thenAccept(fini -> envoyer(emitter, fini)))
+                .toArray(CompletableFuture[]::new);
+        CompletableFuture.allOf(envois).whenComplete((ok, erreur) -> emitter.complete());
+        return ResponseEntity.ok(emitter);
+    }
+
+    private void envoyer(SseEmitter emitter, OcrJob job) {
+        try {
+            emitter.send(SseEmitter.event().name("job").id(job.getId()).data(vue(job), MediaType.APPLICATION_JSON));
+        } catch (IOException | IllegalStateException e) {
+            // Client déconnecté : les jobs continuent, résultats consultables via GET /ocr/jobs/{id}
+            log.debug("[OCR] Flux SSE interrompu pour le job {}: {}", job.getId(), e.getMessage());
+        }
+    }
+
+    private Map<String, Object> vue(OcrJob job) {
+        Map<String, Object> vue = new LinkedHashMap<>();
+        vue.put("id", job.getId());
+        vue.put("fileName", job.getNomFichier());
+        vue.put("statut", job.getStatut());
+        vue.put("tentatives", job.getTentatives());
+        vue.put("prochaineTentative", job.getProchaineTentative());
+        vue.put("creeLe", job.getCreeLe());
+        vue.put("debut", job.getDebut());
+        vue.put("fin", job.getFin());
+        vue.put("message", job.getMessage());
+        vue.put("resultat", job.getResultat());
+        return vue;
+    }
+
+    private static boolean estAdmin(Authentication authentication) {
+        return authentication != null && authentication.getAuthorities().stream()
+                .anyMatch(autorite -> "ROLE_ADMIN".equals(autorite.getAuthority()));
+    }
+
+    private static ResponseEntity<?> fichierRefuse(MultipartFile file) {
+        if (file.isEmpty()) {
+            log.warn("⚠️ [OCR] Fichier vide");
+            return ResponseEntity.badRequest().body(Map.of("error", "Le fichier est vide"));
+        }
+
+        String contentType = file.getContentType();
+        if (contentType == null || !contentType.startsWith("image/")) {
+            log.warn("⚠️ [OCR] Type de fichier non supporté: {}", contentType);
+            return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE)
+                    .body(Map.of("error", "Type de fichier non supporté. Seules les images sont acceptées."));
+        }
+        return null;
+    }
+
     /**
      * Quotas / saturation des providers gratuits : 503 plutôt que 500.
      */
@@ -2,17 +2,24 @@ package com.bf4invest.controller;
 
 import com.bf4invest.model.ParametresCalcul;
 import com.bf4invest.service.ParametresCalculService;
+import com.bf4invest.service.RecalculComptableJob;
+import com.bf4invest.service.RecalculComptableJobService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 @RestController
 @RequestMapping("/parametres-calcul")
 @RequiredArgsConstructor
 public class ParametresCalculController {
     
     private final ParametresCalculService parametresCalculService;
+    private final RecalculComptableJobService recalculComptableJobService;
     
     @GetMapping
     public ResponseEntity<ParametresCalcul> getParametres() {
@@ -20,20 +27,50 @@ public class ParametresCalculController {
         return ResponseEntity.ok(parametres);
     }
     
+    /**
+     * Enregistre les paramètres et lance en arrière-plan le recalcul des champs comptables persistés, qui en
+     * dépendent (202) ; l'avancement se suit via GET /parametres-calcul/recalculs/{id}.
+     */
     @PutMapping
-    public ResponseEntity<ParametresCalcul> updateParametres(@RequestBody ParametresCalcul parametres) {
+    public ResponseEntity<Map<String, Object>> updateParametres(@RequestBody ParametresCalcul parametres) {
         ParametresCalcul updated = parametresCalculService.updateParametres(parametres);
-        return ResponseEntity.ok(updated);
+        return recalculLance(updated);
     }
     
     @PostMapping
-    public ResponseEntity<ParametresCalcul> saveParametres(@RequestBody ParametresCalcul parametres) {
+    public ResponseEntity<Map<String, Object>> saveParametres(@RequestBody ParametresCalcul parametres) {
         ParametresCalcul saved = parametresCalculService.saveParametres(parametres);
-        return ResponseEntity.status(HttpStatus.CREATED).body(saved);
+        return recalculLance(saved);
+    }
+    
+    @GetMapping("/recalculs")
+    public ResponseEntity<List<Map<String, Object>>> listerRecalculs() {
+        return ResponseEntity.ok(recalculComptableJobService.lister().stream().map(this::vue).toList());
+    }
+    
+    @GetMapping("/recalculs/{id}")
+    public ResponseEntity<Map<String, Object>> statutRecalcul(@PathVariable String id) {
+        return recalculComptableJobService.trouver(id)
+                .map(job -> ResponseEntity.ok(vue(job)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+    
+    private ResponseEntity<Map<String, Object>> recalculLance(ParametresCalcul parametres) {
+        Map<String, Object> reponse = new LinkedHashMap<>();
+        reponse.put("parametres", parametres);
+        reponse.put("recalcul", vue(recalculComptableJobService.soumettre()));
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(reponse);
+    }
+    
+    private Map<String, Object> vue(RecalculComptableJob job) {
+        Map<String, Object> vue = new LinkedHashMap<>();
+        vue.put("id", job.getId());
+        vue.put("statut", job.getStatut());
+        vue.put("creeLe", job.getCreeLe());
+        vue.put("debut", job.getDebut());
+        vue.put("fin", job.getFin());
+        vue.put("message", job.getMessage());
+        vue.put("statistiques", job.getStatistiques());
+        return vue;
     }
 }
-
-
-
-
-
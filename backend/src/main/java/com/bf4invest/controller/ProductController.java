@@ -41,8 +41,13 @@ public class ProductController {
     
     @PostMapping
     public ResponseEntity<Product> createProduct(@RequestBody Product product) {
-        Product created = productService.create(product);
-        return ResponseEntity.status(HttpStatus.CREATED).body(created);
+        try {
+            Product created = productService.create(product);
+            return ResponseEntity.status(HttpStatus.CREATED).body(created);
+        } catch (IllegalArgumentException e) {
+            // Image invalide (format, taille)
+            return ResponseEntity.badRequest().build();
+        }
     }
     
     @PutMapping("/{id}")
@@ -50,6 +55,8 @@ public class ProductController {
         try {
             Product updated = productService.update(id, product);
             return ResponseEntity.ok(updated);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
         } catch (RuntimeException e) {
             return ResponseEntity.notFound().build();
         }
@@ -1,17 +1,29 @@
 package com.bf4invest.controller;
 
+import com.bf4invest.dto.PageResponse;
 import com.bf4invest.dto.PublicProductDto;
-import com.bf4invest.model.Product;
-import com.bf4invest.repository.ProductRepository;
+import com.bf4invest.service.CatalogueVitrineService;
+import com.bf4invest.service.ProductImageService;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.filter.ShallowEtagHeaderFilter;
 
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Endpoints publics consommés par le site vitrine (sans authentification).
@@ -22,35 +34,96 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class PublicController {
 
-    private final ProductRepository productRepository;
+    // Revalidation à chaque visite (réponse 304 sans corps tant que le catalogue ne change pas)
+    private static final CacheControl CACHE_CATALOGUE = CacheControl.noCache().cachePublic();
+
+    private final CatalogueVitrineService catalogueVitrineService;
+    private final ProductImageService productImageService;
 
     /**
-     * Retourne la liste des produits disponibles pour le site vitrine.
+     * Retourne la liste des produits disponibles pour le site vitrine, filtrable par catégorie.
      * Aucune information sensible (prix d'achat, fournisseur, etc.) n'est exposée.
+     * Servie depuis l'instantané du catalogue : 304 si l'ETag envoyé est toujours valide.
      */
     @GetMapping("/produits")
-    public ResponseEntity<List<PublicProductDto>> getPublicProducts() {
-        List<Product> products = productRepository.findAll();
-
-        List<PublicProductDto> dtos = products.stream()
-                .map(p -> PublicProductDto.builder()
-                        .id(p.getId())
-                        .refArticle(p.getRefArticle())
-                        .designation(p.getDesignation())
-                        .unite(p.getUnite())
-                        .prixVentePondereHT(p.getPrixVentePondereHT())
-                        .tva(p.getTva())
-                        .quantiteEnStock(p.getQuantiteEnStock())
-                        .imageBase64(p.getImageBase64())
-                        .imageContentType(p.getImageContentType())
-                        .categorie(p.getCategorie() != null && !p.getCategorie().trim().isEmpty()
-                                ? p.getCategorie()
-                                : "Matériaux de Construction")
-                        .build())
-                .collect(Collectors.toList());
-
+    public ResponseEntity<List<PublicProductDto>> getPublicProducts(
+            @RequestParam(required = false) String categorie,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            HttpServletRequest request
+    ) {
+        CatalogueVitrineService.Instantane catalogue = catalogueVitrineService.instantane();
+        if (nonModifie(catalogue, ifNoneMatch)) {
+            return reponseNonModifiee(catalogue);
+        }
+        List<PublicProductDto> dtos = catalogueVitrineService.produits(catalogue, categorie);
         log.debug("PublicController.getPublicProducts - {} produits retournés pour le site vitrine", dtos.size());
-        return ResponseEntity.ok(dtos);
+        // ETag fourni par l'instantané : inutile de sérialiser deux fois pour le filtre ETag global
+        ShallowEtagHeaderFilter.disableContentCaching(request);
+        return ResponseEntity.ok().eTag(catalogue.etag()).cacheControl(CACHE_CATALOGUE).body(dtos);
+    }
+
+    /**
+     * Catalogue paginé (tri catégorie puis désignation), filtrable par catégorie.
+     */
+    @GetMapping("/produits/page")
+    public ResponseEntity<PageResponse<PublicProductDto>> getPublicProductsPage(
+            @RequestParam(required = false) String categorie,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "24") int size,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            HttpServletRequest request
+    ) {
+        CatalogueVitrineService.Instantane catalogue = catalogueVitrineService.instantane();
+        if (nonModifie(catalogue, ifNoneMatch)) {
+            return reponseNonModifiee(catalogue);
+        }
+        ShallowEtagHeaderFilter.disableContentCaching(request);
+        return ResponseEntity.ok().eTag(catalogue.etag()).cacheControl(CACHE_CATALOGUE)
+                .body(catalogueVitrineService.page(catalogue, categorie, page, size));
+    }
+
+    private static boolean nonModifie(CatalogueVitrineService.Instantane catalogue, String ifNoneMatch) {
+        return ifNoneMatch != null && (ifNoneMatch.contains(catalogue.etag()) || ifNoneMatch.trim().equals("*"));
+    }
+
+    private static <T> ResponseEntity<T> reponseNonModifiee(CatalogueVitrineService.Instantane catalogue) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(catalogue.etag()).cacheControl(CACHE_CATALOGUE).build();
+    }
+
+    /**
+     * Image produit (originale ou miniature). Le contenu d'un id ne change jamais : cache immuable d'un an,
+     * ETag = id pour les revalidations.
+     */
+    @GetMapping("/images/{id}")
+    public ResponseEntity<InputStreamResource> getProductImage(
+            @PathVariable String id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            HttpServletRequest request
+    ) {
+        String etag = "\"" + id + "\"";
+        CacheControl cache = CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable();
+        // Contenu potentiellement volumineux : pas de mise en mémoire par le filtre ETag global
+        ShallowEtagHeaderFilter.disableContentCaching(request);
+        try {
+            Optional<ProductImageService.ImageStockee> image = productImageService.lire(id);
+            if (image.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            if (ifNoneMatch != null && (ifNoneMatch.contains(etag) || ifNoneMatch.trim().equals("*"))) {
+                image.get().contenu().close();
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cache).build();
+            }
+            return ResponseEntity.ok()
+                    .eTag(etag)
+                    .cacheControl(cache)
+                    .header("X-Content-Type-Options", "nosniff")
+                    .contentType(MediaType.parseMediaType(image.get().contentType()))
+                    .contentLength(image.get().taille())
+                    .body(new InputStreamResource(image.get().contenu()));
+        } catch (Exception e) {
+            log.error("Erreur lors de la lecture de l'image produit {}", id, e);
+            return ResponseEntity.internalServerError().build();
+        }
     }
 }
 
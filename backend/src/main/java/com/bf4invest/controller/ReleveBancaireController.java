@@ -5,6 +5,7 @@ import com.bf4invest.excel.ReleveBancaireImportService;
 import com.bf4invest.model.ReleveBancaireFichier;
 import com.bf4invest.model.TransactionBancaire;
 import com.bf4invest.service.FileStorageService;
+import com.bf4invest.service.IndexRapprochement;
 import com.bf4invest.service.TransactionMappingService;
 import com.bf4invest.repository.ReleveBancaireFichierRepository;
 import com.bf4invest.repository.TransactionBancaireRepository;
@@ -126,6 +127,22 @@ public class ReleveBancaireController {
                 .orElse(ResponseEntity.notFound().build());
     }
     
+    /**
+     * Factures candidates pour une transaction, triées par score (montant, dates, référence, libellé)
+     */
+    @GetMapping("/transactions/{id}/correspondances")
+    public ResponseEntity<List<IndexRapprochement.Correspondance>> getCorrespondances(
+            @PathVariable String id,
+            @RequestParam(defaultValue = "5") int limite
+    ) {
+        try {
+            return ResponseEntity.ok(mappingService.proposerCorrespondances(id, limite));
+        } catch (RuntimeException e) {
+            log.warn("Correspondances impossibles pour la transaction {}: {}", id, e.getMessage());
+            return ResponseEntity.notFound().build();
+        }
+    }
+    
     /**
      * Lie manuellement une transaction à une facture
      */
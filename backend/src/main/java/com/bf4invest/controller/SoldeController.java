@@ -10,13 +10,17 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @RestController
 @RequestMapping("/solde")
@@ -59,6 +63,24 @@ public class SoldeController {
         return ResponseEntity.ok(solde);
     }
     
+    /**
+     * Compare le solde courant au recalcul complet depuis les données sources.
+     */
+    @GetMapping("/global/audit")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> auditerSoldeGlobal() {
+        return ResponseEntity.ok(soldeService.auditerSoldeActuel(false));
+    }
+    
+    /**
+     * Remplace le solde courant par le recalcul complet en cas d'écart.
+     */
+    @PostMapping("/global/audit/reparer")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> reparerSoldeGlobal() {
+        return ResponseEntity.ok(soldeService.auditerSoldeActuel(true));
+    }
+    
     @GetMapping("/partenaire/{type}/{id}")
     public ResponseEntity<Double> getSoldePartenaire(
             @PathVariable String type,
@@ -132,5 +154,28 @@ public class SoldeController {
             return ResponseEntity.internalServerError().build();
         }
     }
+    
+    /**
+     * Export de l'historique en flux (curseur MongoDB + SXSSF), pour les historiques volumineux.
+     */
+    @GetMapping("/historique/export/excel/stream")
+    public ResponseEntity<StreamingResponseBody> exportHistoriqueExcelStream(
+            @RequestParam(required = false) String partenaireId,
+            @RequestParam(required = false) String partenaireType,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime dateDebut,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime dateFin
+    ) {
+        StreamingResponseBody body = out -> {
+            try (Stream<HistoriqueSolde> historique = soldeService.streamHistorique(
+                    partenaireId, partenaireType, type, dateDebut, dateFin)) {
+                excelExportService.exportHistoriqueTresorerieStreaming(historique, out);
+            }
+        };
+        
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        headers.setContentDispositionFormData("attachment", "historique-tresorerie.xlsx");
+        return ResponseEntity.ok().headers(headers).body(body);
+    }
 }
-
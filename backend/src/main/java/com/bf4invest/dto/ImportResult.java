@@ -17,6 +17,11 @@ public class ImportResult {
     private int totalRows;
     private int successCount;
     private int errorCount;
+
+    /** Durée totale de l'import (lecture + enregistrement) en millisecondes */
+    private long dureeMs;
+    /** Débit de l'import : lignes du fichier traitées par seconde */
+    private double lignesParSeconde;
     @Builder.Default
     private List<String> errors = new ArrayList<>();
     @Builder.Default
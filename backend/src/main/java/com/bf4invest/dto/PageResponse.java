@@ -0,0 +1,49 @@
+package com.bf4invest.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.util.List;
+
+/**
+ * Page de résultats renvoyée par les listes paginées côté serveur.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PageResponse<T> {
+
+    /** Taille maximale d'une page, commune à toutes les listes paginées. */
+    public static final int TAILLE_PAGE_MAX = 500;
+
+    private List<T> content;
+    private int page;
+    private int size;
+    private long totalElements;
+    private int totalPages;
+    private boolean hasNext;
+
+    /** Page demandée, numéro et taille ramenés dans les bornes (taille de 1 à {@link #TAILLE_PAGE_MAX}). */
+    public static Pageable pageDemandee(int page, int size, Sort sort) {
+        return PageRequest.of(Math.max(page, 0), Math.min(Math.max(size, 1), TAILLE_PAGE_MAX), sort);
+    }
+
+    public static <T> PageResponse<T> of(List<T> content, Pageable pageable, long totalElements) {
+        int size = pageable.getPageSize();
+        int totalPages = size > 0 ? (int) ((totalElements + size - 1) / size) : 0;
+        return PageResponse.<T>builder()
+                .content(content)
+                .page(pageable.getPageNumber())
+                .size(size)
+                .totalElements(totalElements)
+                .totalPages(totalPages)
+                .hasNext(pageable.getPageNumber() + 1 < totalPages)
+                .build();
+    }
+}
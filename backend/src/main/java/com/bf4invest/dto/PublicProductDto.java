@@ -21,7 +21,8 @@ public class PublicProductDto {
     private Double prixVentePondereHT;
     private Double tva;
     private Double quantiteEnStock;
-    private String imageBase64;
+    private String imageUrl;          // Image originale (cache immuable)
+    private String imageMiniatureUrl; // Miniature pour les listes (originale si pas de miniature)
     private String imageContentType;
     private String categorie;
 }
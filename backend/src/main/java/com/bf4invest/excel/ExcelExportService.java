@@ -6,6 +6,7 @@ import com.bf4invest.model.Charge;
 import com.bf4invest.model.ClientVente;
 import com.bf4invest.model.FactureAchat;
 import com.bf4invest.model.FactureVente;
+import com.bf4invest.model.FournisseurAchat;
 import com.bf4invest.model.HistoriqueSolde;
 import com.bf4invest.model.LigneAchat;
 import com.bf4invest.model.LigneVente;
@@ -26,6 +27,7 @@ import com.bf4invest.service.TVAService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFColor;
 import org.apache.poi.xssf.usermodel.XSSFCellStyle;
@@ -33,6 +35,7 @@ import org.springframework.stereotype.Service;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.time.LocalDate;
@@ -40,6 +43,7 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -127,8 +131,17 @@ public class ExcelExportService {
         String transactionType; // "FACTURE_VENTE", "FACTURE_ACHAT", "PAIEMENT"
     }
     
-    public byte[] exportBCsToExcel(List<BandeCommande> bcs) throws IOException {
-        try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+    /**
+     * Export en flux des transactions des BCs (factures et paiements liés), SXSSF avec largeurs fixes.
+     * Les BCs sont lus au fil de l'eau depuis le flux (ex: curseur MongoDB) ; seules les lignes de transaction
+     * sont conservées jusqu'à l'écriture, car elles sont triées par date pour les cumuls (solde banque, bilan, CA).
+     *
+     * @return nombre de lignes écrites
+     */
+    public int exportBCsToExcelStreaming(Stream<BandeCommande> bcs, OutputStream out) throws IOException {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(StreamingExcelWriter.FENETRE_LIGNES);
+        workbook.setCompressTempFiles(true);
+        try (workbook) {
             Sheet sheet = workbook.createSheet("Export BCs");
             
             // Créer un cache des clients et fournisseurs
@@ -179,17 +192,20 @@ public class ExcelExportService {
                 "CA",
                 "PAUSE"
             };
+            int[] largeurs = {18, 12, 12, 8, 30, 12, 12, 20, 20, 16, 16, 10, 16, 18, 30, 8, 8,
+                    18, 18, 16, 16, 16, 16, 16, 16, 16, 18, 18, 8};
             
             for (int i = 0; i < headers.length; i++) {
                 Cell cell = headerRow.createCell(i);
                 cell.setCellValue(headers[i]);
                 cell.setCellStyle(headerStyle);
+                sheet.setColumnWidth(i, largeurs[i] * 256);
             }
             
             // Collecter toutes les transactions
             List<TransactionRow> allTransactions = new ArrayList<>();
             
-            for (BandeCommande bc : bcs) {
+            for (BandeCommande bc : (Iterable<BandeCommande>) bcs::iterator) {
                 String bcReference = bc.getNumeroBC() != null ? bc.getNumeroBC() : "";
                 
                 // Récupérer les factures de vente liées (chercher par ID ET par référence)
@@ -212,7 +228,7 @@ public class ExcelExportService {
                 
                 for (FactureVente fv : facturesVente) {
                     // S'assurer que tous les champs sont calculés
-                    calculComptableService.calculerFactureVente(fv);
+                    calculComptableService.calculerSiObsolete(fv);
                     
                     Client client = fv.getClientId() != null ? clientsMap.get(fv.getClientId()) : null;
                     TransactionRow row = createTransactionRowFromFactureVente(fv, bcReference, client);
@@ -239,7 +255,7 @@ public class ExcelExportService {
                 
                 for (FactureAchat fa : facturesAchat) {
                     // S'assurer que tous les champs sont calculés
-                    calculComptableService.calculerFactureAchat(fa);
+                    calculComptableService.calculerSiObsolete(fa);
                     
                     Supplier supplier = fa.getFournisseurId() != null ? suppliersMap.get(fa.getFournisseurId()) : null;
                     TransactionRow row = createTransactionRowFromFactureAchat(fa, bcReference, supplier);
@@ -416,16 +432,11 @@ public class ExcelExportService {
                 setCellValue(row, colIndex++, "", rowStyle);
             }
             
-            // Ajuster la largeur des colonnes
-            for (int i = 0; i < headers.length; i++) {
-                sheet.autoSizeColumn(i);
-                sheet.setColumnWidth(i, sheet.getColumnWidth(i) + 1000);
-            }
-            
-            // Créer un ByteArrayOutputStream pour retourner les bytes
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            workbook.write(baos);
-            return baos.toByteArray();
+            workbook.write(out);
+            out.flush();
+            return allTransactions.size();
+        } finally {
+            workbook.dispose();
         }
     }
     
@@ -800,6 +811,36 @@ public class ExcelExportService {
         }
     }
     
+    /**
+     * Export en flux de l'historique de trésorerie (SXSSF, largeurs fixes).
+     * Les éléments sont consommés au fil de l'eau depuis le flux (ex: curseur MongoDB).
+     *
+     * @return nombre de lignes écrites
+     */
+    public int exportHistoriqueTresorerieStreaming(Stream<HistoriqueSolde> historique, OutputStream out) throws IOException {
+        String[] headers = {
+            "Date", "Type", "Partenaire", "Référence", "Montant",
+            "Solde Global Avant", "Solde Global Après",
+            "Solde Partenaire Avant", "Solde Partenaire Après", "Description"
+        };
+        int[] largeurs = {18, 22, 30, 20, 18, 20, 20, 22, 22, 50};
+        try (StreamingExcelWriter writer = new StreamingExcelWriter("Historique Trésorerie", headers, largeurs)) {
+            historique.forEach(item -> writer.ligne(
+                    item.getDate() != null ? item.getDate() : "-",
+                    getTypeLabel(item.getType()),
+                    item.getPartenaireNom() != null ? item.getPartenaireNom() : "-",
+                    item.getReferenceNumero() != null ? item.getReferenceNumero() : "-",
+                    item.getMontant() != null ? item.getMontant() : 0.0,
+                    item.getSoldeGlobalAvant() != null ? item.getSoldeGlobalAvant() : 0.0,
+                    item.getSoldeGlobalApres() != null ? item.getSoldeGlobalApres() : 0.0,
+                    item.getSoldePartenaireAvant() != null ? item.getSoldePartenaireAvant() : "-",
+                    item.getSoldePartenaireApres() != null ? item.getSoldePartenaireApres() : "-",
+                    item.getDescription() != null ? item.getDescription() : "-"));
+            writer.ecrire(out);
+            return writer.getNombreLignes();
+        }
+    }
+    
     private String getTypeLabel(String type) {
         if (type == null) return "-";
         switch (type) {
@@ -984,6 +1025,62 @@ public class ExcelExportService {
         }
     }
 
+    /**
+     * Export en flux du journal comptable : une ligne par ligne d'écriture, sans charger le journal en mémoire.
+     *
+     * @return nombre de lignes écrites
+     */
+    public int exportJournalComptableStreaming(Stream<com.bf4invest.model.EcritureComptable> ecritures, OutputStream out) throws IOException {
+        String[] headers = {"Date", "Journal", "Pièce", "Compte", "Libellé", "Débit", "Crédit"};
+        int[] largeurs = {12, 10, 22, 12, 50, 18, 18};
+        try (StreamingExcelWriter writer = new StreamingExcelWriter("Journal Comptable", headers, largeurs)) {
+            ecritures.forEach(ecriture -> {
+                if (ecriture.getLignes() == null) {
+                    return;
+                }
+                for (com.bf4invest.model.LigneEcriture ligne : ecriture.getLignes()) {
+                    writer.ligne(ecriture.getDateEcriture(), ecriture.getJournal(), ecriture.getNumeroPiece(),
+                            ligne.getCompteCode(), ligne.getLibelle(),
+                            ligne.getDebit() != null && ligne.getDebit() > 0 ? ligne.getDebit() : null,
+                            ligne.getCredit() != null && ligne.getCredit() > 0 ? ligne.getCredit() : null);
+                }
+            });
+            writer.ecrire(out);
+            return writer.getNombreLignes();
+        }
+    }
+
+    /**
+     * Export en flux du grand livre d'un compte (écritures triées par date), avec solde progressif.
+     *
+     * @return nombre de lignes écrites
+     */
+    public int exportGrandLivreStreaming(Stream<com.bf4invest.model.EcritureComptable> ecritures, String compteCode,
+                                         OutputStream out) throws IOException {
+        String[] headers = {"Date", "Journal", "Pièce", "Libellé", "Débit", "Crédit", "Solde Progressif"};
+        int[] largeurs = {12, 10, 22, 50, 18, 18, 20};
+        try (StreamingExcelWriter writer = new StreamingExcelWriter("Grand Livre - " + compteCode, headers, largeurs)) {
+            double[] soldeProgressif = {0.0};
+            ecritures.forEach(ecriture -> {
+                if (ecriture.getLignes() == null) {
+                    return;
+                }
+                for (com.bf4invest.model.LigneEcriture ligne : ecriture.getLignes()) {
+                    if (!compteCode.equals(ligne.getCompteCode())) {
+                        continue;
+                    }
+                    double debit = ligne.getDebit() != null ? ligne.getDebit() : 0.0;
+                    double credit = ligne.getCredit() != null ? ligne.getCredit() : 0.0;
+                    soldeProgressif[0] += (debit - credit);
+                    writer.ligne(ecriture.getDateEcriture(), ecriture.getJournal(), ecriture.getNumeroPiece(),
+                            ligne.getLibelle(), debit > 0 ? debit : null, credit > 0 ? credit : null, soldeProgressif[0]);
+                }
+            });
+            writer.ecrire(out);
+            return writer.getNombreLignes();
+        }
+    }
+
     /**
      * Export des déclarations TVA
      */
@@ -1489,7 +1586,21 @@ public class ExcelExportService {
      * Exporte les BCs au format import Excel (une ligne par produit × client)
      */
     public byte[] exportBCsToImportFormat(List<BandeCommande> bcs) throws IOException {
-        try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportBCsToImportFormatStreaming(bcs.stream(), out);
+        return out.toByteArray();
+    }
+    
+    /**
+     * Export en flux au format import (SXSSF, largeurs fixes) : chaque BC lu depuis le flux (ex: curseur MongoDB)
+     * est écrit aussitôt, seules les dernières lignes du classeur restent en mémoire.
+     *
+     * @return nombre de lignes écrites
+     */
+    public int exportBCsToImportFormatStreaming(Stream<BandeCommande> bcs, OutputStream out) throws IOException {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(StreamingExcelWriter.FENETRE_LIGNES);
+        workbook.setCompressTempFiles(true);
+        try (workbook) {
             Sheet sheet = workbook.createSheet("Export Import Format");
             
             // Créer un cache des clients et fournisseurs
@@ -1551,18 +1662,35 @@ public class ExcelExportService {
                 "#FFEFFF",  // 18. PRIX DE VENTE U HT
                 "#FFEFFF"   // 19. FACTURE VENTE T TTC
             };
+            int[] largeurs = {16, 30, 18, 18, 14, 18, 30, 14, 45, 12, 12, 18, 18, 18, 12, 20, 16, 20, 22};
             
             for (int i = 0; i < headers.length; i++) {
                 Cell cell = headerRow.createCell(i);
                 cell.setCellValue(headers[i]);
                 CellStyle headerStyle = createHeaderStyleWithColor(workbook, headerColors[i]);
                 cell.setCellStyle(headerStyle);
+                sheet.setColumnWidth(i, largeurs[i] * 256);
             }
             
-            // Générer les lignes d'export
+            // Créer les styles pour chaque colonne avec les couleurs spécifiques
+            CellStyle[] columnTextStyles = new CellStyle[headerColors.length];
+            CellStyle[] columnNumberStyles = new CellStyle[headerColors.length];
+            CellStyle[] columnDateStyles = new CellStyle[headerColors.length];
+            CellStyle[] columnPercentStyles = new CellStyle[headerColors.length];
+            
+            for (int i = 0; i < headerColors.length; i++) {
+                columnTextStyles[i] = createDataStyleWithColor(workbook, headerColors[i], "text");
+                columnNumberStyles[i] = createDataStyleWithColor(workbook, headerColors[i], "number");
+                columnDateStyles[i] = createDataStyleWithColor(workbook, headerColors[i], "date");
+                columnPercentStyles[i] = createDataStyleWithColor(workbook, headerColors[i], "percent");
+            }
+            
+            // Générer et écrire les lignes d'export, BC par BC
+            int dataRowNum = 1;
             List<ImportFormatRow> exportRows = new ArrayList<>();
             
-            for (BandeCommande bc : bcs) {
+            for (BandeCommande bc : (Iterable<BandeCommande>) bcs::iterator) {
+                exportRows.clear();
                 // Récupérer la facture achat liée
                 FactureAchat factureAchat = null;
                 if (bc.getNumeroBC() != null) {
@@ -1606,9 +1734,17 @@ public class ExcelExportService {
                     }
                 }
                 
+                // Lignes achat par fournisseur (fournisseursAchat, sinon ancienne structure mono-fournisseur)
+                List<FournisseurAchat> fournisseursAchat = bc.isMultiFournisseur() ? bc.getFournisseursAchat()
+                        : List.of(FournisseurAchat.builder().fournisseurId(bc.fournisseurIdAncienFormat())
+                                .lignesAchat(bc.lignesAchatAncienFormat()).build());
+                
                 // Pour chaque ligne achat, créer des lignes d'export
-                if (bc.getLignesAchat() != null) {
-                    for (LigneAchat la : bc.getLignesAchat()) {
+                for (FournisseurAchat fournisseurAchat : fournisseursAchat) {
+                    if (fournisseurAchat == null || fournisseurAchat.getLignesAchat() == null) continue;
+                    Supplier supplier = fournisseurAchat.getFournisseurId() != null
+                            ? suppliersMap.get(fournisseurAchat.getFournisseurId()) : null;
+                    for (LigneAchat la : fournisseurAchat.getLignesAchat()) {
                         String produitKey = createProduitKey(la.getProduitRef(), la.getDesignation(), la.getUnite());
                         Map<String, LigneVente> lignesVenteForProduit = lignesVenteByProduitAndClient.getOrDefault(produitKey, new HashMap<>());
                         
@@ -1620,137 +1756,119 @@ public class ExcelExportService {
                                 FactureVente fv = factureVenteByClientId.get(clientId);
                                 
                                 ImportFormatRow row = createImportFormatRow(bc, la, factureAchat, lv, fv, 
-                                        clientsMap.get(clientId), suppliersMap.get(bc.getFournisseurId()));
+                                        clientsMap.get(clientId), supplier);
                                 exportRows.add(row);
                             }
                         } else {
                             // Si ce produit n'est pas vendu, créer une ligne sans info vente
                             ImportFormatRow row = createImportFormatRow(bc, la, factureAchat, null, null, 
-                                    null, suppliersMap.get(bc.getFournisseurId()));
+                                    null, supplier);
                             exportRows.add(row);
                         }
                     }
                 }
-            }
             
-            // Créer les styles pour chaque colonne avec les couleurs spécifiques
-            CellStyle[] columnTextStyles = new CellStyle[headerColors.length];
-            CellStyle[] columnNumberStyles = new CellStyle[headerColors.length];
-            CellStyle[] columnDateStyles = new CellStyle[headerColors.length];
-            CellStyle[] columnPercentStyles = new CellStyle[headerColors.length];
-            
-            for (int i = 0; i < headerColors.length; i++) {
-                columnTextStyles[i] = createDataStyleWithColor(workbook, headerColors[i], "text");
-                columnNumberStyles[i] = createDataStyleWithColor(workbook, headerColors[i], "number");
-                columnDateStyles[i] = createDataStyleWithColor(workbook, headerColors[i], "date");
-                columnPercentStyles[i] = createDataStyleWithColor(workbook, headerColors[i], "percent");
-            }
-            
-            // Remplir les données dans Excel avec les couleurs par colonne
-            int dataRowNum = 1;
-            for (ImportFormatRow row : exportRows) {
-                Row excelRow = sheet.createRow(dataRowNum++);
-                int colIndex = 0;
+                // Remplir les données dans Excel avec les couleurs par colonne
+                for (ImportFormatRow row : exportRows) {
+                    Row excelRow = sheet.createRow(dataRowNum++);
+                    int colIndex = 0;
                 
-                // N° BC (colonne 0)
-                setCellValue(excelRow, colIndex, row.numeroBC, columnTextStyles[colIndex]);
-                colIndex++;
+                    // N° BC (colonne 0)
+                    setCellValue(excelRow, colIndex, row.numeroBC, columnTextStyles[colIndex]);
+                    colIndex++;
                 
-                // FRS (colonne 1)
-                setCellValue(excelRow, colIndex, row.fournisseur, columnTextStyles[colIndex]);
-                colIndex++;
+                    // FRS (colonne 1)
+                    setCellValue(excelRow, colIndex, row.fournisseur, columnTextStyles[colIndex]);
+                    colIndex++;
                 
-                // N FAC FRS (colonne 2)
-                setCellValue(excelRow, colIndex, row.numeroFactureFournisseur, columnTextStyles[colIndex]);
-                colIndex++;
+                    // N FAC FRS (colonne 2)
+                    setCellValue(excelRow, colIndex, row.numeroFactureFournisseur, columnTextStyles[colIndex]);
+                    colIndex++;
                 
-                // N° FAC VTE (colonne 3)
-                setCellValue(excelRow, colIndex, row.numeroFactureVente, columnTextStyles[colIndex]);
-                colIndex++;
+                    // N° FAC VTE (colonne 3)
+                    setCellValue(excelRow, colIndex, row.numeroFactureVente, columnTextStyles[colIndex]);
+                    colIndex++;
                 
-                // DATE FAC VTE (colonne 4)
-                Cell dateFVCell = excelRow.createCell(colIndex);
-                if (row.dateFactureVente != null) {
-                    dateFVCell.setCellValue(row.dateFactureVente.format(DATE_FORMATTER));
-                    dateFVCell.setCellStyle(columnDateStyles[colIndex]);
-                } else {
-                    dateFVCell.setCellValue("");
-                    dateFVCell.setCellStyle(columnTextStyles[colIndex]);
-                }
-                colIndex++;
+                    // DATE FAC VTE (colonne 4)
+                    Cell dateFVCell = excelRow.createCell(colIndex);
+                    if (row.dateFactureVente != null) {
+                        dateFVCell.setCellValue(row.dateFactureVente.format(DATE_FORMATTER));
+                        dateFVCell.setCellStyle(columnDateStyles[colIndex]);
+                    } else {
+                        dateFVCell.setCellValue("");
+                        dateFVCell.setCellStyle(columnTextStyles[colIndex]);
+                    }
+                    colIndex++;
                 
-                // ICE (colonne 5)
-                setCellValue(excelRow, colIndex, row.ice, columnTextStyles[colIndex]);
-                colIndex++;
+                    // ICE (colonne 5)
+                    setCellValue(excelRow, colIndex, row.ice, columnTextStyles[colIndex]);
+                    colIndex++;
                 
-                // CLENT (colonne 6)
-                setCellValue(excelRow, colIndex, row.client, columnTextStyles[colIndex]);
-                colIndex++;
+                    // CLENT (colonne 6)
+                    setCellValue(excelRow, colIndex, row.client, columnTextStyles[colIndex]);
+                    colIndex++;
                 
-                // N° ARTICLE (colonne 7)
-                setCellValue(excelRow, colIndex, row.numeroArticle, columnTextStyles[colIndex]);
-                colIndex++;
+                    // N° ARTICLE (colonne 7)
+                    setCellValue(excelRow, colIndex, row.numeroArticle, columnTextStyles[colIndex]);
+                    colIndex++;
                 
-                // DESIGNATION (colonne 8)
-                setCellValue(excelRow, colIndex, row.designation, columnTextStyles[colIndex]);
-                colIndex++;
+                    // DESIGNATION (colonne 8)
+                    setCellValue(excelRow, colIndex, row.designation, columnTextStyles[colIndex]);
+                    colIndex++;
                 
-                // U (colonne 9)
-                setCellValue(excelRow, colIndex, row.unite, columnTextStyles[colIndex]);
-                colIndex++;
+                    // U (colonne 9)
+                    setCellValue(excelRow, colIndex, row.unite, columnTextStyles[colIndex]);
+                    colIndex++;
                 
-                // QT ACHAT (colonne 10)
-                setCellValue(excelRow, colIndex, row.quantiteBC, columnNumberStyles[colIndex]);
-                colIndex++;
+                    // QT ACHAT (colonne 10)
+                    setCellValue(excelRow, colIndex, row.quantiteBC, columnNumberStyles[colIndex]);
+                    colIndex++;
                 
-                // PRIX ACHAT U HT (colonne 11)
-                setCellValue(excelRow, colIndex, row.prixAchatUnitaireHT, columnNumberStyles[colIndex]);
-                colIndex++;
+                    // PRIX ACHAT U HT (colonne 11)
+                    setCellValue(excelRow, colIndex, row.prixAchatUnitaireHT, columnNumberStyles[colIndex]);
+                    colIndex++;
                 
-                // PRIX ACHAT U TTC (colonne 12)
-                setCellValue(excelRow, colIndex, row.prixAchatUnitaireTTC, columnNumberStyles[colIndex]);
-                colIndex++;
+                    // PRIX ACHAT U TTC (colonne 12)
+                    setCellValue(excelRow, colIndex, row.prixAchatUnitaireTTC, columnNumberStyles[colIndex]);
+                    colIndex++;
                 
-                // PRIX ACHAT T HT (colonne 13)
-                setCellValue(excelRow, colIndex, row.prixAchatTotalHT, columnNumberStyles[colIndex]);
-                colIndex++;
+                    // PRIX ACHAT T HT (colonne 13)
+                    setCellValue(excelRow, colIndex, row.prixAchatTotalHT, columnNumberStyles[colIndex]);
+                    colIndex++;
                 
-                // TX TVA (colonne 14)
-                Cell tvaCell = excelRow.createCell(colIndex);
-                if (row.tauxTVA != null) {
-                    tvaCell.setCellValue(row.tauxTVA / 100.0); // Format Excel pourcentage
-                    tvaCell.setCellStyle(columnPercentStyles[colIndex]);
-                } else {
-                    tvaCell.setCellValue("");
-                    tvaCell.setCellStyle(columnTextStyles[colIndex]);
-                }
-                colIndex++;
+                    // TX TVA (colonne 14)
+                    Cell tvaCell = excelRow.createCell(colIndex);
+                    if (row.tauxTVA != null) {
+                        tvaCell.setCellValue(row.tauxTVA / 100.0); // Format Excel pourcentage
+                        tvaCell.setCellStyle(columnPercentStyles[colIndex]);
+                    } else {
+                        tvaCell.setCellValue("");
+                        tvaCell.setCellStyle(columnTextStyles[colIndex]);
+                    }
+                    colIndex++;
                 
-                // FACTURE ACHAT TTC (colonne 15)
-                setCellValue(excelRow, colIndex, row.factureAchatTTC, columnNumberStyles[colIndex]);
-                colIndex++;
+                    // FACTURE ACHAT TTC (colonne 15)
+                    setCellValue(excelRow, colIndex, row.factureAchatTTC, columnNumberStyles[colIndex]);
+                    colIndex++;
                 
-                // QT LIVREE CLT (colonne 16)
-                setCellValue(excelRow, colIndex, row.quantiteLivree, columnNumberStyles[colIndex]);
-                colIndex++;
+                    // QT LIVREE CLT (colonne 16)
+                    setCellValue(excelRow, colIndex, row.quantiteLivree, columnNumberStyles[colIndex]);
+                    colIndex++;
                 
-                // PRIX DE VENTE U HT (colonne 17)
-                setCellValue(excelRow, colIndex, row.prixVenteUnitaireHT, columnNumberStyles[colIndex]);
-                colIndex++;
+                    // PRIX DE VENTE U HT (colonne 17)
+                    setCellValue(excelRow, colIndex, row.prixVenteUnitaireHT, columnNumberStyles[colIndex]);
+                    colIndex++;
                 
-                // FACTURE VENTE T TTC (colonne 18)
-                setCellValue(excelRow, colIndex, row.factureVenteTTC, columnNumberStyles[colIndex]);
-            }
-            
-            // Ajuster la largeur des colonnes
-            for (int i = 0; i < headers.length; i++) {
-                sheet.autoSizeColumn(i);
-                sheet.setColumnWidth(i, Math.max(sheet.getColumnWidth(i) + 1000, 3000));
+                    // FACTURE VENTE T TTC (colonne 18)
+                    setCellValue(excelRow, colIndex, row.factureVenteTTC, columnNumberStyles[colIndex]);
+                }
             }
             
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
             workbook.write(out);
-            return out.toByteArray();
+            out.flush();
+            return dataRowNum - 1;
+        } finally {
+            workbook.dispose();
         }
     }
     
@@ -2071,7 +2189,7 @@ public class ExcelExportService {
         style.setFont(font);
         
         // Convertir hex en RGB pour XSSFColor
-        if (workbook instanceof XSSFWorkbook && hexColor != null && hexColor.startsWith("#")) {
+        if (style instanceof XSSFCellStyle && hexColor != null && hexColor.startsWith("#")) {
             try {
                 // Enlever le # et convertir en RGB
                 String hex = hexColor.substring(1);
@@ -2115,7 +2233,7 @@ public class ExcelExportService {
         style.setFont(font);
         
         // Convertir hex en RGB pour XSSFColor
-        if (workbook instanceof XSSFWorkbook && hexColor != null && hexColor.startsWith("#")) {
+        if (style instanceof XSSFCellStyle && hexColor != null && hexColor.startsWith("#")) {
             try {
                 // Enlever le # et convertir en RGB
                 String hex = hexColor.substring(1);
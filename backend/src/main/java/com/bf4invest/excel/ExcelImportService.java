@@ -11,15 +11,23 @@ import org.apache.poi.ss.util.DateFormatConverter;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.apache.poi.poifs.filesystem.FileMagic;
 import org.apache.poi.ss.usermodel.BorderStyle;
 import org.apache.poi.ss.usermodel.FillPatternType;
 import org.apache.poi.ss.usermodel.HorizontalAlignment;
 import org.apache.poi.ss.usermodel.IndexedColors;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.InputStream;
 import java.io.BufferedInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.text.NumberFormat;
@@ -50,6 +58,11 @@ public class ExcelImportService {
     private final com.bf4invest.service.FactureVenteService factureVenteService;
     private final com.bf4invest.service.CompanyInfoService companyInfoService;
     private final com.bf4invest.service.BandeCommandeService bandeCommandeService;
+    private final MongoTemplate mongoTemplate;
+
+    /** Taille des lots d'écriture (BulkOperations) de la phase d'enregistrement de l'import. */
+    @Value("${app.import.batch-size:500}")
+    private int tailleLotImport;
 
     private static final DateTimeFormatter DATE_FORMATTER_DDMMYYYY = DateTimeFormatter.ofPattern("dd/MM/yyyy");
     private static final DateTimeFormatter DATE_FORMATTER_YYYYMMDD = DateTimeFormatter.ofPattern("yyyy-MM-dd");
@@ -74,20 +87,130 @@ public class ExcelImportService {
         }
     }
 
+    /**
+     * Source des lignes à importer : classeur complet en mémoire (.xls) ou lecture en flux (.xlsx).
+     */
+    private interface SourceLignes extends AutoCloseable {
+        Row entete();
+
+        int derniereLigne();
+
+        /** Lignes physiques après l'en-tête, dans l'ordre. */
+        Iterator<Row> lignes();
+    }
+
+    private static class SourceClasseur implements SourceLignes {
+        private final Workbook workbook;
+        private final Sheet sheet;
+
+        SourceClasseur(Workbook workbook) {
+            this.workbook = workbook;
+            this.sheet = workbook.getSheetAt(0);
+        }
+
+        @Override
+        public Row entete() {
+            return sheet.getRow(0);
+        }
+
+        @Override
+        public int derniereLigne() {
+            return sheet.getLastRowNum();
+        }
+
+        @Override
+        public Iterator<Row> lignes() {
+            Iterator<Row> rows = sheet.rowIterator();
+            if (rows.hasNext() && sheet.getRow(0) != null) {
+                rows.next();
+            }
+            return rows;
+        }
+
+        @Override
+        public void close() throws Exception {
+            workbook.close();
+        }
+    }
+
+    private static class SourceFlux implements SourceLignes {
+        private final XlsxStreamingReader reader;
+        private final Path fichier;
+
+        SourceFlux(XlsxStreamingReader reader, Path fichier) {
+            this.reader = reader;
+            this.fichier = fichier;
+        }
+
+        @Override
+        public Row entete() {
+            return reader.getEntete();
+        }
+
+        @Override
+        public int derniereLigne() {
+            return reader.getDerniereLigne();
+        }
+
+        @Override
+        public Iterator<Row> lignes() {
+            return reader;
+        }
+
+        @Override
+        public void close() throws Exception {
+            reader.close();
+            Files.deleteIfExists(fichier);
+        }
+    }
+
+    /**
+     * Ouvre le fichier importé : les .xlsx sont lus en flux (heap borné), les .xls via WorkbookFactory.
+     */
+    private SourceLignes ouvrirSourceLignes(MultipartFile file) throws Exception {
+        FileMagic magic;
+        try (InputStream is = FileMagic.prepareToCheckMagic(file.getInputStream())) {
+            magic = FileMagic.valueOf(is);
+        }
+        if (magic == FileMagic.OOXML) {
+            Path fichier = Files.createTempFile("import-", ".xlsx");
+            try {
+                try (InputStream is = file.getInputStream()) {
+                    Files.copy(is, fichier, StandardCopyOption.REPLACE_EXISTING);
+                }
+                return new SourceFlux(new XlsxStreamingReader(fichier.toFile()), fichier);
+            } catch (Exception e) {
+                Files.deleteIfExists(fichier);
+                throw new Exception("Format de fichier Excel non supporté ou fichier corrompu: " + e.getMessage(), e);
+            }
+        }
+        try (InputStream is = file.getInputStream()) {
+            return new SourceClasseur(createWorkbook(is));
+        }
+    }
+
     public ImportResult importExcel(MultipartFile file) {
+        return importExcel(file, ImportProgression.AUCUNE);
+    }
+
+    /**
+     * Import de l'historique BC avec suivi de progression. Une annulation pendant la lecture des lignes
+     * arrête l'import avant toute écriture ; une fois la phase d'enregistrement commencée, il va à son terme.
+     */
+    public ImportResult importExcel(MultipartFile file, ImportProgression progression) {
         ImportResult result = new ImportResult();
+        long debut = System.nanoTime();
 
-        try (InputStream is = file.getInputStream();
-                Workbook workbook = createWorkbook(is)) {
+        try (SourceLignes source = ouvrirSourceLignes(file)) {
 
-            Sheet sheet = workbook.getSheetAt(0);
-            if (sheet.getLastRowNum() < 1) {
+            Row headerRow = source.entete();
+            if (source.derniereLigne() < 1) {
                 result.getErrors().add("Le fichier Excel est vide ou ne contient que l'en-tête");
                 return result;
             }
 
             // Mapping intelligent des colonnes
-            Map<String, Integer> columnMap = mapColumnsIntelligent(sheet.getRow(0));
+            Map<String, Integer> columnMap = mapColumnsIntelligent(headerRow);
             log.info("Mapped columns: {}", columnMap);
             log.info("Total columns mapped: {}/19 expected columns", columnMap.size());
 
@@ -102,7 +225,7 @@ public class ExcelImportService {
                 log.warn("WARNING: Column 'prix_achat_unitaire_ht' not found! Purchase prices may be 0.");
             }
 
-            result.setTotalRows(sheet.getLastRowNum());
+            result.setTotalRows(source.derniereLigne());
 
             // Maps pour grouper par clé
             Map<String, BandeCommande> bcMap = new LinkedHashMap<>(); // LinkedHashMap pour préserver l'ordre
@@ -154,12 +277,22 @@ public class ExcelImportService {
             Map<String, List<FactureVente>> fvByBcAndClientMap = new HashMap<>();
 
             int processedRows = 0;
-            int totalRows = sheet.getLastRowNum();
+            int totalRows = source.derniereLigne();
             log.info("Starting import of {} rows", totalRows);
 
-            for (int i = 1; i <= totalRows; i++) {
-                Row row = sheet.getRow(i);
-                if (row == null || isEmptyRow(row)) {
+            // Clients, fournisseurs et produits chargés une fois (au lieu d'une requête par ligne)
+            ReferencesImport references = ReferencesImport.charger(mongoTemplate);
+
+            for (Iterator<Row> lignes = source.lignes(); lignes.hasNext();) {
+                if (progression.annulationDemandee()) {
+                    result.getErrors().add(String.format("Import annulé après %d ligne(s), aucune donnée enregistrée",
+                            processedRows));
+                    return result;
+                }
+                Row row = lignes.next();
+                int i = row.getRowNum();
+                progression.avancer(i, totalRows);
+                if (isEmptyRow(row)) {
                     if (i % 100 == 0) {
                         log.info("Processed {}/{} rows (empty row skipped)", i, totalRows);
                     }
@@ -171,7 +304,7 @@ public class ExcelImportService {
                             faToBcNumMap, fvToBcNumMap, bcProductsMap, fvByBcAndClientMap,
                             faTotalTTCFromExcel, fvTotalTTCFromExcel, bcTotalAchatTTCFromExcel,
                             bcTotalVenteTTCFromExcel, bcTotalAchatHTFromExcel, bcTotalVenteHTFromExcel,
-                            faTotalHTFromExcel, fvTotalHTFromExcel, result);
+                            faTotalHTFromExcel, fvTotalHTFromExcel, references, result);
                     processedRows++;
 
                     // Log progression tous les 100 lignes
@@ -182,7 +315,7 @@ public class ExcelImportService {
 
                     // Stocker la ligne de succès (optionnel - limiter pour éviter OutOfMemory)
                     if (result.getSuccessRows().size() < 1000) { // Limiter à 1000 lignes de succès en mémoire
-                        Map<String, Object> rowData = extractRowData(row, columnMap, sheet.getRow(0));
+                        Map<String, Object> rowData = extractRowData(row, columnMap, headerRow);
                         result.getSuccessRows().add(ImportResult.SuccessRow.builder()
                                 .rowNumber(i + 1)
                                 .rowData(rowData)
@@ -204,7 +337,7 @@ public class ExcelImportService {
 
                     // Stocker la ligne en erreur avec ses données (limiter aussi)
                     if (result.getErrorRows().size() < 1000) {
-                        Map<String, Object> rowData = extractRowData(row, columnMap, sheet.getRow(0));
+                        Map<String, Object> rowData = extractRowData(row, columnMap, headerRow);
                         result.getErrorRows().add(ImportResult.ErrorRow.builder()
                                 .rowNumber(i + 1)
                                 .rowData(rowData)
@@ -260,7 +393,7 @@ public class ExcelImportService {
                     List<LigneAchat> lignesAchat = new ArrayList<>();
                     for (ProductAggregate agg : productsMap.values()) {
                         // Créer/mettre à jour le produit avec prix pondérés
-                        createOrUpdateProductFromAggregate(agg, fournisseurId, result);
+                        createOrUpdateProductFromAggregate(agg, fournisseurId, references, result);
 
                         // Créer la LigneAchat
                         LigneAchat ligneAchat = LigneAchat.builder()
@@ -548,9 +681,27 @@ public class ExcelImportService {
                 }
             }
 
+            if (progression.annulationDemandee()) {
+                result.getErrors().add("Import annulé avant l'enregistrement, aucune donnée enregistrée");
+                return result;
+            }
+
+            // Produits créés / mis à jour pendant l'agrégation : écriture groupée
+            int produitsEcrits = references.ecrireProduits(mongoTemplate, tailleLotImport);
+            log.info("{} produit(s) écrit(s) par lots de {}", produitsEcrits, tailleLotImport);
+
             // Sauvegarder les BC d'abord pour obtenir leurs IDs
             // IMPORTANT: Utiliser les totaux Excel si disponibles avant de sauvegarder
             Map<String, String> bcNumToIdMap = new HashMap<>();
+            Map<String, BandeCommande> bcExistantes = new HashMap<>();
+            List<String> numerosBC = bcMap.values().stream().map(BandeCommande::getNumeroBC)
+                    .filter(Objects::nonNull).distinct().toList();
+            if (!numerosBC.isEmpty()) {
+                mongoTemplate.find(new Query(Criteria.where("numeroBC").in(numerosBC)), BandeCommande.class)
+                        .forEach(existante -> bcExistantes.putIfAbsent(existante.getNumeroBC(), existante));
+            }
+            // BCs prêtes à être enregistrées en masse (numéro Excel -> BC à écrire)
+            Map<String, BandeCommande> bcAEnregistrer = new LinkedHashMap<>();
             for (BandeCommande bc : bcMap.values()) {
                 try {
                     bc.setCreatedAt(LocalDateTime.now());
@@ -631,9 +782,7 @@ public class ExcelImportService {
                     }
 
                     // Vérifier si BC existe déjà
-                    Optional<BandeCommande> existing = bcRepository.findByNumeroBC(bc.getNumeroBC());
-                    String bcId;
-                    BandeCommande saved;
+                    Optional<BandeCommande> existing = Optional.ofNullable(bcExistantes.get(bc.getNumeroBC()));
                     if (existing.isPresent()) {
                         // Mettre à jour la BC existante via le service (appelle calculateTotals)
                         BandeCommande existingBC = existing.get();
@@ -689,10 +838,10 @@ public class ExcelImportService {
                             existingBC.setTotalVenteTTCFromExcel(totalVenteTTCExcel);
                         }
 
-                        // Utiliser le service pour mettre à jour (appelle calculateTotals qui utilisera
-                        // les totaux Excel si présents)
-                        saved = bandeCommandeService.update(existingBC.getId(), existingBC);
-                        bcId = saved.getId();
+                        // Enregistrée en masse plus bas (calculateTotals utilisera les totaux Excel
+                        // si présents)
+                        bcAEnregistrer.put(bc.getNumeroBC(), existingBC);
+                        bc.setId(existingBC.getId()); // Mettre à jour l'ID dans la map
                         result.getWarnings().add("BC " + bc.getNumeroBC() + " mise à jour");
                     } else {
                         // Si on a des totaux Excel, les stocker dans la BC
@@ -747,39 +896,10 @@ public class ExcelImportService {
                             }
                         }
 
-                        // Créer via le service (appelle calculateTotals qui utilisera les totaux Excel
-                        // si présents)
-                        saved = bandeCommandeService.create(bc);
-                        bcId = saved.getId();
-                    }
-
-                    bcNumToIdMap.put(bc.getNumeroBC(), bcId);
-                    bc.setId(bcId); // Mettre à jour l'ID dans la map
-
-                    // Log final des totaux de la BC sauvegardée pour vérification
-                    BandeCommande savedBCForLog = bcRepository.findById(bcId).orElse(saved);
-                    if (savedBCForLog.getTotalAchatHT() != null || savedBCForLog.getTotalVenteHT() != null) {
-                        log.info("BC {} sauvegardée avec totaux - Achat HT: {}, Vente HT: {}",
-                                bcNum, savedBCForLog.getTotalAchatHT(), savedBCForLog.getTotalVenteHT());
+                        // Créée en masse plus bas (calculateTotals utilisera les totaux Excel si
+                        // présents)
+                        bcAEnregistrer.put(bc.getNumeroBC(), bc);
                     }
-
-                    // Mettre à jour le stock automatiquement si ajouterAuStock est activé
-                    // Récupérer la BC sauvegardée pour avoir toutes les données
-                    BandeCommande savedBC = bcRepository.findById(bcId).orElse(bc);
-                    if (Boolean.TRUE.equals(savedBC.getAjouterAuStock()) || savedBC.getAjouterAuStock() == null) {
-                        // Par défaut, ajouter au stock si non spécifié
-                        try {
-                            bandeCommandeService.updateStockFromBC(savedBC);
-                            log.debug("Stock mis à jour pour BC {}", bc.getNumeroBC());
-                        } catch (Exception e) {
-                            log.warn("Erreur lors de la mise à jour du stock pour BC {}: {}",
-                                    bc.getNumeroBC(), e.getMessage());
-                            result.getWarnings().add(
-                                    "Erreur mise à jour stock pour BC " + bc.getNumeroBC() + ": " + e.getMessage());
-                        }
-                    }
-
-                    result.setSuccessCount(result.getSuccessCount() + 1);
                 } catch (Exception e) {
                     log.error("Error saving BC {}", bc.getNumeroBC(), e);
                     result.getErrors().add("Erreur sauvegarde BC " + bc.getNumeroBC() + ": " + e.getMessage());
@@ -787,7 +907,64 @@ public class ExcelImportService {
                 }
             }
 
-            // Sauvegarder les factures achat
+            // Écriture groupée des BCs (insertions + remplacements par lots) ; seules les BCs écrites sont gardées
+            try {
+                Set<BandeCommande> bcsEnregistrees = Collections.newSetFromMap(new IdentityHashMap<>());
+                bcsEnregistrees.addAll(bandeCommandeService.enregistrerEnMasse(
+                        new ArrayList<>(bcAEnregistrer.values()), tailleLotImport, (bc, e) -> {
+                            log.error("Error saving BC {}", bc.getNumeroBC(), e);
+                            result.getErrors().add("Erreur sauvegarde BC " + bc.getNumeroBC() + ": " + e.getMessage());
+                            result.setErrorCount(result.getErrorCount() + 1);
+                        }));
+                bcAEnregistrer.values().removeIf(bc -> !bcsEnregistrees.contains(bc));
+            } catch (Exception e) {
+                // Échec après les écritures (index des prix, audit...) : les BCs présentes en base restent liées
+                log.error("Error saving BCs in bulk", e);
+                Set<String> idsEcrits = new HashSet<>();
+                List<String> ids = bcAEnregistrer.values().stream().map(BandeCommande::getId)
+                        .filter(Objects::nonNull).toList();
+                if (!ids.isEmpty()) {
+                    Query requeteBC = new Query(Criteria.where("_id").in(ids));
+                    requeteBC.fields().include("_id");
+                    mongoTemplate.find(requeteBC, BandeCommande.class).forEach(bc -> idsEcrits.add(bc.getId()));
+                }
+                bcAEnregistrer.entrySet().removeIf(entree -> {
+                    if (idsEcrits.contains(entree.getValue().getId())) {
+                        return false;
+                    }
+                    result.getErrors().add("Erreur sauvegarde BC " + entree.getKey() + ": " + e.getMessage());
+                    result.setErrorCount(result.getErrorCount() + 1);
+                    return true;
+                });
+            }
+
+            for (Map.Entry<String, BandeCommande> entree : bcAEnregistrer.entrySet()) {
+                BandeCommande savedBC = entree.getValue();
+                String bcNum = entree.getKey();
+                bcNumToIdMap.put(bcNum, savedBC.getId());
+
+                if (savedBC.getTotalAchatHT() != null || savedBC.getTotalVenteHT() != null) {
+                    log.debug("BC {} sauvegardée avec totaux - Achat HT: {}, Vente HT: {}",
+                            bcNum, savedBC.getTotalAchatHT(), savedBC.getTotalVenteHT());
+                }
+
+                // Mettre à jour le stock automatiquement si ajouterAuStock est activé
+                if (Boolean.TRUE.equals(savedBC.getAjouterAuStock()) || savedBC.getAjouterAuStock() == null) {
+                    // Par défaut, ajouter au stock si non spécifié
+                    try {
+                        bandeCommandeService.updateStockFromBC(savedBC);
+                        log.debug("Stock mis à jour pour BC {}", bcNum);
+                    } catch (Exception e) {
+                        log.warn("Erreur lors de la mise à jour du stock pour BC {}: {}", bcNum, e.getMessage());
+                        result.getWarnings().add("Erreur mise à jour stock pour BC " + bcNum + ": " + e.getMessage());
+                    }
+                }
+
+                result.setSuccessCount(result.getSuccessCount() + 1);
+            }
+
+            // Sauvegarder les factures achat (liaison aux BCs, puis création en masse)
+            List<FactureAchat> facturesAchat = new ArrayList<>();
             for (FactureAchat fa : faMap.values()) {
                 try {
                     // Lier à la BC en utilisant la map temporaire (utiliser bcReference comme clé)
@@ -826,11 +1003,8 @@ public class ExcelImportService {
                     // factures par BC
                     // Maintenant on permet plusieurs factures du même fournisseur pour le même BC
 
-                    // Utiliser le service pour créer la facture (génère automatiquement le numéro)
                     // Le service génère le numéro si non fourni
-                    factureAchatService.create(fa);
-
-                    result.setSuccessCount(result.getSuccessCount() + 1);
+                    facturesAchat.add(fa);
                 } catch (Exception e) {
                     log.error("Error saving FA for BC {}", fa.getBcReference(), e);
                     result.getErrors()
@@ -838,8 +1012,32 @@ public class ExcelImportService {
                     result.setErrorCount(result.getErrorCount() + 1);
                 }
             }
+            try {
+                List<FactureAchat> faEnregistrees = factureAchatService.creerEnMasse(facturesAchat, tailleLotImport,
+                        (fa, e) -> {
+                            log.error("Error saving FA for BC {}", fa.getBcReference(), e);
+                            result.getErrors().add(
+                                    "Erreur sauvegarde FA pour BC " + fa.getBcReference() + ": " + e.getMessage());
+                            result.setErrorCount(result.getErrorCount() + 1);
+                        });
+                result.setSuccessCount(result.getSuccessCount() + faEnregistrees.size());
+            } catch (Exception e) {
+                log.error("Error saving FAs in bulk", e);
+                result.getErrors().add("Erreur sauvegarde factures achat: " + e.getMessage());
+                result.setErrorCount(result.getErrorCount() + 1);
+            }
 
-            // Sauvegarder les factures vente
+            // Sauvegarder les factures vente : doublons détectés en une requête, puis création en masse
+            Set<String> numerosFVExistants = new HashSet<>();
+            List<String> numerosFV = fvMap.values().stream().map(FactureVente::getNumeroFactureVente)
+                    .filter(Objects::nonNull).distinct().toList();
+            if (!numerosFV.isEmpty()) {
+                Query requeteFV = new Query(Criteria.where("numeroFactureVente").in(numerosFV));
+                requeteFV.fields().include("numeroFactureVente");
+                mongoTemplate.find(requeteFV, FactureVente.class)
+                        .forEach(existante -> numerosFVExistants.add(existante.getNumeroFactureVente()));
+            }
+            List<FactureVente> facturesVente = new ArrayList<>();
             for (FactureVente fv : fvMap.values()) {
                 try {
                     // Lier à la BC en utilisant la map temporaire
@@ -859,18 +1057,15 @@ public class ExcelImportService {
                     }
 
                     // Vérifier doublon
-                    Optional<FactureVente> existing = factureVenteRepository
-                            .findByNumeroFactureVente(fv.getNumeroFactureVente());
-                    if (existing.isPresent()) {
+                    if (numerosFVExistants.contains(fv.getNumeroFactureVente())) {
                         result.getWarnings()
                                 .add("Facture Vente " + fv.getNumeroFactureVente() + " déjà existante, ignorée");
                         continue;
                     }
 
-                    // Utiliser le service pour créer la facture (génère automatiquement le numéro
-                    // et enregistre dans l'historique de trésorerie)
-                    // Le service va définir createdAt et updatedAt automatiquement
-                    factureVenteService.create(fv);
+                    // Le service génère le numéro si non fourni, enregistre dans l'historique de
+                    // trésorerie et définit createdAt / updatedAt
+                    facturesVente.add(fv);
                 } catch (Exception e) {
                     log.error("Error saving FV {}", fv.getNumeroFactureVente(), e);
                     result.getErrors()
@@ -878,9 +1073,26 @@ public class ExcelImportService {
                     result.setErrorCount(result.getErrorCount() + 1);
                 }
             }
+            try {
+                factureVenteService.creerEnMasse(facturesVente, tailleLotImport, (fv, e) -> {
+                    log.error("Error saving FV {}", fv.getNumeroFactureVente(), e);
+                    result.getErrors()
+                            .add("Erreur sauvegarde FV " + fv.getNumeroFactureVente() + ": " + e.getMessage());
+                    result.setErrorCount(result.getErrorCount() + 1);
+                });
+            } catch (Exception e) {
+                log.error("Error saving FVs in bulk", e);
+                result.getErrors().add("Erreur sauvegarde factures vente: " + e.getMessage());
+                result.setErrorCount(result.getErrorCount() + 1);
+            }
 
-            log.info("Import completed: {} rows processed, {} BCs, {} FAs, {} FVs",
-                    processedRows, bcMap.size(), faMap.size(), fvMap.size());
+            long dureeMs = (System.nanoTime() - debut) / 1_000_000;
+            result.setDureeMs(dureeMs);
+            result.setLignesParSeconde(dureeMs > 0
+                    ? NumberUtils.roundTo2Decimals(processedRows * 1000.0 / dureeMs)
+                    : processedRows);
+            log.info("Import completed: {} rows processed in {} ms ({} rows/s), {} BCs, {} FAs, {} FVs",
+                    processedRows, dureeMs, result.getLignesParSeconde(), bcMap.size(), faMap.size(), fvMap.size());
 
             // Log des totaux Excel sommés pour vérification
             if (!bcTotalAchatTTCFromExcel.isEmpty() || !bcTotalVenteTTCFromExcel.isEmpty()) {
@@ -1374,16 +1586,17 @@ public class ExcelImportService {
                                                     // par facture achat)
             Map<String, Double> fvTotalHTFromExcel, // Map temporaire: Numéro FV -> totalHT depuis "quantite_livree *
                                                     // prix_vente_unitaire_ht" (SOMMÉ)
+            ReferencesImport references,
             ImportResult result,
             AvoirDetectionResult detection) {
 
         try {
             if (detection.estAchat) {
                 // Traiter avoir achat
-                traiterAvoirAchat(row, columnMap, faMap, faLignesMap, faToBcNumMap, result, detection);
+                traiterAvoirAchat(row, columnMap, faMap, faLignesMap, faToBcNumMap, references, result, detection);
             } else {
                 // Traiter avoir vente
-                traiterAvoirVente(row, columnMap, fvMap, fvLignesMap, fvToBcNumMap, result, detection);
+                traiterAvoirVente(row, columnMap, fvMap, fvLignesMap, fvToBcNumMap, references, result, detection);
             }
         } catch (Exception e) {
             log.error("Erreur lors du traitement de l'avoir: {}", e.getMessage(), e);
@@ -1399,6 +1612,7 @@ public class ExcelImportService {
             Map<String, FactureAchat> faMap,
             Map<String, List<LineItem>> faLignesMap,
             Map<String, String> faToBcNumMap,
+            ReferencesImport references,
             ImportResult result,
             AvoirDetectionResult detection) {
 
@@ -1463,7 +1677,7 @@ public class ExcelImportService {
             // Fournisseur
             String fournisseurNom = getCellValue(row, columnMap, "fournisseur");
             if (fournisseurNom != null && !fournisseurNom.trim().isEmpty()) {
-                String fournisseurId = findOrCreateFournisseur(fournisseurNom, result);
+                String fournisseurId = findOrCreateFournisseur(fournisseurNom, references, result);
                 newAvoir.setFournisseurId(fournisseurId);
             }
 
@@ -1515,6 +1729,7 @@ public class ExcelImportService {
             Map<String, FactureVente> fvMap,
             Map<String, List<LineItem>> fvLignesMap,
             Map<String, String> fvToBcNumMap,
+            ReferencesImport references,
             ImportResult result,
             AvoirDetectionResult detection) {
 
@@ -1560,7 +1775,7 @@ public class ExcelImportService {
             String clientIce = getCellValue(row, columnMap, "ice");
             String clientNom = getCellValue(row, columnMap, "client");
             if (clientNom != null && !clientNom.trim().isEmpty()) {
-                String clientId = findOrCreateClient(clientIce, clientNom, result);
+                String clientId = findOrCreateClient(clientIce, clientNom, references, result);
                 newAvoir.setClientId(clientId);
             }
 
@@ -1630,6 +1845,7 @@ public class ExcelImportService {
                                                     // par facture achat)
             Map<String, Double> fvTotalHTFromExcel, // Map temporaire: Numéro FV -> totalHT depuis "quantite_livree *
                                                     // prix_vente_unitaire_ht" (SOMMÉ)
+            ReferencesImport references,
             ImportResult result) {
 
         // ========== DÉTECTION DES AVOIRS ==========
@@ -1640,7 +1856,8 @@ public class ExcelImportService {
             traiterAvoir(row, columnMap, bcMap, faMap, fvMap, faLignesMap, fvLignesMap,
                     faToBcNumMap, fvToBcNumMap, faTotalTTCFromExcel, fvTotalTTCFromExcel,
                     bcTotalAchatTTCFromExcel, bcTotalVenteTTCFromExcel, bcTotalAchatHTFromExcel,
-                    bcTotalVenteHTFromExcel, faTotalHTFromExcel, fvTotalHTFromExcel, result, avoirDetection);
+                    bcTotalVenteHTFromExcel, faTotalHTFromExcel, fvTotalHTFromExcel, references, result,
+                    avoirDetection);
             return;
         }
 
@@ -1655,12 +1872,12 @@ public class ExcelImportService {
         // 2. Créer ou récupérer le client
         String clientIce = getCellValue(row, columnMap, "ice");
         String clientNom = getCellValue(row, columnMap, "client");
-        String clientId = findOrCreateClient(clientIce, clientNom, result);
+        String clientId = findOrCreateClient(clientIce, clientNom, references, result);
         final String finalClientId = clientId; // Copie finale pour lambda
 
         // 3. Créer ou récupérer le fournisseur
         String fournisseurNom = getCellValue(row, columnMap, "fournisseur");
-        String fournisseurId = findOrCreateFournisseur(fournisseurNom, result);
+        String fournisseurId = findOrCreateFournisseur(fournisseurNom, references, result);
         final String finalFournisseurId = fournisseurId; // Copie finale pour lambda
 
         // 4. Créer ou récupérer la BC (une seule BC par numeroBC, avec plusieurs
@@ -2126,9 +2343,11 @@ public class ExcelImportService {
 
     /**
      * Crée ou met à jour un produit à partir d'un ProductAggregate.
-     * Calcule les prix pondérés et met à jour le produit dans la base de données.
+     * Calcule les prix pondérés et met à jour le produit dans le cache de l'import
+     * (écrit en base par lots via {@link ReferencesImport#ecrireProduits}).
      */
-    private void createOrUpdateProductFromAggregate(ProductAggregate agg, String fournisseurId, ImportResult result) {
+    private void createOrUpdateProductFromAggregate(ProductAggregate agg, String fournisseurId,
+            ReferencesImport references, ImportResult result) {
         try {
             // Calculer les prix pondérés depuis cet agrégat
             Double prixAchatPondere = agg.getPrixAchatPondere();
@@ -2141,7 +2360,7 @@ public class ExcelImportService {
             // On essaie d'abord avec le nouveau format (refArticle combiné), puis avec
             // l'ancien format (juste le numéro)
             // pour gérer la transition des produits existants
-            Optional<Product> existingOpt = productRepository.findByRefArticleAndDesignationAndUnite(
+            Optional<Product> existingOpt = references.produit(
                     refArticle,
                     agg.designation != null ? agg.designation : "",
                     agg.unite != null ? agg.unite : "U");
@@ -2149,7 +2368,7 @@ public class ExcelImportService {
             // Si pas trouvé avec le nouveau format, essayer avec l'ancien format (juste le
             // numéro)
             if (!existingOpt.isPresent() && agg.produitRef != null && !agg.produitRef.trim().isEmpty()) {
-                existingOpt = productRepository.findByRefArticleAndDesignationAndUnite(
+                existingOpt = references.produit(
                         agg.produitRef.trim(),
                         agg.designation != null ? agg.designation : "",
                         agg.unite != null ? agg.unite : "U");
@@ -2159,6 +2378,7 @@ public class ExcelImportService {
             if (existingOpt.isPresent()) {
                 // Mettre à jour le produit existant
                 product = existingOpt.get();
+                references.retirerProduit(product);
 
                 // Mettre à jour les prix pondérés
                 // Note: Pour un calcul global depuis toutes les BC, il faudra utiliser
@@ -2199,7 +2419,7 @@ public class ExcelImportService {
                 product.setDerniereMiseAJourPrix(LocalDateTime.now());
                 product.setUpdatedAt(LocalDateTime.now());
 
-                product = productRepository.save(product);
+                references.produitModifie(product);
                 log.debug("Produit mis à jour: {} - Prix achat pondéré: {}, Prix vente pondéré: {}",
                         product.getRefArticle(), prixAchatPondere, prixVentePondere);
             } else {
@@ -2220,7 +2440,7 @@ public class ExcelImportService {
                         .updatedAt(LocalDateTime.now())
                         .build();
 
-                product = productRepository.save(product);
+                references.creerProduit(product);
                 log.debug("Nouveau produit créé: {} - Prix achat pondéré: {}, Prix vente pondéré: {}",
                         product.getRefArticle(), prixAchatPondere, prixVentePondere);
             }
@@ -2785,19 +3005,19 @@ public class ExcelImportService {
         }
     }
 
-    private String findOrCreateClient(String ice, String nom, ImportResult result) {
+    private String findOrCreateClient(String ice, String nom, ReferencesImport references, ImportResult result) {
         // Ne pas rechercher si le nom est "Inconnu" - créer directement
         boolean shouldSkipSearch = (nom != null && nom.trim().equalsIgnoreCase("inconnu"));
 
         if (!shouldSkipSearch && ice != null && !ice.trim().isEmpty()) {
-            Optional<Client> existing = clientRepository.findByIce(ice.trim());
+            Optional<Client> existing = references.clientParIce(ice);
             if (existing.isPresent()) {
                 return existing.get().getId();
             }
         }
 
         if (!shouldSkipSearch && nom != null && !nom.trim().isEmpty() && !nom.trim().equalsIgnoreCase("inconnu")) {
-            Optional<Client> existing = clientRepository.findByNomIgnoreCase(nom.trim());
+            Optional<Client> existing = references.clientParNom(nom);
             if (existing.isPresent()) {
                 return existing.get().getId();
             }
@@ -2825,11 +3045,12 @@ public class ExcelImportService {
                 .build();
 
         Client saved = clientRepository.save(newClient);
+        references.ajouterClient(saved);
         result.getWarnings().add("Client créé automatiquement: " + nom.trim());
         return saved.getId();
     }
 
-    private String findOrCreateFournisseur(String nom, ImportResult result) {
+    private String findOrCreateFournisseur(String nom, ReferencesImport references, ImportResult result) {
         // Ne pas créer de fournisseur si le nom est vraiment vide (sans même "Inconnu")
         // Mais créer si c'est "Inconnu" pour avoir quelque chose
         boolean shouldSkipSearch = (nom != null && nom.trim().equalsIgnoreCase("inconnu"));
@@ -2843,7 +3064,7 @@ public class ExcelImportService {
 
         // Ne pas rechercher si c'était "Inconnu" - créer directement
         if (!shouldSkipSearch) {
-            Optional<Supplier> existing = supplierRepository.findByNom(nom.trim());
+            Optional<Supplier> existing = references.fournisseurParNom(nom);
             if (existing.isPresent()) {
                 return existing.get().getId();
             }
@@ -2862,6 +3083,7 @@ public class ExcelImportService {
                 .build();
 
         Supplier saved = supplierRepository.save(newSupplier);
+        references.ajouterFournisseur(saved);
         result.getWarnings().add("Fournisseur créé automatiquement: " + nom.trim());
         return saved.getId();
     }
@@ -3490,6 +3712,14 @@ public class ExcelImportService {
      * Importe le catalogue produit depuis un fichier Excel
      */
     public ImportResult importProductCatalog(MultipartFile file) {
+        return importProductCatalog(file, ImportProgression.AUCUNE);
+    }
+
+    /**
+     * Variante suivie : chaque ligne est enregistrée au fil de l'eau, une annulation conserve donc les
+     * lignes déjà traitées.
+     */
+    public ImportResult importProductCatalog(MultipartFile file, ImportProgression progression) {
         ImportResult result = new ImportResult();
 
         try (InputStream is = file.getInputStream();
@@ -3535,6 +3765,11 @@ public class ExcelImportService {
 
             // Traiter chaque ligne
             for (int i = 1; i <= sheet.getLastRowNum(); i++) {
+                if (progression.annulationDemandee()) {
+                    result.getErrors().add(String.format("Import annulé à la ligne %d, lignes précédentes conservées", i + 1));
+                    break;
+                }
+                progression.avancer(i, sheet.getLastRowNum());
                 Row row = sheet.getRow(i);
                 if (row == null)
                     continue;
@@ -3945,6 +4180,14 @@ public class ExcelImportService {
      * Importe les opérations comptables depuis un fichier Excel
      */
     public ImportResult importOperationsComptables(MultipartFile file) {
+        return importOperationsComptables(file, ImportProgression.AUCUNE);
+    }
+
+    /**
+     * Variante suivie : chaque ligne est enregistrée au fil de l'eau, une annulation conserve donc les
+     * lignes déjà traitées.
+     */
+    public ImportResult importOperationsComptables(MultipartFile file, ImportProgression progression) {
         ImportResult result = new ImportResult();
 
         try (InputStream is = file.getInputStream();
@@ -3975,6 +4218,11 @@ public class ExcelImportService {
 
             // Traiter chaque ligne
             for (int i = 1; i <= sheet.getLastRowNum(); i++) {
+                if (progression.annulationDemandee()) {
+                    result.getErrors().add(String.format("Import annulé à la ligne %d, lignes précédentes conservées", i + 1));
+                    break;
+                }
+                progression.avancer(i, sheet.getLastRowNum());
                 Row row = sheet.getRow(i);
                 if (row == null)
                     continue;
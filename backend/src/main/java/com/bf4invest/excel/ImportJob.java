@@ -0,0 +1,109 @@
+package com.bf4invest.excel;
+
+import com.bf4invest.dto.ImportResult;
+import com.bf4invest.util.FichierTemporaire;
+import com.bf4invest.util.RegistreJobs;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Import exécuté hors requête HTTP. L'état est écrit par le thread d'import et lu par les requêtes de suivi
+ * (champs volatiles) ; le fichier reçu est copié dans un fichier temporaire, supprimé en fin de job.
+ */
+@Getter
+public class ImportJob implements ImportProgression, RegistreJobs.Job {
+
+    public enum Type {
+        BC("ligne(s) importée(s)"),
+        PRODUITS("produit(s) importé(s)"),
+        OPERATIONS("opération(s) importée(s)");
+
+        /** Libellé du journal d'import : "%d &lt;libellé&gt; avec succès". */
+        final String libelle;
+
+        Type(String libelle) {
+            this.libelle = libelle;
+        }
+    }
+
+    public enum Statut { EN_ATTENTE, EN_COURS, TERMINE, ECHOUE, ANNULE }
+
+    private final String id;
+    private final Type type;
+    private final String nomFichier;
+    private final LocalDateTime creeLe = LocalDateTime.now();
+
+    private volatile Statut statut = Statut.EN_ATTENTE;
+    private volatile LocalDateTime debut;
+    private volatile LocalDateTime fin;
+    private volatile int lignesTraitees;
+    private volatile int totalLignes;
+    private volatile String message;
+    private volatile ImportResult resultat;
+    private volatile boolean annulationDemandee;
+
+    private final FichierTemporaire fichier;
+    private volatile byte[] rapport;
+    private final CountDownLatch termine = new CountDownLatch(1);
+
+    ImportJob(String id, Type type, FichierTemporaire fichier) {
+        this.id = id;
+        this.type = type;
+        this.nomFichier = fichier.getOriginalFilename();
+        this.fichier = fichier;
+    }
+
+    @Override
+    public void avancer(int lignesTraitees, int totalLignes) {
+        this.lignesTraitees = lignesTraitees;
+        this.totalLignes = totalLignes;
+    }
+
+    @Override
+    public boolean annulationDemandee() {
+        return annulationDemandee;
+    }
+
+    /** Pourcentage de lignes lues (0 tant que le total est inconnu, 100 une fois terminé). */
+    public int getPourcentage() {
+        if (estFini()) {
+            return 100;
+        }
+        return totalLignes > 0 ? (int) Math.min(99, lignesTraitees * 100L / totalLignes) : 0;
+    }
+
+    public boolean isRapportDisponible() {
+        return rapport != null;
+    }
+
+    @Override
+    public boolean estFini() {
+        return statut == Statut.TERMINE || statut == Statut.ECHOUE || statut == Statut.ANNULE;
+    }
+
+    void demarrer() {
+        debut = LocalDateTime.now();
+        statut = Statut.EN_COURS;
+    }
+
+    void demanderAnnulation() {
+        annulationDemandee = true;
+    }
+
+    void terminer(Statut statutFinal, ImportResult resultat, byte[] rapport, String message) {
+        this.resultat = resultat;
+        this.rapport = rapport;
+        this.message = message;
+        this.fin = LocalDateTime.now();
+        this.statut = statutFinal;
+        termine.countDown();
+    }
+
+    /** Bloque jusqu'à la fin du job ou l'expiration du délai (endpoints synchrones historiques). */
+    boolean attendre(long delai, TimeUnit unite) throws InterruptedException {
+        return termine.await(delai, unite);
+    }
+}
@@ -0,0 +1,217 @@
+package com.bf4invest.excel;
+
+import com.bf4invest.dto.ImportResult;
+import com.bf4invest.model.ImportLog;
+import com.bf4invest.repository.ImportLogRepository;
+import com.bf4invest.util.FichierTemporaire;
+import com.bf4invest.util.RegistreJobs;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Exécution des imports Excel hors du thread HTTP.
+ * <p>
+ * Les jobs passent par un pool borné ({@code app.import.jobs.max-concurrent} imports simultanés, file
+ * d'attente de {@code app.import.jobs.queue-capacity}) : les envois concurrents attendent leur tour au lieu
+ * de charger tous leurs classeurs en mémoire en même temps. Au-delà de la file, la soumission est refusée.
+ * Les jobs terminés restent consultables {@code app.import.jobs.retention-minutes} minutes (registre en mémoire).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ImportJobService {
+
+    private final ExcelImportService excelImportService;
+    private final ImportLogRepository importLogRepository;
+
+    @Value("${app.import.jobs.max-concurrent:1}")
+    private int maxConcurrent;
+
+    @Value("${app.import.jobs.queue-capacity:5}")
+    private int queueCapacity;
+
+    @Value("${app.import.jobs.retention-minutes:60}")
+    private long retentionMinutes;
+
+    @Value("${app.import.jobs.wait-timeout-minutes:30}")
+    private long attenteMaxMinutes;
+
+    private final RegistreJobs<ImportJob> jobs = new RegistreJobs<>();
+    private final Map<String, Future<?>> executions = new ConcurrentHashMap<>();
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    void init() {
+        AtomicInteger compteur = new AtomicInteger();
+        executor = new ThreadPoolExecutor(maxConcurrent, maxConcurrent, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread thread = new Thread(r, "import-job-" + compteur.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    void arreter() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Copie le fichier reçu puis met l'import en file d'attente.
+     *
+     * @throws IllegalStateException si la file d'attente est pleine
+     */
+    public ImportJob soumettre(ImportJob.Type type, MultipartFile file) throws IOException {
+        ImportJob job = new ImportJob(UUID.randomUUID().toString(), type, FichierTemporaire.copier(file, "import-job-"));
+        jobs.ajouter(job);
+        try {
+            executions.put(job.getId(), executor.submit(() -> executer(job)));
+        } catch (RejectedExecutionException e) {
+            jobs.retirer(job.getId());
+            job.getFichier().supprimer();
+            throw new IllegalStateException("Trop d'imports en attente (" + queueCapacity + "), réessayez plus tard");
+        }
+        log.info("Import {} {} mis en file d'attente (job {}, {} en attente)",
+                type, job.getNomFichier(), job.getId(), executor.getQueue().size());
+        return job;
+    }
+
+    public Optional<ImportJob> trouver(String id) {
+        return jobs.trouver(id);
+    }
+
+    /** Jobs connus, du plus récent au plus ancien. */
+    public List<ImportJob> lister() {
+        return jobs.lister();
+    }
+
+    /**
+     * Annule un job : retiré de la file s'il n'a pas démarré, sinon arrêté à la prochaine ligne
+     * (voir {@link ImportProgression#annulationDemandee()} pour ce qui est conservé).
+     */
+    public Optional<ImportJob> annuler(String id) {
+        ImportJob job = jobs.trouver(id).orElse(null);
+        if (job == null || job.estFini()) {
+            return Optional.ofNullable(job);
+        }
+        job.demanderAnnulation();
+        Future<?> execution = executions.get(id);
+        // Retrait de la file possible uniquement si la tâche n'a pas encore été prise par un thread
+        // (Future.cancel(false) réussit aussi sur une tâche en cours)
+        if (execution instanceof Runnable tache && executor.remove(tache)) {
+            execution.cancel(false);
+            executions.remove(id);
+            job.getFichier().supprimer();
+            job.terminer(ImportJob.Statut.ANNULE, null, null, "Import annulé avant son démarrage");
+        }
+        return Optional.of(job);
+    }
+
+    /**
+     * Attend la fin d'un job (endpoints synchrones historiques), au plus {@code app.import.jobs.wait-timeout-minutes}
+     * minutes : au-delà, le job est renvoyé non terminé et se suit via son id.
+     */
+    public ImportJob attendre(ImportJob job) throws InterruptedException {
+        job.attendre(attenteMaxMinutes, TimeUnit.MINUTES);
+        return job;
+    }
+
+    private void executer(ImportJob job) {
+        job.demarrer();
+        FichierTemporaire fichier = job.getFichier();
+        log.info("Début import {} : {} (job {})", job.getType(), job.getNomFichier(), job.getId());
+        // Échec par défaut : une Error (ex: OutOfMemoryError) ne passe pas par le catch mais termine quand même le job
+        ImportJob.Statut statut = ImportJob.Statut.ECHOUE;
+        ImportResult result = null;
+        byte[] rapport = null;
+        String message = "Import interrompu par une erreur interne";
+        try {
+            result = switch (job.getType()) {
+                case BC -> excelImportService.importExcel(fichier, job);
+                case PRODUITS -> excelImportService.importProductCatalog(fichier, job);
+                case OPERATIONS -> excelImportService.importOperationsComptables(fichier, job);
+            };
+            log.info("Fin import {} : {} succès, {} erreurs (job {})",
+                    job.getType(), result.getSuccessCount(), result.getErrorCount(), job.getId());
+            enregistrerLog(job, result);
+
+            if (job.annulationDemandee()) {
+                statut = ImportJob.Statut.ANNULE;
+                message = "Import annulé";
+            } else {
+                statut = ImportJob.Statut.TERMINE;
+                rapport = genererRapport(result, fichier);
+            }
+        } catch (Exception e) {
+            log.error("Erreur lors de l'import {} (job {}): {}", job.getType(), job.getId(), e.getMessage(), e);
+            result = new ImportResult();
+            result.getErrors().add("Erreur lors de l'import: " + (e.getMessage() != null ? e.getMessage() : "Erreur inconnue"));
+            statut = ImportJob.Statut.ECHOUE;
+            message = e.getMessage();
+        } catch (Error e) {
+            log.error("Erreur fatale lors de l'import {} (job {}): {}", job.getType(), job.getId(), e.toString(), e);
+            throw e;
+        } finally {
+            executions.remove(job.getId());
+            fichier.supprimer();
+            if (result == null) {
+                result = new ImportResult();
+                result.getErrors().add("Erreur lors de l'import: " + message);
+            }
+            // Après le nettoyage : les threads en attente sur le job ne voient plus le fichier temporaire
+            job.terminer(statut, result, rapport, message);
+        }
+    }
+
+    private void enregistrerLog(ImportJob job, ImportResult result) {
+        ImportLog importLog = ImportLog.builder()
+                .fileName(job.getNomFichier())
+                .details(String.format("%d %s avec succès, %d erreur(s)",
+                        result.getSuccessCount(), job.getType().libelle, result.getErrorCount()))
+                .success(result.getErrorCount() == 0 && result.getSuccessCount() > 0)
+                .successCount(result.getSuccessCount())
+                .errorCount(result.getErrorCount())
+                .createdAt(LocalDateTime.now())
+                .build();
+        importLogRepository.save(importLog);
+    }
+
+    /**
+     * Rapport Excel (lignes en erreur / importées) ; null si rien à rapporter ou en cas d'échec de génération.
+     */
+    private byte[] genererRapport(ImportResult result, FichierTemporaire fichier) {
+        if (result.getErrorRows().isEmpty() && result.getSuccessRows().isEmpty()) {
+            return null;
+        }
+        try {
+            return excelImportService.generateImportReport(result, fichier);
+        } catch (Exception e) {
+            log.error("Erreur lors de la génération du rapport Excel: {}", e.getMessage(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Oublie les jobs terminés depuis plus de la durée de rétention (résultat et rapport libérés).
+     */
+    @Scheduled(fixedDelay = 10 * 60 * 1000)
+    public void purgerJobsTermines() {
+        jobs.purger(retentionMinutes);
+        executions.values().removeIf(Future::isDone);
+    }
+}
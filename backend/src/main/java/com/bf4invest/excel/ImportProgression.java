@@ -0,0 +1,25 @@
+package com.bf4invest.excel;
+
+/**
+ * Suivi d'un import en cours : avancement ligne par ligne et demande d'annulation.
+ * Appelé depuis le thread d'import ; l'implémentation doit être lisible depuis d'autres threads.
+ */
+public interface ImportProgression {
+
+    /** Aucun suivi (import synchrone historique). */
+    ImportProgression AUCUNE = new ImportProgression() {
+        @Override
+        public void avancer(int lignesTraitees, int totalLignes) {
+        }
+
+        @Override
+        public boolean annulationDemandee() {
+            return false;
+        }
+    };
+
+    void avancer(int lignesTraitees, int totalLignes);
+
+    /** Vérifié entre deux lignes et avant la phase d'enregistrement. */
+    boolean annulationDemandee();
+}
@@ -0,0 +1,142 @@
+package com.bf4invest.excel;
+
+import com.bf4invest.model.Client;
+import com.bf4invest.model.Product;
+import com.bf4invest.model.Supplier;
+import com.bf4invest.util.EcrituresParLots;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.data.util.Pair;
+
+import java.util.*;
+
+/**
+ * Référentiels chargés une seule fois par import (clients, fournisseurs, produits) pour éviter une requête
+ * par ligne. Les produits créés ou modifiés pendant l'import sont gardés en mémoire puis écrits en masse
+ * par {@link #ecrireProduits}. Une instance par import : non thread-safe.
+ */
+class ReferencesImport {
+
+    private final Map<String, Client> clientsParIce = new HashMap<>();
+    private final Map<String, Client> clientsParNom = new HashMap<>();
+    private final Map<String, Supplier> fournisseursParNom = new HashMap<>();
+    // Clé : refArticle|designation|unite (comparaison exacte, comme la requête dérivée du repository)
+    private final Map<String, Product> produits = new HashMap<>();
+    private final List<Product> produitsCrees = new ArrayList<>();
+    private final Set<String> idsCrees = new HashSet<>();
+    private final Map<String, Product> produitsModifies = new LinkedHashMap<>();
+
+    /**
+     * Charge clients, fournisseurs et produits (sans l'image, inutile à l'import).
+     */
+    static ReferencesImport charger(MongoTemplate mongoTemplate) {
+        ReferencesImport references = new ReferencesImport();
+        mongoTemplate.findAll(Client.class).forEach(references::ajouterClient);
+        mongoTemplate.findAll(Supplier.class).forEach(references::ajouterFournisseur);
+        Query requeteProduits = new Query();
+        requeteProduits.fields().exclude("imageBase64");
+        mongoTemplate.find(requeteProduits, Product.class).forEach(references::indexerProduit);
+        return references;
+    }
+
+    Optional<Client> clientParIce(String ice) {
+        return Optional.ofNullable(clientsParIce.get(ice.trim()));
+    }
+
+    Optional<Client> clientParNom(String nom) {
+        return Optional.ofNullable(clientsParNom.get(nom.trim().toLowerCase(Locale.ROOT)));
+    }
+
+    void ajouterClient(Client client) {
+        if (client.getIce() != null && !client.getIce().isBlank()) {
+            clientsParIce.putIfAbsent(client.getIce().trim(), client);
+        }
+        if (client.getNom() != null) {
+            clientsParNom.putIfAbsent(client.getNom().trim().toLowerCase(Locale.ROOT), client);
+        }
+    }
+
+    Optional<Supplier> fournisseurParNom(String nom) {
+        return Optional.ofNullable(fournisseursParNom.get(nom.trim()));
+    }
+
+    void ajouterFournisseur(Supplier fournisseur) {
+        if (fournisseur.getNom() != null) {
+            fournisseursParNom.putIfAbsent(fournisseur.getNom().trim(), fournisseur);
+        }
+    }
+
+    Optional<Product> produit(String refArticle, String designation, String unite) {
+        return Optional.ofNullable(produits.get(cleProduit(refArticle, designation, unite)));
+    }
+
+    /**
+     * Nouveau produit : id attribué d'avance, inséré par {@link #ecrireProduits}.
+     */
+    void creerProduit(Product produit) {
+        produit.setId(EcrituresParLots.nouvelId());
+        produitsCrees.add(produit);
+        idsCrees.add(produit.getId());
+        indexerProduit(produit);
+    }
+
+    /**
+     * À appeler avant de modifier réf / désignation / unité d'un produit du cache.
+     */
+    void retirerProduit(Product produit) {
+        produits.remove(cleProduit(produit.getRefArticle(), produit.getDesignation(), produit.getUnite()), produit);
+    }
+
+    /**
+     * Réindexe un produit modifié et le marque pour écriture (les produits créés pendant l'import
+     * sont insérés dans leur dernier état).
+     */
+    void produitModifie(Product produit) {
+        indexerProduit(produit);
+        if (!idsCrees.contains(produit.getId())) {
+            produitsModifies.put(produit.getId(), produit);
+        }
+    }
+
+    /**
+     * Insère les produits créés et applique un $set des champs d'import aux produits modifiés (l'image et
+     * le stock ne sont pas réécrits), par lots.
+     *
+     * @return nombre de produits écrits
+     */
+    int ecrireProduits(MongoTemplate mongoTemplate, int tailleLot) {
+        int ecrits = EcrituresParLots.inserer(mongoTemplate, Product.class, produitsCrees, tailleLot);
+        List<Pair<Query, UpdateDefinition>> modifications = new ArrayList<>();
+        for (Product p : produitsModifies.values()) {
+            Update update = new Update()
+                    .set("refArticle", p.getRefArticle())
+                    .set("designation", p.getDesignation())
+                    .set("unite", p.getUnite())
+                    .set("prixAchatPondereHT", p.getPrixAchatPondereHT())
+                    .set("prixVentePondereHT", p.getPrixVentePondereHT())
+                    .set("prixAchatUnitaireHT", p.getPrixAchatUnitaireHT())
+                    .set("prixVenteUnitaireHT", p.getPrixVenteUnitaireHT())
+                    .set("tva", p.getTva())
+                    .set("fournisseurId", p.getFournisseurId())
+                    .set("derniereMiseAJourPrix", p.getDerniereMiseAJourPrix())
+                    .set("updatedAt", p.getUpdatedAt());
+            modifications.add(Pair.of(new Query(Criteria.where("_id").is(p.getId())), update));
+        }
+        ecrits += EcrituresParLots.modifier(mongoTemplate, Product.class, modifications, tailleLot);
+        produitsCrees.clear();
+        idsCrees.clear();
+        produitsModifies.clear();
+        return ecrits;
+    }
+
+    private void indexerProduit(Product produit) {
+        produits.putIfAbsent(cleProduit(produit.getRefArticle(), produit.getDesignation(), produit.getUnite()), produit);
+    }
+
+    private static String cleProduit(String refArticle, String designation, String unite) {
+        return refArticle + "|" + designation + "|" + unite;
+    }
+}
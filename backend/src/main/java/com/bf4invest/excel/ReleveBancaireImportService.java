@@ -3,15 +3,26 @@ package com.bf4invest.excel;
 import com.bf4invest.dto.ImportResult;
 import com.bf4invest.model.TransactionBancaire;
 import com.bf4invest.repository.TransactionBancaireRepository;
+import com.bf4invest.util.EcrituresParLots;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.data.util.Pair;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.InputStream;
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.NumberFormat;
 import java.text.ParseException;
 import java.time.LocalDate;
@@ -26,12 +37,20 @@ import java.util.*;
 public class ReleveBancaireImportService {
     
     private final TransactionBancaireRepository transactionRepository;
+    private final MongoTemplate mongoTemplate;
     
     private static final DateTimeFormatter DATE_FORMATTER_DDMMYYYY = DateTimeFormatter.ofPattern("dd/MM/yyyy");
     private static final NumberFormat FRENCH_NUMBER_FORMAT = NumberFormat.getNumberInstance(Locale.FRENCH);
     
     /**
-     * Importe un relevé bancaire Excel et crée les transactions correspondantes
+     * Importe un relevé bancaire Excel pour un mois donné, de façon idempotente.
+     * <p>
+     * Chaque ligne reçoit une empreinte (mois, date, montants, libellé, référence et rang parmi les lignes
+     * identiques) ; les lignes sont upsertées par lots sur cette empreinte. Une ligne déjà présente reçoit les
+     * valeurs du fichier hors empreinte (date de valeur, libellé et référence tels qu'écrits) et garde son
+     * rapprochement (mapped, factureVenteId, paiementId...). Les transactions du mois absentes du nouveau relevé
+     * sont supprimées, sauf si des lignes du fichier sont en erreur ; les transactions rapprochées sont toujours
+     * conservées, pour ne pas laisser de paiement ou d'écriture pointer vers une transaction disparue.
      */
     public ImportResult importReleveBancaire(MultipartFile file, Integer mois, Integer annee) {
         ImportResult result = new ImportResult();
@@ -57,14 +76,8 @@ public class ReleveBancaireImportService {
             result.setTotalRows(sheet.getLastRowNum());
             
             int processedRows = 0;
-            int importedCount = 0;
-            
-            // Supprimer les transactions existantes pour ce mois/année (éviter les doublons)
-            List<TransactionBancaire> existing = transactionRepository.findByMoisAndAnnee(mois, annee);
-            if (!existing.isEmpty()) {
-                transactionRepository.deleteAll(existing);
-                log.info("Suppression de {} transactions existantes pour {}/{}", existing.size(), mois, annee);
-            }
+            List<TransactionBancaire> lues = new ArrayList<>();
+            Map<String, Integer> occurrences = new HashMap<>();
             
             for (int i = 1; i <= sheet.getLastRowNum(); i++) {
                 Row row = sheet.getRow(i);
@@ -73,8 +86,9 @@ public class ReleveBancaireImportService {
                 try {
                     TransactionBancaire transaction = parseTransactionRow(row, columnMap, mois, annee);
                     if (transaction != null) {
-                        transactionRepository.save(transaction);
-                        importedCount++;
+                        String cle = cleEmpreinte(transaction);
+                        transaction.setEmpreinte(empreinte(cle, occurrences.merge(cle, 1, Integer::sum)));
+                        lues.add(transaction);
                     }
                     processedRows++;
                 } catch (Exception e) {
@@ -84,9 +98,63 @@ public class ReleveBancaireImportService {
                 }
             }
             
-            result.setSuccessCount(importedCount);
+            List<TransactionBancaire> existantes = transactionRepository.findByMoisAndAnnee(mois, annee);
+            completerEmpreintes(existantes);
+            
+            // Upsert : champs de l'empreinte et rapprochement fixés à la création, le reste suit le fichier
+            List<Pair<Query, Update>> upserts = new ArrayList<>();
+            Set<String> empreintesFichier = new HashSet<>();
+            for (TransactionBancaire t : lues) {
+                empreintesFichier.add(t.getEmpreinte());
+                upserts.add(Pair.of(new Query(Criteria.where("empreinte").is(t.getEmpreinte())), new Update()
+                        .setOnInsert("dateOperation", t.getDateOperation())
+                        .setOnInsert("debit", t.getDebit())
+                        .setOnInsert("credit", t.getCredit())
+                        .setOnInsert("mapped", false)
+                        .setOnInsert("mois", mois)
+                        .setOnInsert("annee", annee)
+                        .setOnInsert("createdAt", t.getCreatedAt())
+                        .set("dateValeur", t.getDateValeur())
+                        .set("libelle", t.getLibelle())
+                        .set("reference", t.getReference())
+                        .set("updatedAt", t.getUpdatedAt())));
+            }
+            int nouvelles = EcrituresParLots.upsert(mongoTemplate, TransactionBancaire.class, upserts,
+                    EcrituresParLots.TAILLE_LOT_DEFAUT);
+            
+            // Transactions du mois absentes du relevé corrigé
+            List<TransactionBancaire> retirees = existantes.stream()
+                    .filter(t -> !empreintesFichier.contains(t.getEmpreinte()))
+                    .toList();
+            int supprimees = 0;
+            if (!retirees.isEmpty()) {
+                if (result.getErrorCount() > 0) {
+                    result.getWarnings().add(String.format(
+                            "%d transaction(s) absente(s) du fichier conservée(s) : des lignes sont en erreur", retirees.size()));
+                } else {
+                    List<String> aSupprimer = retirees.stream().filter(t -> !estRapprochee(t))
+                            .map(TransactionBancaire::getId).toList();
+                    int rapprochees = retirees.size() - aSupprimer.size();
+                    if (rapprochees > 0) {
+                        result.getWarnings().add(String.format(
+                                "%d transaction(s) rapprochée(s) absente(s) du nouveau relevé conservée(s) : "
+                                        + "annuler le rapprochement avant de les supprimer", rapprochees));
+                    }
+                    if (!aSupprimer.isEmpty()) {
+                        mongoTemplate.remove(new Query(Criteria.where("_id").in(aSupprimer)), TransactionBancaire.class);
+                    }
+                    supprimees = aSupprimer.size();
+                }
+            }
+            
+            int misesAJour = lues.size() - nouvelles;
+            result.getWarnings().add(String.format(
+                    "%d nouvelle(s) transaction(s), %d mise(s) à jour (rapprochements conservés), %d supprimée(s)",
+                    nouvelles, misesAJour, supprimees));
+            result.setSuccessCount(lues.size());
             result.setTotalRows(processedRows);
-            log.info("Import terminé: {} transactions importées sur {} lignes traitées", importedCount, processedRows);
+            log.info("Import relevé {}/{} terminé: {} lignes, {} nouvelles, {} mises à jour, {} supprimées",
+                    mois, annee, lues.size(), nouvelles, misesAJour, supprimees);
             
         } catch (Exception e) {
             log.error("Erreur lors de l'import du relevé bancaire", e);
@@ -96,6 +164,76 @@ public class ReleveBancaireImportService {
         return result;
     }
     
+    /** Transaction liée à un paiement ou une facture : sa suppression laisserait ces liens orphelins. */
+    private static boolean estRapprochee(TransactionBancaire t) {
+        return Boolean.TRUE.equals(t.getMapped()) || t.getPaiementId() != null
+                || t.getFactureVenteId() != null || t.getFactureAchatId() != null;
+    }
+    
+    /**
+     * Calcule et enregistre l'empreinte des transactions importées avant son introduction, pour qu'un
+     * ré-import les reconnaisse au lieu de les dupliquer.
+     */
+    private void completerEmpreintes(List<TransactionBancaire> existantes) {
+        Set<String> utilisees = new HashSet<>();
+        existantes.stream().map(TransactionBancaire::getEmpreinte).filter(Objects::nonNull).forEach(utilisees::add);
+        
+        List<Pair<Query, UpdateDefinition>> modifications = new ArrayList<>();
+        for (TransactionBancaire t : existantes) {
+            if (t.getEmpreinte() != null) continue;
+            String cle = cleEmpreinte(t);
+            int rang = 1;
+            String empreinte = empreinte(cle, rang);
+            while (utilisees.contains(empreinte)) {
+                empreinte = empreinte(cle, ++rang);
+            }
+            utilisees.add(empreinte);
+            t.setEmpreinte(empreinte);
+            modifications.add(Pair.of(new Query(Criteria.where("_id").is(t.getId())),
+                    new Update().set("empreinte", empreinte)));
+        }
+        if (!modifications.isEmpty()) {
+            EcrituresParLots.modifier(mongoTemplate, TransactionBancaire.class, modifications,
+                    EcrituresParLots.TAILLE_LOT_DEFAUT);
+            log.info("Empreinte ajoutée à {} transaction(s) existante(s)", modifications.size());
+        }
+    }
+    
+    /**
+     * Contenu identifiant une ligne de relevé : mois/année d'import, date d'opération, montants (centimes),
+     * libellé (casse et espaces normalisés) et référence.
+     */
+    static String cleEmpreinte(TransactionBancaire t) {
+        return String.join("|",
+                String.valueOf(t.getAnnee()),
+                String.valueOf(t.getMois()),
+                String.valueOf(t.getDateOperation()),
+                montant(t.getDebit()),
+                montant(t.getCredit()),
+                normaliser(t.getLibelle()),
+                normaliser(t.getReference()));
+    }
+    
+    /**
+     * Empreinte SHA-256 de la clé et du rang de la ligne parmi les lignes identiques du relevé.
+     */
+    static String empreinte(String cle, int rang) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest((cle + "#" + rang).getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponible", e);
+        }
+    }
+    
+    private static String montant(Double valeur) {
+        return valeur == null ? "0.00" : BigDecimal.valueOf(valeur).setScale(2, RoundingMode.HALF_UP).toPlainString();
+    }
+    
+    private static String normaliser(String texte) {
+        return texte == null ? "" : texte.trim().replaceAll("\\s+", " ").toUpperCase(Locale.ROOT);
+    }
+    
     /**
      * Mappe intelligemment les colonnes du fichier Excel
      */
@@ -0,0 +1,143 @@
+package com.bf4invest.excel;
+
+import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Écriture Excel en flux (SXSSF) : seules les {@link #FENETRE_LIGNES} dernières lignes restent en mémoire,
+ * les précédentes sont vidées dans un fichier temporaire compressé. Les largeurs de colonnes sont fixées
+ * à l'avance (autoSizeColumn n'est pas utilisable sur une fenêtre glissante et parcourt toutes les lignes).
+ */
+public class StreamingExcelWriter implements AutoCloseable {
+
+    /** Nombre de lignes conservées en mémoire avant vidage sur disque. */
+    public static final int FENETRE_LIGNES = 500;
+
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
+
+    private final SXSSFWorkbook workbook;
+    private final SXSSFSheet sheet;
+    private final CellStyle currencyStyle;
+    private final CellStyle defaultStyle;
+    private int rowNum;
+
+    /**
+     * @param nomFeuille nom de l'onglet
+     * @param entetes    libellés des colonnes
+     * @param largeurs   largeur de chaque colonne, en nombre de caractères
+     */
+    public StreamingExcelWriter(String nomFeuille, String[] entetes, int[] largeurs) {
+        if (entetes.length != largeurs.length) {
+            throw new IllegalArgumentException("Une largeur est requise pour chaque colonne");
+        }
+        this.workbook = new SXSSFWorkbook(FENETRE_LIGNES);
+        this.workbook.setCompressTempFiles(true);
+        this.sheet = workbook.createSheet(nomFeuille);
+        this.currencyStyle = createCurrencyStyle(workbook);
+        this.defaultStyle = createDefaultStyle(workbook);
+
+        CellStyle headerStyle = createHeaderStyle(workbook);
+        Row headerRow = sheet.createRow(rowNum++);
+        for (int i = 0; i < entetes.length; i++) {
+            Cell cell = headerRow.createCell(i);
+            cell.setCellValue(entetes[i]);
+            cell.setCellStyle(headerStyle);
+            sheet.setColumnWidth(i, Math.min(255, largeurs[i]) * 256);
+        }
+        sheet.createFreezePane(0, 1);
+    }
+
+    /**
+     * Ajoute une ligne. Les nombres sont écrits au format monétaire, les dates au format jj/mm/aaaa,
+     * les valeurs null laissent la cellule vide.
+     */
+    public void ligne(Object... valeurs) {
+        Row row = sheet.createRow(rowNum++);
+        for (int i = 0; i < valeurs.length; i++) {
+            Object valeur = valeurs[i];
+            if (valeur == null) {
+                continue;
+            }
+            Cell cell = row.createCell(i);
+            if (valeur instanceof Number nombre) {
+                cell.setCellValue(nombre.doubleValue());
+                cell.setCellStyle(currencyStyle);
+            } else if (valeur instanceof LocalDate date) {
+                cell.setCellValue(date.format(DATE_FORMATTER));
+                cell.setCellStyle(defaultStyle);
+            } else if (valeur instanceof LocalDateTime dateTime) {
+                cell.setCellValue(dateTime.format(DATE_TIME_FORMATTER));
+                cell.setCellStyle(defaultStyle);
+            } else {
+                cell.setCellValue(valeur.toString());
+                cell.setCellStyle(defaultStyle);
+            }
+        }
+    }
+
+    /**
+     * Nombre de lignes de données écrites (hors en-tête).
+     */
+    public int getNombreLignes() {
+        return rowNum - 1;
+    }
+
+    /**
+     * Écrit le classeur dans le flux (le flux n'est pas fermé).
+     */
+    public void ecrire(OutputStream out) throws IOException {
+        workbook.write(out);
+        out.flush();
+    }
+
+    /**
+     * Libère les fichiers temporaires.
+     */
+    @Override
+    public void close() throws IOException {
+        workbook.dispose();
+        workbook.close();
+    }
+
+    private static CellStyle createHeaderStyle(Workbook workbook) {
+        CellStyle style = workbook.createCellStyle();
+        Font font = workbook.createFont();
+        font.setBold(true);
+        font.setColor(IndexedColors.WHITE.getIndex());
+        font.setFontHeightInPoints((short) 11);
+        style.setFont(font);
+        style.setFillForegroundColor(IndexedColors.DARK_BLUE.getIndex());
+        style.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+        style.setAlignment(HorizontalAlignment.CENTER);
+        style.setVerticalAlignment(VerticalAlignment.CENTER);
+        style.setBorderBottom(BorderStyle.THIN);
+        style.setBorderTop(BorderStyle.THIN);
+        style.setBorderLeft(BorderStyle.THIN);
+        style.setBorderRight(BorderStyle.THIN);
+        return style;
+    }
+
+    private static CellStyle createCurrencyStyle(Workbook workbook) {
+        CellStyle style = workbook.createCellStyle();
+        DataFormat format = workbook.createDataFormat();
+        style.setDataFormat(format.getFormat("#,##0.00 \"MAD\""));
+        style.setAlignment(HorizontalAlignment.RIGHT);
+        style.setVerticalAlignment(VerticalAlignment.CENTER);
+        return style;
+    }
+
+    private static CellStyle createDefaultStyle(Workbook workbook) {
+        CellStyle style = workbook.createCellStyle();
+        style.setAlignment(HorizontalAlignment.LEFT);
+        style.setVerticalAlignment(VerticalAlignment.CENTER);
+        return style;
+    }
+}
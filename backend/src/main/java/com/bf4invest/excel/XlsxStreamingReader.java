@@ -0,0 +1,287 @@
+package com.bf4invest.excel;
+
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.BuiltinFormats;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Lecture en flux de la première feuille d'un classeur .xlsx (modèle événementiel StAX sur le XML de la feuille).
+ * Contrairement à WorkbookFactory, le classeur n'est jamais chargé en entier : seules les chaînes partagées et
+ * les styles sont en mémoire, et chaque ligne est restituée puis libérée.
+ * <p>
+ * Les lignes sont exposées via l'API {@link Row} (cellules typées : numérique, texte, booléen, dates conservées
+ * via leur format) afin de réutiliser tel quel le code d'import existant. La ligne renvoyée par {@link #next()}
+ * n'est valide que jusqu'à l'appel suivant ; l'en-tête (ligne 0) reste disponible via {@link #getEntete()}.
+ */
+public class XlsxStreamingReader implements Iterator<Row>, AutoCloseable {
+
+    private final OPCPackage pkg;
+    private final InputStream sheetStream;
+    private final XMLStreamReader xml;
+    private final ReadOnlySharedStringsTable sharedStrings;
+    private final StylesTable styles;
+
+    /**
+     * Classeur de travail : ne contient que l'en-tête et la ligne courante. SXSSF sans vidage automatique,
+     * car ses cellules gardent leur texte en propre (XSSF alimenterait une table de chaînes partagées sans fin).
+     */
+    private final SXSSFWorkbook tampon = new SXSSFWorkbook(-1);
+    private final SXSSFSheet feuille = tampon.createSheet();
+    private final Map<Integer, CellStyle> stylesDate = new HashMap<>();
+
+    private Row entete;
+    private Row courante;
+    private Row suivante;
+    private int derniereLigneDeclaree = -1;
+    private int derniereLigneLue = -1;
+    private boolean termine;
+
+    public XlsxStreamingReader(File fichier) throws IOException {
+        try {
+            this.pkg = OPCPackage.open(fichier, PackageAccess.READ);
+            XSSFReader reader = new XSSFReader(pkg);
+            this.sharedStrings = new ReadOnlySharedStringsTable(pkg);
+            this.styles = reader.getStylesTable();
+            Iterator<InputStream> sheets = reader.getSheetsData();
+            if (!sheets.hasNext()) {
+                throw new IOException("Le classeur ne contient aucune feuille");
+            }
+            this.sheetStream = sheets.next();
+            this.xml = XMLHelper.newXMLInputFactory().createXMLStreamReader(sheetStream);
+        } catch (IOException e) {
+            close();
+            throw e;
+        } catch (Exception e) {
+            close();
+            throw new IOException("Lecture du classeur impossible: " + e.getMessage(), e);
+        }
+        avancer();
+        // L'en-tête est la ligne d'index 0 (vide si absente, comme sheet.getRow(0))
+        if (suivante != null && suivante.getRowNum() == 0) {
+            entete = suivante;
+            avancer();
+        } else {
+            entete = feuille.createRow(0);
+        }
+    }
+
+    /**
+     * Ligne d'en-tête (index 0).
+     */
+    public Row getEntete() {
+        return entete;
+    }
+
+    /**
+     * Dernière ligne (index 0-based) annoncée par la dimension de la feuille, ou la dernière lue si absente.
+     */
+    public int getDerniereLigne() {
+        return Math.max(derniereLigneDeclaree, derniereLigneLue);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return suivante != null;
+    }
+
+    @Override
+    public Row next() {
+        if (suivante == null) {
+            throw new NoSuchElementException();
+        }
+        // La ligne précédemment renvoyée n'est plus utilisée par l'appelant
+        if (courante != null && courante != entete) {
+            feuille.removeRow(courante);
+        }
+        courante = suivante;
+        avancer();
+        return courante;
+    }
+
+    /**
+     * Lit la prochaine ligne du XML dans {@link #suivante} (null en fin de feuille).
+     */
+    private void avancer() {
+        suivante = null;
+        if (termine) {
+            return;
+        }
+        try {
+            while (xml.hasNext()) {
+                int evenement = xml.next();
+                if (evenement != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+                String nom = xml.getLocalName();
+                if ("dimension".equals(nom)) {
+                    lireDimension(xml.getAttributeValue(null, "ref"));
+                } else if ("row".equals(nom)) {
+                    suivante = lireLigne();
+                    return;
+                }
+            }
+            termine = true;
+        } catch (XMLStreamException e) {
+            throw new IllegalStateException("XML de feuille invalide: " + e.getMessage(), e);
+        }
+    }
+
+    private Row lireLigne() throws XMLStreamException {
+        String attributR = xml.getAttributeValue(null, "r");
+        int index = attributR != null ? Integer.parseInt(attributR) - 1 : derniereLigneLue + 1;
+        derniereLigneLue = index;
+        Row row = feuille.createRow(index);
+
+        int colonneSuivante = 0;
+        while (xml.hasNext()) {
+            int evenement = xml.next();
+            if (evenement == XMLStreamConstants.END_ELEMENT && "row".equals(xml.getLocalName())) {
+                break;
+            }
+            if (evenement == XMLStreamConstants.START_ELEMENT && "c".equals(xml.getLocalName())) {
+                String ref = xml.getAttributeValue(null, "r");
+                int colonne = ref != null ? new CellReference(ref).getCol() : colonneSuivante;
+                colonneSuivante = colonne + 1;
+                lireCellule(row, colonne, xml.getAttributeValue(null, "t"), xml.getAttributeValue(null, "s"));
+            }
+        }
+        return row;
+    }
+
+    private void lireCellule(Row row, int colonne, String type, String style) throws XMLStreamException {
+        String valeur = null;
+        StringBuilder texteInline = null;
+        while (xml.hasNext()) {
+            int evenement = xml.next();
+            if (evenement == XMLStreamConstants.END_ELEMENT && "c".equals(xml.getLocalName())) {
+                break;
+            }
+            if (evenement != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+            String nom = xml.getLocalName();
+            if ("v".equals(nom)) {
+                valeur = xml.getElementText();
+            } else if ("t".equals(nom) && "inlineStr".equals(type)) {
+                // Texte enrichi : concaténer les runs
+                if (texteInline == null) {
+                    texteInline = new StringBuilder();
+                }
+                texteInline.append(xml.getElementText());
+            }
+        }
+
+        if (texteInline != null) {
+            row.createCell(colonne).setCellValue(texteInline.toString());
+            return;
+        }
+        if (valeur == null) {
+            return;
+        }
+        if (type == null || "n".equals(type)) {
+            Cell cell = row.createCell(colonne);
+            cell.setCellValue(Double.parseDouble(valeur));
+            CellStyle styleDate = styleDate(style);
+            if (styleDate != null) {
+                cell.setCellStyle(styleDate);
+            }
+        } else if ("s".equals(type)) {
+            row.createCell(colonne).setCellValue(sharedStrings.getItemAt(Integer.parseInt(valeur)).getString());
+        } else if ("b".equals(type)) {
+            row.createCell(colonne).setCellValue("1".equals(valeur) || "true".equalsIgnoreCase(valeur));
+        } else if ("str".equals(type) || "d".equals(type)) {
+            row.createCell(colonne).setCellValue(valeur);
+        }
+        // "e" (erreur) : cellule ignorée, comme une cellule vide
+    }
+
+    /**
+     * Style de date équivalent dans le classeur de travail si le style source est un format de date, sinon null.
+     */
+    private CellStyle styleDate(String style) {
+        if (style == null || styles == null) {
+            return null;
+        }
+        int index = Integer.parseInt(style);
+        if (stylesDate.containsKey(index)) {
+            return stylesDate.get(index);
+        }
+        CellStyle resultat = null;
+        if (index < styles.getNumCellStyles()) {
+            XSSFCellStyle source = styles.getStyleAt(index);
+            short formatIndex = source.getDataFormat();
+            String format = source.getDataFormatString();
+            if (format == null) {
+                format = BuiltinFormats.getBuiltinFormat(formatIndex);
+            }
+            if (DateUtil.isADateFormat(formatIndex, format)) {
+                resultat = tampon.createCellStyle();
+                resultat.setDataFormat(tampon.createDataFormat().getFormat(format));
+            }
+        }
+        stylesDate.put(index, resultat);
+        return resultat;
+    }
+
+    private void lireDimension(String ref) {
+        if (ref == null) {
+            return;
+        }
+        String fin = ref.contains(":") ? ref.substring(ref.indexOf(':') + 1) : ref;
+        try {
+            derniereLigneDeclaree = new CellReference(fin).getRow();
+        } catch (Exception e) {
+            derniereLigneDeclaree = -1;
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (xml != null) {
+                xml.close();
+            }
+        } catch (Exception ignored) {
+            // fermeture best-effort
+        }
+        try {
+            if (sheetStream != null) {
+                sheetStream.close();
+            }
+        } catch (Exception ignored) {
+            // fermeture best-effort
+        }
+        try {
+            tampon.dispose();
+            tampon.close();
+        } catch (Exception ignored) {
+            // fermeture best-effort
+        }
+        if (pkg != null) {
+            pkg.revert();
+        }
+    }
+}
@@ -5,12 +5,14 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 @Document(collection = "acomptes_is")
+@CompoundIndex(name = "annee_trimestre", def = "{'annee': 1, 'trimestre': 1}")
 @Data
 @Builder
 @NoArgsConstructor
@@ -5,11 +5,14 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
 
 @Document(collection = "audit_logs")
+@CompoundIndex(name = "entityType_entityId", def = "{'entityType': 1, 'entityId': 1}")
 @Data
 @Builder
 @NoArgsConstructor
@@ -18,6 +21,7 @@ public class AuditLog {
     @Id
     private String id;
     
+    @Indexed
     private String userId;
     private String userName;
     private String action; // CREATE, UPDATE, DELETE
@@ -30,6 +34,7 @@ public class AuditLog {
     private String ipAddress;
     private String userAgent;
     
+    @Indexed
     private LocalDateTime timestamp;
 }
 
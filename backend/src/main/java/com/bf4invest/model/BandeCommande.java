@@ -5,6 +5,9 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDate;
@@ -12,6 +15,10 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Document(collection = "bandes_commandes")
+@CompoundIndexes({
+        @CompoundIndex(name = "clientsVente_clientId", def = "{'clientsVente.clientId': 1}"),
+        @CompoundIndex(name = "fournisseursAchat_fournisseurId", def = "{'fournisseursAchat.fournisseurId': 1}")
+})
 @Data
 @Builder
 @NoArgsConstructor
@@ -20,7 +27,9 @@ public class BandeCommande {
     @Id
     private String id;
     
+    @Indexed
     private String numeroBC; // Format: BF4-BC-YYYY-NNNN
+    @Indexed
     private LocalDate dateBC;
     
     // ===== NOUVEAU: Structure multi-fournisseurs =====
@@ -31,6 +40,7 @@ public class BandeCommande {
     // ===== COMPATIBILITE ANCIENNE STRUCTURE FOURNISSEUR =====
     
     @Deprecated
+    @Indexed
     private String fournisseurId; // Ancien champ - sera migré vers fournisseursAchat
     
     @Deprecated
@@ -46,6 +56,7 @@ public class BandeCommande {
     // et seront migrés vers la nouvelle structure
     
     @Deprecated
+    @Indexed
     private String clientId; // Ancien champ - sera migré vers clientsVente
     
     @Deprecated
@@ -53,6 +64,7 @@ public class BandeCommande {
     
     // ===== FIN COMPATIBILITE =====
     
+    @Indexed
     private String etat; // brouillon, envoyee, complete
     private String notes;
     private String modePaiement; // virement, cheque, LCN, compensation, etc. (type de paiement)
@@ -115,4 +127,35 @@ public class BandeCommande {
         // Compatibilité: ancien format avec un seul client
         return clientId != null ? 1 : 0;
     }
+    
+    // Lecture des champs de l'ancienne structure pour les BC non migrées.
+    // Noms sans préfixe "get" : non sérialisés par Jackson.
+    
+    /**
+     * Fournisseur de l'ancien format (null si le BC utilise fournisseursAchat)
+     */
+    public String fournisseurIdAncienFormat() {
+        return fournisseurId;
+    }
+    
+    /**
+     * Lignes d'achat de l'ancien format (avant fournisseursAchat)
+     */
+    public List<LigneAchat> lignesAchatAncienFormat() {
+        return lignesAchat;
+    }
+    
+    /**
+     * Client de l'ancien format (null si le BC utilise clientsVente)
+     */
+    public String clientIdAncienFormat() {
+        return clientId;
+    }
+    
+    /**
+     * Lignes achat + vente de l'ancien format (avant lignesAchat/clientsVente)
+     */
+    public List<LineItem> lignesAncienFormat() {
+        return lignes;
+    }
 }
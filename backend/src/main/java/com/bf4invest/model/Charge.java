@@ -5,12 +5,14 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 @Document(collection = "charges")
+@CompoundIndex(name = "dateEcheance_updatedAt", def = "{'dateEcheance': -1, 'updatedAt': -1}")
 @Data
 @Builder
 @NoArgsConstructor
@@ -5,6 +5,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
@@ -60,6 +61,7 @@ public class CompanyInfo {
     private String rib;
 
     private LocalDateTime createdAt;
+    @Indexed
     private LocalDateTime updatedAt;
 }
 
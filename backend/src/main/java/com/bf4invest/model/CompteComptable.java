@@ -5,6 +5,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
@@ -18,9 +19,12 @@ public class CompteComptable {
     @Id
     private String id;
     
+    @Indexed
     private String code; // Ex: 6111, 7111, 4455
     private String libelle; // Ex: "Achats de matières premières"
+    @Indexed
     private String classe; // 1, 2, 3, 4, 5, 6, 7
+    @Indexed
     private TypeCompte type; // ACTIF, PASSIF, CHARGE, PRODUIT, TRESORERIE
     private Boolean collectif; // true si compte collectif (ex: 611)
     private String compteParent; // Code du compte parent si sous-compte
@@ -29,6 +33,7 @@ public class CompteComptable {
     private Double soldeCredit; // Total crédit
     private Double solde; // Solde (débit - crédit, signé selon le type)
     
+    @Indexed
     private Boolean actif; // true si le compte est actif/utilisé
     
     private LocalDateTime createdAt;
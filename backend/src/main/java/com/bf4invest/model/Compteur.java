@@ -0,0 +1,30 @@
+package com.bf4invest.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Compteur de numérotation (BC, BL, OV, factures) : dernier numéro d'ordre attribué pour un type de document,
+ * un préfixe et une période. L'id est la clé {@code type|prefixe|periode}.
+ */
+@Document(collection = "compteurs")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class Compteur {
+    @Id
+    private String id;
+
+    private String type;              // BC, BL, FV, FA, OV
+    private String prefixe;           // Ex: "CLI01FOU" pour un BC, vide si le type n'a pas de préfixe variable
+    private String periode;           // Ex: "2025", "2025-03"
+    private long valeur;              // Dernier numéro attribué
+    private LocalDateTime updatedAt;
+}
@@ -5,6 +5,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDate;
@@ -20,6 +21,7 @@ public class DeclarationIS {
     @Id
     private String id;
 
+    @Indexed
     private Integer annee;
     private LocalDate dateDebut;
     private LocalDate dateFin;
@@ -5,6 +5,8 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDate;
@@ -12,6 +14,7 @@ import java.time.LocalDateTime;
 import java.util.Map;
 
 @Document(collection = "declarations_tva")
+@CompoundIndex(name = "annee_mois", def = "{'annee': 1, 'mois': -1}")
 @Data
 @Builder
 @NoArgsConstructor
@@ -45,6 +48,7 @@ public class DeclarationTVA {
     private Double tvaCredit;   // Crédit de TVA généré ce mois (si résultat négatif)
     private Double creditReporte; // Crédit de TVA reporté du mois précédent utilisé dans le calcul
     
+    @Indexed
     private StatutDeclaration statut; // BROUILLON, VALIDEE, DEPOSEE
     private LocalDate dateDepot; // Date de dépôt à la DGI
     
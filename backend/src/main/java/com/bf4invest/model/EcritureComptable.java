@@ -5,6 +5,9 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDate;
@@ -12,6 +15,11 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Document(collection = "ecritures_comptables")
+@CompoundIndexes({
+        @CompoundIndex(name = "exerciceId_dateEcriture", def = "{'exerciceId': 1, 'dateEcriture': 1}"),
+        @CompoundIndex(name = "pieceJustificative", def = "{'pieceJustificativeType': 1, 'pieceJustificativeId': 1}"),
+        @CompoundIndex(name = "lignes_compteCode_pointage", def = "{'lignes.compteCode': 1, 'pointage': 1}")
+})
 @Data
 @Builder
 @NoArgsConstructor
@@ -20,7 +28,9 @@ public class EcritureComptable {
     @Id
     private String id;
     
+    @Indexed
     private LocalDate dateEcriture;
+    @Indexed
     private String journal; // VT (ventes), AC (achats), OD (opérations diverses), BQ (banque)
     private String numeroPiece; // Numéro de pièce comptable
     private String libelle; // Libellé de l'écriture
@@ -5,12 +5,19 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 @Document(collection = "exercices_comptables")
+@CompoundIndexes({
+        @CompoundIndex(name = "statut_dateDebut", def = "{'statut': 1, 'dateDebut': -1}"),
+        @CompoundIndex(name = "dateDebut_dateFin", def = "{'dateDebut': 1, 'dateFin': 1}")
+})
 @Data
 @Builder
 @NoArgsConstructor
@@ -19,6 +26,7 @@ public class ExerciceComptable {
     @Id
     private String id;
     
+    @Indexed
     private String code; // Ex: "2024", "2024-2025"
     private LocalDate dateDebut;
     private LocalDate dateFin;
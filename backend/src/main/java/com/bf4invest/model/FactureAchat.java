@@ -5,6 +5,8 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDate;
@@ -12,6 +14,7 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Document(collection = "factures_achats")
+@CompoundIndex(name = "fournisseurId_estAvoir", def = "{'fournisseurId': 1, 'estAvoir': 1}")
 @Data
 @Builder
 @NoArgsConstructor
@@ -20,12 +23,18 @@ public class FactureAchat {
     @Id
     private String id;
     
+    @Indexed
     private String numeroFactureAchat; // Format: FA-YYYY-NNN (notre numéro interne)
+    @Indexed
     private String numeroFactureFournisseur; // Numéro de facture du fournisseur (référence externe)
+    @Indexed
     private LocalDate dateFacture;
+    @Indexed
     private LocalDate dateEcheance; // Calculé: dateFacture + 2 mois
     
+    @Indexed
     private String bandeCommandeId; // Optionnel: lié à une BC
+    @Indexed
     private String bcReference; // Référence BC (colonne AFFECTATION de l'Excel)
     private String fournisseurId;
     
@@ -66,8 +75,10 @@ public class FactureAchat {
     private Double tvaFactureYcRg; // TVA facture incluant RG (colonne AA)
     private Double tvaPaye; // TVA payée (colonne AB)
     private Double bilan; // Bilan HT (colonne AC)
+    private Integer calcSchemaVersion; // Version des formules ayant produit les champs calculés ci-dessus
     
     private String modePaiement; // virement, cheque, LCN, compensation
+    @Indexed
     private String etatPaiement; // regle, partiellement_regle, non_regle
     
     private List<Paiement> paiements;
@@ -79,15 +90,19 @@ public class FactureAchat {
     // ========== GESTION DES AVOIRS ==========
     
     // Type de facture : "NORMALE" ou "AVOIR"
+    @Indexed
     private String typeFacture; // Défaut: "NORMALE"
     
     // Flag pour indiquer si c'est un avoir
+    @Indexed
     private Boolean estAvoir; // Défaut: false
     
     // Référence à la facture d'origine si c'est un avoir
+    @Indexed
     private String factureOrigineId; // ID de la facture achat annulée
     
     // Numéro de la facture d'origine (pour référence rapide sans jointure)
+    @Indexed
     private String numeroFactureOrigine;
     
     // Liste des IDs des factures liées à cet avoir (si avoir partiel sur plusieurs factures)
@@ -96,6 +111,7 @@ public class FactureAchat {
     // ==========================================
     
     // Référence au fichier de facture fournisseur (image ou PDF)
+    @Indexed
     private String fichierFactureId;      // ID GridFS du fichier facture
     private String fichierFactureNom;     // Nom original du fichier
     private String fichierFactureType;    // MIME type (image/jpeg, image/png, application/pdf)
@@ -6,6 +6,9 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.Transient;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDate;
@@ -13,6 +16,10 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Document(collection = "factures_ventes")
+@CompoundIndexes({
+        @CompoundIndex(name = "clientId_estAvoir", def = "{'clientId': 1, 'estAvoir': 1}"),
+        @CompoundIndex(name = "bandeCommandeId_clientId", def = "{'bandeCommandeId': 1, 'clientId': 1}")
+})
 @Data
 @Builder
 @NoArgsConstructor
@@ -21,11 +28,15 @@ public class FactureVente {
     @Id
     private String id;
     
+    @Indexed
     private String numeroFactureVente; // Format: FV-YYYY-NNN
+    @Indexed
     private LocalDate dateFacture;
+    @Indexed
     private LocalDate dateEcheance; // Calculé selon délai paramétrable (défaut 30j)
     
     private String bandeCommandeId; // Optionnel: lié à une BC
+    @Indexed
     private String bcReference; // Référence BC (colonne AFFECTATION de l'Excel)
     private String clientId;
 
@@ -75,8 +86,10 @@ public class FactureVente {
     private Double tvaFactureYcRg; // TVA facture incluant RG (colonne AA)
     private Double tvaPaye; // TVA payée (colonne AB)
     private Double bilan; // Bilan HT (colonne AC)
+    private Integer calcSchemaVersion; // Version des formules ayant produit les champs calculés ci-dessus
     
     private String modePaiement; // virement, cheque, LCN, compensation
+    @Indexed
     private String etatPaiement; // regle, partiellement_regle, non_regle
     
     private List<Paiement> paiements;
@@ -88,15 +101,19 @@ public class FactureVente {
     // ========== GESTION DES AVOIRS ==========
     
     // Type de facture : "NORMALE" ou "AVOIR"
+    @Indexed
     private String typeFacture; // Défaut: "NORMALE"
     
     // Flag pour indiquer si c'est un avoir
+    @Indexed
     private Boolean estAvoir; // Défaut: false
     
     // Référence à la facture d'origine si c'est un avoir
+    @Indexed
     private String factureOrigineId; // ID de la facture vente annulée
     
     // Numéro de la facture d'origine (pour référence rapide sans jointure)
+    @Indexed
     private String numeroFactureOrigine;
     
     // Liste des IDs des factures liées à cet avoir (si avoir partiel sur plusieurs factures)
@@ -5,11 +5,18 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
 
 @Document(collection = "historique_solde")
+@CompoundIndexes({
+        @CompoundIndex(name = "partenaire_date", def = "{'partenaireId': 1, 'partenaireType': 1, 'date': -1}"),
+        @CompoundIndex(name = "type_date", def = "{'type': 1, 'date': -1}")
+})
 @Data
 @Builder
 @NoArgsConstructor
@@ -38,6 +45,7 @@ public class HistoriqueSolde {
     private String referenceId; // ID de la facture ou paiement source
     private String referenceNumero; // Numéro de la facture ou référence du paiement
     
+    @Indexed
     private LocalDateTime date;
     private String description; // Description optionnelle de la transaction
 }
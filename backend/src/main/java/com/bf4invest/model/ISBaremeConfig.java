@@ -5,6 +5,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
@@ -27,5 +28,6 @@ public class ISBaremeConfig {
     private Double cotisationMinimaleMinimum;
 
     private LocalDateTime createdAt;
+    @Indexed
     private LocalDateTime updatedAt;
 }
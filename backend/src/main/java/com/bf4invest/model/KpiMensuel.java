@@ -0,0 +1,96 @@
+package com.bf4invest.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Agrégat mensuel des indicateurs du tableau de bord (une ligne par mois).
+ * Maintenu à chaque écriture de facture, BC ou paiement : le dashboard additionne
+ * les mois de la période au lieu de relire tout l'historique.
+ */
+@Document(collection = "kpi_mensuels")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class KpiMensuel {
+    /** Clé technique: periode ("yyyy-MM") ou SANS_DATE pour les documents non datés. */
+    public static final String SANS_DATE = "SANS_DATE";
+
+    @Id
+    private String id; // = periode
+
+    private String periode; // "yyyy-MM" ou SANS_DATE
+    private Integer annee;
+    private Integer mois;
+
+    // ===== Factures vente =====
+    @Builder.Default
+    private double caHT = 0.0; // Hors avoirs, montants positifs
+    @Builder.Default
+    private double caTTC = 0.0;
+    @Builder.Default
+    private double totalHTFactures = 0.0; // Somme signée (avoirs inclus) pour la courbe CA mensuel
+    @Builder.Default
+    private double tvaCollectee = 0.0; // Avoirs inclus (TVA négative)
+    @Builder.Default
+    private double avoirsVenteHT = 0.0; // Valeur absolue
+    @Builder.Default
+    private double avoirsVenteTTC = 0.0;
+    @Builder.Default
+    private double encoursClientsTTC = 0.0; // Reste à encaisser (hors avoirs, non réglées)
+    @Builder.Default
+    private long nbFacturesVente = 0; // Avoirs inclus
+    @Builder.Default
+    private long nbAvoirsVente = 0;
+
+    // ===== Factures achat =====
+    @Builder.Default
+    private double achatsHT = 0.0; // Hors avoirs, montants positifs
+    @Builder.Default
+    private double achatsTTC = 0.0;
+    @Builder.Default
+    private double tvaDeductible = 0.0; // Avoirs inclus (TVA négative)
+    @Builder.Default
+    private double avoirsAchatHT = 0.0; // Valeur absolue
+    @Builder.Default
+    private double avoirsAchatTTC = 0.0;
+    @Builder.Default
+    private double encoursFournisseursTTC = 0.0; // Reste à payer (hors avoirs, non réglées)
+    @Builder.Default
+    private long nbFacturesAchat = 0; // Avoirs inclus
+    @Builder.Default
+    private long nbAvoirsAchat = 0;
+
+    // ===== Bandes de commande (mois = dateBC) =====
+    @Builder.Default
+    private double bcTotalVenteHT = 0.0;
+    @Builder.Default
+    private double bcTotalAchatHT = 0.0;
+    @Builder.Default
+    private long nbBCs = 0;
+    @Builder.Default
+    private long nbBCsNonFacturees = 0; // BC sans aucune facture vente rattachée
+
+    // ===== Répartition par partenaire (TTC signé, avoirs inclus) =====
+    @Builder.Default
+    private Map<String, Double> ttcParClient = new HashMap<>();
+    @Builder.Default
+    private Map<String, Double> ttcParFournisseur = new HashMap<>();
+
+    private LocalDateTime updatedAt;
+
+    /**
+     * Incrémenté au début de chaque recalcul du mois : un recalcul n'enregistre son résultat que si aucun autre n'a
+     * commencé depuis (sinon il a pu lire des données plus anciennes que le recalcul suivant).
+     */
+    private Long revision;
+}
@@ -5,11 +5,14 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
 
 @Document(collection = "notifications")
+@CompoundIndex(name = "read_createdAt", def = "{'read': 1, 'createdAt': -1}")
 @Data
 @Builder
 @NoArgsConstructor
@@ -18,6 +21,7 @@ public class Notification {
     @Id
     private String id;
     
+    @Indexed
     private String type; // FA_NON_REGLEE, ALERTE_TVA, etc.
     private String referenceId; // ID de la facture, BC, etc.
     
@@ -27,6 +31,7 @@ public class Notification {
     
     private boolean read;
     
+    @Indexed
     private LocalDateTime createdAt;
 }
 
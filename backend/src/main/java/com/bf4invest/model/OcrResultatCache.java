@@ -0,0 +1,35 @@
+package com.bf4invest.model;
+
+import com.bf4invest.dto.OcrExtractResult;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Résultat OCR déjà obtenu pour un fichier. L'id est la clé {@code sha256|providers|versionPrompt} : un changement
+ * de provider, de modèle ou de prompt produit une nouvelle clé. Les entrées expirent 90 jours après leur création.
+ */
+@Document(collection = "ocr_cache")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OcrResultatCache {
+    @Id
+    private String id;
+
+    private String sha256;            // Empreinte du contenu du fichier
+    private String providers;         // Ex: "openrouter:openrouter/free>gemini:gemini-2.0-flash-001"
+    private String versionPrompt;
+    private OcrExtractResult resultat;
+    private long dureeMs;             // Durée de l'appel OCR d'origine (latence évitée à chaque réutilisation)
+
+    @Indexed(expireAfter = "90d")
+    private LocalDateTime createdAt;
+}
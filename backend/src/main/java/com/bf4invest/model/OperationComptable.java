@@ -5,12 +5,19 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 @Document(collection = "operations_comptables")
+@CompoundIndexes({
+        @CompoundIndex(name = "numeroFacture_typeMouvement", def = "{'numeroFacture': 1, 'typeMouvement': 1}"),
+        @CompoundIndex(name = "annee_mois", def = "{'annee': 1, 'mois': 1}")
+})
 @Data
 @Builder
 @NoArgsConstructor
@@ -20,16 +27,20 @@ public class OperationComptable {
     private String id;
     
     // Identification
+    @Indexed
     private String numeroBc;           // AFFECTATION/N°BC
     private String releveBancaire;     // RELEVE BQ (BM, etc.)
     
     // Partenaire
+    @Indexed
     private String contrePartie;       // CONTRE PARTIE
     private String nomClientFrs;       // NOM CLIENT/FRS
+    @Indexed
     private TypeOperation typeOperation; // C, F, IS, TVA, CNSS, FB, LOY
     
     // Opération
     private String sourcePayement;     // BM, Caisse, COMPENSATION
+    @Indexed
     private LocalDate dateOperation;   // DATE
     private TypeMouvement typeMouvement; // Facture ou Paiement
     private String numeroFacture;      // N° FACTURE
@@ -5,6 +5,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDate;
@@ -20,9 +21,12 @@ public class OrdreVirement {
     @Id
     private String id;
     
+    @Indexed
     private String numeroOV;           // Ex: OV-2025-001
+    @Indexed
     private LocalDate dateOV;           // Date de création
     private Double montant;             // Montant total
+    @Indexed
     private String beneficiaireId;      // ID du fournisseur
     private String nomBeneficiaire;     // Nom du fournisseur (dénormalisé)
     private String banqueBeneficiaire;  // Banque du bénéficiaire
@@ -30,7 +34,9 @@ public class OrdreVirement {
     private String motif;               // Libellé/Motif
     private List<String> facturesIds;   // IDs des factures concernées
     private String banqueEmettrice;     // Banque émettrice
+    @Indexed
     private LocalDate dateExecution;    // Date d'exécution prévue
+    @Indexed
     private String statut;              // EN_ATTENTE, EXECUTE, ANNULE
     private String type;                // NORMAL, EXPRESS
     private List<FactureMontant> facturesMontants; // Liste des factures avec montants partiels
@@ -5,12 +5,19 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 @Document(collection = "paiements")
+@CompoundIndexes({
+        @CompoundIndex(name = "factureAchatId_date", def = "{'factureAchatId': 1, 'date': 1}"),
+        @CompoundIndex(name = "factureVenteId_date", def = "{'factureVenteId': 1, 'date': 1}")
+})
 @Data
 @Builder
 @NoArgsConstructor
@@ -33,6 +40,7 @@ public class Paiement {
     // Colonnes supplémentaires pour les calculs
     private String colD; // Utilisé pour les filtres (ex: "CCA")
     
+    @Indexed
     private LocalDate date;
     private Double montant; // Montant TTC brut (colonne L)
     private String mode; // virement, cheque, LCN, compensation, especes
@@ -5,6 +5,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
@@ -45,6 +46,7 @@ public class ParametresCalcul {
     private String codeEExclu3;
     
     private LocalDateTime createdAt;
+    @Indexed
     private LocalDateTime updatedAt;
 }
 
@@ -5,11 +5,14 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
 
 @Document(collection = "payment_modes")
+@CompoundIndex(name = "active_name", def = "{'active': 1, 'name': 1}")
 @Data
 @Builder
 @NoArgsConstructor
@@ -18,6 +21,7 @@ public class PaymentMode {
     @Id
     private String id;
     
+    @Indexed
     private String name;
     private boolean active;
     
@@ -1,15 +1,19 @@
 package com.bf4invest.model;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
 
 @Document(collection = "produits")
+@CompoundIndex(name = "refArticle_designation_unite", def = "{'refArticle': 1, 'designation': 1, 'unite': 1}")
 @Data
 @Builder
 @NoArgsConstructor
@@ -43,15 +47,22 @@ public class Product {
     
     private LocalDateTime derniereMiseAJourPrix; // Date de dernière mise à jour des prix pondérés
     
+    @Indexed
     private String fournisseurId; // Référence au fournisseur
     
     private Double quantiteEnStock; // Quantité en stock (défaut: 0)
     
-    private String imageBase64; // Image du produit en base64 (optionnel)
+    // Image reçue en base64 à la création / modification (chaîne vide = suppression) : stockée dans GridFS
+    // par ProductImageService, jamais persistée dans le document ni renvoyée
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
+    private String imageBase64;
+    private String imageId; // Image originale (GridFS)
+    private String imageMiniatureId; // Miniature générée à l'envoi (GridFS), null si non générable
     private String imageContentType; // Type MIME de l'image (image/png, image/jpeg, etc.)
     
     private LocalDateTime createdAt;
-    private LocalDateTime updatedAt;
+    @Indexed
+    private LocalDateTime updatedAt; // Indexé : détection des changements du catalogue vitrine
 }
 
 
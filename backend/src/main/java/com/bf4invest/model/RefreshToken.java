@@ -25,6 +25,7 @@ public class RefreshToken {
     @Indexed
     private String userId;
     
+    @Indexed
     private LocalDateTime expiresAt;
     private LocalDateTime createdAt;
     private boolean revoked;
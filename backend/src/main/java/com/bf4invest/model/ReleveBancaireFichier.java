@@ -5,11 +5,14 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
 
 @Document(collection = "releves_bancaires_fichiers")
+@CompoundIndex(name = "annee_mois", def = "{'annee': 1, 'mois': 1}")
 @Data
 @Builder
 @NoArgsConstructor
@@ -18,6 +21,7 @@ public class ReleveBancaireFichier {
     @Id
     private String id;
     
+    @Indexed
     private String fichierId;         // ID GridFS du fichier PDF
     private String nomFichier;        // Nom original du fichier
     private String contentType;       // MIME type (application/pdf)
@@ -0,0 +1,38 @@
+package com.bf4invest.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Sauvegarde NDJSON générée (complète ou incrémentale) : sert de point de départ (filigrane) à la suivante
+ * et permet de vérifier la chaîne lors d'une restauration.
+ */
+@Document(collection = "sauvegardes")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class Sauvegarde {
+
+    public enum Type { COMPLETE, INCREMENTALE }
+
+    @Id
+    private String id;
+
+    private Type type;
+    private String parentId;          // Sauvegarde précédente de la chaîne (null pour une complète)
+    private LocalDateTime depuis;     // Documents modifiés à partir de (incrémentale uniquement)
+    @Indexed
+    private LocalDateTime jusqua;     // Filigrane : début de la lecture des données
+    private Map<String, Long> documents; // Documents exportés par collection
+    private long suppressions;
+    private LocalDateTime createdAt;
+}
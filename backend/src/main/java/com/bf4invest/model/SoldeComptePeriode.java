@@ -0,0 +1,48 @@
+package com.bf4invest.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Totaux des lignes d'écritures par compte, mois et exercice (balance matérialisée).
+ * Alimenté par $inc à chaque écriture générée / lettrée ; reconstructible depuis le journal.
+ */
+@Document(collection = "soldes_comptes_periodes")
+@CompoundIndex(name = "periode_exercice", def = "{'periode': 1, 'exerciceId': 1}")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SoldeComptePeriode {
+    public static final String SANS_DATE = "SANS_DATE";
+    public static final String SANS_EXERCICE = "SANS_EXERCICE";
+
+    @Id
+    private String id; // exerciceId|compteCode|periode
+
+    private String compteCode;
+    private String exerciceId; // SANS_EXERCICE si l'écriture n'a pas d'exercice
+    private String periode; // yyyy-MM ou SANS_DATE
+
+    @Builder.Default
+    private Double debit = 0.0;
+    @Builder.Default
+    private Double credit = 0.0;
+    @Builder.Default
+    private Long nbLignes = 0L;
+
+    // Part des montants provenant d'écritures lettrées
+    @Builder.Default
+    private Double debitLettre = 0.0;
+    @Builder.Default
+    private Double creditLettre = 0.0;
+
+    private LocalDateTime updatedAt;
+}
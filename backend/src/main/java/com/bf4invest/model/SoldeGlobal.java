@@ -23,6 +23,7 @@ public class SoldeGlobal {
     private Double soldeActuel; // Solde calculé en temps réel (solde banque)
     private Double soldeActuelProjete; // Solde projeté si tous les clients ont payé et tous les fournisseurs ont été payés
     private LocalDate dateDebut; // Date de début de la comptabilité
+    private Long version; // Incrémenté à chaque mouvement ($inc), contrôle optimiste des réparations
     
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
@@ -5,6 +5,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDate;
@@ -20,7 +21,9 @@ public class Supplier {
     @Id
     private String id;
     
+    @Indexed
     private String nom;
+    @Indexed
     private String ice;
     private String referenceFournisseur; // Référence fournisseur (3 premières lettres du nom par défaut)
     private String contact; // Contact principal
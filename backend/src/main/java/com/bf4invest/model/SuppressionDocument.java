@@ -0,0 +1,30 @@
+package com.bf4invest.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Trace d'une suppression (tombstone) reprise par la sauvegarde incrémentale suivante.
+ */
+@Document(collection = "suppressions_documents")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SuppressionDocument {
+    @Id
+    private String id;
+
+    private String collection;        // Collection du document supprimé
+    private Object documentId;        // _id du document supprimé (type d'origine conservé)
+    private boolean purge;            // Collection entièrement vidée (documentId null)
+    @Indexed
+    private LocalDateTime supprimeLe;
+}
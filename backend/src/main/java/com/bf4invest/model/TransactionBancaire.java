@@ -5,12 +5,15 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 @Document(collection = "transactions_bancaires")
+@CompoundIndex(name = "mois_annee_mapped", def = "{'mois': 1, 'annee': 1, 'mapped': 1}")
 @Data
 @Builder
 @NoArgsConstructor
@@ -20,6 +23,7 @@ public class TransactionBancaire {
     private String id;
     
     // Dates du relevé bancaire
+    @Indexed
     private LocalDate dateOperation; // Colonne "Date" du relevé
     private LocalDate dateValeur; // Colonne "Valeur" du relevé (optionnelle)
     
@@ -29,13 +33,21 @@ public class TransactionBancaire {
     private Double credit; // Colonne "Crédit"
     private String reference; // Numéro de chèque, référence virement, etc.
     
+    // Empreinte de la ligne du relevé (mois, date, montants, libellé, référence, rang parmi les lignes
+    // identiques) : rend le ré-import idempotent. Absente sur les transactions importées avant son ajout.
+    @Indexed(unique = true, sparse = true)
+    private String empreinte;
+    
     // Liens avec les factures et paiements
+    @Indexed
     private String factureVenteId; // Lien optionnel vers une facture vente
+    @Indexed
     private String factureAchatId; // Lien optionnel vers une facture achat
     private String paiementId; // Lien optionnel vers un paiement créé depuis cette transaction
     private String compteBancaireCode; // Compte bancaire comptable (ex: 5141)
     
     // Statut de mapping
+    @Indexed
     private Boolean mapped; // Si la transaction a été mappée à une facture/paiement
     
     // Métadonnées
@@ -5,6 +5,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
@@ -24,8 +25,10 @@ public class User implements UserDetails {
     private String id;
     
     private String name;
+    @Indexed
     private String email;
     private String password; // Hashé avec BCrypt
+    @Indexed
     private Role role; // ADMIN, COMMERCIAL, COMPTABLE, LECTEUR
     
     private boolean enabled;
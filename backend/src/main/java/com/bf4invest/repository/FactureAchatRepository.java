@@ -15,6 +15,7 @@ public interface FactureAchatRepository extends MongoRepository<FactureAchat, St
     Optional<FactureAchat> findByFichierFactureId(String fichierFactureId);
     List<FactureAchat> findByFournisseurId(String fournisseurId);
     List<FactureAchat> findByEtatPaiement(String etat);
+    List<FactureAchat> findByEtatPaiementNot(String etat);
     List<FactureAchat> findByDateEcheanceLessThanEqual(LocalDate date);
     List<FactureAchat> findByDateFactureLessThanEqual(LocalDate date);
     List<FactureAchat> findByBandeCommandeId(String bandeCommandeId);
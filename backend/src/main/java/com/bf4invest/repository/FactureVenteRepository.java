@@ -13,6 +13,7 @@ public interface FactureVenteRepository extends MongoRepository<FactureVente, St
     Optional<FactureVente> findByNumeroFactureVente(String numero);
     List<FactureVente> findByClientId(String clientId);
     List<FactureVente> findByEtatPaiement(String etat);
+    List<FactureVente> findByEtatPaiementNot(String etat);
     List<FactureVente> findByDateEcheanceLessThanEqual(LocalDate date);
     List<FactureVente> findByBandeCommandeId(String bandeCommandeId);
 
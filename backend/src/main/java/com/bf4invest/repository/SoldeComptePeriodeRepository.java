@@ -0,0 +1,9 @@
+package com.bf4invest.repository;
+
+import com.bf4invest.model.SoldeComptePeriode;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface SoldeComptePeriodeRepository extends MongoRepository<SoldeComptePeriode, String> {
+}
@@ -23,6 +23,7 @@ import java.util.Collections;
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
     
     private final JwtUtil jwtUtil;
+    private final VerifiedTokenCache verifiedTokenCache;
     
     @Override
     protected void doFilterInternal(
@@ -52,20 +53,23 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             return;
         }
         
+        // Already authenticated: nothing to verify
+        if (SecurityContextHolder.getContext().getAuthentication() != null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        
         try {
-            final String userEmail = jwtUtil.extractUsername(jwt);
-            final String role = jwtUtil.extractClaim(jwt, claims -> claims.get("role", String.class));
-            
-            if (userEmail != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                if (jwtUtil.validateToken(jwt, userEmail)) {
-                    UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-                            userEmail,
-                            null,
-                            Collections.singletonList(new SimpleGrantedAuthority("ROLE_" + role))
-                    );
-                    authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                    SecurityContextHolder.getContext().setAuthentication(authToken);
-                }
+            // One verification (signature + expiry) per token, cached until the token expires
+            JwtUtil.JetonVerifie jeton = verifiedTokenCache.get(jwt, jwtUtil::verifier);
+            if (jeton.username() != null) {
+                UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
+                        jeton.username(),
+                        null,
+                        Collections.singletonList(new SimpleGrantedAuthority("ROLE_" + jeton.role()))
+                );
+                authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                SecurityContextHolder.getContext().setAuthentication(authToken);
             }
         } catch (Exception e) {
             logger.error("Cannot set user authentication: {}", e);
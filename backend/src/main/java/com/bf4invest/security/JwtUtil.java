@@ -1,6 +1,8 @@
 package com.bf4invest.security;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.MalformedJwtException;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
 import jakarta.annotation.PostConstruct;
@@ -33,6 +35,17 @@ public class JwtUtil {
     
     private final Environment environment;
     
+    // Construits une seule fois : la dérivation de la clé HMAC et du parser ne se refait plus à chaque appel
+    private volatile SecretKey signingKey;
+    private volatile JwtParser parser;
+    
+    /**
+     * Contenu d'un token dont la signature et l'expiration ont été vérifiées.
+     *
+     * @param expiration date d'expiration ({@code exp}) en millisecondes epoch
+     */
+    public record JetonVerifie(String username, String role, String type, long expiration) {}
+    
     public JwtUtil(Environment environment) {
         this.environment = environment;
     }
@@ -74,7 +87,38 @@ public class JwtUtil {
     }
     
     private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        SecretKey key = signingKey;
+        if (key == null) {
+            // Secret absent ou trop court (développement uniquement) : même erreur qu'avant, à chaque utilisation
+            key = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+            signingKey = key;
+        }
+        return key;
+    }
+    
+    private JwtParser getParser() {
+        JwtParser courant = parser;
+        if (courant == null) {
+            courant = Jwts.parser().verifyWith(getSigningKey()).build();
+            parser = courant;
+        }
+        return courant;
+    }
+    
+    /**
+     * Vérifie le token (signature et expiration) en une seule lecture et en extrait les informations
+     * d'authentification.
+     *
+     * @throws io.jsonwebtoken.JwtException si le token est invalide, altéré ou expiré
+     */
+    public JetonVerifie verifier(String token) {
+        Claims claims = extractAllClaims(token);
+        Date exp = claims.getExpiration();
+        if (exp == null) {
+            throw new MalformedJwtException("Token sans date d'expiration");
+        }
+        return new JetonVerifie(claims.getSubject(), claims.get("role", String.class),
+                claims.get("type", String.class), exp.getTime());
     }
     
     public String extractUsername(String token) {
@@ -91,9 +135,7 @@ public class JwtUtil {
     }
     
     private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
+        return getParser()
                 .parseSignedClaims(token)
                 .getPayload();
     }
@@ -0,0 +1,108 @@
+package com.bf4invest.security;
+
+import io.github.bucket4j.Bucket;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Rate limits the public catalogue (GET /public/produits...) per client IP: 60 requests per minute,
+ * bursts of 60. Product images are not limited (immutable, served from the browser/CDN cache).
+ * <p>
+ * The client IP is the connection address; X-Forwarded-For is only read when the connection comes from one of
+ * {@code app.public.rate-limit.trusted-proxies}, and then its last entry not added by a trusted proxy is used
+ * (earlier entries are set by the client and can be spoofed).
+ */
+@Component
+@Order(1)
+public class PublicRateLimitFilter extends OncePerRequestFilter {
+
+    private static final String CATALOGUE_PATH = "/public/produits";
+    private static final int MAX_REQUESTS = 60;
+    private static final Duration WINDOW = Duration.ofMinutes(1);
+    // Unauthenticated endpoint: bound the number of tracked IPs, forgetting the least recently seen first
+    // (an evicted client gets a full bucket again, like one idle for a whole window)
+    private static final int MAX_CLIENTS = 10_000;
+
+    @Value("${app.public.rate-limit.trusted-proxies:}")
+    private String trustedProxiesConfig;
+
+    private Set<String> trustedProxies = Set.of();
+
+    private final Map<String, Bucket> buckets = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Bucket> eldest) {
+                    return size() > MAX_CLIENTS;
+                }
+            });
+
+    @PostConstruct
+    void init() {
+        trustedProxies = Arrays.stream(trustedProxiesConfig.split(","))
+                .map(String::trim)
+                .filter(ip -> !ip.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    @Override
+    protected void doFilterInternal(
+            @NonNull HttpServletRequest request,
+            @NonNull HttpServletResponse response,
+            @NonNull FilterChain filterChain
+    ) throws ServletException, IOException {
+        String uri = request.getRequestURI();
+        if (!uri.contains(CATALOGUE_PATH) || !"GET".equalsIgnoreCase(request.getMethod())) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        String clientKey = resolveClientKey(request);
+        Bucket bucket = buckets.computeIfAbsent(clientKey, k -> Bucket.builder()
+                .addLimit(limit -> limit.capacity(MAX_REQUESTS).refillGreedy(MAX_REQUESTS, WINDOW))
+                .build());
+
+        if (!bucket.tryConsume(1)) {
+            response.setStatus(429);
+            response.setHeader("Retry-After", String.valueOf(WINDOW.toSeconds()));
+            response.setContentType("application/json;charset=UTF-8");
+            response.getWriter().write("{\"error\":\"Trop de requêtes. Réessayez dans une minute.\"}");
+            return;
+        }
+
+        filterChain.doFilter(request, response);
+    }
+
+    String resolveClientKey(HttpServletRequest request) {
+        String remoteAddr = request.getRemoteAddr();
+        String xForwardedFor = request.getHeader("X-Forwarded-For");
+        if (!trustedProxies.contains(remoteAddr) || xForwardedFor == null || xForwardedFor.isBlank()) {
+            return remoteAddr;
+        }
+        // Walk back from the proxy closest to us: the first address not belonging to a trusted proxy is the client
+        List<String> hops = Arrays.stream(xForwardedFor.split(",")).map(String::trim).filter(h -> !h.isEmpty()).toList();
+        for (int i = hops.size() - 1; i >= 0; i--) {
+            if (!trustedProxies.contains(hops.get(i))) {
+                return hops.get(i);
+            }
+        }
+        return hops.isEmpty() ? remoteAddr : hops.get(0);
+    }
+}
@@ -0,0 +1,73 @@
+package com.bf4invest.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Jetons d'accès déjà vérifiés par {@link JwtUtil}, indexés par leur SHA-256 (les jetons bruts ne sont pas conservés).
+ * Une entrée trouvée évite la vérification de signature et la lecture des claims ; elle n'est jamais servie après
+ * l'{@code exp} du jeton. Borné à {@code jwt.cache.max-entries} : les entrées expirées sont purgées chaque minute et
+ * quand le cache est plein ; s'il le reste, les nouveaux jetons sont vérifiés sans être mis en cache.
+ */
+@Component
+public class VerifiedTokenCache {
+
+    @Value("${jwt.cache.max-entries:10000}")
+    private int maxEntries;
+
+    private final Map<String, JwtUtil.JetonVerifie> tokens = new ConcurrentHashMap<>();
+
+    /**
+     * Résultat de vérification en cache, sinon exécute {@code verification} (qui lève une exception pour un jeton
+     * invalide ; les échecs ne sont jamais mis en cache).
+     */
+    public JwtUtil.JetonVerifie get(String token, Function<String, JwtUtil.JetonVerifie> verification) {
+        String key = hash(token);
+        long now = System.currentTimeMillis();
+        JwtUtil.JetonVerifie cached = tokens.get(key);
+        if (cached != null) {
+            if (cached.expiration() > now) {
+                return cached;
+            }
+            tokens.remove(key, cached);
+        }
+        JwtUtil.JetonVerifie verified = verification.apply(token);
+        if (verified.expiration() > now) {
+            if (tokens.size() >= maxEntries) {
+                purgeExpired();
+            }
+            if (tokens.size() < maxEntries) {
+                tokens.put(key, verified);
+            }
+        }
+        return verified;
+    }
+
+    @Scheduled(fixedDelay = 60 * 1000)
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        tokens.values().removeIf(t -> t.expiration() <= now);
+    }
+
+    int size() {
+        return tokens.size();
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponible", e);
+        }
+    }
+}
@@ -1,24 +1,55 @@
 package com.bf4invest.service;
 
+import com.bf4invest.dto.PageResponse;
 import com.bf4invest.model.AuditLog;
-import com.bf4invest.model.User;
-import com.bf4invest.repository.AuditLogRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.time.temporal.Temporal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class AuditService {
-    
-    private final AuditLogRepository auditLogRepository;
-    
+
+    private final EcrivainAuditLogs ecrivainAuditLogs;
+    private final MongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper;
+
+    /** Pour une modification d'objet, ne conserve que les champs qui ont changé (anciennes et nouvelles valeurs). */
+    @Value("${app.audit.diff-mode:true}")
+    private boolean modeDiff;
+
     public void logAction(String action, String entityType, String entityId, Object oldValue, Object newValue) {
+        // Utilisateur lu ici : l'écriture se fait ensuite sur un autre thread
         String username = SecurityContextHolder.getContext().getAuthentication() != null ?
                 SecurityContextHolder.getContext().getAuthentication().getName() : "SYSTEM";
-        
+
+        if (modeDiff && oldValue != null && newValue != null) {
+            Map<String, Object>[] difference = difference(oldValue, newValue);
+            if (difference != null) {
+                oldValue = difference[0];
+                newValue = difference[1];
+            }
+        }
+
         AuditLog log = AuditLog.builder()
                 .userId(username)
                 .userName(username)
@@ -29,23 +60,106 @@ public class AuditService {
                 .newValue(newValue)
                 .timestamp(LocalDateTime.now())
                 .build();
-        
-        auditLogRepository.save(log);
+
+        ecrivainAuditLogs.ajouter(log);
     }
-    
+
     public void logCreate(String entityType, String entityId, Object newValue) {
         logAction("CREATE", entityType, entityId, null, newValue);
     }
-    
+
     public void logUpdate(String entityType, String entityId, Object oldValue, Object newValue) {
         logAction("UPDATE", entityType, entityId, oldValue, newValue);
     }
-    
+
     public void logDelete(String entityType, String entityId, Object oldValue) {
         logAction("DELETE", entityType, entityId, oldValue, null);
     }
-}
 
+    /**
+     * Journal filtré, du plus récent au plus ancien. Les entrées encore en file d'attente n'apparaissent qu'après
+     * leur écriture (au plus {@code app.audit.flush-interval-ms}).
+     */
+    public List<AuditLog> rechercher(String entityType, String entityId, String userId,
+                                     LocalDateTime from, LocalDateTime to) {
+        return mongoTemplate.find(new Query(criteres(entityType, entityId, userId, from, to)).with(tri()), AuditLog.class);
+    }
+
+    /** Liste paginée du journal : mêmes filtres que {@link #rechercher}, exécutés par MongoDB. */
+    public PageResponse<AuditLog> findPage(String entityType, String entityId, String userId,
+                                           LocalDateTime from, LocalDateTime to, int page, int size) {
+        Criteria criteria = criteres(entityType, entityId, userId, from, to);
+        Pageable pageable = PageResponse.pageDemandee(page, size, tri());
+
+        List<AuditLog> logs = mongoTemplate.find(new Query(criteria).with(pageable), AuditLog.class);
+        long total = mongoTemplate.count(new Query(criteria), AuditLog.class);
+        return PageResponse.of(logs, pageable, total);
+    }
+
+    private static Sort tri() {
+        return Sort.by(Sort.Direction.DESC, "timestamp").and(Sort.by(Sort.Direction.DESC, "id"));
+    }
 
+    private static Criteria criteres(String entityType, String entityId, String userId,
+                                     LocalDateTime from, LocalDateTime to) {
+        List<Criteria> filtres = new ArrayList<>();
+        if (entityType != null) {
+            filtres.add(Criteria.where("entityType").is(entityType));
+        }
+        if (entityId != null) {
+            filtres.add(Criteria.where("entityId").is(entityId));
+        }
+        if (userId != null) {
+            filtres.add(Criteria.where("userId").is(userId));
+        }
+        if (from != null || to != null) {
+            Criteria timestamp = Criteria.where("timestamp");
+            if (from != null) {
+                timestamp.gte(from);
+            }
+            if (to != null) {
+                timestamp.lte(to);
+            }
+            filtres.add(timestamp);
+        }
+        return filtres.isEmpty() ? new Criteria() : new Criteria().andOperator(filtres);
+    }
 
+    /**
+     * Champs modifiés entre deux objets (premier niveau) : {anciennes valeurs, nouvelles valeurs}.
+     * Null pour les valeurs simples (libellés, montants...) ou non convertibles, conservées telles quelles.
+     */
+    @SuppressWarnings("unchecked")
+    Map<String, Object>[] difference(Object ancien, Object nouveau) {
+        if (estSimple(ancien) || estSimple(nouveau)) {
+            return null;
+        }
+        Map<String, Object> avant;
+        Map<String, Object> apres;
+        try {
+            avant = objectMapper.convertValue(ancien, Map.class);
+            apres = objectMapper.convertValue(nouveau, Map.class);
+        } catch (IllegalArgumentException e) {
+            log.debug("Différence d'audit impossible ({}), valeurs complètes conservées", e.getMessage());
+            return null;
+        }
+        Map<String, Object> anciennes = new LinkedHashMap<>();
+        Map<String, Object> nouvelles = new LinkedHashMap<>();
+        Set<String> champs = new LinkedHashSet<>(avant.keySet());
+        champs.addAll(apres.keySet());
+        for (String champ : champs) {
+            Object valeurAvant = avant.get(champ);
+            Object valeurApres = apres.get(champ);
+            if (!Objects.equals(valeurAvant, valeurApres)) {
+                anciennes.put(champ, valeurAvant);
+                nouvelles.put(champ, valeurApres);
+            }
+        }
+        return new Map[]{anciennes, nouvelles};
+    }
 
+    private static boolean estSimple(Object valeur) {
+        return valeur instanceof CharSequence || valeur instanceof Number || valeur instanceof Boolean
+                || valeur instanceof Character || valeur instanceof Enum<?> || valeur instanceof Temporal;
+    }
+}
@@ -2,17 +2,7 @@ package com.bf4invest.service;
 
 import com.bf4invest.dto.DashboardKpiResponse;
 import com.bf4invest.model.BandeCommande;
-import com.bf4invest.model.Client;
-import com.bf4invest.model.FactureAchat;
-import com.bf4invest.model.FactureVente;
-import com.bf4invest.model.Supplier;
-import com.bf4invest.repository.BandeCommandeRepository;
-import com.bf4invest.repository.ClientRepository;
-import com.bf4invest.repository.FactureAchatRepository;
-import com.bf4invest.repository.FactureVenteRepository;
-import com.bf4invest.repository.SupplierRepository;
 import com.bf4invest.util.NumberUtils;
-import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
@@ -20,29 +10,11 @@ import java.util.*;
 import java.util.stream.Collectors;
 
 @Service
-@RequiredArgsConstructor
 public class BCAnalysisService {
     
-    private final BandeCommandeRepository bcRepository;
-    private final FactureAchatRepository factureAchatRepository;
-    private final FactureVenteRepository factureVenteRepository;
-    private final ClientRepository clientRepository;
-    private final SupplierRepository supplierRepository;
-    
-    public DashboardKpiResponse.BCAnalysis analyzeBCs(LocalDate from, LocalDate to) {
-        List<BandeCommande> bcs = bcRepository.findAll();
-        
-        // Filtrer par période si nécessaire
-        if (from != null || to != null) {
-            bcs = bcs.stream()
-                    .filter(bc -> {
-                        if (bc.getDateBC() == null) return false;
-                        if (from != null && bc.getDateBC().isBefore(from)) return false;
-                        if (to != null && bc.getDateBC().isAfter(to)) return false;
-                        return true;
-                    })
-                    .collect(Collectors.toList());
-        }
+    public DashboardKpiResponse.BCAnalysis analyzeBCs(DonneesDashboard donnees) {
+        // BCs de la période (dateBC), déjà filtrées au chargement
+        List<BandeCommande> bcs = donnees.bandesCommande();
         
         int totalBCs = bcs.size();
         int bcsDraft = (int) bcs.stream().filter(bc -> "brouillon".equals(bc.getEtat())).count();
@@ -63,10 +35,7 @@ public class BCAnalysisService {
         double delaiMoyenTraitement = delais.isEmpty() ? 0.0 : 
                 delais.stream().mapToLong(Long::longValue).average().orElse(0.0);
         
-        // Taux de conversion BC -> Facture
-        List<FactureAchat> facturesAchat = factureAchatRepository.findAll();
-        List<FactureVente> facturesVente = factureVenteRepository.findAll();
-        
+        // Taux de conversion BC -> Facture (toutes les factures, achat et vente)
         Set<String> bcsAvecFacture = new HashSet<>();
         
         // Créer une map de référence BC -> ID pour la recherche
@@ -77,27 +46,15 @@ public class BCAnalysisService {
             }
         }
         
-        // Parcourir les factures achat et trouver les BCs liés
-        for (FactureAchat fa : facturesAchat) {
-            // Chercher par ID d'abord
-            if (fa.getBandeCommandeId() != null) {
-                bcsAvecFacture.add(fa.getBandeCommandeId());
-            }
-            // Sinon chercher par référence BC
-            else if (fa.getBcReference() != null && bcRefToIdMap.containsKey(fa.getBcReference())) {
-                bcsAvecFacture.add(bcRefToIdMap.get(fa.getBcReference()));
-            }
-        }
-        
-        // Parcourir les factures vente et trouver les BCs liés
-        for (FactureVente fv : facturesVente) {
+        // Parcourir les factures et trouver les BCs liés
+        for (DonneesDashboard.LienFactureBC lien : donnees.liensFacturesBC()) {
             // Chercher par ID d'abord
-            if (fv.getBandeCommandeId() != null) {
-                bcsAvecFacture.add(fv.getBandeCommandeId());
+            if (lien.bandeCommandeId() != null) {
+                bcsAvecFacture.add(lien.bandeCommandeId());
             }
             // Sinon chercher par référence BC
-            else if (fv.getBcReference() != null && bcRefToIdMap.containsKey(fv.getBcReference())) {
-                bcsAvecFacture.add(bcRefToIdMap.get(fv.getBcReference()));
+            else if (lien.bcReference() != null && bcRefToIdMap.containsKey(lien.bcReference())) {
+                bcsAvecFacture.add(bcRefToIdMap.get(lien.bcReference()));
             }
         }
         
@@ -120,34 +77,13 @@ public class BCAnalysisService {
         // Performance par client
         Map<String, BCPerfData> perfParClient = new HashMap<>();
         for (BandeCommande bc : bcs) {
-            if (bc.getClientsVente() != null) {
+            if (bc.isMultiClient()) {
                 for (var clientVente : bc.getClientsVente()) {
-                    String clientId = clientVente.getClientId();
-                    if (clientId != null) {
-                        BCPerfData perf = perfParClient.computeIfAbsent(clientId, k -> new BCPerfData());
-                        perf.nombreBCs++;
-                        perf.montantTotal += clientVente.getTotalVenteHT() != null ? clientVente.getTotalVenteHT() : 0.0;
-                        if (bc.getCreatedAt() != null && bc.getUpdatedAt() != null) {
-                            long days = java.time.temporal.ChronoUnit.DAYS.between(
-                                    bc.getCreatedAt().toLocalDate(),
-                                    bc.getUpdatedAt().toLocalDate()
-                            );
-                            perf.delais.add(days);
-                        }
-                    }
+                    ajouterPerf(perfParClient, clientVente.getClientId(), clientVente.getTotalVenteHT(), bc);
                 }
-            } else if (bc.getClientId() != null) {
+            } else {
                 // Compatibilité ancienne structure
-                BCPerfData perf = perfParClient.computeIfAbsent(bc.getClientId(), k -> new BCPerfData());
-                perf.nombreBCs++;
-                perf.montantTotal += bc.getTotalVenteHT() != null ? bc.getTotalVenteHT() : 0.0;
-                if (bc.getCreatedAt() != null && bc.getUpdatedAt() != null) {
-                    long days = java.time.temporal.ChronoUnit.DAYS.between(
-                            bc.getCreatedAt().toLocalDate(),
-                            bc.getUpdatedAt().toLocalDate()
-                    );
-                    perf.delais.add(days);
-                }
+                ajouterPerf(perfParClient, bc.clientIdAncienFormat(), bc.getTotalVenteHT(), bc);
             }
         }
         
@@ -157,8 +93,7 @@ public class BCAnalysisService {
                 .map(entry -> {
                     String clientId = entry.getKey();
                     BCPerfData perf = entry.getValue();
-                    Client client = clientRepository.findById(clientId).orElse(null);
-                    String clientNom = client != null ? client.getNom() : "Client inconnu";
+                    String clientNom = donnees.nomClient(clientId, "Client inconnu");
                     double delaiMoyen = perf.delais.isEmpty() ? 0.0 :
                             perf.delais.stream().mapToLong(Long::longValue).average().orElse(0.0);
                     
@@ -175,18 +110,14 @@ public class BCAnalysisService {
         // Performance par fournisseur
         Map<String, BCPerfData> perfParFournisseur = new HashMap<>();
         for (BandeCommande bc : bcs) {
-            String fournisseurId = bc.getFournisseurId();
-            if (fournisseurId != null) {
-                BCPerfData perf = perfParFournisseur.computeIfAbsent(fournisseurId, k -> new BCPerfData());
-                perf.nombreBCs++;
-                perf.montantTotal += bc.getTotalAchatHT() != null ? bc.getTotalAchatHT() : 0.0;
-                if (bc.getCreatedAt() != null && bc.getUpdatedAt() != null) {
-                    long days = java.time.temporal.ChronoUnit.DAYS.between(
-                            bc.getCreatedAt().toLocalDate(),
-                            bc.getUpdatedAt().toLocalDate()
-                    );
-                    perf.delais.add(days);
+            if (bc.isMultiFournisseur()) {
+                for (var fournisseurAchat : bc.getFournisseursAchat()) {
+                    ajouterPerf(perfParFournisseur, fournisseurAchat.getFournisseurId(),
+                            fournisseurAchat.getTotalAchatHT(), bc);
                 }
+            } else {
+                // Compatibilité ancienne structure
+                ajouterPerf(perfParFournisseur, bc.fournisseurIdAncienFormat(), bc.getTotalAchatHT(), bc);
             }
         }
         
@@ -196,8 +127,7 @@ public class BCAnalysisService {
                 .map(entry -> {
                     String fournisseurId = entry.getKey();
                     BCPerfData perf = entry.getValue();
-                    Supplier supplier = supplierRepository.findById(fournisseurId).orElse(null);
-                    String supplierNom = supplier != null ? supplier.getNom() : "Fournisseur inconnu";
+                    String supplierNom = donnees.nomFournisseur(fournisseurId, "Fournisseur inconnu");
                     double delaiMoyen = perf.delais.isEmpty() ? 0.0 :
                             perf.delais.stream().mapToLong(Long::longValue).average().orElse(0.0);
                     
@@ -225,6 +155,25 @@ public class BCAnalysisService {
                 .build();
     }
     
+    /**
+     * Compte la BC pour un partenaire (ignoré si l'id est absent) avec son montant et son délai.
+     */
+    private static void ajouterPerf(Map<String, BCPerfData> perfs, String partenaireId, Double montant, BandeCommande bc) {
+        if (partenaireId == null) {
+            return;
+        }
+        BCPerfData perf = perfs.computeIfAbsent(partenaireId, k -> new BCPerfData());
+        perf.nombreBCs++;
+        perf.montantTotal += montant != null ? montant : 0.0;
+        if (bc.getCreatedAt() != null && bc.getUpdatedAt() != null) {
+            long days = java.time.temporal.ChronoUnit.DAYS.between(
+                    bc.getCreatedAt().toLocalDate(),
+                    bc.getUpdatedAt().toLocalDate()
+            );
+            perf.delais.add(days);
+        }
+    }
+    
     private static class BCPerfData {
         int nombreBCs = 0;
         double montantTotal = 0.0;
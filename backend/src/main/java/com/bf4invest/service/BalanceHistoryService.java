@@ -2,12 +2,10 @@ package com.bf4invest.service;
 
 import com.bf4invest.dto.DashboardKpiResponse;
 import com.bf4invest.model.*;
-import com.bf4invest.repository.*;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -15,29 +13,11 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class BalanceHistoryService {
     
-    private final HistoriqueSoldeRepository historiqueSoldeRepository;
     private final SoldeService soldeService;
-    private final ClientRepository clientRepository;
-    private final SupplierRepository supplierRepository;
     
-    public DashboardKpiResponse.BalanceHistory getBalanceHistory(LocalDate from, LocalDate to) {
-        // Récupérer l'historique des mouvements
-        List<HistoriqueSolde> historique = historiqueSoldeRepository.findAllByOrderByDateDesc();
-        
-        // Filtrer par période si nécessaire
-        if (from != null || to != null) {
-            LocalDateTime fromDateTime = from != null ? from.atStartOfDay() : null;
-            LocalDateTime toDateTime = to != null ? to.atTime(23, 59, 59) : null;
-            
-            historique = historique.stream()
-                    .filter(h -> {
-                        if (h.getDate() == null) return false;
-                        if (fromDateTime != null && h.getDate().isBefore(fromDateTime)) return false;
-                        if (toDateTime != null && h.getDate().isAfter(toDateTime)) return false;
-                        return true;
-                    })
-                    .collect(Collectors.toList());
-        }
+    public DashboardKpiResponse.BalanceHistory getBalanceHistory(DonneesDashboard donnees) {
+        // Historique des mouvements de la période, du plus récent au plus ancien
+        List<HistoriqueSolde> historique = donnees.historiqueSolde();
         
         // Convertir en BalanceMovement
         List<DashboardKpiResponse.BalanceMovement> mouvements = historique.stream()
@@ -79,8 +59,7 @@ public class BalanceHistoryService {
         }
         
         // Récupérer les soldes depuis les entités Client et Supplier pour ceux qui n'ont pas d'historique
-        List<Client> clients = clientRepository.findAll();
-        for (Client c : clients) {
+        for (Client c : donnees.clients().values()) {
             String key = c.getId() + "_CLIENT";
             if (!soldeParPartenaireMap.containsKey(key)) {
                 PartnerBalance balance = new PartnerBalance();
@@ -92,8 +71,7 @@ public class BalanceHistoryService {
             }
         }
         
-        List<Supplier> suppliers = supplierRepository.findAll();
-        for (Supplier s : suppliers) {
+        for (Supplier s : donnees.fournisseurs().values()) {
             String key = s.getId() + "_FOURNISSEUR";
             if (!soldeParPartenaireMap.containsKey(key)) {
                 PartnerBalance balance = new PartnerBalance();
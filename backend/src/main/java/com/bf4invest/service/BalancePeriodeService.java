@@ -0,0 +1,373 @@
+package com.bf4invest.service;
+
+import com.bf4invest.model.EcritureComptable;
+import com.bf4invest.model.LigneEcriture;
+import com.bf4invest.model.SoldeComptePeriode;
+import com.bf4invest.repository.SoldeComptePeriodeRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Balance matérialisée par compte × mois × exercice (collection soldes_comptes_periodes).
+ * Chaque écriture générée incrémente ($inc) les totaux de ses comptes ; les états financiers lisent
+ * ces totaux (O(comptes × mois)) et ne parcourent le journal que pour les mois partiellement couverts.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BalancePeriodeService {
+
+    private static final double TOLERANCE_DERIVE = 0.01;
+
+    private final SoldeComptePeriodeRepository soldeRepository;
+    private final MongoTemplate mongoTemplate;
+
+    // ==================== Mise à jour incrémentale ====================
+
+    /**
+     * Ajoute les lignes d'une nouvelle écriture aux totaux de la période.
+     */
+    public void appliquerEcriture(EcritureComptable ecriture) {
+        incrementer(List.of(ecriture), false);
+    }
+
+    /**
+     * Reporte les montants des écritures nouvellement lettrées dans debitLettre / creditLettre.
+     */
+    public void appliquerLettrage(List<EcritureComptable> ecritures) {
+        incrementer(ecritures, true);
+    }
+
+    private void incrementer(List<EcritureComptable> ecritures, boolean lettrageSeulement) {
+        try {
+            Map<String, SoldeComptePeriode> deltas = new LinkedHashMap<>();
+            for (EcritureComptable ecriture : ecritures) {
+                ajouterEcriture(deltas, ecriture, lettrageSeulement);
+            }
+            if (deltas.isEmpty()) {
+                return;
+            }
+            LocalDateTime now = LocalDateTime.now();
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, SoldeComptePeriode.class);
+            for (SoldeComptePeriode delta : deltas.values()) {
+                Update update = new Update()
+                        .inc("debit", delta.getDebit())
+                        .inc("credit", delta.getCredit())
+                        .inc("nbLignes", delta.getNbLignes())
+                        .inc("debitLettre", delta.getDebitLettre())
+                        .inc("creditLettre", delta.getCreditLettre())
+                        .set("compteCode", delta.getCompteCode())
+                        .set("exerciceId", delta.getExerciceId())
+                        .set("periode", delta.getPeriode())
+                        .set("updatedAt", now);
+                bulk.upsert(new Query(Criteria.where("id").is(delta.getId())), update);
+            }
+            bulk.execute();
+        } catch (Exception e) {
+            // La balance matérialisée est réparable par reconcilier(true) : ne jamais bloquer l'écriture
+            log.error("Mise à jour de la balance par période impossible: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Cumule les lignes d'une écriture dans les totaux (montants négatifs ignorés, comme la balance).
+     */
+    private static void ajouterEcriture(Map<String, SoldeComptePeriode> totaux, EcritureComptable ecriture,
+                                        boolean lettrageSeulement) {
+        if (ecriture == null || ecriture.getLignes() == null) {
+            return;
+        }
+        String exerciceId = ecriture.getExerciceId() != null ? ecriture.getExerciceId() : SoldeComptePeriode.SANS_EXERCICE;
+        String periode = periodeDe(ecriture.getDateEcriture());
+        boolean lettree = Boolean.TRUE.equals(ecriture.getLettree());
+        for (LigneEcriture ligne : ecriture.getLignes()) {
+            if (ligne.getCompteCode() == null) {
+                continue;
+            }
+            String id = exerciceId + "|" + ligne.getCompteCode() + "|" + periode;
+            SoldeComptePeriode total = totaux.computeIfAbsent(id, k -> SoldeComptePeriode.builder()
+                    .id(k)
+                    .compteCode(ligne.getCompteCode())
+                    .exerciceId(exerciceId)
+                    .periode(periode)
+                    .build());
+            double debit = positif(ligne.getDebit());
+            double credit = positif(ligne.getCredit());
+            if (!lettrageSeulement) {
+                total.setDebit(total.getDebit() + debit);
+                total.setCredit(total.getCredit() + credit);
+                total.setNbLignes(total.getNbLignes() + 1);
+            }
+            if (lettree) {
+                total.setDebitLettre(total.getDebitLettre() + debit);
+                total.setCreditLettre(total.getCreditLettre() + credit);
+            }
+        }
+    }
+
+    // ==================== Lecture ====================
+
+    /**
+     * Totaux débit/crédit par code de compte sur la période (bornes incluses).
+     * Les mois entièrement couverts sont lus dans la balance matérialisée, les mois partiels
+     * (premier / dernier) sont agrégés depuis le journal.
+     *
+     * @return code compte -> [débit, crédit]
+     */
+    public Map<String, double[]> totauxParCompte(LocalDate dateDebut, LocalDate dateFin, String exerciceId) {
+        if (!mongoTemplate.exists(new Query(), SoldeComptePeriode.class)) {
+            return agregerJournal(criteresJournal(dateDebut, dateFin, exerciceId));
+        }
+
+        Map<String, double[]> totaux = new HashMap<>();
+        if (dateDebut != null && dateFin != null) {
+            if (dateDebut.isAfter(dateFin)) {
+                return totaux;
+            }
+            boolean memeMois = YearMonth.from(dateDebut).equals(YearMonth.from(dateFin));
+            boolean moisComplet = dateDebut.getDayOfMonth() == 1 && dateFin.equals(YearMonth.from(dateFin).atEndOfMonth());
+            if (memeMois && !moisComplet) {
+                // Période incluse dans un seul mois sans le couvrir entièrement
+                return agregerJournal(criteresJournal(dateDebut, dateFin, exerciceId));
+            }
+        }
+
+        // Mois partiels en bordure : agrégés depuis le journal
+        YearMonth premierMois = null;
+        if (dateDebut != null) {
+            premierMois = YearMonth.from(dateDebut);
+            if (dateDebut.getDayOfMonth() != 1) {
+                fusionner(totaux, agregerJournal(criteresJournal(dateDebut, premierMois.atEndOfMonth(), exerciceId)));
+                premierMois = premierMois.plusMonths(1);
+            }
+        }
+        YearMonth dernierMois = null;
+        if (dateFin != null) {
+            dernierMois = YearMonth.from(dateFin);
+            if (!dateFin.equals(dernierMois.atEndOfMonth())) {
+                fusionner(totaux, agregerJournal(criteresJournal(dernierMois.atDay(1), dateFin, exerciceId)));
+                dernierMois = dernierMois.minusMonths(1);
+            }
+        }
+
+        // Mois complets : lus dans la balance matérialisée
+        if (premierMois == null || dernierMois == null || !premierMois.isAfter(dernierMois)) {
+            Criteria criteria = new Criteria();
+            if (exerciceId != null) {
+                criteria.and("exerciceId").is(exerciceId);
+            }
+            if (premierMois != null || dernierMois != null) {
+                Criteria periode = criteria.and("periode").ne(SoldeComptePeriode.SANS_DATE);
+                if (premierMois != null) {
+                    periode.gte(premierMois.toString());
+                }
+                if (dernierMois != null) {
+                    periode.lte(dernierMois.toString());
+                }
+            }
+            Query query = new Query(criteria);
+            query.fields().include("compteCode", "debit", "credit");
+            for (SoldeComptePeriode solde : mongoTemplate.find(query, SoldeComptePeriode.class)) {
+                cumuler(totaux, solde.getCompteCode(), solde.getDebit(), solde.getCredit());
+            }
+        }
+        return totaux;
+    }
+
+    /**
+     * Agrégation directe du journal : $unwind des lignes, $group par compteCode.
+     */
+    Map<String, double[]> agregerJournal(Criteria criteria) {
+        TypedAggregation<EcritureComptable> aggregation = Aggregation.newAggregation(EcritureComptable.class,
+                Aggregation.match(criteria),
+                Aggregation.project("lignes"),
+                Aggregation.unwind("lignes"),
+                Aggregation.group("lignes.compteCode")
+                        .sum(ConditionalOperators.when(Criteria.where("lignes.debit").gt(0))
+                                .thenValueOf("lignes.debit").otherwise(0)).as("debit")
+                        .sum(ConditionalOperators.when(Criteria.where("lignes.credit").gt(0))
+                                .thenValueOf("lignes.credit").otherwise(0)).as("credit"));
+
+        Map<String, double[]> totaux = new HashMap<>();
+        for (Document total : mongoTemplate.aggregate(aggregation, Document.class).getMappedResults()) {
+            Object code = total.get("_id");
+            if (code != null) {
+                cumuler(totaux, code.toString(), nombre(total.get("debit")), nombre(total.get("credit")));
+            }
+        }
+        return totaux;
+    }
+
+    /**
+     * Filtres du journal : période (bornes incluses) et exercice.
+     */
+    Criteria criteresJournal(LocalDate dateDebut, LocalDate dateFin, String exerciceId) {
+        Criteria criteria = new Criteria();
+        if (dateDebut != null || dateFin != null) {
+            Criteria date = criteria.and("dateEcriture");
+            if (dateDebut != null) {
+                date.gte(dateDebut);
+            }
+            if (dateFin != null) {
+                date.lte(dateFin);
+            }
+        }
+        if (exerciceId != null) {
+            criteria.and("exerciceId").is(exerciceId);
+        }
+        return criteria;
+    }
+
+    // ==================== Reconstruction / réconciliation ====================
+
+    /**
+     * Construit la balance matérialisée au démarrage si elle est vide alors que des écritures existent.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialiserSiNecessaire() {
+        try {
+            if (!mongoTemplate.exists(new Query(), SoldeComptePeriode.class)
+                    && mongoTemplate.exists(new Query(), EcritureComptable.class)) {
+                log.info("Balance par période absente, reconstruction initiale...");
+                reconcilier(true);
+            }
+        } catch (Exception e) {
+            log.warn("Initialisation de la balance par période impossible: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Contrôle quotidien de dérive entre la balance matérialisée et le journal (sans correction).
+     */
+    @Scheduled(cron = "0 30 2 * * ?")
+    public void verifierDeriveQuotidienne() {
+        try {
+            Map<String, Object> rapport = reconcilier(false);
+            if (!Boolean.TRUE.equals(rapport.get("coherent"))) {
+                log.warn("Dérive détectée dans la balance par période: {} écart(s). Lancer la réconciliation avec correction.",
+                        rapport.get("nbEcarts"));
+            }
+        } catch (Exception e) {
+            log.error("Erreur lors du contrôle de la balance par période: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Recalcule les totaux depuis le journal brut et les compare à la balance matérialisée.
+     *
+     * @param corriger si true, remplace la balance matérialisée par les totaux recalculés
+     */
+    public Map<String, Object> reconcilier(boolean corriger) {
+        long debut = System.currentTimeMillis();
+        Map<String, SoldeComptePeriode> attendus = new HashMap<>();
+        Query query = new Query();
+        query.fields().include("lignes", "dateEcriture", "exerciceId", "lettree");
+        long[] nbEcritures = {0};
+        try (Stream<EcritureComptable> ecritures = mongoTemplate.stream(query, EcritureComptable.class)) {
+            ecritures.forEach(e -> {
+                ajouterEcriture(attendus, e, false);
+                nbEcritures[0]++;
+            });
+        }
+
+        Map<String, SoldeComptePeriode> stockes = new HashMap<>();
+        soldeRepository.findAll().forEach(s -> stockes.put(s.getId(), s));
+
+        List<Map<String, Object>> ecarts = new ArrayList<>();
+        Set<String> ids = new TreeSet<>(attendus.keySet());
+        ids.addAll(stockes.keySet());
+        for (String id : ids) {
+            SoldeComptePeriode attendu = attendus.get(id);
+            SoldeComptePeriode stocke = stockes.get(id);
+            double[] a = attendu != null ? valeurs(attendu) : new double[5];
+            double[] s = stocke != null ? valeurs(stocke) : new double[5];
+            for (int i = 0; i < a.length; i++) {
+                if (Math.abs(a[i] - s[i]) > TOLERANCE_DERIVE) {
+                    Map<String, Object> ecart = new LinkedHashMap<>();
+                    ecart.put("id", id);
+                    ecart.put("attendu", a);
+                    ecart.put("stocke", s);
+                    ecarts.add(ecart);
+                    break;
+                }
+            }
+        }
+
+        if (corriger && !ecarts.isEmpty()) {
+            LocalDateTime now = LocalDateTime.now();
+            attendus.values().forEach(s -> s.setUpdatedAt(now));
+            soldeRepository.deleteAll();
+            soldeRepository.saveAll(attendus.values());
+            log.info("Balance par période reconstruite: {} lignes depuis {} écritures", attendus.size(), nbEcritures[0]);
+        }
+
+        Map<String, Object> rapport = new LinkedHashMap<>();
+        rapport.put("coherent", ecarts.isEmpty());
+        rapport.put("nbEcritures", nbEcritures[0]);
+        rapport.put("nbSoldes", attendus.size());
+        rapport.put("nbEcarts", ecarts.size());
+        rapport.put("corrige", corriger && !ecarts.isEmpty());
+        rapport.put("ecarts", ecarts.size() > 100 ? ecarts.subList(0, 100) : ecarts);
+        rapport.put("dureeMs", System.currentTimeMillis() - debut);
+        return rapport;
+    }
+
+    /**
+     * Vide la balance matérialisée (ex: après suppression des écritures).
+     */
+    public void vider() {
+        soldeRepository.deleteAll();
+    }
+
+    // ==================== Utilitaires ====================
+
+    private static double[] valeurs(SoldeComptePeriode s) {
+        return new double[]{nz(s.getDebit()), nz(s.getCredit()), s.getNbLignes() != null ? s.getNbLignes() : 0,
+                nz(s.getDebitLettre()), nz(s.getCreditLettre())};
+    }
+
+    private static String periodeDe(LocalDate date) {
+        return date != null ? YearMonth.from(date).toString() : SoldeComptePeriode.SANS_DATE;
+    }
+
+    private static void cumuler(Map<String, double[]> totaux, String code, Double debit, Double credit) {
+        double[] total = totaux.computeIfAbsent(code, k -> new double[2]);
+        total[0] += nz(debit);
+        total[1] += nz(credit);
+    }
+
+    private static void fusionner(Map<String, double[]> totaux, Map<String, double[]> autres) {
+        autres.forEach((code, t) -> cumuler(totaux, code, t[0], t[1]));
+    }
+
+    private static double positif(Double valeur) {
+        return valeur != null && valeur > 0 ? valeur : 0.0;
+    }
+
+    private static double nz(Double valeur) {
+        return valeur != null ? valeur : 0.0;
+    }
+
+    private static double nombre(Object valeur) {
+        return valeur instanceof Number n ? n.doubleValue() : 0.0;
+    }
+}
@@ -2,18 +2,31 @@ package com.bf4invest.service;
 
 import com.bf4invest.model.*;
 import com.bf4invest.repository.BandeCommandeRepository;
+import com.bf4invest.util.EcrituresParLots;
 import com.bf4invest.util.NumberUtils;
 import lombok.RequiredArgsConstructor;
+import com.bf4invest.dto.PageResponse;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 import lombok.extern.slf4j.Slf4j;
 import com.bf4invest.repository.SupplierRepository;
@@ -30,11 +43,77 @@ public class BandeCommandeService {
     private final ClientService clientService;
     private final SupplierService supplierService;
     private final ProductPriceService productPriceService;
+    private final DashboardAggregateService dashboardAggregateService;
+    private final MongoTemplate mongoTemplate;
+    private final CompteurService compteurService;
 
     public List<BandeCommande> findAll() {
         return bcRepository.findAll();
     }
 
+    /**
+     * Liste paginée des BCs : filtres, tri et pagination exécutés par MongoDB.
+     * Les lignes (ancien format, lignesAchat, lignesVente/lignesAchat imbriquées) ne sont pas chargées.
+     * Les filtres client/fournisseur couvrent aussi les BCs multi-clients / multi-fournisseurs.
+     *
+     * @param sort "date" (dateBC) ou "numero" (numeroBC)
+     */
+    public PageResponse<BandeCommande> findPage(String clientId, String fournisseurId, String etat,
+                                                LocalDate dateMin, LocalDate dateMax,
+                                                int page, int size, String sort, String direction) {
+        Criteria criteria = criteresListe(clientId, fournisseurId, etat, dateMin, dateMax);
+
+        String champTri = "numero".equalsIgnoreCase(sort) ? "numeroBC" : "dateBC";
+        Sort.Direction sens = "asc".equalsIgnoreCase(direction) ? Sort.Direction.ASC : Sort.Direction.DESC;
+        Pageable pageable = PageResponse.pageDemandee(page, size, Sort.by(sens, champTri).and(Sort.by(sens, "id")));
+
+        Query query = new Query(criteria).with(pageable);
+        query.fields().exclude("lignes", "lignesAchat", "clientsVente.lignesVente", "fournisseursAchat.lignesAchat");
+        List<BandeCommande> bcs = mongoTemplate.find(query, BandeCommande.class);
+        long total = mongoTemplate.count(new Query(criteria), BandeCommande.class);
+        return PageResponse.of(bcs, pageable, total);
+    }
+
+    /**
+     * BCs complets (avec leurs lignes) lus par curseur, mêmes filtres que {@link #findPage}, par date croissante.
+     * Le flux doit être fermé par l'appelant.
+     */
+    public Stream<BandeCommande> streamFiltres(String clientId, String fournisseurId, String etat,
+                                               LocalDate dateMin, LocalDate dateMax) {
+        Query query = new Query(criteresListe(clientId, fournisseurId, etat, dateMin, dateMax))
+                .with(Sort.by(Sort.Direction.ASC, "dateBC").and(Sort.by(Sort.Direction.ASC, "id")));
+        return mongoTemplate.stream(query, BandeCommande.class);
+    }
+
+    private static Criteria criteresListe(String clientId, String fournisseurId, String etat,
+                                          LocalDate dateMin, LocalDate dateMax) {
+        List<Criteria> filtres = new ArrayList<>();
+        if (clientId != null) {
+            filtres.add(new Criteria().orOperator(
+                    Criteria.where("clientId").is(clientId),
+                    Criteria.where("clientsVente.clientId").is(clientId)));
+        }
+        if (fournisseurId != null) {
+            filtres.add(new Criteria().orOperator(
+                    Criteria.where("fournisseurId").is(fournisseurId),
+                    Criteria.where("fournisseursAchat.fournisseurId").is(fournisseurId)));
+        }
+        if (etat != null) {
+            filtres.add(Criteria.where("etat").is(etat));
+        }
+        if (dateMin != null || dateMax != null) {
+            Criteria date = Criteria.where("dateBC");
+            if (dateMin != null) {
+                date.gte(dateMin);
+            }
+            if (dateMax != null) {
+                date.lte(dateMax);
+            }
+            filtres.add(date);
+        }
+        return filtres.isEmpty() ? new Criteria() : new Criteria().andOperator(filtres);
+    }
+
     public Optional<BandeCommande> findById(String id) {
         return bcRepository.findById(id);
     }
@@ -73,7 +152,7 @@ public class BandeCommandeService {
         }
         
         // Recalculer les prix produits (pondérés + min/max) pour les produits impactés
-        recalculateImpactedProductPrices(saved);
+        recalculateImpactedProductPrices(List.of(), List.of(saved.getId()));
 
         // Journaliser la création
         int nbClients = saved.getNombreClients();
@@ -82,13 +161,18 @@ public class BandeCommandeService {
                 "BC " + saved.getNumeroBC() + " créée" + clientsInfo + " - Total: " + saved.getTotalVenteTTC()
                         + " MAD");
 
+        dashboardAggregateService.rafraichirPourBandeCommande(saved);
+
         return saved;
     }
 
     public BandeCommande update(String id, BandeCommande bc) {
         return bcRepository.findById(id)
                 .map(existing -> {
+                    // Lignes de prix avant modification (existing est modifié en place) : produits impactés
+                    List<IndexPrixProduits.LignePrix> anciennesLignesPrix = IndexPrixProduits.extraire(existing);
                     String oldEtat = existing.getEtat();
+                    LocalDate oldDateBC = existing.getDateBC();
                     String requestedNumeroBC = normalizeNumeroBC(bc.getNumeroBC());
                     if (requestedNumeroBC == null) {
                         throw new IllegalArgumentException("Le numéro BC est requis");
@@ -184,7 +268,7 @@ public class BandeCommandeService {
                     }
                     
                     // Recalculer les prix produits (pondérés + min/max) pour les produits impactés
-                    recalculateImpactedProductPrices(saved);
+                    recalculateImpactedProductPrices(anciennesLignesPrix, List.of(saved.getId()));
 
                     // Journaliser la modification
                     String details = "BC " + saved.getNumeroBC() + " modifiée";
@@ -193,72 +277,42 @@ public class BandeCommandeService {
                     }
                     auditService.logUpdate("BandeCommande", saved.getId(), oldEtat, details);
 
+                    dashboardAggregateService.rafraichirPourBandeCommande(saved, oldDateBC);
+
                     return saved;
                 })
                 .orElseThrow(() -> new RuntimeException("BC not found with id: " + id));
     }
     
-    private void recalculateImpactedProductPrices(BandeCommande bc) {
-        if (bc == null) {
-            return;
+    /**
+     * Remplace la contribution des BCs dans l'index des prix (relue sous verrou par ProductPriceService)
+     * puis recalcule les produits présents avant ou après la modification (un produit retiré de la BC
+     * est aussi recalculé).
+     *
+     * @param anciennesLignes lignes de prix lues avant l'écriture (vide à la création) ; complètent les
+     *                        produits impactés si l'index n'est pas encore construit
+     * @param bcIds           BCs écrites ou supprimées
+     */
+    private void recalculateImpactedProductPrices(List<IndexPrixProduits.LignePrix> anciennesLignes,
+                                                  Collection<String> bcIds) {
+        List<IndexPrixProduits.LignePrix> touchees = List.of();
+        try {
+            touchees = productPriceService.synchroniserBCs(bcIds);
+        } catch (Exception e) {
+            log.warn("⚠️ Mise à jour de l'index des prix échouée, reconstruction au prochain recalcul: {}", e.getMessage());
+            productPriceService.invaliderIndex();
         }
-        
+
         // key => {ref, designation, unite}
         Map<String, String[]> impacted = new LinkedHashMap<>();
-        java.util.function.BiConsumer<String[], Map<String, String[]>> add = (triple, map) -> {
-            if (triple == null || triple.length != 3) return;
-            String ref = triple[0];
-            if (ref == null || ref.isBlank()) return;
-            String designation = triple[1] != null ? triple[1] : "";
-            String unite = (triple[2] != null && !triple[2].isBlank()) ? triple[2] : "U";
-            String key = ref + "||" + designation + "||" + unite;
-            map.putIfAbsent(key, new String[] { ref, designation, unite });
-        };
-        
-        try {
-            // Achats: nouvelle structure multi-fournisseurs
-            if (bc.getFournisseursAchat() != null) {
-                for (FournisseurAchat fa : bc.getFournisseursAchat()) {
-                    if (fa == null || fa.getLignesAchat() == null) continue;
-                    for (LigneAchat la : fa.getLignesAchat()) {
-                        if (la == null) continue;
-                        add.accept(new String[] { la.getProduitRef(), la.getDesignation(), la.getUnite() }, impacted);
-                    }
-                }
-            }
-            
-            // Achats: fallback lignesAchat
-            if (bc.getLignesAchat() != null) {
-                for (LigneAchat la : bc.getLignesAchat()) {
-                    if (la == null) continue;
-                    add.accept(new String[] { la.getProduitRef(), la.getDesignation(), la.getUnite() }, impacted);
-                }
-            }
-            
-            // Ventes: clientsVente
-            if (bc.getClientsVente() != null) {
-                for (ClientVente cv : bc.getClientsVente()) {
-                    if (cv == null || cv.getLignesVente() == null) continue;
-                    for (LigneVente lv : cv.getLignesVente()) {
-                        if (lv == null) continue;
-                        add.accept(new String[] { lv.getProduitRef(), lv.getDesignation(), lv.getUnite() }, impacted);
-                    }
-                }
+        for (List<IndexPrixProduits.LignePrix> lignes : List.of(anciennesLignes, touchees)) {
+            for (IndexPrixProduits.LignePrix ligne : lignes) {
+                String ref = ligne.ref();
+                if (ref == null || ref.isBlank()) continue;
+                String designation = ligne.designation() != null ? ligne.designation() : "";
+                String unite = (ligne.unite() != null && !ligne.unite().isBlank()) ? ligne.unite() : "U";
+                impacted.putIfAbsent(ref + "||" + designation + "||" + unite, new String[] { ref, designation, unite });
             }
-            
-            // Legacy: lignes (LineItem)
-            if (bc.getLignes() != null) {
-                for (LineItem li : bc.getLignes()) {
-                    if (li == null) continue;
-                    add.accept(new String[] { li.getProduitRef(), li.getDesignation(), li.getUnite() }, impacted);
-                }
-            }
-        } catch (Exception e) {
-            log.warn("⚠️ Impossible de déterminer les produits impactés pour BC {}: {}", bc.getNumeroBC(), e.getMessage());
-        }
-        
-        if (impacted.isEmpty()) {
-            return;
         }
         
         for (String[] triple : impacted.values()) {
@@ -270,6 +324,80 @@ public class BandeCommandeService {
         }
     }
 
+    /**
+     * Enregistrement en masse (import) : totaux calculés comme dans create/update, puis insertion des
+     * nouvelles BCs et remplacement des BCs existantes par lots via BulkOperations. Une BC refusée (préparation
+     * ou écriture) est signalée à {@code surErreur} sans empêcher l'enregistrement des autres. Suivent, pour les
+     * seules BCs écrites, le différentiel de l'index des prix (un recalcul par produit impacté pour l'ensemble
+     * du lot), l'audit, et un seul recalcul des agrégats du dashboard par mois touché. Le stock n'est pas mis à
+     * jour ici.
+     *
+     * @param bcs BCs à enregistrer ; une BC avec un id existant remplace le document
+     * @param surErreur appelé pour chaque BC non enregistrée
+     * @return les BCs enregistrées (ids renseignés)
+     */
+    public List<BandeCommande> enregistrerEnMasse(List<BandeCommande> bcs, int tailleLot,
+                                                  BiConsumer<BandeCommande, Exception> surErreur) {
+        List<String> ids = bcs.stream().map(BandeCommande::getId).filter(Objects::nonNull).toList();
+        Map<String, BandeCommande> anciennes = new HashMap<>();
+        if (!ids.isEmpty()) {
+            mongoTemplate.find(new Query(Criteria.where("_id").in(ids)), BandeCommande.class)
+                    .forEach(ancienne -> anciennes.put(ancienne.getId(), ancienne));
+        }
+
+        List<BandeCommande> nouvelles = new ArrayList<>();
+        List<BandeCommande> modifiees = new ArrayList<>();
+        LocalDateTime maintenant = LocalDateTime.now();
+        for (BandeCommande bc : bcs) {
+            try {
+                calculateTotals(bc);
+                bc.setUpdatedAt(maintenant);
+                if (bc.getId() != null && anciennes.containsKey(bc.getId())) {
+                    modifiees.add(bc);
+                    continue;
+                }
+                String numeroBC = normalizeNumeroBC(bc.getNumeroBC());
+                bc.setNumeroBC(numeroBC != null ? numeroBC : generateBCNumber(bc));
+                bc.setId(EcrituresParLots.nouvelId());
+                if (bc.getCreatedAt() == null) {
+                    bc.setCreatedAt(maintenant);
+                }
+                nouvelles.add(bc);
+            } catch (Exception e) {
+                surErreur.accept(bc, e);
+            }
+        }
+
+        List<BandeCommande> creees = EcrituresParLots.insererEnContinuant(mongoTemplate, BandeCommande.class,
+                nouvelles, BandeCommande::getId, tailleLot, surErreur);
+        List<BandeCommande> remplacees = EcrituresParLots.remplacerEnContinuant(mongoTemplate, BandeCommande.class,
+                modifiees, BandeCommande::getId, tailleLot, surErreur);
+        List<BandeCommande> enregistrees = new ArrayList<>(creees);
+        enregistrees.addAll(remplacees);
+
+        List<IndexPrixProduits.LignePrix> anciennesLignes = new ArrayList<>();
+        remplacees.forEach(bc -> anciennesLignes.addAll(IndexPrixProduits.extraire(anciennes.get(bc.getId()))));
+        recalculateImpactedProductPrices(anciennesLignes, enregistrees.stream().map(BandeCommande::getId).toList());
+
+        for (BandeCommande bc : creees) {
+            auditService.logCreate("BandeCommande", bc.getId(),
+                    "BC " + bc.getNumeroBC() + " créée (import) - Total: " + bc.getTotalVenteTTC() + " MAD");
+        }
+        for (BandeCommande bc : remplacees) {
+            auditService.logUpdate("BandeCommande", bc.getId(), anciennes.get(bc.getId()).getEtat(),
+                    "BC " + bc.getNumeroBC() + " modifiée (import)");
+        }
+
+        List<LocalDate> dates = new ArrayList<>();
+        enregistrees.forEach(bc -> dates.add(bc.getDateBC()));
+        remplacees.forEach(bc -> dates.add(anciennes.get(bc.getId()).getDateBC()));
+        dashboardAggregateService.rafraichirPourDates(dates, List.of());
+
+        log.info("Enregistrement en masse: {} BC(s) créée(s), {} mise(s) à jour, {} en échec", creees.size(),
+                remplacees.size(), bcs.size() - enregistrees.size());
+        return enregistrees;
+    }
+
     public boolean isNumeroBCAvailable(String numeroBC, String excludeId) {
         String normalizedNumeroBC = normalizeNumeroBC(numeroBC);
         if (normalizedNumeroBC == null) {
@@ -285,10 +413,15 @@ public class BandeCommandeService {
 
     public void delete(String id) {
         // Récupérer la BC avant suppression pour le log
-        bcRepository.findById(id).ifPresent(bc -> {
+        Optional<BandeCommande> existing = bcRepository.findById(id);
+        existing.ifPresent(bc -> {
             auditService.logDelete("BandeCommande", id, "BC " + bc.getNumeroBC() + " supprimée");
         });
         bcRepository.deleteById(id);
+        existing.ifPresent(bc -> {
+            dashboardAggregateService.rafraichirPourBandeCommande(null, bc.getDateBC());
+            recalculateImpactedProductPrices(IndexPrixProduits.extraire(bc), List.of(id));
+        });
     }
 
     /**
@@ -392,72 +525,21 @@ public class BandeCommandeService {
         String mois = String.format("%02d", month);
         String annee2chiffres = String.valueOf(year).substring(2);
 
-        // 5. Compter les BC existantes pour ce client + fournisseur + mois + année
-        // Le filtrage est strict : même mois, même année, même fournisseur, même client
-        // Ce comptage garantit que même si on crée un BC avec une date passée,
-        // le numéro d'ordre sera correct pour ce mois précis
-        long count = bcRepository.findAll().stream()
-                .filter(existingBc -> {
-                    // Filtrer strictement par date BC (mois + année)
-                    if (existingBc.getDateBC() == null)
-                        return false;
-                    if (existingBc.getDateBC().getMonthValue() != month)
-                        return false;
-                    if (existingBc.getDateBC().getYear() != year)
-                        return false;
-
-                    // Filtrer par fournisseur (avec vérification null)
-                    // Support de la nouvelle structure multi-fournisseurs
-                    String existingFournisseurId = null;
-                    if (existingBc.getFournisseursAchat() != null && !existingBc.getFournisseursAchat().isEmpty()) {
-                        existingFournisseurId = existingBc.getFournisseursAchat().get(0).getFournisseurId();
-                    } else if (existingBc.getFournisseurId() != null) {
-                        existingFournisseurId = existingBc.getFournisseurId();
-                    }
-                    
-                    if (existingFournisseurId == null)
-                        return false;
-                    if (!existingFournisseurId.equals(finalFournisseurId))
-                        return false;
-
-                    // Vérifier si cette BC concerne le même client
-                    // Support des deux structures : multi-clients (clientsVente) et
-                    // rétrocompatibilité (clientId)
-                    // Gérer aussi le cas "ajouterAuStock" (pas de client)
-                    if (Boolean.TRUE.equals(existingBc.getAjouterAuStock())) {
-                        // BC existante pour stock - comparer avec notre BC
-                        return Boolean.TRUE.equals(bc.getAjouterAuStock());
-                    } else {
-                        // BC existante avec client
-                        if (Boolean.TRUE.equals(bc.getAjouterAuStock())) {
-                            return false; // La nouvelle est pour stock, l'existante a un client
-                        }
-                        // Les deux ont des clients - comparer
-                        String existingClientId = null;
-                        if (existingBc.getClientsVente() != null && !existingBc.getClientsVente().isEmpty()) {
-                            existingClientId = existingBc.getClientsVente().get(0).getClientId();
-                        } else if (existingBc.getClientId() != null) {
-                            existingClientId = existingBc.getClientId();
-                        }
-                        // Ne compter que si le client correspond
-                        return finalClientId != null && finalClientId.equals(existingClientId);
-                    }
-                })
-                .count();
-
-        // 6. Générer le numéro d'ordre : toujours utiliser 2 chiffres (01, 02, 03,
-        // etc.)
-        // Le comptage est basé uniquement sur le mois/année de la date BC, pas sur la
-        // date de création.
-        // Cela permet de créer un BC avec une date passée (mois oublié) tout en
-        // conservant la numérotation correcte.
-        long orderNumber = count + 1;
+        // 5. Numéro d'ordre : compteur atomique par préfixe (réf client + mois + réf fournisseur) et année.
+        // Le mois/année viennent de la date BC (pas de la date de création) : un BC créé avec une date
+        // passée (mois oublié) reçoit le numéro suivant de ce mois-là.
+        // Le compteur est amorcé une seule fois depuis les numéros existants ayant le même préfixe.
         String prefix = refClient + mois + refFournisseur;
         String generatedNumeroBC;
         do {
-            String ordre = String.format("%02d", orderNumber);
-            generatedNumeroBC = prefix + ordre + "/" + annee2chiffres;
-            orderNumber++;
+            long orderNumber = compteurService.suivant("BC", prefix.toUpperCase(Locale.ROOT), String.valueOf(year),
+                    () -> compteurService.amorce(BandeCommande.class,
+                            Criteria.where("numeroBC").regex("^" + Pattern.quote(prefix) + "\\d+/" + annee2chiffres + "$", "i"),
+                            "numeroBC",
+                            Pattern.compile(Pattern.quote(prefix) + "(\\d{2,})/" + annee2chiffres, Pattern.CASE_INSENSITIVE)));
+            // 6. Toujours au moins 2 chiffres (01, 02, 03, etc.)
+            generatedNumeroBC = prefix + String.format("%02d", orderNumber) + "/" + annee2chiffres;
+            // Numéro déjà pris par un BC saisi manuellement : numéro suivant
         } while (bcRepository.existsByNumeroBCIgnoreCase(generatedNumeroBC));
 
         return generatedNumeroBC;
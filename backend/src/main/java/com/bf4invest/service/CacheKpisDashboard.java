@@ -0,0 +1,154 @@
+package com.bf4invest.service;
+
+import com.bf4invest.dto.DashboardKpiResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Cache serveur des KPIs du tableau de bord, par période (from, to).
+ * <p>
+ * Les requêtes identiques simultanées partagent un seul calcul (single-flight). Le résultat est ensuite servi tant
+ * que {@link VersionDonneesDashboard} n'a pas changé, au plus {@code app.dashboard.cache.ttl-seconds} secondes
+ * (écritures non suivies : produits, soldes, mises à jour partielles) et jamais au-delà du jour du calcul (les
+ * échéances et prévisions dépendent de la date du jour).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CacheKpisDashboard {
+
+    /** Au-delà, les entrées expirées sont purgées, puis tout le cache si cela ne suffit pas. */
+    static final int ENTREES_MAX = 100;
+
+    private final VersionDonneesDashboard versionDonnees;
+
+    @Value("${app.dashboard.cache.ttl-seconds:300}")
+    private long dureeVieSecondes;
+
+    private record Cle(LocalDate from, LocalDate to, LocalDate jour) {}
+
+    private record CalculEnCours(Cle cle, long version) {}
+
+    private record Entree(long version, long expireA, DashboardKpiResponse kpis) {}
+
+    private final Map<Cle, Entree> resultats = new ConcurrentHashMap<>();
+    private final Map<CalculEnCours, CompletableFuture<DashboardKpiResponse>> calculs = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong partages = new AtomicLong();
+    private final AtomicLong echecs = new AtomicLong();
+    private final AtomicLong dureeTotaleMs = new AtomicLong();
+    private final AtomicLong dureeMaxMs = new AtomicLong();
+    private volatile long derniereDureeMs;
+
+    /**
+     * KPIs de la période : depuis le cache s'ils sont à jour, sinon depuis le calcul déjà en cours pour la même
+     * période et la même version des données, sinon calculés par {@code calcul} sur le thread appelant.
+     */
+    public DashboardKpiResponse obtenir(LocalDate from, LocalDate to, Supplier<DashboardKpiResponse> calcul) {
+        Cle cle = new Cle(from, to, LocalDate.now());
+        long version = versionDonnees.courante();
+
+        Entree entree = resultats.get(cle);
+        if (entree != null && entree.version() == version && System.currentTimeMillis() < entree.expireA()) {
+            hits.incrementAndGet();
+            return entree.kpis();
+        }
+
+        CalculEnCours enCours = new CalculEnCours(cle, version);
+        CompletableFuture<DashboardKpiResponse> nouveau = new CompletableFuture<>();
+        CompletableFuture<DashboardKpiResponse> existant = calculs.putIfAbsent(enCours, nouveau);
+        if (existant != null) {
+            partages.incrementAndGet();
+            return attendre(existant);
+        }
+
+        misses.incrementAndGet();
+        long debut = System.currentTimeMillis();
+        try {
+            DashboardKpiResponse kpis = calcul.get();
+            enregistrerDuree(System.currentTimeMillis() - debut);
+            // Version lue avant le calcul : une écriture survenue pendant le calcul invalide déjà ce résultat
+            stocker(cle, new Entree(version, System.currentTimeMillis() + dureeVieSecondes * 1000, kpis));
+            nouveau.complete(kpis);
+            return kpis;
+        } catch (RuntimeException | Error e) {
+            echecs.incrementAndGet();
+            nouveau.completeExceptionally(e);
+            throw e;
+        } finally {
+            calculs.remove(enCours, nouveau);
+        }
+    }
+
+    public void vider() {
+        resultats.clear();
+    }
+
+    public Map<String, Object> statistiques() {
+        long nbCalculs = misses.get() - echecs.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("partages", partages.get());
+        stats.put("echecs", echecs.get());
+        long total = hits.get() + misses.get() + partages.get();
+        stats.put("tauxHit", total > 0 ? (double) (hits.get() + partages.get()) / total : 0.0);
+        stats.put("dureeMoyenneCalculMs", nbCalculs > 0 ? dureeTotaleMs.get() / nbCalculs : 0);
+        stats.put("dureeMaxCalculMs", dureeMaxMs.get());
+        stats.put("derniereDureeCalculMs", derniereDureeMs);
+        stats.put("calculsEnCours", calculs.size());
+        stats.put("entrees", resultats.size());
+        stats.put("versionDonnees", versionDonnees.courante());
+        stats.put("dureeVieSecondes", dureeVieSecondes);
+        return stats;
+    }
+
+    private void enregistrerDuree(long dureeMs) {
+        derniereDureeMs = dureeMs;
+        dureeTotaleMs.addAndGet(dureeMs);
+        dureeMaxMs.accumulateAndGet(dureeMs, Math::max);
+    }
+
+    private void stocker(Cle cle, Entree entree) {
+        if (resultats.size() >= ENTREES_MAX) {
+            long maintenant = System.currentTimeMillis();
+            long version = versionDonnees.courante();
+            resultats.entrySet().removeIf(e -> e.getValue().expireA() <= maintenant
+                    || e.getValue().version() != version
+                    || !e.getKey().jour().equals(cle.jour()));
+            if (resultats.size() >= ENTREES_MAX) {
+                log.debug("Cache KPIs plein ({} périodes), vidé", resultats.size());
+                resultats.clear();
+            }
+        }
+        resultats.put(cle, entree);
+    }
+
+    // Les requêtes qui partagent un calcul reçoivent la même exception que celle qui l'a lancé
+    private static DashboardKpiResponse attendre(CompletableFuture<DashboardKpiResponse> calcul) {
+        try {
+            return calcul.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error erreur) {
+                throw erreur;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.bf4invest.service;
+
+import com.bf4invest.dto.OcrExtractResult;
+import com.bf4invest.model.OcrResultatCache;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Cache des résultats OCR adressé par contenu : empreinte SHA-256 du fichier, providers/modèles utilisés et version
+ * du prompt.
+ * <p>
+ * Un LRU en mémoire ({@code ocr.cache.memory-entries} résultats) est consulté avant la collection {@code ocr_cache},
+ * qui conserve les résultats entre redémarrages. Les envois simultanés d'un même fichier partagent un seul appel
+ * OCR ; les échecs ne sont jamais mis en cache. Chaque appelant reçoit sa propre copie du résultat : corriger les
+ * lignes extraites avant de créer un BC ne modifie pas la version en cache. Une indisponibilité de MongoDB ne fait que désactiver le niveau
+ * persistant.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CacheResultatsOcr {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${ocr.cache.enabled:true}")
+    private boolean actif;
+
+    @Value("${ocr.cache.memory-entries:200}")
+    private int entreesMemoireMax;
+
+    @FunctionalInterface
+    public interface ExtractionOcr {
+        OcrExtractResult extraire() throws IOException;
+    }
+
+    /** Clé du cache : un changement de provider, de modèle ou de prompt n'est jamais servi par un ancien résultat. */
+    public record Cle(String sha256, String providers, String versionPrompt) {
+        String id() {
+            return sha256 + "|" + providers + "|" + versionPrompt;
+        }
+    }
+
+    private record Resultat(OcrExtractResult resultat, long dureeMs) {}
+
+    private final Map<String, Resultat> memoire = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Resultat> eldest) {
+            return size() > entreesMemoireMax;
+        }
+    };
+    private final Map<String, CompletableFuture<Resultat>> appelsEnCours = new ConcurrentHashMap<>();
+
+    private final AtomicLong hitsMemoire = new AtomicLong();
+    private final AtomicLong hitsMongo = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong partages = new AtomicLong();
+    private final AtomicLong echecs = new AtomicLong();
+    private final AtomicLong latenceEconomiseeMs = new AtomicLong();
+    private final AtomicLong dureeTotaleOcrMs = new AtomicLong();
+
+    /**
+     * Résultat OCR pour la clé : depuis la mémoire, depuis MongoDB, depuis l'appel déjà en cours pour la même clé,
+     * sinon obtenu par {@code extraction} sur le thread appelant puis mis en cache.
+     */
+    public OcrExtractResult obtenir(Cle cle, ExtractionOcr extraction) throws IOException {
+        if (!actif) {
+            return extraction.extraire();
+        }
+        String id = cle.id();
+        Resultat enMemoire;
+        synchronized (memoire) {
+            enMemoire = memoire.get(id);
+        }
+        if (enMemoire != null) {
+            hitsMemoire.incrementAndGet();
+            latenceEconomiseeMs.addAndGet(enMemoire.dureeMs());
+            return copie(enMemoire.resultat());
+        }
+
+        CompletableFuture<Resultat> nouveau = new CompletableFuture<>();
+        CompletableFuture<Resultat> existant = appelsEnCours.putIfAbsent(id, nouveau);
+        if (existant != null) {
+            partages.incrementAndGet();
+            Resultat partage = attendre(existant);
+            latenceEconomiseeMs.addAndGet(partage.dureeMs());
+            return copie(partage.resultat());
+        }
+
+        try {
+            Resultat persiste = lire(id);
+            if (persiste != null) {
+                hitsMongo.incrementAndGet();
+                latenceEconomiseeMs.addAndGet(persiste.dureeMs());
+            } else {
+                misses.incrementAndGet();
+                long debut = System.currentTimeMillis();
+                OcrExtractResult resultat = extraction.extraire();
+                long duree = System.currentTimeMillis() - debut;
+                dureeTotaleOcrMs.addAndGet(duree);
+                persiste = new Resultat(resultat, duree);
+                if (resultat != null) {
+                    enregistrer(cle, persiste);
+                }
+            }
+            if (persiste.resultat() != null) {
+                synchronized (memoire) {
+                    memoire.put(id, persiste);
+                }
+            }
+            nouveau.complete(persiste);
+            return copie(persiste.resultat());
+        } catch (IOException | RuntimeException | Error e) {
+            echecs.incrementAndGet();
+            nouveau.completeExceptionally(e);
+            throw e;
+        } finally {
+            appelsEnCours.remove(id, nouveau);
+        }
+    }
+
+    public Map<String, Object> statistiques() {
+        long hits = hitsMemoire.get() + hitsMongo.get() + partages.get();
+        long total = hits + misses.get();
+        long appelsReussis = misses.get() - echecs.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("actif", actif);
+        stats.put("hitsMemoire", hitsMemoire.get());
+        stats.put("hitsMongo", hitsMongo.get());
+        stats.put("partages", partages.get());
+        stats.put("misses", misses.get());
+        stats.put("echecs", echecs.get());
+        stats.put("tauxHit", total > 0 ? (double) hits / total : 0.0);
+        stats.put("latenceEconomiseeMs", latenceEconomiseeMs.get());
+        stats.put("dureeMoyenneOcrMs", appelsReussis > 0 ? dureeTotaleOcrMs.get() / appelsReussis : 0);
+        stats.put("appelsEnCours", appelsEnCours.size());
+        synchronized (memoire) {
+            stats.put("entreesMemoire", memoire.size());
+        }
+        stats.put("entreesMemoireMax", entreesMemoireMax);
+        return stats;
+    }
+
+    /** Empreinte SHA-256 (hexadécimal) d'un contenu. */
+    public static String empreinte(byte[] contenu) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(contenu));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponible", e);
+        }
+    }
+
+    public static String empreinte(String texte) {
+        return empreinte(texte.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Copie profonde (le résultat et ses lignes sont mutables). */
+    static OcrExtractResult copie(OcrExtractResult resultat) {
+        if (resultat == null) {
+            return null;
+        }
+        return OcrExtractResult.builder()
+                .rawText(resultat.getRawText())
+                .numeroDocument(resultat.getNumeroDocument())
+                .dateDocument(resultat.getDateDocument())
+                .fournisseurNom(resultat.getFournisseurNom())
+                .lignes(resultat.getLignes() == null ? null : resultat.getLignes().stream()
+                        .map(ligne -> ligne == null ? null : OcrExtractResult.OcrProductLine.builder()
+                                .designation(ligne.getDesignation())
+                                .quantite(ligne.getQuantite())
+                                .prixUnitaireHT(ligne.getPrixUnitaireHT())
+                                .prixTotalHT(ligne.getPrixTotalHT())
+                                .unite(ligne.getUnite())
+                                .build())
+                        .collect(Collectors.toCollection(ArrayList::new)))
+                .confidence(resultat.getConfidence())
+                .build();
+    }
+
+    private Resultat lire(String id) {
+        try {
+            OcrResultatCache entree = mongoTemplate.findById(id, OcrResultatCache.class);
+            return entree != null && entree.getResultat() != null
+                    ? new Resultat(entree.getResultat(), entree.getDureeMs())
+                    : null;
+        } catch (RuntimeException e) {
+            log.warn("⚠️ [OCR] Lecture du cache OCR impossible: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void enregistrer(Cle cle, Resultat resultat) {
+        try {
+            mongoTemplate.save(OcrResultatCache.builder()
+                    .id(cle.id())
+                    .sha256(cle.sha256())
+                    .providers(cle.providers())
+                    .versionPrompt(cle.versionPrompt())
+                    .resultat(resultat.resultat())
+                    .dureeMs(resultat.dureeMs())
+                    .createdAt(LocalDateTime.now())
+                    .build());
+        } catch (RuntimeException e) {
+            log.warn("⚠️ [OCR] Enregistrement du cache OCR impossible: {}", e.getMessage());
+        }
+    }
+
+    // Les envois qui partagent un appel reçoivent la même exception que celui qui l'a lancé
+    private static Resultat attendre(CompletableFuture<Resultat> appel) throws IOException {
+        try {
+            return appel.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error erreur) {
+                throw erreur;
+            }
+            throw e;
+        }
+    }
+}
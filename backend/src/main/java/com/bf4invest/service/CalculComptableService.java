@@ -20,9 +20,41 @@ import java.util.Optional;
 @RequiredArgsConstructor
 public class CalculComptableService {
     
+    /**
+     * Version des formules de calcul. Les champs calculés sont persistés à l'écriture avec cette
+     * version ; l'incrémenter lorsque les formules changent pour que le recalcul par lot
+     * (DataMigrationService.recalculerChampsComptablesObsoletes) ne traite que les documents obsolètes.
+     */
+    public static final int CALC_SCHEMA_VERSION = 1;
+    
     private final ParametresCalculService parametresCalculService;
     private final BandeCommandeRepository bcRepository;
     
+    /**
+     * Indique si les champs calculés d'une facture ont été produits par la version courante des formules.
+     */
+    public static boolean estAJour(Integer calcSchemaVersion) {
+        return calcSchemaVersion != null && calcSchemaVersion >= CALC_SCHEMA_VERSION;
+    }
+    
+    /**
+     * Calcule les champs comptables d'une FactureVente uniquement s'ils sont obsolètes (lecture seule, sans sauvegarde).
+     */
+    public void calculerSiObsolete(FactureVente facture) {
+        if (facture != null && !estAJour(facture.getCalcSchemaVersion())) {
+            calculerFactureVente(facture);
+        }
+    }
+    
+    /**
+     * Calcule les champs comptables d'une FactureAchat uniquement s'ils sont obsolètes (lecture seule, sans sauvegarde).
+     */
+    public void calculerSiObsolete(FactureAchat facture) {
+        if (facture != null && !estAJour(facture.getCalcSchemaVersion())) {
+            calculerFactureAchat(facture);
+        }
+    }
+    
     /**
      * Calcule tous les champs comptables pour une FactureVente.
      */
@@ -73,6 +105,7 @@ public class CalculComptableService {
         facture.setTvaFactureYcRg(calculerTvaFactureYcRg(facture));
         facture.setTvaPaye(calculerTvaPaye(facture));
         facture.setBilan(calculerBilan(facture));
+        facture.setCalcSchemaVersion(CALC_SCHEMA_VERSION);
     }
     
     /**
@@ -125,6 +158,7 @@ public class CalculComptableService {
         facture.setTvaFactureYcRg(calculerTvaFactureYcRg(facture));
         facture.setTvaPaye(calculerTvaPaye(facture));
         facture.setBilan(calculerBilan(facture));
+        facture.setCalcSchemaVersion(CALC_SCHEMA_VERSION);
     }
     
     /**
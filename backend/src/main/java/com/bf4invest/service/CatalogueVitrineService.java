@@ -0,0 +1,172 @@
+package com.bf4invest.service;
+
+import com.bf4invest.dto.PageResponse;
+import com.bf4invest.dto.PublicProductDto;
+import com.bf4invest.model.Product;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Catalogue public du site vitrine, précalculé en mémoire.
+ * <p>
+ * L'instantané n'est reconstruit que si les produits ont changé : au plus une vérification toutes les
+ * {@code app.public.catalogue.check-interval-seconds} secondes (nombre de produits + dernier {@code updatedAt},
+ * une requête indexée), ou immédiatement après {@link #invalider()}. Les visiteurs ne touchent donc plus
+ * MongoDB, et l'ETag (empreinte du contenu) permet de répondre 304 sans rien renvoyer.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CatalogueVitrineService {
+
+    public static final String CATEGORIE_DEFAUT = "Matériaux de Construction";
+
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${app.public.catalogue.check-interval-seconds:30}")
+    private long intervalleVerificationSecondes;
+
+    /** URL publique de l'API (ex: https://api.exemple.ma/api) ; vide : URLs d'images relatives à l'API. */
+    @Value("${app.public.base-url:}")
+    private String urlPublique;
+
+    /** Catalogue figé : produits triés (catégorie, désignation) et ETag fort calculé sur leur contenu. */
+    public record Instantane(String etag, List<PublicProductDto> produits, String source) {}
+
+    private volatile Instantane instantane;
+    private volatile long prochaineVerification;
+    private volatile boolean invalide = true;
+
+    /**
+     * Force la reconstruction à la prochaine lecture (modification d'un produit depuis l'application).
+     */
+    public void invalider() {
+        invalide = true;
+    }
+
+    public Instantane instantane() {
+        Instantane courant = instantane;
+        if (courant != null && !invalide && System.currentTimeMillis() < prochaineVerification) {
+            return courant;
+        }
+        synchronized (this) {
+            // Un seul thread vérifie / reconstruit, les autres reprennent son résultat
+            courant = instantane;
+            if (courant != null && !invalide && System.currentTimeMillis() < prochaineVerification) {
+                return courant;
+            }
+            invalide = false;
+            String source = empreinteSource();
+            if (courant == null || !courant.source().equals(source)) {
+                courant = construire(source);
+                instantane = courant;
+            }
+            prochaineVerification = System.currentTimeMillis() + intervalleVerificationSecondes * 1000;
+            return courant;
+        }
+    }
+
+    /**
+     * Produits de l'instantané, filtrés par catégorie (insensible à la casse) si fournie.
+     */
+    public List<PublicProductDto> produits(Instantane catalogue, String categorie) {
+        if (categorie == null || categorie.isBlank()) {
+            return catalogue.produits();
+        }
+        String filtre = categorie.trim().toLowerCase(Locale.ROOT);
+        return catalogue.produits().stream()
+                .filter(p -> p.getCategorie().toLowerCase(Locale.ROOT).equals(filtre))
+                .toList();
+    }
+
+    public PageResponse<PublicProductDto> page(Instantane catalogue, String categorie, int page, int size) {
+        List<PublicProductDto> produits = produits(catalogue, categorie);
+        Pageable pageable = PageResponse.pageDemandee(page, size, Sort.unsorted());
+        int debut = (int) Math.min(pageable.getOffset(), produits.size());
+        int fin = Math.min(debut + pageable.getPageSize(), produits.size());
+        return PageResponse.of(produits.subList(debut, fin), pageable, produits.size());
+    }
+
+    // Nombre de produits + dernière modification : change à chaque création, suppression ou mise à jour
+    private String empreinteSource() {
+        Query query = new Query().with(Sort.by(Sort.Direction.DESC, "updatedAt")).limit(1);
+        query.fields().include("updatedAt");
+        Product dernier = mongoTemplate.findOne(query, Product.class);
+        LocalDateTime derniereModification = dernier != null ? dernier.getUpdatedAt() : null;
+        return mongoTemplate.getCollection(mongoTemplate.getCollectionName(Product.class)).estimatedDocumentCount()
+                + "|" + derniereModification;
+    }
+
+    private Instantane construire(String source) {
+        long debut = System.currentTimeMillis();
+        Query query = new Query();
+        query.fields().include("refArticle", "designation", "unite", "categorie", "prixVentePondereHT", "tva",
+                "quantiteEnStock", "imageId", "imageMiniatureId", "imageContentType");
+        List<PublicProductDto> produits = mongoTemplate.find(query, Product.class).stream()
+                .map(this::versDto)
+                .sorted(Comparator.comparing(PublicProductDto::getCategorie)
+                        .thenComparing(p -> Objects.toString(p.getDesignation(), ""))
+                        .thenComparing(PublicProductDto::getId))
+                .toList();
+        String etag = "\"" + empreinte(produits) + "\"";
+        log.info("Catalogue vitrine reconstruit: {} produits en {} ms (ETag {})",
+                produits.size(), System.currentTimeMillis() - debut, etag);
+        return new Instantane(etag, produits, source);
+    }
+
+    private PublicProductDto versDto(Product p) {
+        return PublicProductDto.builder()
+                .id(p.getId())
+                .refArticle(p.getRefArticle())
+                .designation(p.getDesignation())
+                .unite(p.getUnite())
+                .prixVentePondereHT(p.getPrixVentePondereHT())
+                .tva(p.getTva())
+                .quantiteEnStock(p.getQuantiteEnStock())
+                .imageUrl(urlImage(p.getImageId()))
+                .imageMiniatureUrl(urlImage(p.getImageMiniatureId() != null ? p.getImageMiniatureId() : p.getImageId()))
+                .imageContentType(p.getImageContentType())
+                .categorie(p.getCategorie() != null && !p.getCategorie().trim().isEmpty()
+                        ? p.getCategorie()
+                        : CATEGORIE_DEFAUT)
+                .build();
+    }
+
+    // Instantané partagé par tous les visiteurs : l'URL ne dépend jamais de la requête (en-tête Host) qui l'a construit
+    private String urlImage(String imageId) {
+        if (imageId == null) {
+            return null;
+        }
+        return StringUtils.removeEnd(StringUtils.trimToEmpty(urlPublique), "/") + "/public/images/" + imageId;
+    }
+
+    private static String empreinte(List<PublicProductDto> produits) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (PublicProductDto p : produits) {
+                digest.update(p.toString().getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) '\n');
+            }
+            return HexFormat.of().formatHex(digest.digest(), 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponible", e);
+        }
+    }
+}
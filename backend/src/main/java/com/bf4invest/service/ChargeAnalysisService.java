@@ -2,9 +2,7 @@ package com.bf4invest.service;
 
 import com.bf4invest.dto.DashboardKpiResponse;
 import com.bf4invest.model.Charge;
-import com.bf4invest.repository.ChargeRepository;
 import com.bf4invest.util.NumberUtils;
-import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
@@ -12,25 +10,11 @@ import java.util.*;
 import java.util.stream.Collectors;
 
 @Service
-@RequiredArgsConstructor
 public class ChargeAnalysisService {
     
-    private final ChargeRepository chargeRepository;
-    
-    public DashboardKpiResponse.ChargeAnalysis analyzeCharges(LocalDate from, LocalDate to) {
-        List<Charge> charges = chargeRepository.findAll();
-        
-        // Filtrer par période si nécessaire
-        if (from != null || to != null) {
-            charges = charges.stream()
-                    .filter(c -> {
-                        if (c.getDateEcheance() == null) return false;
-                        if (from != null && c.getDateEcheance().isBefore(from)) return false;
-                        if (to != null && c.getDateEcheance().isAfter(to)) return false;
-                        return true;
-                    })
-                    .collect(Collectors.toList());
-        }
+    public DashboardKpiResponse.ChargeAnalysis analyzeCharges(DonneesDashboard donnees) {
+        // Charges de la période (dateEcheance), déjà filtrées au chargement
+        List<Charge> charges = donnees.charges();
         
         double totalCharges = charges.stream()
                 .mapToDouble(c -> c.getMontant() != null ? c.getMontant() : 0.0)
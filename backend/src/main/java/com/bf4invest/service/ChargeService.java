@@ -5,14 +5,22 @@ import com.bf4invest.repository.ChargeRepository;
 import com.bf4invest.util.NumberUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import com.bf4invest.dto.PageResponse;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
+import java.util.regex.Pattern;
 
 @Slf4j
 @Service
@@ -23,6 +31,7 @@ public class ChargeService {
     private final AuditService auditService;
     private final SoldeService soldeService;
     private final ComptabiliteService comptabiliteService;
+    private final MongoTemplate mongoTemplate;
 
     public List<Charge> findAll(
             LocalDate from,
@@ -76,6 +85,56 @@ public class ChargeService {
                 .toList();
     }
 
+    /**
+     * Liste paginée des charges : mêmes filtres que findAll, exécutés par MongoDB.
+     * Tri par défaut: échéance desc, puis updatedAt desc.
+     */
+    public PageResponse<Charge> findPage(
+            LocalDate from,
+            LocalDate to,
+            String statut,
+            Boolean imposable,
+            String q,
+            int page,
+            int size,
+            String direction
+    ) {
+        List<Criteria> filtres = new ArrayList<>();
+        if (from != null || to != null) {
+            Criteria echeance = Criteria.where("dateEcheance");
+            if (from != null) {
+                echeance.gte(from);
+            }
+            if (to != null) {
+                echeance.lte(to);
+            }
+            filtres.add(echeance);
+        }
+        if (statut != null && !statut.trim().isEmpty()) {
+            // Statuts enregistrés en majuscules (PREVUE, PAYEE) : égalité exacte plutôt qu'une regex
+            filtres.add(Criteria.where("statut").is(statut.trim().toUpperCase(Locale.ROOT)));
+        }
+        if (imposable != null) {
+            filtres.add(Criteria.where("imposable").is(imposable));
+        }
+        if (q != null && !q.trim().isEmpty()) {
+            String motif = Pattern.quote(q.trim());
+            filtres.add(new Criteria().orOperator(
+                    Criteria.where("libelle").regex(motif, "i"),
+                    Criteria.where("categorie").regex(motif, "i"),
+                    Criteria.where("notes").regex(motif, "i")));
+        }
+        Criteria criteria = filtres.isEmpty() ? new Criteria() : new Criteria().andOperator(filtres);
+
+        Sort.Direction sens = "asc".equalsIgnoreCase(direction) ? Sort.Direction.ASC : Sort.Direction.DESC;
+        Pageable pageable = PageResponse.pageDemandee(page, size,
+                Sort.by(sens, "dateEcheance").and(Sort.by(sens, "updatedAt")).and(Sort.by(sens, "id")));
+
+        List<Charge> charges = mongoTemplate.find(new Query(criteria).with(pageable), Charge.class);
+        long total = mongoTemplate.count(new Query(criteria), Charge.class);
+        return PageResponse.of(charges, pageable, total);
+    }
+
     public Optional<Charge> findById(String id) {
         return chargeRepository.findById(id);
     }
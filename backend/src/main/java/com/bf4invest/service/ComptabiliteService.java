@@ -4,16 +4,22 @@ import com.bf4invest.model.*;
 import com.bf4invest.repository.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
@@ -27,6 +33,15 @@ public class ComptabiliteService {
     private final FactureAchatRepository factureAchatRepository;
     private final PaiementRepository paiementRepository;
     private final ChargeRepository chargeRepository;
+    private final MongoTemplate mongoTemplate;
+    private final BalancePeriodeService balancePeriodeService;
+
+    /** Durée de validité du cache du plan comptable (filet de sécurité si plusieurs instances). */
+    private static final long PLAN_COMPTABLE_TTL_MS = 5 * 60 * 1000L;
+
+    /** Plan comptable indexé par code (métadonnées seulement : libellé, classe, type). */
+    private volatile Map<String, CompteComptable> planComptableCache;
+    private volatile long planComptableChargeA;
 
     /**
      * Initialise le plan comptable PCGM standard
@@ -128,6 +143,7 @@ public class ComptabiliteService {
         comptes.add(createCompte("7611", "Produits financiers", "7", CompteComptable.TypeCompte.PRODUIT, false, null, now));
 
         compteRepository.saveAll(comptes);
+        invaliderPlanComptable();
         log.info("Plan comptable PCGM initialisé avec {} comptes", comptes.size());
     }
 
@@ -190,6 +206,7 @@ public class ComptabiliteService {
 
         if (needsSave) {
             compteRepository.saveAll(toSave);
+            invaliderPlanComptable();
             log.info("{} compte(s) essentiel(s) créé(s) automatiquement", toSave.size());
         }
     }
@@ -347,7 +364,9 @@ public class ComptabiliteService {
                 .updatedAt(now)
                 .build();
 
-        return compteRepository.save(compte);
+        CompteComptable saved = compteRepository.save(compte);
+        invaliderPlanComptable();
+        return saved;
     }
 
     /**
@@ -378,7 +397,9 @@ public class ComptabiliteService {
         }
 
         compte.setUpdatedAt(LocalDateTime.now());
-        return compteRepository.save(compte);
+        CompteComptable saved = compteRepository.save(compte);
+        invaliderPlanComptable();
+        return saved;
     }
 
     /**
@@ -389,7 +410,9 @@ public class ComptabiliteService {
                 .orElseThrow(() -> new IllegalArgumentException("Compte introuvable pour id " + id));
         compte.setActif(false);
         compte.setUpdatedAt(LocalDateTime.now());
-        return compteRepository.save(compte);
+        CompteComptable saved = compteRepository.save(compte);
+        invaliderPlanComptable();
+        return saved;
     }
 
     /**
@@ -472,6 +495,7 @@ public class ComptabiliteService {
                 .build();
 
         EcritureComptable saved = ecritureRepository.save(ecriture);
+        balancePeriodeService.appliquerEcriture(saved);
         updateComptesSoldes(lignes);
         log.info("Écriture générée pour facture vente {}", facture.getNumeroFactureVente());
         return saved;
@@ -557,6 +581,7 @@ public class ComptabiliteService {
                 .build();
 
         EcritureComptable saved = ecritureRepository.save(ecriture);
+        balancePeriodeService.appliquerEcriture(saved);
         updateComptesSoldes(lignes);
         log.info("Écriture générée pour facture achat {}", facture.getNumeroFactureAchat());
         return saved;
@@ -644,6 +669,7 @@ public class ComptabiliteService {
                 .build();
 
         EcritureComptable saved = ecritureRepository.save(ecriture);
+        balancePeriodeService.appliquerEcriture(saved);
         updateComptesSoldes(lignes);
         log.info("Écriture générée pour avoir vente {}", avoir.getNumeroFactureVente());
         return saved;
@@ -731,6 +757,7 @@ public class ComptabiliteService {
                 .build();
 
         EcritureComptable saved = ecritureRepository.save(ecriture);
+        balancePeriodeService.appliquerEcriture(saved);
         updateComptesSoldes(lignes);
         log.info("Écriture générée pour avoir achat {}", avoir.getNumeroFactureAchat());
         return saved;
@@ -829,6 +856,7 @@ public class ComptabiliteService {
                 .build();
 
         EcritureComptable saved = ecritureRepository.save(ecriture);
+        balancePeriodeService.appliquerEcriture(saved);
         updateComptesSoldes(lignes);
         log.info("Écriture générée pour paiement {}", paiement.getId());
         return saved;
@@ -911,6 +939,7 @@ public class ComptabiliteService {
                 .build();
 
         EcritureComptable saved = ecritureRepository.save(ecriture);
+        balancePeriodeService.appliquerEcriture(saved);
         updateComptesSoldes(lignes);
         log.info("Écriture générée pour charge {}", charge.getLibelle());
         return saved;
@@ -1012,6 +1041,7 @@ public class ComptabiliteService {
                 .updatedAt(LocalDateTime.now())
                 .build();
         EcritureComptable saved = ecritureRepository.save(ecriture);
+        balancePeriodeService.appliquerEcriture(saved);
         updateComptesSoldes(lignes);
         return saved;
     }
@@ -1142,6 +1172,7 @@ public class ComptabiliteService {
                 .build();
 
         EcritureComptable saved = ecritureRepository.save(ecriture);
+        balancePeriodeService.appliquerEcriture(saved);
         updateComptesSoldes(saved.getLignes());
         return saved;
     }
@@ -1192,6 +1223,23 @@ public class ComptabiliteService {
         return ecritureRepository.findAll();
     }
 
+    /**
+     * Flux (curseur MongoDB) des écritures filtrées, triées par date, pour les exports volumineux.
+     * Le flux doit être fermé par l'appelant.
+     */
+    public Stream<EcritureComptable> streamEcritures(LocalDate dateDebut, LocalDate dateFin, String journal, String exerciceId,
+                                                     String pieceType, String pieceId) {
+        Criteria criteria = criteresEcritures(dateDebut, dateFin, exerciceId);
+        if (journal != null) {
+            criteria.and("journal").is(journal);
+        }
+        if (pieceType != null && pieceId != null) {
+            criteria.and("pieceJustificativeType").is(pieceType).and("pieceJustificativeId").is(pieceId);
+        }
+        Query query = new Query(criteria).with(Sort.by(Sort.Direction.ASC, "dateEcriture"));
+        return mongoTemplate.stream(query, EcritureComptable.class);
+    }
+
     /**
      * Récupère une écriture par son ID
      */
@@ -1209,56 +1257,109 @@ public class ComptabiliteService {
     // ========== GRAND LIVRE ==========
 
     /**
-     * Récupère le grand livre pour un compte donné
+     * Récupère le grand livre pour un compte donné (filtre sur lignes.compteCode exécuté par MongoDB)
      */
     public List<EcritureComptable> getGrandLivre(String compteCode, LocalDate dateDebut, LocalDate dateFin, String exerciceId) {
-        List<EcritureComptable> ecritures = getEcritures(dateDebut, dateFin, null, exerciceId, null, null);
-        return ecritures.stream()
-                .filter(e -> e.getLignes() != null && e.getLignes().stream()
-                        .anyMatch(l -> compteCode.equals(l.getCompteCode())))
-                .toList();
+        Criteria criteria = criteresEcritures(dateDebut, dateFin, exerciceId).and("lignes.compteCode").is(compteCode);
+        Query query = new Query(criteria).with(Sort.by(Sort.Direction.ASC, "dateEcriture"));
+        return mongoTemplate.find(query, EcritureComptable.class);
+    }
+
+    /**
+     * Flux (curseur MongoDB) du grand livre d'un compte. Le flux doit être fermé par l'appelant.
+     */
+    public Stream<EcritureComptable> streamGrandLivre(String compteCode, LocalDate dateDebut, LocalDate dateFin, String exerciceId) {
+        Criteria criteria = criteresEcritures(dateDebut, dateFin, exerciceId).and("lignes.compteCode").is(compteCode);
+        Query query = new Query(criteria).with(Sort.by(Sort.Direction.ASC, "dateEcriture"));
+        return mongoTemplate.stream(query, EcritureComptable.class);
     }
 
     // ========== BALANCE ==========
 
     /**
-     * Calcule la balance générale (tous les comptes avec débit/crédit/solde)
+     * Calcule la balance générale (tous les comptes avec débit/crédit/solde).
+     * Les totaux par compte viennent de la balance matérialisée par mois (BalancePeriodeService),
+     * fusionnés avec le plan comptable en cache.
+     * Les comptes renvoyés sont des copies : les comptes persistés ne sont pas modifiés.
      */
     public List<CompteComptable> getBalance(LocalDate dateDebut, LocalDate dateFin, String exerciceId) {
-        List<EcritureComptable> ecritures = getEcritures(dateDebut, dateFin, null, exerciceId, null, null);
-        
-        // Réinitialiser les soldes des comptes
-        List<CompteComptable> comptes = compteRepository.findAll();
-        comptes.forEach(c -> {
-            c.setSoldeDebit(0.0);
-            c.setSoldeCredit(0.0);
-        });
-
-        // Recalculer les soldes depuis les écritures
-        for (EcritureComptable ecriture : ecritures) {
-            if (ecriture.getLignes() != null) {
-                for (LigneEcriture ligne : ecriture.getLignes()) {
-                    Optional<CompteComptable> compteOpt = compteRepository.findByCode(ligne.getCompteCode());
-                    if (compteOpt.isPresent()) {
-                        CompteComptable compte = compteOpt.get();
-                        if (ligne.getDebit() != null && ligne.getDebit() > 0) {
-                            compte.setSoldeDebit((compte.getSoldeDebit() != null ? compte.getSoldeDebit() : 0.0) + ligne.getDebit());
-                        }
-                        if (ligne.getCredit() != null && ligne.getCredit() > 0) {
-                            compte.setSoldeCredit((compte.getSoldeCredit() != null ? compte.getSoldeCredit() : 0.0) + ligne.getCredit());
-                        }
-                        compte.setSolde(calculateSolde(compte));
-                    }
-                }
+        Map<String, CompteComptable> plan = getPlanComptable();
+        List<CompteComptable> balance = new ArrayList<>();
+        for (Map.Entry<String, double[]> total : balancePeriodeService.totauxParCompte(dateDebut, dateFin, exerciceId).entrySet()) {
+            CompteComptable compte = plan.get(total.getKey());
+            if (compte == null) {
+                continue;
             }
+            CompteComptable ligneBalance = copierCompte(compte);
+            ligneBalance.setSoldeDebit(total.getValue()[0]);
+            ligneBalance.setSoldeCredit(total.getValue()[1]);
+            ligneBalance.setSolde(calculateSolde(ligneBalance));
+            balance.add(ligneBalance);
         }
 
-        return comptes.stream()
+        return balance.stream()
                 .filter(c -> c.getSoldeDebit() > 0 || c.getSoldeCredit() > 0 || Math.abs(c.getSolde()) > 0.01)
-                .sorted((a, b) -> a.getCode().compareTo(b.getCode()))
+                .sorted(Comparator.comparing(CompteComptable::getCode))
                 .toList();
     }
 
+    /**
+     * Filtres communs balance / grand livre : période (bornes incluses) et exercice.
+     */
+    private Criteria criteresEcritures(LocalDate dateDebut, LocalDate dateFin, String exerciceId) {
+        Criteria criteria = new Criteria();
+        if (dateDebut != null || dateFin != null) {
+            Criteria date = criteria.and("dateEcriture");
+            if (dateDebut != null) {
+                date.gte(dateDebut);
+            }
+            if (dateFin != null) {
+                date.lte(dateFin);
+            }
+        }
+        if (exerciceId != null) {
+            criteria.and("exerciceId").is(exerciceId);
+        }
+        return criteria;
+    }
+
+    /**
+     * Plan comptable indexé par code, rechargé après toute modification de compte (ou expiration du TTL).
+     */
+    private Map<String, CompteComptable> getPlanComptable() {
+        Map<String, CompteComptable> plan = planComptableCache;
+        if (plan == null || System.currentTimeMillis() - planComptableChargeA > PLAN_COMPTABLE_TTL_MS) {
+            plan = new HashMap<>();
+            for (CompteComptable compte : compteRepository.findAll()) {
+                if (compte.getCode() != null) {
+                    plan.putIfAbsent(compte.getCode(), compte);
+                }
+            }
+            planComptableCache = plan;
+            planComptableChargeA = System.currentTimeMillis();
+        }
+        return plan;
+    }
+
+    private void invaliderPlanComptable() {
+        planComptableCache = null;
+    }
+
+    private CompteComptable copierCompte(CompteComptable compte) {
+        return CompteComptable.builder()
+                .id(compte.getId())
+                .code(compte.getCode())
+                .libelle(compte.getLibelle())
+                .classe(compte.getClasse())
+                .type(compte.getType())
+                .collectif(compte.getCollectif())
+                .compteParent(compte.getCompteParent())
+                .actif(compte.getActif())
+                .createdAt(compte.getCreatedAt())
+                .updatedAt(compte.getUpdatedAt())
+                .build();
+    }
+
     // ========== BILAN ==========
 
     /**
@@ -1530,11 +1631,15 @@ public class ComptabiliteService {
             throw new IllegalStateException("Impossible de lettrer: le total débit et crédit ne se compensent pas pour le compte " + compteCode);
         }
 
+        List<EcritureComptable> nouvellementLettrees = ecritures.stream()
+                .filter(e -> !Boolean.TRUE.equals(e.getLettree()))
+                .toList();
         for (EcritureComptable ecriture : ecritures) {
             ecriture.setLettree(Boolean.TRUE);
             ecriture.setUpdatedAt(LocalDateTime.now());
         }
         ecritureRepository.saveAll(ecritures);
+        balancePeriodeService.appliquerLettrage(nouvellementLettrees);
     }
 
     /**
@@ -0,0 +1,109 @@
+package com.bf4invest.service;
+
+import com.bf4invest.model.Compteur;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.function.LongSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Attribution atomique des numéros d'ordre (BC, BL, OV, factures).
+ * <p>
+ * Chaque numéro est un {@code findAndModify} {@code $inc} sur le compteur (type, préfixe, période) : un seul
+ * aller-retour, sans lecture de la collection métier, et sans doublon entre threads ni entre instances. Un
+ * compteur absent est créé une seule fois à partir des documents existants (voir {@link #amorce}).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CompteurService {
+
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * Numéro d'ordre suivant (à partir de 1).
+     *
+     * @param amorce dernier numéro déjà utilisé dans les données existantes, appelé seulement à la création du
+     *               compteur
+     */
+    public long suivant(String type, String prefixe, String periode, LongSupplier amorce) {
+        String id = cle(type, prefixe, periode);
+        Long valeur = incrementer(id);
+        if (valeur != null) {
+            return valeur;
+        }
+        long depart = amorce.getAsLong();
+        try {
+            mongoTemplate.insert(Compteur.builder()
+                    .id(id)
+                    .type(type)
+                    .prefixe(prefixe != null ? prefixe : "")
+                    .periode(periode)
+                    .valeur(depart)
+                    .updatedAt(LocalDateTime.now())
+                    .build());
+            log.info("Compteur {} initialisé à {}", id, depart);
+        } catch (DuplicateKeyException e) {
+            // Créé au même moment par un autre thread ou une autre instance : on incrémente le sien
+        }
+        valeur = incrementer(id);
+        if (valeur == null) {
+            throw new IllegalStateException("Compteur introuvable après initialisation: " + id);
+        }
+        return valeur;
+    }
+
+    /**
+     * Dernier numéro d'ordre utilisé par les documents existants : le plus grand numéro reconnu par {@code motif}
+     * (groupe 1) dans {@code champNumero}, et au moins le nombre de documents de la période (règle de l'ancienne
+     * numérotation, qui comptait les documents).
+     */
+    public long amorce(Class<?> type, Criteria periode, String champNumero, Pattern motif) {
+        Query query = new Query(periode);
+        query.fields().include(champNumero);
+        long nombre = 0;
+        long max = 0;
+        try (Stream<Document> documents = mongoTemplate.stream(query, Document.class, mongoTemplate.getCollectionName(type))) {
+            for (Document document : (Iterable<Document>) documents::iterator) {
+                nombre++;
+                Object numero = document.get(champNumero);
+                if (numero instanceof String texte) {
+                    Matcher matcher = motif.matcher(texte.trim());
+                    if (matcher.matches()) {
+                        try {
+                            max = Math.max(max, Long.parseLong(matcher.group(1)));
+                        } catch (NumberFormatException e) {
+                            // Numéro hors format : seul le comptage s'applique
+                        }
+                    }
+                }
+            }
+        }
+        return Math.max(nombre, max);
+    }
+
+    private Long incrementer(String id) {
+        Compteur compteur = mongoTemplate.findAndModify(
+                new Query(Criteria.where("_id").is(id)),
+                new Update().inc("valeur", 1).set("updatedAt", LocalDateTime.now()),
+                FindAndModifyOptions.options().returnNew(true),
+                Compteur.class);
+        return compteur != null ? compteur.getValeur() : null;
+    }
+
+    static String cle(String type, String prefixe, String periode) {
+        return type + "|" + (prefixe != null ? prefixe : "") + "|" + periode;
+    }
+}
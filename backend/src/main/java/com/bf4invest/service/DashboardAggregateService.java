@@ -0,0 +1,578 @@
+package com.bf4invest.service;
+
+import com.bf4invest.model.BandeCommande;
+import com.bf4invest.model.FactureAchat;
+import com.bf4invest.model.FactureVente;
+import com.bf4invest.model.KpiMensuel;
+import com.bf4invest.repository.KpiMensuelRepository;
+import com.bf4invest.util.NumberUtils;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.*;
+
+/**
+ * Maintient les agrégats mensuels du tableau de bord (collection kpi_mensuels).
+ *
+ * Chaque écriture (facture, BC, paiement) recalcule uniquement le ou les mois touchés
+ * à partir d'une requête bornée sur ce mois ; le dashboard additionne ensuite les mois
+ * de la période demandée. Les mois partiels en bord de période sont calculés à la volée
+ * sur les seuls jours concernés.
+ *
+ * Deux écritures simultanées sur un même mois lancent deux recalculs : chacun réserve une révision du mois avant
+ * de lire, et n'enregistre son résultat que si sa révision est toujours la dernière. Le recalcul qui a commencé
+ * le plus tard a lu toutes les écritures antérieures ; un résultat plus ancien n'écrase jamais le sien.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DashboardAggregateService {
+
+    private static final double TOLERANCE = 0.01;
+
+    private final KpiMensuelRepository kpiRepository;
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * Résultat d'agrégation d'une période : totaux des factures de la période,
+     * totaux BC (toutes périodes, comme le calcul historique) et détail mensuel.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class KpiPeriode {
+        private final KpiMensuel total;
+        private final List<KpiMensuel> mois;
+    }
+
+    // ==================== Lecture ====================
+
+    public KpiPeriode agregerPeriode(LocalDate from, LocalDate to) {
+        Map<String, KpiMensuel> stockes = new HashMap<>();
+        KpiMensuel total = new KpiMensuel();
+        for (KpiMensuel k : kpiRepository.findAll()) {
+            stockes.put(k.getPeriode(), k);
+            ajouterBandesCommande(total, k);
+        }
+
+        List<KpiMensuel> mois = new ArrayList<>();
+        if (from == null && to == null) {
+            mois.addAll(stockes.values());
+        } else {
+            YearMonth premier = from != null ? YearMonth.from(from) : premierMoisStocke(stockes);
+            YearMonth dernier = to != null ? YearMonth.from(to) : dernierMoisStocke(stockes);
+            if (premier != null && dernier != null) {
+                for (YearMonth ym = premier; !ym.isAfter(dernier); ym = ym.plusMonths(1)) {
+                    LocalDate debutMois = ym.atDay(1);
+                    LocalDate finMois = ym.atEndOfMonth();
+                    LocalDate debut = from != null && from.isAfter(debutMois) ? from : debutMois;
+                    LocalDate fin = to != null && to.isBefore(finMois) ? to : finMois;
+                    if (debut.isAfter(fin)) {
+                        continue;
+                    }
+                    if (debut.equals(debutMois) && fin.equals(finMois)) {
+                        KpiMensuel k = stockes.get(ym.toString());
+                        if (k != null) {
+                            mois.add(k);
+                        }
+                    } else {
+                        mois.add(calculerFactures(ym.toString(), debut, fin));
+                    }
+                }
+            }
+        }
+
+        mois.sort(Comparator.comparing(KpiMensuel::getPeriode));
+        for (KpiMensuel k : mois) {
+            ajouterFactures(total, k);
+        }
+        return new KpiPeriode(total, mois);
+    }
+
+    // ==================== Maintenance incrémentale ====================
+
+    /**
+     * À appeler après création d'une facture vente ou changement de ses montants/paiements.
+     */
+    public void rafraichirPourFactureVente(FactureVente facture) {
+        Set<String> periodes = new LinkedHashSet<>();
+        periodes.add(periodeDe(facture.getDateFacture()));
+        ajouterPeriodeBC(periodes, facture.getBandeCommandeId());
+        rafraichir(periodes);
+    }
+
+    /**
+     * À appeler après modification/suppression d'une facture vente (facture null si supprimée).
+     * L'ancienne date (null = non datée) et l'ancienne BC permettent de corriger le mois quitté.
+     */
+    public void rafraichirPourFactureVente(FactureVente facture, LocalDate ancienneDate, String ancienBcId) {
+        Set<String> periodes = new LinkedHashSet<>();
+        periodes.add(periodeDe(ancienneDate));
+        if (facture != null) {
+            periodes.add(periodeDe(facture.getDateFacture()));
+            ajouterPeriodeBC(periodes, facture.getBandeCommandeId());
+        }
+        ajouterPeriodeBC(periodes, ancienBcId);
+        rafraichir(periodes);
+    }
+
+    public void rafraichirPourFactureAchat(FactureAchat facture) {
+        rafraichir(Set.of(periodeDe(facture.getDateFacture())));
+    }
+
+    public void rafraichirPourFactureAchat(FactureAchat facture, LocalDate ancienneDate) {
+        Set<String> periodes = new LinkedHashSet<>();
+        periodes.add(periodeDe(ancienneDate));
+        if (facture != null) {
+            periodes.add(periodeDe(facture.getDateFacture()));
+        }
+        rafraichir(periodes);
+    }
+
+    public void rafraichirPourBandeCommande(BandeCommande bc) {
+        rafraichir(Set.of(periodeDe(bc.getDateBC())));
+    }
+
+    public void rafraichirPourBandeCommande(BandeCommande bc, LocalDate ancienneDate) {
+        Set<String> periodes = new LinkedHashSet<>();
+        periodes.add(periodeDe(ancienneDate));
+        if (bc != null) {
+            periodes.add(periodeDe(bc.getDateBC()));
+        }
+        rafraichir(periodes);
+    }
+
+    /**
+     * Après une écriture en masse (import) : un seul recalcul par mois touché, au lieu d'un par document.
+     *
+     * @param dates  dates des documents écrits (null = non daté)
+     * @param bcIds  BCs liées dont le mois est aussi à recalculer (factures vente)
+     */
+    public void rafraichirPourDates(Collection<LocalDate> dates, Collection<String> bcIds) {
+        Set<String> periodes = new LinkedHashSet<>();
+        dates.forEach(d -> periodes.add(periodeDe(d)));
+        new LinkedHashSet<>(bcIds).forEach(bcId -> ajouterPeriodeBC(periodes, bcId));
+        rafraichir(periodes);
+    }
+
+    private void rafraichir(Set<String> periodes) {
+        for (String periode : periodes) {
+            try {
+                recalculerPeriode(periode);
+            } catch (Exception e) {
+                // Ne jamais bloquer l'écriture métier : la reconstruction corrigera l'écart
+                log.warn("Erreur lors de la mise à jour de l'agrégat KPI {}: {}", periode, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Recalcule un mois à partir des seuls documents de ce mois. Le résultat n'est pas enregistré si un autre
+     * recalcul du même mois a commencé entre-temps (il enregistrera le sien, plus récent).
+     */
+    public KpiMensuel recalculerPeriode(String periode) {
+        long revision = reserverRevision(periode);
+        KpiMensuel k;
+        Criteria bcCriteria;
+        if (KpiMensuel.SANS_DATE.equals(periode)) {
+            k = nouveauMois(periode);
+            mongoTemplate.find(queryFacturesVente(Criteria.where("dateFacture").is(null)), FactureVente.class)
+                    .forEach(f -> ajouterFactureVente(k, f));
+            mongoTemplate.find(queryFacturesAchat(Criteria.where("dateFacture").is(null)), FactureAchat.class)
+                    .forEach(f -> ajouterFactureAchat(k, f));
+            bcCriteria = Criteria.where("dateBC").is(null);
+        } else {
+            YearMonth ym = YearMonth.parse(periode);
+            k = calculerFactures(periode, ym.atDay(1), ym.atEndOfMonth());
+            bcCriteria = Criteria.where("dateBC").gte(ym.atDay(1)).lte(ym.atEndOfMonth());
+        }
+
+        List<BandeCommande> bcs = mongoTemplate.find(queryBandesCommande(bcCriteria), BandeCommande.class);
+        Set<String> bcFacturees = bcsFacturees(bcs.stream().map(BandeCommande::getId).toList());
+        bcs.forEach(bc -> ajouterBandeCommande(k, bc, bcFacturees));
+
+        Query memeRevision = new Query(Criteria.where("_id").is(periode).and("revision").is(revision));
+        if (k.getNbFacturesVente() == 0 && k.getNbFacturesAchat() == 0 && k.getNbBCs() == 0) {
+            if (mongoTemplate.remove(memeRevision, KpiMensuel.class).getDeletedCount() == 0) {
+                log.debug("Agrégat KPI {} recalculé entre-temps, suppression ignorée", periode);
+            }
+            return k;
+        }
+        k.setRevision(revision);
+        k.setUpdatedAt(LocalDateTime.now());
+        if (mongoTemplate.findAndReplace(memeRevision, k) == null) {
+            log.debug("Agrégat KPI {} recalculé entre-temps, résultat révision {} ignoré", periode, revision);
+        }
+        return k;
+    }
+
+    /**
+     * Réserve la révision suivante du mois (document créé vide s'il n'existe pas encore).
+     */
+    private long reserverRevision(String periode) {
+        KpiMensuel vide = nouveauMois(periode);
+        Update update = new Update().inc("revision", 1)
+                .setOnInsert("periode", periode)
+                .setOnInsert("updatedAt", LocalDateTime.now());
+        if (vide.getAnnee() != null) {
+            update.setOnInsert("annee", vide.getAnnee()).setOnInsert("mois", vide.getMois());
+        }
+        KpiMensuel reserve = mongoTemplate.findAndModify(new Query(Criteria.where("_id").is(periode)), update,
+                FindAndModifyOptions.options().returnNew(true).upsert(true), KpiMensuel.class);
+        return reserve.getRevision();
+    }
+
+    /**
+     * Au démarrage, construit les agrégats s'ils n'existent pas encore (première mise en service)
+     * alors que des factures ou BCs sont déjà présents.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialiserSiNecessaire() {
+        try {
+            if (kpiRepository.count() == 0
+                    && (mongoTemplate.exists(new Query(), FactureVente.class)
+                    || mongoTemplate.exists(new Query(), FactureAchat.class)
+                    || mongoTemplate.exists(new Query(), BandeCommande.class))) {
+                log.info("Aucun agrégat KPI trouvé, reconstruction initiale...");
+                reconstruireTout();
+            }
+        } catch (Exception e) {
+            log.warn("Initialisation des agrégats KPI impossible: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Reconstruit tous les agrégats en un seul passage sur les factures et BCs.
+     */
+    public Map<String, Object> reconstruireTout() {
+        long debut = System.currentTimeMillis();
+        Map<String, KpiMensuel> parPeriode = new TreeMap<>();
+
+        List<FactureVente> facturesVente = mongoTemplate.find(queryFacturesVente(new Criteria()), FactureVente.class);
+        for (FactureVente f : facturesVente) {
+            ajouterFactureVente(parPeriode.computeIfAbsent(periodeDe(f.getDateFacture()), this::nouveauMois), f);
+        }
+        List<FactureAchat> facturesAchat = mongoTemplate.find(queryFacturesAchat(new Criteria()), FactureAchat.class);
+        for (FactureAchat f : facturesAchat) {
+            ajouterFactureAchat(parPeriode.computeIfAbsent(periodeDe(f.getDateFacture()), this::nouveauMois), f);
+        }
+        Set<String> bcFacturees = new HashSet<>(mongoTemplate.findDistinct(
+                new Query(Criteria.where("bandeCommandeId").ne(null)), "bandeCommandeId", FactureVente.class, String.class));
+        List<BandeCommande> bcs = mongoTemplate.find(queryBandesCommande(new Criteria()), BandeCommande.class);
+        for (BandeCommande bc : bcs) {
+            ajouterBandeCommande(parPeriode.computeIfAbsent(periodeDe(bc.getDateBC()), this::nouveauMois), bc, bcFacturees);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        parPeriode.values().forEach(k -> k.setUpdatedAt(now));
+        kpiRepository.deleteAll();
+        kpiRepository.saveAll(parPeriode.values());
+
+        long duree = System.currentTimeMillis() - debut;
+        log.info("Agrégats KPI reconstruits: {} mois ({} FV, {} FA, {} BC) en {} ms",
+                parPeriode.size(), facturesVente.size(), facturesAchat.size(), bcs.size(), duree);
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("mois", parPeriode.size());
+        stats.put("facturesVente", facturesVente.size());
+        stats.put("facturesAchat", facturesAchat.size());
+        stats.put("bandesCommande", bcs.size());
+        stats.put("dureeMs", duree);
+        return stats;
+    }
+
+    // ==================== Vérification ====================
+
+    /**
+     * Compare les agrégats stockés avec un calcul par lecture complète des collections
+     * (ancienne méthode du dashboard). Toute différence signale une dérive à corriger
+     * via reconstruireTout().
+     */
+    public Map<String, Object> verifierCoherence(LocalDate from, LocalDate to) {
+        KpiPeriode incremental = agregerPeriode(from, to);
+        KpiMensuel attendu = calculerParScanComplet(from, to);
+        KpiMensuel obtenu = incremental.getTotal();
+
+        Map<String, Object> ecarts = new LinkedHashMap<>();
+        comparer(ecarts, "caHT", attendu.getCaHT(), obtenu.getCaHT());
+        comparer(ecarts, "caTTC", attendu.getCaTTC(), obtenu.getCaTTC());
+        comparer(ecarts, "totalHTFactures", attendu.getTotalHTFactures(), obtenu.getTotalHTFactures());
+        comparer(ecarts, "tvaCollectee", attendu.getTvaCollectee(), obtenu.getTvaCollectee());
+        comparer(ecarts, "avoirsVenteHT", attendu.getAvoirsVenteHT(), obtenu.getAvoirsVenteHT());
+        comparer(ecarts, "avoirsVenteTTC", attendu.getAvoirsVenteTTC(), obtenu.getAvoirsVenteTTC());
+        comparer(ecarts, "encoursClientsTTC", attendu.getEncoursClientsTTC(), obtenu.getEncoursClientsTTC());
+        comparer(ecarts, "nbFacturesVente", attendu.getNbFacturesVente(), obtenu.getNbFacturesVente());
+        comparer(ecarts, "nbAvoirsVente", attendu.getNbAvoirsVente(), obtenu.getNbAvoirsVente());
+        comparer(ecarts, "achatsHT", attendu.getAchatsHT(), obtenu.getAchatsHT());
+        comparer(ecarts, "achatsTTC", attendu.getAchatsTTC(), obtenu.getAchatsTTC());
+        comparer(ecarts, "tvaDeductible", attendu.getTvaDeductible(), obtenu.getTvaDeductible());
+        comparer(ecarts, "avoirsAchatHT", attendu.getAvoirsAchatHT(), obtenu.getAvoirsAchatHT());
+        comparer(ecarts, "avoirsAchatTTC", attendu.getAvoirsAchatTTC(), obtenu.getAvoirsAchatTTC());
+        comparer(ecarts, "encoursFournisseursTTC", attendu.getEncoursFournisseursTTC(), obtenu.getEncoursFournisseursTTC());
+        comparer(ecarts, "nbFacturesAchat", attendu.getNbFacturesAchat(), obtenu.getNbFacturesAchat());
+        comparer(ecarts, "nbAvoirsAchat", attendu.getNbAvoirsAchat(), obtenu.getNbAvoirsAchat());
+        comparer(ecarts, "bcTotalVenteHT", attendu.getBcTotalVenteHT(), obtenu.getBcTotalVenteHT());
+        comparer(ecarts, "bcTotalAchatHT", attendu.getBcTotalAchatHT(), obtenu.getBcTotalAchatHT());
+        comparer(ecarts, "nbBCs", attendu.getNbBCs(), obtenu.getNbBCs());
+        comparer(ecarts, "nbBCsNonFacturees", attendu.getNbBCsNonFacturees(), obtenu.getNbBCsNonFacturees());
+        comparerRepartition(ecarts, "ttcParClient", attendu.getTtcParClient(), obtenu.getTtcParClient());
+        comparerRepartition(ecarts, "ttcParFournisseur", attendu.getTtcParFournisseur(), obtenu.getTtcParFournisseur());
+
+        if (!ecarts.isEmpty()) {
+            log.warn("⚠️ Agrégats KPI incohérents avec le calcul complet ({} → {}): {}", from, to, ecarts.keySet());
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("coherent", ecarts.isEmpty());
+        result.put("from", from);
+        result.put("to", to);
+        result.put("ecarts", ecarts);
+        return result;
+    }
+
+    /**
+     * Calcul de référence : lecture complète des collections puis filtrage de la période en Java.
+     */
+    KpiMensuel calculerParScanComplet(LocalDate from, LocalDate to) {
+        KpiMensuel total = new KpiMensuel();
+        List<FactureVente> facturesVente = mongoTemplate.findAll(FactureVente.class);
+        facturesVente.stream()
+                .filter(f -> dansPeriode(f.getDateFacture(), from, to))
+                .forEach(f -> ajouterFactureVente(total, f));
+        mongoTemplate.findAll(FactureAchat.class).stream()
+                .filter(f -> dansPeriode(f.getDateFacture(), from, to))
+                .forEach(f -> ajouterFactureAchat(total, f));
+        Set<String> bcFacturees = new HashSet<>();
+        facturesVente.forEach(f -> {
+            if (f.getBandeCommandeId() != null) {
+                bcFacturees.add(f.getBandeCommandeId());
+            }
+        });
+        mongoTemplate.findAll(BandeCommande.class).forEach(bc -> ajouterBandeCommande(total, bc, bcFacturees));
+        return total;
+    }
+
+    // ==================== Calculs ====================
+
+    private KpiMensuel calculerFactures(String periode, LocalDate debut, LocalDate fin) {
+        KpiMensuel k = nouveauMois(periode);
+        Criteria dates = Criteria.where("dateFacture").gte(debut).lte(fin);
+        mongoTemplate.find(queryFacturesVente(dates), FactureVente.class).forEach(f -> ajouterFactureVente(k, f));
+        mongoTemplate.find(queryFacturesAchat(dates), FactureAchat.class).forEach(f -> ajouterFactureAchat(k, f));
+        return k;
+    }
+
+    static void ajouterFactureVente(KpiMensuel k, FactureVente f) {
+        boolean avoir = Boolean.TRUE.equals(f.getEstAvoir());
+        double ht = f.getTotalHT() != null ? f.getTotalHT() : 0.0;
+        double ttc = f.getTotalTTC() != null ? f.getTotalTTC() : 0.0;
+        double tva = f.getTotalTVA() != null ? f.getTotalTVA() : 0.0;
+
+        k.setNbFacturesVente(k.getNbFacturesVente() + 1);
+        k.setTotalHTFactures(k.getTotalHTFactures() + ht);
+        k.setTvaCollectee(k.getTvaCollectee() + tva);
+        if (avoir) {
+            k.setNbAvoirsVente(k.getNbAvoirsVente() + 1);
+            k.setAvoirsVenteHT(k.getAvoirsVenteHT() + Math.abs(ht));
+            k.setAvoirsVenteTTC(k.getAvoirsVenteTTC() + Math.abs(ttc));
+        } else {
+            k.setCaHT(k.getCaHT() + Math.max(0.0, ht));
+            k.setCaTTC(k.getCaTTC() + Math.max(0.0, ttc));
+            if (!"regle".equals(f.getEtatPaiement())) {
+                double restant = f.getMontantRestant() != null ? f.getMontantRestant() : ttc;
+                k.setEncoursClientsTTC(k.getEncoursClientsTTC() + Math.max(0.0, restant));
+            }
+        }
+        if (f.getClientId() != null) {
+            k.getTtcParClient().merge(f.getClientId(), ttc, Double::sum);
+        }
+    }
+
+    static void ajouterFactureAchat(KpiMensuel k, FactureAchat f) {
+        boolean avoir = Boolean.TRUE.equals(f.getEstAvoir());
+        double ht = f.getTotalHT() != null ? f.getTotalHT() : 0.0;
+        double ttc = f.getTotalTTC() != null ? f.getTotalTTC() : 0.0;
+        double tva = f.getTotalTVA() != null ? f.getTotalTVA() : 0.0;
+
+        k.setNbFacturesAchat(k.getNbFacturesAchat() + 1);
+        k.setTvaDeductible(k.getTvaDeductible() + tva);
+        if (avoir) {
+            k.setNbAvoirsAchat(k.getNbAvoirsAchat() + 1);
+            k.setAvoirsAchatHT(k.getAvoirsAchatHT() + Math.abs(ht));
+            k.setAvoirsAchatTTC(k.getAvoirsAchatTTC() + Math.abs(ttc));
+        } else {
+            k.setAchatsHT(k.getAchatsHT() + Math.max(0.0, ht));
+            k.setAchatsTTC(k.getAchatsTTC() + Math.max(0.0, ttc));
+            if (!"regle".equals(f.getEtatPaiement())) {
+                double restant = f.getMontantRestant() != null ? f.getMontantRestant() : ttc;
+                k.setEncoursFournisseursTTC(k.getEncoursFournisseursTTC() + Math.max(0.0, restant));
+            }
+        }
+        if (f.getFournisseurId() != null) {
+            k.getTtcParFournisseur().merge(f.getFournisseurId(), ttc, Double::sum);
+        }
+    }
+
+    static void ajouterBandeCommande(KpiMensuel k, BandeCommande bc, Set<String> bcFacturees) {
+        k.setNbBCs(k.getNbBCs() + 1);
+        k.setBcTotalVenteHT(k.getBcTotalVenteHT() + (bc.getTotalVenteHT() != null ? bc.getTotalVenteHT() : 0.0));
+        k.setBcTotalAchatHT(k.getBcTotalAchatHT() + (bc.getTotalAchatHT() != null ? bc.getTotalAchatHT() : 0.0));
+        if (!bcFacturees.contains(bc.getId())) {
+            k.setNbBCsNonFacturees(k.getNbBCsNonFacturees() + 1);
+        }
+    }
+
+    /** Additionne les champs "factures" d'un mois dans un total. */
+    static void ajouterFactures(KpiMensuel total, KpiMensuel k) {
+        total.setCaHT(total.getCaHT() + k.getCaHT());
+        total.setCaTTC(total.getCaTTC() + k.getCaTTC());
+        total.setTotalHTFactures(total.getTotalHTFactures() + k.getTotalHTFactures());
+        total.setTvaCollectee(total.getTvaCollectee() + k.getTvaCollectee());
+        total.setAvoirsVenteHT(total.getAvoirsVenteHT() + k.getAvoirsVenteHT());
+        total.setAvoirsVenteTTC(total.getAvoirsVenteTTC() + k.getAvoirsVenteTTC());
+        total.setEncoursClientsTTC(total.getEncoursClientsTTC() + k.getEncoursClientsTTC());
+        total.setNbFacturesVente(total.getNbFacturesVente() + k.getNbFacturesVente());
+        total.setNbAvoirsVente(total.getNbAvoirsVente() + k.getNbAvoirsVente());
+        total.setAchatsHT(total.getAchatsHT() + k.getAchatsHT());
+        total.setAchatsTTC(total.getAchatsTTC() + k.getAchatsTTC());
+        total.setTvaDeductible(total.getTvaDeductible() + k.getTvaDeductible());
+        total.setAvoirsAchatHT(total.getAvoirsAchatHT() + k.getAvoirsAchatHT());
+        total.setAvoirsAchatTTC(total.getAvoirsAchatTTC() + k.getAvoirsAchatTTC());
+        total.setEncoursFournisseursTTC(total.getEncoursFournisseursTTC() + k.getEncoursFournisseursTTC());
+        total.setNbFacturesAchat(total.getNbFacturesAchat() + k.getNbFacturesAchat());
+        total.setNbAvoirsAchat(total.getNbAvoirsAchat() + k.getNbAvoirsAchat());
+        if (k.getTtcParClient() != null) {
+            k.getTtcParClient().forEach((id, m) -> total.getTtcParClient().merge(id, m, Double::sum));
+        }
+        if (k.getTtcParFournisseur() != null) {
+            k.getTtcParFournisseur().forEach((id, m) -> total.getTtcParFournisseur().merge(id, m, Double::sum));
+        }
+    }
+
+    /** Additionne les champs "BC" d'un mois dans un total. */
+    static void ajouterBandesCommande(KpiMensuel total, KpiMensuel k) {
+        total.setBcTotalVenteHT(total.getBcTotalVenteHT() + k.getBcTotalVenteHT());
+        total.setBcTotalAchatHT(total.getBcTotalAchatHT() + k.getBcTotalAchatHT());
+        total.setNbBCs(total.getNbBCs() + k.getNbBCs());
+        total.setNbBCsNonFacturees(total.getNbBCsNonFacturees() + k.getNbBCsNonFacturees());
+    }
+
+    // ==================== Utilitaires ====================
+
+    private KpiMensuel nouveauMois(String periode) {
+        KpiMensuel k = new KpiMensuel();
+        k.setId(periode);
+        k.setPeriode(periode);
+        if (!KpiMensuel.SANS_DATE.equals(periode)) {
+            YearMonth ym = YearMonth.parse(periode);
+            k.setAnnee(ym.getYear());
+            k.setMois(ym.getMonthValue());
+        }
+        return k;
+    }
+
+    static String periodeDe(LocalDate date) {
+        return date != null ? YearMonth.from(date).toString() : KpiMensuel.SANS_DATE;
+    }
+
+    private void ajouterPeriodeBC(Set<String> periodes, String bcId) {
+        if (bcId == null || bcId.isEmpty()) {
+            return;
+        }
+        try {
+            Query query = new Query(Criteria.where("_id").is(bcId));
+            query.fields().include("dateBC");
+            BandeCommande bc = mongoTemplate.findOne(query, BandeCommande.class);
+            if (bc != null) {
+                periodes.add(periodeDe(bc.getDateBC()));
+            }
+        } catch (Exception e) {
+            log.warn("Impossible de déterminer le mois de la BC {} pour les agrégats KPI: {}", bcId, e.getMessage());
+        }
+    }
+
+    private Set<String> bcsFacturees(List<String> bcIds) {
+        if (bcIds.isEmpty()) {
+            return Collections.emptySet();
+        }
+        return new HashSet<>(mongoTemplate.findDistinct(
+                new Query(Criteria.where("bandeCommandeId").in(bcIds)), "bandeCommandeId", FactureVente.class, String.class));
+    }
+
+    private static Query queryFacturesVente(Criteria criteria) {
+        Query query = new Query(criteria);
+        query.fields().include("dateFacture", "estAvoir", "totalHT", "totalTTC", "totalTVA",
+                "clientId", "etatPaiement", "montantRestant", "bandeCommandeId");
+        return query;
+    }
+
+    private static Query queryFacturesAchat(Criteria criteria) {
+        Query query = new Query(criteria);
+        query.fields().include("dateFacture", "estAvoir", "totalHT", "totalTTC", "totalTVA",
+                "fournisseurId", "etatPaiement", "montantRestant");
+        return query;
+    }
+
+    private static Query queryBandesCommande(Criteria criteria) {
+        Query query = new Query(criteria);
+        query.fields().include("dateBC", "totalVenteHT", "totalAchatHT");
+        return query;
+    }
+
+    private static YearMonth premierMoisStocke(Map<String, KpiMensuel> stockes) {
+        return stockes.keySet().stream()
+                .filter(p -> !KpiMensuel.SANS_DATE.equals(p))
+                .min(Comparator.naturalOrder())
+                .map(YearMonth::parse)
+                .orElse(null);
+    }
+
+    private static YearMonth dernierMoisStocke(Map<String, KpiMensuel> stockes) {
+        return stockes.keySet().stream()
+                .filter(p -> !KpiMensuel.SANS_DATE.equals(p))
+                .max(Comparator.naturalOrder())
+                .map(YearMonth::parse)
+                .orElse(null);
+    }
+
+    private static boolean dansPeriode(LocalDate date, LocalDate from, LocalDate to) {
+        if (from == null && to == null) return true;
+        if (date == null) return false;
+        if (from != null && date.isBefore(from)) return false;
+        if (to != null && date.isAfter(to)) return false;
+        return true;
+    }
+
+    private static void comparer(Map<String, Object> ecarts, String champ, double attendu, double obtenu) {
+        if (Math.abs(attendu - obtenu) > TOLERANCE) {
+            ecarts.put(champ, Map.of(
+                    "scanComplet", NumberUtils.roundTo2Decimals(attendu),
+                    "agregats", NumberUtils.roundTo2Decimals(obtenu)));
+        }
+    }
+
+    private static void comparerRepartition(Map<String, Object> ecarts, String champ,
+                                            Map<String, Double> attendu, Map<String, Double> obtenu) {
+        Set<String> ids = new HashSet<>(attendu.keySet());
+        ids.addAll(obtenu.keySet());
+        List<String> differents = ids.stream()
+                .filter(id -> Math.abs(attendu.getOrDefault(id, 0.0) - obtenu.getOrDefault(id, 0.0)) > TOLERANCE)
+                .sorted()
+                .toList();
+        if (!differents.isEmpty()) {
+            ecarts.put(champ, differents);
+        }
+    }
+}
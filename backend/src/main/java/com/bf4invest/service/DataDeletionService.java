@@ -55,6 +55,11 @@ public class DataDeletionService {
     private final SoldeGlobalRepository soldeGlobalRepository;
     private final RefreshTokenRepository refreshTokenRepository;
     
+    private final DashboardAggregateService dashboardAggregateService;
+    private final BalancePeriodeService balancePeriodeService;
+    private final SoldeService soldeService;
+    private final ProductPriceService productPriceService;
+    
     /**
      * Retourne la liste de toutes les collections disponibles avec leurs descriptions
      */
@@ -202,6 +207,40 @@ public class DataDeletionService {
             }
         }
         
+        // Les agrégats du dashboard dépendent des factures et BCs supprimées
+        if (collections.stream().anyMatch(c -> c.equals("bandes_commandes")
+                || c.equals("factures_achats") || c.equals("factures_ventes"))) {
+            try {
+                dashboardAggregateService.reconstruireTout();
+            } catch (Exception e) {
+                log.error("Erreur lors de la reconstruction des agrégats KPI: {}", e.getMessage(), e);
+            }
+        }
+        
+        // L'index des prix produits est dérivé des lignes de BC
+        if (collections.contains("bandes_commandes")) {
+            productPriceService.invaliderIndex();
+        }
+        
+        // Le solde global courant est dérivé des paiements, charges et de l'historique de trésorerie
+        if (collections.stream().anyMatch(c -> c.equals("paiements") || c.equals("charges")
+                || c.equals("historique_solde") || c.equals("solde_global"))) {
+            try {
+                soldeService.auditerSoldeActuel(true);
+            } catch (Exception e) {
+                log.error("Erreur lors de la réparation du solde global: {}", e.getMessage(), e);
+            }
+        }
+        
+        // La balance par période est dérivée des écritures comptables
+        if (collections.contains("ecritures_comptables")) {
+            try {
+                balancePeriodeService.vider();
+            } catch (Exception e) {
+                log.error("Erreur lors de la remise à zéro de la balance par période: {}", e.getMessage(), e);
+            }
+        }
+        
         log.warn("Suppression terminée. Total d'éléments supprimés: {}", totalDeleted);
         if (!errors.isEmpty()) {
             log.error("Erreurs rencontrées: {}", errors);
@@ -12,6 +12,15 @@ import com.bf4invest.repository.FactureVenteRepository;
 import com.bf4invest.repository.ProductRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
@@ -19,6 +28,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * Service pour gérer les migrations de données
@@ -33,6 +43,16 @@ public class DataMigrationService {
     private final FactureVenteRepository factureVenteRepository;
     private final ProductRepository productRepository;
     private final ProductPriceService productPriceService;
+    private final CalculComptableService calculComptableService;
+    private final MongoTemplate mongoTemplate;
+    
+    private static final int TAILLE_LOT_RECALCUL = 500;
+    
+    /** Champs produits par CalculComptableService, seuls champs réécrits par le recalcul par lot. */
+    private static final List<String> CHAMPS_CALCULES = List.of(
+            "bcReference", "tvaRate", "tauxRG", "typeMouvement", "nature", "tvaMois", "solde",
+            "totalTTCApresRG", "totalTTCApresRG_SIGNE", "totalPaiementTTC", "rgTTC", "rgHT",
+            "factureHT_YC_RG", "htPaye", "tvaFactureYcRg", "tvaPaye", "bilan", "calcSchemaVersion");
     
     /**
      * Synchronise les références BC pour toutes les factures
@@ -210,6 +230,9 @@ public class DataMigrationService {
             }
         }
         
+        // Les BCs ont été réécrites directement : l'index des prix sera reconstruit au prochain recalcul
+        productPriceService.invaliderIndex();
+        
         log.info("✅ Migration lignes -> lignesAchat terminée :");
         log.info("   - {} BCs traitées", stats.get("bcsTraitees"));
         log.info("   - {} BCs mises à jour", stats.get("bcsMisesAJour"));
@@ -310,5 +333,97 @@ public class DataMigrationService {
         
         return stats;
     }
+    
+    /**
+     * Recalcule et persiste les champs comptables des factures vente/achat dont le marqueur
+     * calcSchemaVersion est absent ou antérieur à CalculComptableService.CALC_SCHEMA_VERSION.
+     * Traitement par lots (pagination sur _id) ; seuls les champs calculés sont réécrits ($set),
+     * pour ne pas écraser une modification concurrente (paiement, prévision...).
+     * 
+     * @return Map avec les statistiques de migration
+     */
+    public Map<String, Integer> recalculerChampsComptablesObsoletes() {
+        log.info("🔄 Recalcul des champs comptables obsolètes (version {})...", CalculComptableService.CALC_SCHEMA_VERSION);
+        
+        Map<String, Integer> stats = new HashMap<>();
+        stats.put("facturesVenteRecalculees", recalculerObsoletes(FactureVente.class, calculComptableService::calculerFactureVente, stats));
+        stats.put("facturesAchatRecalculees", recalculerObsoletes(FactureAchat.class, calculComptableService::calculerFactureAchat, stats));
+        stats.putIfAbsent("erreurs", 0);
+        
+        log.info("✅ Recalcul terminé : {} factures vente, {} factures achat, {} erreurs",
+                stats.get("facturesVenteRecalculees"), stats.get("facturesAchatRecalculees"), stats.get("erreurs"));
+        return stats;
+    }
+    
+    /**
+     * Invalide le marqueur de calcul de toutes les factures (ex: après modification des paramètres de calcul),
+     * puis relance le recalcul par lot.
+     */
+    public Map<String, Integer> recalculerTousChampsComptables() {
+        Update invalidation = new Update().unset("calcSchemaVersion");
+        mongoTemplate.updateMulti(new Query(), invalidation, FactureVente.class);
+        mongoTemplate.updateMulti(new Query(), invalidation, FactureAchat.class);
+        return recalculerChampsComptablesObsoletes();
+    }
+    
+    /**
+     * Au démarrage, traite les factures enregistrées avant l'introduction (ou la montée de version)
+     * du marqueur calcSchemaVersion.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recalculerChampsComptablesAuDemarrage() {
+        try {
+            if (mongoTemplate.exists(new Query(critereObsolete()), FactureVente.class)
+                    || mongoTemplate.exists(new Query(critereObsolete()), FactureAchat.class)) {
+                recalculerChampsComptablesObsoletes();
+            }
+        } catch (Exception e) {
+            log.warn("Recalcul des champs comptables au démarrage impossible: {}", e.getMessage());
+        }
+    }
+    
+    private Criteria critereObsolete() {
+        return Criteria.where("calcSchemaVersion").not().gte(CalculComptableService.CALC_SCHEMA_VERSION);
+    }
+    
+    private <T> int recalculerObsoletes(Class<T> type, Consumer<T> calcul, Map<String, Integer> stats) {
+        int traites = 0;
+        String dernierId = null;
+        while (true) {
+            Criteria criteria = critereObsolete();
+            if (dernierId != null) {
+                criteria = criteria.and("id").gt(dernierId);
+            }
+            Query query = new Query(criteria).with(Sort.by(Sort.Direction.ASC, "id")).limit(TAILLE_LOT_RECALCUL);
+            List<T> lot = mongoTemplate.find(query, type);
+            if (lot.isEmpty()) {
+                break;
+            }
+            
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, type);
+            int operations = 0;
+            for (T document : lot) {
+                BeanWrapperImpl wrapper = new BeanWrapperImpl(document);
+                dernierId = (String) wrapper.getPropertyValue("id");
+                try {
+                    calcul.accept(document);
+                    Update update = new Update();
+                    for (String champ : CHAMPS_CALCULES) {
+                        update.set(champ, wrapper.getPropertyValue(champ));
+                    }
+                    bulk.updateOne(new Query(Criteria.where("id").is(dernierId)), update);
+                    operations++;
+                } catch (Exception e) {
+                    log.error("❌ Erreur lors du recalcul de {} {}: {}", type.getSimpleName(), dernierId, e.getMessage());
+                    stats.merge("erreurs", 1, Integer::sum);
+                }
+            }
+            if (operations > 0) {
+                bulk.execute();
+                traites += operations;
+            }
+            log.info("   - {} {} recalculées...", traites, type.getSimpleName());
+        }
+        return traites;
+    }
 }
-
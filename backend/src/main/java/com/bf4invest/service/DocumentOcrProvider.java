@@ -15,6 +15,11 @@ public interface DocumentOcrProvider {
      */
     String getProviderId();
 
+    /**
+     * Modèle utilisé (diagnostic, clé du cache des résultats OCR).
+     */
+    String getModelName();
+
     /**
      * Extrait les données structurées depuis une image.
      */
@@ -0,0 +1,55 @@
+package com.bf4invest.service;
+
+import com.bf4invest.model.BandeCommande;
+import com.bf4invest.model.Charge;
+import com.bf4invest.model.Client;
+import com.bf4invest.model.FactureAchat;
+import com.bf4invest.model.FactureVente;
+import com.bf4invest.model.HistoriqueSolde;
+import com.bf4invest.model.Paiement;
+import com.bf4invest.model.Product;
+import com.bf4invest.model.Supplier;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Données lues une seule fois pour un calcul de {@code /dashboard/kpis}, partagées (en lecture seule) par tous les
+ * services d'analyse. Chaque liste est déjà restreinte à la période demandée :
+ * <ul>
+ *   <li>charges : {@code dateEcheance}</li>
+ *   <li>paiements : {@code date}</li>
+ *   <li>factures vente / achat : {@code dateFacture}</li>
+ *   <li>bandes de commande : {@code dateBC}</li>
+ *   <li>historique du solde : {@code date}, du plus récent au plus ancien</li>
+ * </ul>
+ * Les liens facture → BC, les produits et les partenaires ne dépendent pas de la période.
+ */
+public record DonneesDashboard(
+        LocalDate from,
+        LocalDate to,
+        List<Charge> charges,
+        List<Paiement> paiements,
+        List<FactureVente> facturesVente,
+        List<FactureAchat> facturesAchat,
+        List<BandeCommande> bandesCommande,
+        List<LienFactureBC> liensFacturesBC,
+        List<Product> produits,
+        Map<String, Client> clients,
+        Map<String, Supplier> fournisseurs,
+        List<HistoriqueSolde> historiqueSolde) {
+
+    /** BC référencée par une facture (achat ou vente), par identifiant ou à défaut par numéro. */
+    public record LienFactureBC(String bandeCommandeId, String bcReference) {}
+
+    public String nomClient(String id, String defaut) {
+        Client client = id != null ? clients.get(id) : null;
+        return client != null && client.getNom() != null ? client.getNom() : defaut;
+    }
+
+    public String nomFournisseur(String id, String defaut) {
+        Supplier fournisseur = id != null ? fournisseurs.get(id) : null;
+        return fournisseur != null && fournisseur.getNom() != null ? fournisseur.getNom() : defaut;
+    }
+}
@@ -0,0 +1,178 @@
+package com.bf4invest.service;
+
+import com.bf4invest.model.BandeCommande;
+import com.bf4invest.model.Charge;
+import com.bf4invest.model.Client;
+import com.bf4invest.model.FactureAchat;
+import com.bf4invest.model.FactureVente;
+import com.bf4invest.model.HistoriqueSolde;
+import com.bf4invest.model.Paiement;
+import com.bf4invest.model.Product;
+import com.bf4invest.model.Supplier;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Chargement de {@link DonneesDashboard} : une requête par collection, filtrée par période côté MongoDB et limitée
+ * aux champs utilisés par les analyses. Les requêtes sont lancées en parallèle sur l'exécuteur fourni.
+ */
+@Service
+@RequiredArgsConstructor
+public class DonneesDashboardService {
+
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * Lance le chargement sans bloquer l'appelant ni les threads de l'exécuteur : le résultat est assemblé
+     * lorsque la dernière requête se termine.
+     */
+    public CompletableFuture<DonneesDashboard> charger(LocalDate from, LocalDate to, Executor executor) {
+        CompletableFuture<List<Charge>> charges = lancer(() -> charges(from, to), executor);
+        CompletableFuture<List<Paiement>> paiements = lancer(() -> paiements(from, to), executor);
+        CompletableFuture<List<FactureVente>> facturesVente = lancer(() -> facturesVente(from, to), executor);
+        CompletableFuture<List<FactureAchat>> facturesAchat = lancer(() -> facturesAchat(from, to), executor);
+        CompletableFuture<List<BandeCommande>> bcs = lancer(() -> bandesCommande(from, to), executor);
+        CompletableFuture<List<DonneesDashboard.LienFactureBC>> liens = lancer(this::liensFacturesBC, executor);
+        CompletableFuture<List<Product>> produits = lancer(this::produits, executor);
+        CompletableFuture<Map<String, Client>> clients = lancer(this::clients, executor);
+        CompletableFuture<Map<String, Supplier>> fournisseurs = lancer(this::fournisseurs, executor);
+        CompletableFuture<List<HistoriqueSolde>> historique = lancer(() -> historiqueSolde(from, to), executor);
+
+        return CompletableFuture.allOf(charges, paiements, facturesVente, facturesAchat, bcs, liens, produits,
+                        clients, fournisseurs, historique)
+                .thenApply(ignore -> new DonneesDashboard(from, to,
+                        charges.join(),
+                        paiements.join(),
+                        facturesVente.join(),
+                        facturesAchat.join(),
+                        bcs.join(),
+                        liens.join(),
+                        produits.join(),
+                        clients.join(),
+                        fournisseurs.join(),
+                        historique.join()));
+    }
+
+    private static <T> CompletableFuture<T> lancer(java.util.function.Supplier<T> lecture, Executor executor) {
+        return CompletableFuture.supplyAsync(lecture, executor);
+    }
+
+    List<Charge> charges(LocalDate from, LocalDate to) {
+        Query query = new Query(periode("dateEcheance", from, to));
+        query.fields().include("categorie", "montant", "dateEcheance", "statut");
+        return lecture(query, Charge.class);
+    }
+
+    List<Paiement> paiements(LocalDate from, LocalDate to) {
+        Query query = new Query(periode("date", from, to));
+        query.fields().include("factureAchatId", "factureVenteId", "date", "montant", "mode");
+        return lecture(query, Paiement.class);
+    }
+
+    List<FactureVente> facturesVente(LocalDate from, LocalDate to) {
+        return lecture(queryFactures(from, to), FactureVente.class);
+    }
+
+    List<FactureAchat> facturesAchat(LocalDate from, LocalDate to) {
+        return lecture(queryFactures(from, to), FactureAchat.class);
+    }
+
+    // Lignes de facture inutiles pour les analyses : seuls les totaux, l'état et les paiements sont lus
+    private static Query queryFactures(LocalDate from, LocalDate to) {
+        Query query = new Query(periode("dateFacture", from, to));
+        query.fields().include("dateFacture", "dateEcheance", "totalHT", "totalTTC", "etatPaiement",
+                "montantRestant", "estAvoir", "paiements.date");
+        return query;
+    }
+
+    List<BandeCommande> bandesCommande(LocalDate from, LocalDate to) {
+        Query query = new Query(periode("dateBC", from, to));
+        query.fields().exclude("lignes", "notes", "fournisseursAchat");
+        return lecture(query, BandeCommande.class);
+    }
+
+    // Le taux de conversion BC → facture tient compte des factures émises hors période
+    List<DonneesDashboard.LienFactureBC> liensFacturesBC() {
+        Query query = new Query(new Criteria().orOperator(
+                Criteria.where("bandeCommandeId").ne(null),
+                Criteria.where("bcReference").ne(null)));
+        query.fields().include("bandeCommandeId", "bcReference");
+        List<DonneesDashboard.LienFactureBC> liens = new ArrayList<>();
+        mongoTemplate.find(query, FactureAchat.class)
+                .forEach(f -> liens.add(new DonneesDashboard.LienFactureBC(f.getBandeCommandeId(), f.getBcReference())));
+        mongoTemplate.find(query, FactureVente.class)
+                .forEach(f -> liens.add(new DonneesDashboard.LienFactureBC(f.getBandeCommandeId(), f.getBcReference())));
+        return Collections.unmodifiableList(liens);
+    }
+
+    List<Product> produits() {
+        Query query = new Query();
+        query.fields().include("refArticle", "designation", "quantiteEnStock");
+        return lecture(query, Product.class);
+    }
+
+    Map<String, Client> clients() {
+        Query query = new Query();
+        query.fields().include("nom", "soldeClient");
+        return parId(mongoTemplate.find(query, Client.class), Client::getId);
+    }
+
+    Map<String, Supplier> fournisseurs() {
+        Query query = new Query();
+        query.fields().include("nom", "soldeFournisseur");
+        return parId(mongoTemplate.find(query, Supplier.class), Supplier::getId);
+    }
+
+    List<HistoriqueSolde> historiqueSolde(LocalDate from, LocalDate to) {
+        Criteria criteria = new Criteria();
+        if (from != null || to != null) {
+            criteria = Criteria.where("date");
+            if (from != null) {
+                criteria.gte(from.atStartOfDay());
+            }
+            if (to != null) {
+                criteria.lte(to.atTime(23, 59, 59));
+            }
+        }
+        Query query = new Query(criteria).with(Sort.by(Sort.Direction.DESC, "date"));
+        return lecture(query, HistoriqueSolde.class);
+    }
+
+    private <T> List<T> lecture(Query query, Class<T> type) {
+        return Collections.unmodifiableList(mongoTemplate.find(query, type));
+    }
+
+    // Sans borne : tous les documents, y compris non datés (comme avant le filtrage côté base)
+    private static Criteria periode(String champ, LocalDate from, LocalDate to) {
+        if (from == null && to == null) {
+            return new Criteria();
+        }
+        Criteria criteria = Criteria.where(champ);
+        if (from != null) {
+            criteria.gte(from);
+        }
+        if (to != null) {
+            criteria.lte(to);
+        }
+        return criteria;
+    }
+
+    private static <T> Map<String, T> parId(List<T> documents, Function<T, String> id) {
+        return Collections.unmodifiableMap(documents.stream()
+                .collect(Collectors.toMap(id, Function.identity(), (a, b) -> a)));
+    }
+}
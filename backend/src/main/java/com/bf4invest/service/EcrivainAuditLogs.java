@@ -0,0 +1,220 @@
+package com.bf4invest.service;
+
+import com.bf4invest.model.AuditLog;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Écriture différée du journal d'audit.
+ * <p>
+ * Les entrées sont placées dans une file bornée ({@code app.audit.queue-capacity}) et insérées par lots
+ * ({@code insertMany}) par un thread dédié, dès que {@code app.audit.batch-size} entrées sont prêtes ou au plus
+ * {@code app.audit.flush-interval-ms} ms après la première entrée du lot. Quand la file est pleine, l'appelant
+ * attend au plus {@code app.audit.enqueue-timeout-ms} ms puis écrit lui-même son entrée : aucune entrée n'est
+ * perdue et les écritures métier ralentissent au lieu de faire grossir la mémoire. La file est vidée à l'arrêt ;
+ * une fois l'arrêt commencé, les entrées sont écrites directement par l'appelant.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class EcrivainAuditLogs {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${app.audit.async:true}")
+    private boolean asynchrone;
+
+    @Value("${app.audit.queue-capacity:10000}")
+    private int capacite;
+
+    @Value("${app.audit.batch-size:200}")
+    private int tailleLot;
+
+    @Value("${app.audit.flush-interval-ms:1000}")
+    private long intervalleMs;
+
+    @Value("${app.audit.enqueue-timeout-ms:50}")
+    private long attenteMaxMs;
+
+    /** Réveille le thread d'écriture à l'arrêt (comparée par identité). */
+    private static final AuditLog FIN = new AuditLog();
+
+    private BlockingQueue<AuditLog> file;
+    private Thread ecrivain;
+    private volatile boolean arrete;
+
+    private final AtomicLong enfilees = new AtomicLong();
+    private final AtomicLong ecrites = new AtomicLong();
+    private final AtomicLong lots = new AtomicLong();
+    private final AtomicLong saturations = new AtomicLong();
+    private final AtomicLong ecrituresDirectes = new AtomicLong();
+    private final AtomicLong echecs = new AtomicLong();
+    private final AtomicLong enAttenteMax = new AtomicLong();
+    private final AtomicLong dureeTotaleMs = new AtomicLong();
+    private final AtomicLong dureeMaxMs = new AtomicLong();
+
+    @PostConstruct
+    void init() {
+        file = new ArrayBlockingQueue<>(Math.max(capacite, 1));
+        if (asynchrone) {
+            ecrivain = new Thread(this::boucle, "audit-writer");
+            ecrivain.setDaemon(true);
+            ecrivain.start();
+        }
+    }
+
+    @PreDestroy
+    void arreter() throws InterruptedException {
+        arrete = true;
+        if (ecrivain != null) {
+            // File pleine : le thread d'écriture n'attend pas d'entrée, il constatera l'arrêt après son lot
+            file.offer(FIN);
+            ecrivain.join(10_000);
+        }
+        file.removeIf(e -> e == FIN);
+        int restantes = file.size();
+        vider();
+        if (restantes > 0) {
+            log.info("Journal d'audit : {} entrée(s) écrite(s) à l'arrêt", restantes);
+        }
+    }
+
+    /**
+     * Met l'entrée en file d'attente ; l'écrit directement si l'écriture différée est désactivée, arrêtée, ou si
+     * la file reste pleine au-delà du délai d'attente.
+     */
+    public void ajouter(AuditLog entree) {
+        if (!asynchrone || arrete) {
+            ecrituresDirectes.incrementAndGet();
+            ecrire(List.of(entree));
+            return;
+        }
+        if (file.offer(entree)) {
+            enfilee();
+            return;
+        }
+        saturations.incrementAndGet();
+        try {
+            if (file.offer(entree, attenteMaxMs, TimeUnit.MILLISECONDS)) {
+                enfilee();
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        ecrituresDirectes.incrementAndGet();
+        ecrire(List.of(entree));
+    }
+
+    /** Écrit immédiatement, sur le thread appelant, les entrées en attente. */
+    public void vider() {
+        List<AuditLog> lot = new ArrayList<>(tailleLot);
+        while (file.drainTo(lot, tailleLot) > 0) {
+            ecrire(lot);
+            lot.clear();
+        }
+    }
+
+    public Map<String, Object> statistiques() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("asynchrone", asynchrone);
+        stats.put("enAttente", file.size());
+        stats.put("capacite", capacite);
+        stats.put("enAttenteMax", enAttenteMax.get());
+        stats.put("enfilees", enfilees.get());
+        stats.put("ecrites", ecrites.get());
+        stats.put("lots", lots.get());
+        stats.put("tailleMoyenneLot", lots.get() > 0 ? (double) ecrites.get() / lots.get() : 0.0);
+        stats.put("dureeMoyenneLotMs", lots.get() > 0 ? dureeTotaleMs.get() / lots.get() : 0);
+        stats.put("dureeMaxLotMs", dureeMaxMs.get());
+        stats.put("saturations", saturations.get());
+        stats.put("ecrituresDirectes", ecrituresDirectes.get());
+        stats.put("echecs", echecs.get());
+        return stats;
+    }
+
+    private void enfilee() {
+        enfilees.incrementAndGet();
+        enAttenteMax.accumulateAndGet(file.size(), Math::max);
+        // Arrêt commencé pendant la mise en file : la dernière vidange d'arreter() a pu passer avant cette entrée
+        if (arrete) {
+            vider();
+        }
+    }
+
+    private void boucle() {
+        List<AuditLog> lot = new ArrayList<>(tailleLot);
+        boolean fin = false;
+        while (!fin && !arrete) {
+            try {
+                AuditLog premiere = file.poll(intervalleMs, TimeUnit.MILLISECONDS);
+                if (premiere == null) {
+                    continue;
+                }
+                fin = premiere == FIN;
+                if (!fin) {
+                    lot.add(premiere);
+                }
+                // Complète le lot jusqu'au seuil de taille, sans attendre plus d'un intervalle après la première entrée
+                long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(intervalleMs);
+                while (!fin && lot.size() < tailleLot) {
+                    if (file.drainTo(lot, tailleLot - lot.size()) > 0) {
+                        fin = lot.removeIf(e -> e == FIN);
+                        continue;
+                    }
+                    long reste = limite - System.nanoTime();
+                    AuditLog suivante = reste > 0 ? file.poll(reste, TimeUnit.NANOSECONDS) : null;
+                    if (suivante == null) {
+                        break;
+                    }
+                    fin = suivante == FIN;
+                    if (!fin) {
+                        lot.add(suivante);
+                    }
+                }
+                ecrire(lot);
+                lot.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (RuntimeException e) {
+                log.error("Erreur inattendue du thread d'écriture du journal d'audit", e);
+                lot.clear();
+            }
+        }
+        // Entrées prises dans la file mais pas encore écrites (interruption) ; le reste est écrit par arreter()
+        ecrire(lot);
+    }
+
+    private void ecrire(List<AuditLog> lot) {
+        if (lot.isEmpty()) {
+            return;
+        }
+        long debut = System.currentTimeMillis();
+        try {
+            mongoTemplate.insert(new ArrayList<>(lot), AuditLog.class);
+            long duree = System.currentTimeMillis() - debut;
+            ecrites.addAndGet(lot.size());
+            lots.incrementAndGet();
+            dureeTotaleMs.addAndGet(duree);
+            dureeMaxMs.accumulateAndGet(duree, Math::max);
+        } catch (RuntimeException e) {
+            echecs.addAndGet(lot.size());
+            log.error("Écriture de {} entrée(s) du journal d'audit impossible", lot.size(), e);
+        }
+    }
+}
@@ -6,17 +6,25 @@ import com.bf4invest.model.FactureAchat;
 import com.bf4invest.model.LineItem;
 import com.bf4invest.model.PrevisionPaiement;
 import com.bf4invest.model.Product;
+import com.bf4invest.model.Supplier;
 import com.bf4invest.repository.BandeCommandeRepository;
 import com.bf4invest.repository.FactureAchatRepository;
+import com.bf4invest.util.EcrituresParLots;
 import com.bf4invest.util.NumberUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.regex.Pattern;
 
 @Slf4j
 @Service
@@ -32,40 +40,117 @@ public class FactureAchatService {
     private final SoldeService soldeService;
     private final SupplierService supplierService;
     private final ComptabiliteService comptabiliteService;
+    private final DashboardAggregateService dashboardAggregateService;
+    private final MongoTemplate mongoTemplate;
+    private final CompteurService compteurService;
     
+    /**
+     * Les champs comptables sont calculés et persistés à l'écriture (create/update) ; la lecture
+     * ne fait plus ni recalcul ni sauvegarde. Les documents antérieurs au marqueur calcSchemaVersion
+     * sont recalculés en mémoire en attendant le passage du lot de recalcul.
+     */
     public List<FactureAchat> findAll() {
         List<FactureAchat> factures = factureRepository.findAll();
-        // Recalculer les champs comptables pour toutes les factures
-        factures.forEach(facture -> {
-            try {
-                // Toujours recalculer pour s'assurer que les champs sont à jour
-                calculComptableService.calculerFactureAchat(facture);
-                // Sauvegarder pour persister les calculs
-                factureRepository.save(facture);
-            } catch (Exception e) {
-                // Ignorer les erreurs de calcul pour ne pas bloquer la récupération
-                log.warn("Erreur lors du calcul comptable pour facture achat {}: {}", facture.getId(), e.getMessage());
-            }
-        });
+        factures.forEach(this::completerChampsCalcules);
         return factures;
     }
     
     public Optional<FactureAchat> findById(String id) {
         return factureRepository.findById(id)
                 .map(facture -> {
-                    // Recalculer les champs comptables
-                    try {
-                        calculComptableService.calculerFactureAchat(facture);
-                        // Sauvegarder pour persister les calculs
-                        return factureRepository.save(facture);
-                    } catch (Exception e) {
-                        log.warn("Erreur lors du calcul comptable pour facture achat {}: {}", id, e.getMessage());
-                        return facture;
-                    }
+                    completerChampsCalcules(facture);
+                    return facture;
                 });
     }
     
+    private void completerChampsCalcules(FactureAchat facture) {
+        try {
+            calculComptableService.calculerSiObsolete(facture);
+        } catch (Exception e) {
+            // Ignorer les erreurs de calcul pour ne pas bloquer la récupération
+            log.warn("Erreur lors du calcul comptable pour facture achat {}: {}", facture.getId(), e.getMessage());
+        }
+    }
+    
     public FactureAchat create(FactureAchat facture) {
+        LiensFactures<FactureAchat, Supplier> liens = liensUnitaires();
+        preparerCreation(facture, liens);
+        FactureAchat saved = factureRepository.save(facture);
+        apresCreation(saved, liens);
+        dashboardAggregateService.rafraichirPourFactureAchat(saved);
+        
+        return saved;
+    }
+
+    /**
+     * Création en masse (import) : chaque facture est préparée comme dans {@link #create}, les factures
+     * sont insérées par lots via BulkOperations, puis les effets de bord (stock, audit, trésorerie, écriture
+     * comptable) sont appliqués aux seules factures réellement insérées. Les BC, factures d'origine et
+     * fournisseurs liés sont lus une fois pour tout le lot. Les agrégats du dashboard sont recalculés une fois
+     * par mois touché. Les factures sans numéro passent par {@link #create} : la numérotation compte les
+     * factures enregistrées.
+     *
+     * @param surErreur appelé pour chaque facture en échec, à la préparation ou à l'insertion (les autres sont enregistrées)
+     * @return factures enregistrées
+     */
+    public List<FactureAchat> creerEnMasse(List<FactureAchat> factures, int tailleLot,
+                                           BiConsumer<FactureAchat, Exception> surErreur) {
+        LiensFactures<FactureAchat, Supplier> liens = liensPrecharges(factures);
+        List<FactureAchat> preparees = new ArrayList<>();
+        List<FactureAchat> enregistrees = new ArrayList<>();
+        for (FactureAchat facture : factures) {
+            try {
+                if (facture.getNumeroFactureAchat() == null || facture.getNumeroFactureAchat().isEmpty()) {
+                    enregistrees.add(create(facture));
+                    continue;
+                }
+                preparerCreation(facture, liens);
+                facture.setId(EcrituresParLots.nouvelId());
+                preparees.add(facture);
+            } catch (Exception e) {
+                surErreur.accept(facture, e);
+            }
+        }
+
+        List<FactureAchat> inserees = EcrituresParLots.insererEnContinuant(mongoTemplate, FactureAchat.class,
+                preparees, FactureAchat::getId, tailleLot, surErreur);
+
+        for (FactureAchat saved : inserees) {
+            try {
+                apresCreation(saved, liens);
+            } catch (Exception e) {
+                log.warn("Effets de création incomplets pour facture achat {}: {}", saved.getNumeroFactureAchat(), e.getMessage());
+            }
+            enregistrees.add(saved);
+        }
+        dashboardAggregateService.rafraichirPourDates(
+                inserees.stream().map(FactureAchat::getDateFacture).toList(), List.of());
+        return enregistrees;
+    }
+
+    private LiensFactures<FactureAchat, Supplier> liensUnitaires() {
+        return new LiensFactures<>(bandeCommandeRepository::findById, bandeCommandeRepository::findByNumeroBC,
+                factureRepository::findById, supplierService::findById, (bcId, clientId) -> List.of());
+    }
+
+    /** Liens de toutes les factures du lot, lus en une requête par collection. */
+    private LiensFactures<FactureAchat, Supplier> liensPrecharges(List<FactureAchat> factures) {
+        Map<String, BandeCommande> bcs = LiensFactures.charger(mongoTemplate, BandeCommande.class, "_id",
+                factures.stream().map(FactureAchat::getBandeCommandeId).toList(), BandeCommande::getId);
+        Map<String, BandeCommande> bcsParNumero = LiensFactures.charger(mongoTemplate, BandeCommande.class, "numeroBC",
+                factures.stream().map(FactureAchat::getBcReference).toList(), BandeCommande::getNumeroBC);
+        Map<String, FactureAchat> origines = LiensFactures.charger(mongoTemplate, FactureAchat.class, "_id",
+                factures.stream().map(FactureAchat::getFactureOrigineId).toList(), FactureAchat::getId);
+        Map<String, Supplier> fournisseurs = LiensFactures.charger(mongoTemplate, Supplier.class, "_id",
+                factures.stream().map(FactureAchat::getFournisseurId).toList(), Supplier::getId);
+        return new LiensFactures<>(LiensFactures.depuis(bcs), LiensFactures.depuis(bcsParNumero),
+                LiensFactures.depuis(origines), LiensFactures.depuis(fournisseurs), (bcId, clientId) -> List.of());
+    }
+
+    /**
+     * Validation, numérotation, échéance, totaux et champs comptables avant enregistrement.
+     */
+    private void preparerCreation(FactureAchat facture, LiensFactures<FactureAchat, Supplier> liens) {
         // ========== VALIDATION ET GESTION DES AVOIRS ==========
         if (Boolean.TRUE.equals(facture.getEstAvoir())) {
             // Initialiser les champs avoir si nécessaire
@@ -85,7 +170,7 @@ public class FactureAchatService {
             
             // Valider la liaison avec la facture d'origine si fournie
             if (facture.getFactureOrigineId() != null && !facture.getFactureOrigineId().isEmpty()) {
-                Optional<FactureAchat> factureOrigine = factureRepository.findById(facture.getFactureOrigineId());
+                Optional<FactureAchat> factureOrigine = liens.facture(facture.getFactureOrigineId());
                 if (factureOrigine.isPresent()) {
                     // Empêcher qu'un avoir annule un autre avoir
                     if (Boolean.TRUE.equals(factureOrigine.get().getEstAvoir())) {
@@ -124,7 +209,7 @@ public class FactureAchatService {
         }
         
         // PRIORITÉ 1: Si la facture est liée à une BC, utiliser les totaux de la BC
-        syncTotalsFromBC(facture);
+        syncTotalsFromBC(facture, liens);
         
         // PRIORITÉ 2: Si les totaux ne sont pas encore définis (pas de BC liée), calculer depuis les lignes ou totaux fournis
         if (facture.getTotalHT() == null && facture.getTotalTTC() == null) {
@@ -159,9 +244,12 @@ public class FactureAchatService {
         
         facture.setCreatedAt(LocalDateTime.now());
         facture.setUpdatedAt(LocalDateTime.now());
-        
-        FactureAchat saved = factureRepository.save(facture);
-        
+    }
+
+    /**
+     * Effets de bord d'une création : stock, audit, transaction de trésorerie et écriture comptable.
+     */
+    private void apresCreation(FactureAchat saved, LiensFactures<FactureAchat, Supplier> liens) {
         // Mettre à jour le stock si demandé
         if (Boolean.TRUE.equals(saved.getAjouterAuStock()) && saved.getLignes() != null) {
             updateStockFromFacture(saved);
@@ -177,7 +265,7 @@ public class FactureAchatService {
         // Enregistrer la transaction dans le solde
         if (saved.getFournisseurId() != null && saved.getTotalTTC() != null) {
             try {
-                supplierService.findById(saved.getFournisseurId()).ifPresent(supplier -> {
+                liens.tiers(saved.getFournisseurId()).ifPresent(supplier -> {
                     String typeTransaction = Boolean.TRUE.equals(saved.getEstAvoir()) ? 
                         "AVOIR_ACHAT" : "FACTURE_ACHAT";
                     String libelle = Boolean.TRUE.equals(saved.getEstAvoir()) ? 
@@ -211,8 +299,6 @@ public class FactureAchatService {
         } catch (Exception e) {
             log.warn("Erreur lors de la génération de l'écriture comptable pour facture achat {}: {}", saved.getId(), e.getMessage());
         }
-        
-        return saved;
     }
     
     /**
@@ -261,6 +347,7 @@ public class FactureAchatService {
     public FactureAchat update(String id, FactureAchat facture) {
         return factureRepository.findById(id)
                 .map(existing -> {
+                    LocalDate ancienneDateFacture = existing.getDateFacture();
                     if (facture.getNumeroFactureAchat() != null && !facture.getNumeroFactureAchat().isBlank()) {
                         existing.setNumeroFactureAchat(facture.getNumeroFactureAchat().trim());
                     }
@@ -345,6 +432,8 @@ public class FactureAchatService {
                     auditService.logUpdate("FactureAchat", saved.getId(), null, 
                         "Facture Achat " + saved.getNumeroFactureAchat() + " modifiée - Statut: " + saved.getEtatPaiement());
                     
+                    dashboardAggregateService.rafraichirPourFactureAchat(saved, ancienneDateFacture);
+                    
                     return saved;
                 })
                 .orElseThrow(() -> new RuntimeException("Facture achat not found with id: " + id));
@@ -352,10 +441,12 @@ public class FactureAchatService {
     
     public void delete(String id) {
         // Journaliser avant suppression
-        factureRepository.findById(id).ifPresent(f -> {
+        Optional<FactureAchat> existing = factureRepository.findById(id);
+        existing.ifPresent(f -> {
             auditService.logDelete("FactureAchat", id, "Facture Achat " + f.getNumeroFactureAchat() + " supprimée");
         });
         factureRepository.deleteById(id);
+        existing.ifPresent(f -> dashboardAggregateService.rafraichirPourFactureAchat(null, f.getDateFacture()));
     }
     
     public List<FactureAchat> findOverdue() {
@@ -364,11 +455,11 @@ public class FactureAchatService {
     
     private String generateFactureNumber(LocalDate date) {
         String year = String.valueOf(date.getYear());
-        long count = factureRepository.findAll().stream()
-                .filter(f -> f.getDateFacture() != null && f.getDateFacture().getYear() == date.getYear())
-                .count();
-        String sequence = String.format("%03d", count + 1);
-        return String.format("FA-%s-%s", year, sequence);
+        // Compteur annuel partagé avec les avoirs (AVOIR-FA-...), amorcé depuis les factures de l'année
+        long sequence = compteurService.suivant("FA", "", year, () -> compteurService.amorce(FactureAchat.class,
+                Criteria.where("dateFacture").gte(date.withDayOfYear(1)).lte(date.withDayOfYear(date.lengthOfYear())),
+                "numeroFactureAchat", Pattern.compile("(?:AVOIR-)?FA-" + year + "-(\\d+)")));
+        return String.format("FA-%s-%03d", year, sequence);
     }
     
     private void calculateTotals(FactureAchat facture) {
@@ -437,22 +528,13 @@ public class FactureAchatService {
      * Synchronise les totaux de la facture avec les totaux de la BC liée
      * PRIORITÉ 1: Si la facture est liée à une BC, utiliser les totaux de la BC
      */
-    private void syncTotalsFromBC(FactureAchat facture) {
+    private void syncTotalsFromBC(FactureAchat facture, LiensFactures<FactureAchat, Supplier> liens) {
         if (facture == null) {
             return;
         }
         
-        BandeCommande bc = null;
-        
-        // Chercher la BC par bandeCommandeId
-        if (facture.getBandeCommandeId() != null && !facture.getBandeCommandeId().isEmpty()) {
-            bc = bandeCommandeRepository.findById(facture.getBandeCommandeId()).orElse(null);
-        }
-        
-        // Fallback: chercher par bcReference
-        if (bc == null && facture.getBcReference() != null && !facture.getBcReference().isEmpty()) {
-            bc = bandeCommandeRepository.findByNumeroBC(facture.getBcReference()).orElse(null);
-        }
+        // Chercher la BC par bandeCommandeId, sinon par bcReference
+        BandeCommande bc = liens.bc(facture.getBandeCommandeId(), facture.getBcReference()).orElse(null);
         
         if (bc != null && bc.getTotalAchatHT() != null && bc.getTotalAchatTTC() != null) {
             // Utiliser les totaux de la BC
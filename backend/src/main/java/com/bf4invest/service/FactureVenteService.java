@@ -2,6 +2,7 @@ package com.bf4invest.service;
 
 import com.bf4invest.config.AppConfig;
 import com.bf4invest.model.BandeCommande;
+import com.bf4invest.model.Client;
 import com.bf4invest.model.ClientVente;
 import com.bf4invest.model.FactureVente;
 import com.bf4invest.model.LineItem;
@@ -10,14 +11,22 @@ import com.bf4invest.model.PrevisionPaiement;
 import com.bf4invest.model.Product;
 import com.bf4invest.repository.BandeCommandeRepository;
 import com.bf4invest.repository.FactureVenteRepository;
+import com.bf4invest.util.EcrituresParLots;
 import com.bf4invest.util.NumberUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import com.bf4invest.dto.PageResponse;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
@@ -25,6 +34,8 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -41,40 +52,182 @@ public class FactureVenteService {
     private final SoldeService soldeService;
     private final ClientService clientService;
     private final ComptabiliteService comptabiliteService;
+    private final DashboardAggregateService dashboardAggregateService;
+    private final MongoTemplate mongoTemplate;
+    private final CompteurService compteurService;
     
+    /**
+     * Les champs comptables sont calculés et persistés à l'écriture (create/update) ; la lecture
+     * ne fait plus ni recalcul ni sauvegarde. Les documents antérieurs au marqueur calcSchemaVersion
+     * sont recalculés en mémoire en attendant le passage du lot de recalcul.
+     */
     public List<FactureVente> findAll() {
         List<FactureVente> factures = factureRepository.findAll();
-        // Recalculer les champs comptables pour toutes les factures
-        factures.forEach(facture -> {
-            try {
-                // Toujours recalculer pour s'assurer que les champs sont à jour
-                calculComptableService.calculerFactureVente(facture);
-                // Sauvegarder pour persister les calculs
-                factureRepository.save(facture);
-            } catch (Exception e) {
-                // Ignorer les erreurs de calcul pour ne pas bloquer la récupération
-                log.warn("Erreur lors du calcul comptable pour facture vente {}: {}", facture.getId(), e.getMessage());
-            }
-        });
+        factures.forEach(this::completerChampsCalcules);
         return factures;
     }
     
     public Optional<FactureVente> findById(String id) {
         return factureRepository.findById(id)
                 .map(facture -> {
-                    // Recalculer les champs comptables
-                    try {
-                        calculComptableService.calculerFactureVente(facture);
-                        // Sauvegarder pour persister les calculs
-                        return factureRepository.save(facture);
-                    } catch (Exception e) {
-                        log.warn("Erreur lors du calcul comptable pour facture vente {}: {}", id, e.getMessage());
-                        return facture;
-                    }
+                    completerChampsCalcules(facture);
+                    return facture;
                 });
     }
     
+    /**
+     * Liste paginée des factures vente : filtres, tri et pagination exécutés par MongoDB.
+     * Les lignes, paiements et prévisions ne sont pas chargés (utiliser findById pour le détail).
+     * Sans filtre de statut, les BL seuls et les BL absorbés sont exclus, comme pour la liste classique.
+     *
+     * @param sort "date" (dateFacture) ou "numero" (numeroFactureVente)
+     */
+    public PageResponse<FactureVente> findPage(String clientId, String etatPaiement, String statut,
+                                               LocalDate dateMin, LocalDate dateMax,
+                                               int page, int size, String sort, String direction) {
+        Criteria criteria = new Criteria();
+        if (clientId != null) {
+            criteria.and("clientId").is(clientId);
+        }
+        if (etatPaiement != null) {
+            criteria.and("etatPaiement").is(etatPaiement);
+        }
+        if (statut != null && !statut.isBlank()) {
+            criteria.and("statut").is(statut);
+        } else {
+            criteria.and("statut").nin("BL_SEUL", "MERGE_DANS_FV");
+        }
+        if (dateMin != null || dateMax != null) {
+            Criteria date = criteria.and("dateFacture");
+            if (dateMin != null) {
+                date.gte(dateMin);
+            }
+            if (dateMax != null) {
+                date.lte(dateMax);
+            }
+        }
+        
+        String champTri = "numero".equalsIgnoreCase(sort) ? "numeroFactureVente" : "dateFacture";
+        Sort.Direction sens = "asc".equalsIgnoreCase(direction) ? Sort.Direction.ASC : Sort.Direction.DESC;
+        Pageable pageable = PageResponse.pageDemandee(page, size, Sort.by(sens, champTri).and(Sort.by(sens, "id")));
+        
+        Query query = new Query(criteria).with(pageable);
+        query.fields().exclude("lignes", "paiements", "previsionsPaiement");
+        List<FactureVente> factures = mongoTemplate.find(query, FactureVente.class);
+        factures.forEach(this::completerChampsCalcules);
+        long total = mongoTemplate.count(new Query(criteria), FactureVente.class);
+        return PageResponse.of(factures, pageable, total);
+    }
+    
+    private void completerChampsCalcules(FactureVente facture) {
+        try {
+            calculComptableService.calculerSiObsolete(facture);
+        } catch (Exception e) {
+            // Ignorer les erreurs de calcul pour ne pas bloquer la récupération
+            log.warn("Erreur lors du calcul comptable pour facture vente {}: {}", facture.getId(), e.getMessage());
+        }
+    }
+    
     public FactureVente create(FactureVente facture) {
+        LiensFactures<FactureVente, Client> liens = liensUnitaires();
+        preparerCreation(facture, liens);
+        
+        log.info("🔵 FactureVenteService.create - Avant sauvegarde: clientId={}, bandeCommandeId={}, lignes={}",
+            facture.getClientId(), facture.getBandeCommandeId(),
+            facture.getLignes() != null ? facture.getLignes().size() : 0);
+        
+        FactureVente saved = factureRepository.save(facture);
+        
+        log.info("🔵 FactureVenteService.create - Après sauvegarde: id={}, lignes={}",
+            saved.getId(), saved.getLignes() != null ? saved.getLignes().size() : 0);
+        
+        apresCreation(saved, liens);
+        dashboardAggregateService.rafraichirPourFactureVente(saved);
+        
+        return saved;
+    }
+
+    /**
+     * Création en masse (import) : chaque facture est préparée comme dans {@link #create}, les factures
+     * sont insérées par lots via BulkOperations, puis les effets de bord (stock, audit, trésorerie, écriture
+     * comptable) sont appliqués aux seules factures réellement insérées. Les BC, factures d'origine, clients et
+     * factures déjà émises sur les BC liés sont lus une fois pour tout le lot. Les agrégats du dashboard sont
+     * recalculés une fois par mois touché. Les factures sans numéro passent par {@link #create} : la
+     * numérotation compte les factures enregistrées.
+     *
+     * @param surErreur appelé pour chaque facture en échec, à la préparation ou à l'insertion (les autres sont enregistrées)
+     * @return factures enregistrées
+     */
+    public List<FactureVente> creerEnMasse(List<FactureVente> factures, int tailleLot,
+                                           BiConsumer<FactureVente, Exception> surErreur) {
+        LiensFactures<FactureVente, Client> liens = liensPrecharges(factures);
+        List<FactureVente> preparees = new ArrayList<>();
+        List<FactureVente> enregistrees = new ArrayList<>();
+        for (FactureVente facture : factures) {
+            try {
+                if (facture.getNumeroFactureVente() == null || facture.getNumeroFactureVente().isEmpty()) {
+                    enregistrees.add(create(facture));
+                    continue;
+                }
+                preparerCreation(facture, liens);
+                facture.setId(EcrituresParLots.nouvelId());
+                preparees.add(facture);
+            } catch (Exception e) {
+                surErreur.accept(facture, e);
+            }
+        }
+
+        List<FactureVente> inserees = EcrituresParLots.insererEnContinuant(mongoTemplate, FactureVente.class,
+                preparees, FactureVente::getId, tailleLot, surErreur);
+
+        for (FactureVente saved : inserees) {
+            try {
+                apresCreation(saved, liens);
+            } catch (Exception e) {
+                log.warn("Effets de création incomplets pour facture vente {}: {}", saved.getNumeroFactureVente(), e.getMessage());
+            }
+            enregistrees.add(saved);
+        }
+        dashboardAggregateService.rafraichirPourDates(
+                inserees.stream().map(FactureVente::getDateFacture).toList(),
+                inserees.stream().map(FactureVente::getBandeCommandeId).filter(Objects::nonNull).toList());
+        return enregistrees;
+    }
+
+    private LiensFactures<FactureVente, Client> liensUnitaires() {
+        return new LiensFactures<>(bandeCommandeRepository::findById, bandeCommandeRepository::findByNumeroBC,
+                factureRepository::findById, clientService::findById,
+                factureRepository::findByBandeCommandeIdAndClientId);
+    }
+
+    /** Liens de toutes les factures du lot, lus en une requête par collection. */
+    private LiensFactures<FactureVente, Client> liensPrecharges(List<FactureVente> factures) {
+        Map<String, BandeCommande> bcs = LiensFactures.charger(mongoTemplate, BandeCommande.class, "_id",
+                factures.stream().map(FactureVente::getBandeCommandeId).toList(), BandeCommande::getId);
+        Map<String, BandeCommande> bcsParNumero = LiensFactures.charger(mongoTemplate, BandeCommande.class, "numeroBC",
+                factures.stream().map(FactureVente::getBcReference).toList(), BandeCommande::getNumeroBC);
+        Map<String, FactureVente> origines = LiensFactures.charger(mongoTemplate, FactureVente.class, "_id",
+                factures.stream().map(FactureVente::getFactureOrigineId).toList(), FactureVente::getId);
+        Map<String, Client> clients = LiensFactures.charger(mongoTemplate, Client.class, "_id",
+                factures.stream().map(FactureVente::getClientId).toList(), Client::getId);
+        // Factures déjà émises sur les BC du lot, pour l'avertissement de dépassement du total BC
+        Map<String, List<FactureVente>> emisesParBcEtClient = new HashMap<>();
+        if (!bcs.isEmpty()) {
+            mongoTemplate.find(new Query(Criteria.where("bandeCommandeId").in(bcs.keySet())), FactureVente.class)
+                    .forEach(f -> emisesParBcEtClient
+                            .computeIfAbsent(f.getBandeCommandeId() + "|" + f.getClientId(), k -> new ArrayList<>())
+                            .add(f));
+        }
+        return new LiensFactures<>(LiensFactures.depuis(bcs), LiensFactures.depuis(bcsParNumero),
+                LiensFactures.depuis(origines), LiensFactures.depuis(clients),
+                (bcId, clientId) -> emisesParBcEtClient.getOrDefault(bcId + "|" + clientId, List.of()));
+    }
+
+    /**
+     * Validation, numérotation, échéance, totaux et champs comptables avant enregistrement.
+     * L'avertissement de dépassement du total BC est porté par clientWarning (non persisté).
+     */
+    private void preparerCreation(FactureVente facture, LiensFactures<FactureVente, Client> liens) {
         log.info("🔵 FactureVenteService.create - Création facture: clientId={}, bandeCommandeId={}, totalHT={}, totalTTC={}, lignes={}, allocationVenteMode={}",
             facture.getClientId(), facture.getBandeCommandeId(), 
             facture.getTotalHT(), facture.getTotalTTC(),
@@ -104,7 +257,7 @@ public class FactureVenteService {
             
             // Valider la liaison avec la facture d'origine si fournie
             if (facture.getFactureOrigineId() != null && !facture.getFactureOrigineId().isEmpty()) {
-                Optional<FactureVente> factureOrigine = factureRepository.findById(facture.getFactureOrigineId());
+                Optional<FactureVente> factureOrigine = liens.facture(facture.getFactureOrigineId());
                 if (factureOrigine.isPresent()) {
                     // Empêcher qu'un avoir annule un autre avoir
                     if (Boolean.TRUE.equals(factureOrigine.get().getEstAvoir())) {
@@ -129,9 +282,9 @@ public class FactureVenteService {
             // LEGACY : date = dernier jour du mois du BC. MANUAL/LINES : conserver la date fournie si présente.
             if (hasBc) {
                 if ("LEGACY".equals(allocMode)) {
-                    applyLastDayOfBcMonthAsDateFacture(facture);
+                    applyLastDayOfBcMonthAsDateFacture(facture, liens);
                 } else if (facture.getDateFacture() == null) {
-                    applyLastDayOfBcMonthAsDateFacture(facture);
+                    applyLastDayOfBcMonthAsDateFacture(facture, liens);
                 }
             }
         }
@@ -155,7 +308,7 @@ public class FactureVenteService {
         }
 
         if (!Boolean.TRUE.equals(facture.getEstAvoir())) {
-            applyBcSyncAccordingToAllocationMode(facture);
+            applyBcSyncAccordingToAllocationMode(facture, liens);
         }
 
         // Totaux finaux : lignes prioritaires, sinon totaux fournis, sinon calcul
@@ -191,20 +344,13 @@ public class FactureVenteService {
         facture.setCreatedAt(LocalDateTime.now());
         facture.setUpdatedAt(LocalDateTime.now());
 
-        String cumulativeWarning = buildCumulativeOverageWarning(facture);
-        
-        log.info("🔵 FactureVenteService.create - Avant sauvegarde: clientId={}, bandeCommandeId={}, lignes={}",
-            facture.getClientId(), facture.getBandeCommandeId(),
-            facture.getLignes() != null ? facture.getLignes().size() : 0);
-        
-        FactureVente saved = factureRepository.save(facture);
-        if (cumulativeWarning != null) {
-            saved.setClientWarning(cumulativeWarning);
-        }
-        
-        log.info("🔵 FactureVenteService.create - Après sauvegarde: id={}, lignes={}",
-            saved.getId(), saved.getLignes() != null ? saved.getLignes().size() : 0);
-        
+        facture.setClientWarning(buildCumulativeOverageWarning(facture, liens));
+    }
+
+    /**
+     * Effets de bord d'une création : stock, audit, transaction de trésorerie et écriture comptable.
+     */
+    private void apresCreation(FactureVente saved, LiensFactures<FactureVente, Client> liens) {
         // Décrémenter le stock des produits vendus (sauf facture issue d'un regroupement de BL : stock déjà sorti sur les BL)
         boolean skipStockForMergedSources = saved.getBonLivraisonSourceIds() != null
                 && !saved.getBonLivraisonSourceIds().isEmpty();
@@ -222,7 +368,7 @@ public class FactureVenteService {
         // Enregistrer la transaction dans le solde
         if (saved.getClientId() != null && saved.getTotalTTC() != null) {
             try {
-                clientService.findById(saved.getClientId()).ifPresent(client -> {
+                liens.tiers(saved.getClientId()).ifPresent(client -> {
                     String typeTransaction = Boolean.TRUE.equals(saved.getEstAvoir()) ? 
                         "AVOIR_VENTE" : "FACTURE_VENTE";
                     String libelle = Boolean.TRUE.equals(saved.getEstAvoir()) ? 
@@ -256,8 +402,6 @@ public class FactureVenteService {
         } catch (Exception e) {
             log.warn("Erreur lors de la génération de l'écriture comptable pour facture vente {}: {}", saved.getId(), e.getMessage());
         }
-        
-        return saved;
     }
     
     /**
@@ -331,7 +475,7 @@ public class FactureVenteService {
             boolean hasBc = bl.getBandeCommandeId() != null && !bl.getBandeCommandeId().isEmpty();
             if (hasBc) {
                 // Pas d'alignement date facture (fin de mois BC) : le BL n'a pas encore de date de facture.
-                applyBcSyncAccordingToAllocationMode(bl);
+                applyBcSyncAccordingToAllocationMode(bl, liensUnitaires());
             }
         }
 
@@ -348,7 +492,7 @@ public class FactureVenteService {
         bl.setCreatedAt(LocalDateTime.now());
         bl.setUpdatedAt(LocalDateTime.now());
 
-        String cumulativeWarning = buildCumulativeOverageWarning(bl);
+        String cumulativeWarning = buildCumulativeOverageWarning(bl, liensUnitaires());
         FactureVente saved = factureRepository.save(bl);
         if (cumulativeWarning != null) {
             saved.setClientWarning(cumulativeWarning);
@@ -361,6 +505,8 @@ public class FactureVenteService {
         auditService.logCreate("FactureVente", saved.getId(),
                 "Bon de livraison " + saved.getNumeroBonLivraison() + " créé - Montant TTC: " + saved.getTotalTTC() + " MAD");
 
+        dashboardAggregateService.rafraichirPourFactureVente(saved);
+
         return saved;
     }
 
@@ -399,6 +545,9 @@ public class FactureVenteService {
         auditService.logUpdate("FactureVente", saved.getId(), null,
                 "Bon " + saved.getNumeroBonLivraison() + " facturé sous " + saved.getNumeroFactureVente());
 
+        // Le BL quitte le bucket "sans date" pour le mois de facturation
+        dashboardAggregateService.rafraichirPourFactureVente(saved, null, saved.getBandeCommandeId());
+
         return saved;
     }
 
@@ -480,6 +629,8 @@ public class FactureVenteService {
         auditService.logCreate("FactureVente", saved.getId(),
                 "Facture vente " + saved.getNumeroFactureVente() + " créée depuis " + distinctIds.size() + " bons de livraison");
 
+        dashboardAggregateService.rafraichirPourFactureVente(saved);
+
         return saved;
     }
 
@@ -557,13 +708,12 @@ public class FactureVenteService {
         String mois = String.format("%02d", month);
         int year = date.getYear();
         String annee4chiffres = String.valueOf(year);
-        long count = factureRepository.findAll().stream()
-                .filter(f -> f.getDateBonLivraison() != null
-                        && f.getDateBonLivraison().getMonthValue() == month
-                        && f.getDateBonLivraison().getYear() == year
-                        && f.getNumeroBonLivraison() != null && !f.getNumeroBonLivraison().isEmpty())
-                .count();
-        String numero = String.format("%02d", count + 1);
+        long sequence = compteurService.suivant("BL", "", periodeMois(date), () -> compteurService.amorce(FactureVente.class,
+                new Criteria().andOperator(
+                        Criteria.where("dateBonLivraison").gte(date.withDayOfMonth(1)).lte(date.withDayOfMonth(date.lengthOfMonth())),
+                        Criteria.where("numeroBonLivraison").nin(null, "")),
+                "numeroBonLivraison", Pattern.compile("BL" + mois + "(\\d{2,})/" + annee4chiffres)));
+        String numero = String.format("%02d", sequence);
         return "BL" + mois + numero + "/" + annee4chiffres;
     }
     
@@ -593,6 +743,8 @@ public class FactureVenteService {
         return factureRepository.findById(id)
                 .map(existing -> {
                     log.info("🔵 FactureVenteService.update - Facture existante trouvée");
+                    LocalDate ancienneDateFacture = existing.getDateFacture();
+                    String ancienBcId = existing.getBandeCommandeId();
                     log.info("🔵 FactureVenteService.update - Montants existants AVANT update: totalHT={}, totalTTC={}", 
                         existing.getTotalHT(), existing.getTotalTTC());
                     
@@ -702,6 +854,8 @@ public class FactureVenteService {
                     auditService.logUpdate("FactureVente", saved.getId(), null, 
                         "Facture Vente " + saved.getNumeroFactureVente() + " modifiée - Statut: " + saved.getEtatPaiement());
                     
+                    dashboardAggregateService.rafraichirPourFactureVente(saved, ancienneDateFacture, ancienBcId);
+                    
                     return saved;
                 })
                 .orElseThrow(() -> new RuntimeException("Facture vente not found with id: " + id));
@@ -721,6 +875,7 @@ public class FactureVenteService {
         String label = f.getNumeroFactureVente() != null ? f.getNumeroFactureVente() : f.getNumeroBonLivraison();
         auditService.logDelete("FactureVente", id, "Facture Vente / BL " + label + " supprimée");
         factureRepository.deleteById(id);
+        dashboardAggregateService.rafraichirPourFactureVente(null, f.getDateFacture(), f.getBandeCommandeId());
     }
 
     private boolean shouldRestoreStockOnDelete(FactureVente f) {
@@ -771,11 +926,11 @@ public class FactureVenteService {
         return "LEGACY";
     }
 
-    private void applyLastDayOfBcMonthAsDateFacture(FactureVente facture) {
+    private void applyLastDayOfBcMonthAsDateFacture(FactureVente facture, LiensFactures<FactureVente, Client> liens) {
         if (facture.getBandeCommandeId() == null || facture.getBandeCommandeId().isEmpty()) {
             return;
         }
-        bandeCommandeRepository.findById(facture.getBandeCommandeId()).ifPresent(bc -> {
+        liens.bcParId(facture.getBandeCommandeId()).ifPresent(bc -> {
             if (bc.getDateBC() != null) {
                 LocalDate bcDate = bc.getDateBC();
                 LocalDate lastDayOfMonth = bcDate.withDayOfMonth(bcDate.lengthOfMonth());
@@ -788,7 +943,7 @@ public class FactureVenteService {
     /**
      * Synchronisation totaux/lignes depuis BC selon le mode (facture unique LEGACY vs fractionnée MANUAL/LINES).
      */
-    private void applyBcSyncAccordingToAllocationMode(FactureVente facture) {
+    private void applyBcSyncAccordingToAllocationMode(FactureVente facture, LiensFactures<FactureVente, Client> liens) {
         String mode = normalizeAllocationVenteMode(facture.getAllocationVenteMode());
         boolean hasBc = facture.getBandeCommandeId() != null && !facture.getBandeCommandeId().isEmpty();
         if (!hasBc) {
@@ -796,30 +951,31 @@ public class FactureVenteService {
         }
         switch (mode) {
             case "LEGACY":
-                syncTotalsFromBC(facture);
-                syncLignesFromBC(facture);
+                syncTotalsFromBC(facture, liens);
+                syncLignesFromBC(facture, liens);
                 break;
             case "MANUAL":
                 boolean totalsIn = facture.getTotalHT() != null && facture.getTotalTTC() != null;
                 if (!totalsIn) {
-                    syncTotalsFromBC(facture);
+                    syncTotalsFromBC(facture, liens);
                 }
                 boolean linesIn = facture.getLignes() != null && !facture.getLignes().isEmpty();
                 if (!linesIn && !totalsIn) {
-                    syncLignesFromBC(facture);
+                    syncLignesFromBC(facture, liens);
                 }
                 break;
             case "LINES":
                 // Lignes et totaux viennent du client ou du calcul ultérieur
                 break;
             default:
-                syncTotalsFromBC(facture);
-                syncLignesFromBC(facture);
+                syncTotalsFromBC(facture, liens);
+                syncLignesFromBC(facture, liens);
         }
     }
 
-    private Double resolveReferenceTtcForClientOnBc(String bcId, String clientId) {
-        Optional<BandeCommande> bcOpt = bandeCommandeRepository.findById(bcId);
+    private Double resolveReferenceTtcForClientOnBc(String bcId, String clientId,
+                                                     LiensFactures<FactureVente, Client> liens) {
+        Optional<BandeCommande> bcOpt = liens.bcParId(bcId);
         if (bcOpt.isEmpty()) {
             return null;
         }
@@ -839,7 +995,7 @@ public class FactureVenteService {
         return null;
     }
 
-    private String buildCumulativeOverageWarning(FactureVente facture) {
+    private String buildCumulativeOverageWarning(FactureVente facture, LiensFactures<FactureVente, Client> liens) {
         if (Boolean.TRUE.equals(facture.getEstAvoir())) {
             return null;
         }
@@ -848,11 +1004,11 @@ public class FactureVenteService {
         if (bcId == null || bcId.isEmpty() || clientId == null || clientId.isEmpty()) {
             return null;
         }
-        Double ref = resolveReferenceTtcForClientOnBc(bcId, clientId);
+        Double ref = resolveReferenceTtcForClientOnBc(bcId, clientId, liens);
         if (ref == null || ref <= 0) {
             return null;
         }
-        double already = factureRepository.findByBandeCommandeIdAndClientId(bcId, clientId).stream()
+        double already = liens.facturesParBcEtClient(bcId, clientId).stream()
                 .filter(f -> !Boolean.TRUE.equals(f.getEstAvoir()))
                 .mapToDouble(f -> f.getTotalTTC() != null ? f.getTotalTTC() : 0.0)
                 .sum();
@@ -879,22 +1035,22 @@ public class FactureVenteService {
         int year = date.getYear();
         String annee4chiffres = String.valueOf(year);
         
-        // 3. Compter les factures existantes pour ce mois + année
-        long count = factureRepository.findAll().stream()
-                .filter(f -> {
-                    if (f.getDateFacture() == null) return false;
-                    return f.getDateFacture().getMonthValue() == month && 
-                           f.getDateFacture().getYear() == year;
-                })
-                .count();
+        // 3. Numéro d'ordre du mois (compteur partagé avec les avoirs), amorcé depuis les factures du mois
+        long sequence = compteurService.suivant("FV", "", periodeMois(date), () -> compteurService.amorce(FactureVente.class,
+                Criteria.where("dateFacture").gte(date.withDayOfMonth(1)).lte(date.withDayOfMonth(date.lengthOfMonth())),
+                "numeroFactureVente", Pattern.compile("(?:AVOIR-)?" + mois + "(\\d{2,})/" + annee4chiffres)));
         
         // 4. Générer le numéro séquentiel (toujours 2 chiffres : 01, 02, 03, etc.)
-        String numero = String.format("%02d", count + 1);
+        String numero = String.format("%02d", sequence);
         
         // 5. Assembler : mois + numéro + "/" + annee4chiffres
         return mois + numero + "/" + annee4chiffres;
     }
     
+    private static String periodeMois(LocalDate date) {
+        return String.format("%d-%02d", date.getYear(), date.getMonthValue());
+    }
+    
     private void calculateTotals(FactureVente facture) {
         // Si les totaux sont déjà fournis explicitement, les préserver (sauf si des lignes sont aussi fournies)
         boolean totalsProvided = (facture.getTotalHT() != null && facture.getTotalHT() > 0) || 
@@ -963,22 +1119,13 @@ public class FactureVenteService {
      * Note: Pour les factures vente, on utilise le totalVenteHT global de la BC
      * car une BC peut avoir plusieurs clients, et chaque facture vente correspond à un client
      */
-    private void syncTotalsFromBC(FactureVente facture) {
+    private void syncTotalsFromBC(FactureVente facture, LiensFactures<FactureVente, Client> liens) {
         if (facture == null) {
             return;
         }
         
-        BandeCommande bc = null;
-        
-        // Chercher la BC par bandeCommandeId
-        if (facture.getBandeCommandeId() != null && !facture.getBandeCommandeId().isEmpty()) {
-            bc = bandeCommandeRepository.findById(facture.getBandeCommandeId()).orElse(null);
-        }
-        
-        // Fallback: chercher par bcReference
-        if (bc == null && facture.getBcReference() != null && !facture.getBcReference().isEmpty()) {
-            bc = bandeCommandeRepository.findByNumeroBC(facture.getBcReference()).orElse(null);
-        }
+        // Chercher la BC par bandeCommandeId, sinon par bcReference
+        BandeCommande bc = liens.bc(facture.getBandeCommandeId(), facture.getBcReference()).orElse(null);
         
         if (bc != null && bc.getTotalVenteHT() != null && bc.getTotalVenteTTC() != null) {
             // Utiliser les totaux de la BC
@@ -1003,7 +1150,7 @@ public class FactureVenteService {
      * Extrait les lignes depuis clientsVente (nouvelle structure) ou lignes (ancienne structure)
      * et les convertit en LineItem pour la facture
      */
-    private void syncLignesFromBC(FactureVente facture) {
+    private void syncLignesFromBC(FactureVente facture, LiensFactures<FactureVente, Client> liens) {
         if (facture == null) {
             log.warn("⚠️ FactureVenteService.syncLignesFromBC - Facture est null");
             return;
@@ -1022,13 +1169,13 @@ public class FactureVenteService {
         
         // Chercher la BC par bandeCommandeId
         if (bcId != null && !bcId.isEmpty()) {
-            bc = bandeCommandeRepository.findById(bcId).orElse(null);
+            bc = liens.bcParId(bcId).orElse(null);
             log.debug("🔵 FactureVenteService.syncLignesFromBC - Recherche BC par ID: {} -> {}", bcId, bc != null ? "trouvée" : "non trouvée");
         }
         
         // Fallback: chercher par bcReference
         if (bc == null && facture.getBcReference() != null && !facture.getBcReference().isEmpty()) {
-            bc = bandeCommandeRepository.findByNumeroBC(facture.getBcReference()).orElse(null);
+            bc = liens.bc(null, facture.getBcReference()).orElse(null);
             log.debug("🔵 FactureVenteService.syncLignesFromBC - Recherche BC par référence: {} -> {}", 
                 facture.getBcReference(), bc != null ? "trouvée" : "non trouvée");
         }
@@ -10,6 +10,7 @@ import org.springframework.data.mongodb.gridfs.GridFsTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.HashMap;
@@ -55,6 +56,27 @@ public class FileStorageService {
         return fileId.toString();
     }
     
+    /**
+     * Stocke un contenu en mémoire dans GridFS (fichiers générés côté serveur)
+     * @param content Contenu du fichier
+     * @param filename Nom du fichier
+     * @param contentType Type MIME
+     * @param metadata Métadonnées additionnelles (optionnel)
+     * @return L'ID du fichier dans GridFS
+     */
+    public String storeBytes(byte[] content, String filename, String contentType, Map<String, String> metadata) {
+        Map<String, String> fileMetadata = new HashMap<>();
+        if (metadata != null) {
+            fileMetadata.putAll(metadata);
+        }
+        fileMetadata.put("contentType", contentType);
+        fileMetadata.put("size", String.valueOf(content.length));
+
+        ObjectId fileId = gridFsTemplate.store(new ByteArrayInputStream(content), filename, contentType, fileMetadata);
+        log.debug("Fichier stocké: {} (ID: {}, {} octets)", filename, fileId, content.length);
+        return fileId.toString();
+    }
+
     /**
      * Récupère un fichier par son ID
      * @param fileId L'ID du fichier dans GridFS
@@ -296,16 +296,18 @@ public class GeminiOcrService implements DocumentOcrProvider {
                                             } catch (Exception e) {}
                                             // #endregion
                                             
-                                            return Mono.error(new IOException("Erreur API Gemini (" + clientResponse.statusCode() + "): " + errorMessage));
+                                            return Mono.error(OcrIndisponibleException.pourStatutHttp(clientResponse.statusCode().value(),
+                                                    "Erreur API Gemini (" + clientResponse.statusCode() + "): " + errorMessage));
                                         } catch (Exception e) {
-                                            return Mono.error(new IOException("Erreur API Gemini (" + clientResponse.statusCode() + "): " + errorBody));
+                                            return Mono.error(OcrIndisponibleException.pourStatutHttp(clientResponse.statusCode().value(),
+                                                    "Erreur API Gemini (" + clientResponse.statusCode() + "): " + errorBody));
                                         }
                                     });
                         })
                     .bodyToMono(String.class)
                     .timeout(Duration.ofSeconds(Math.max(10, timeoutSeconds)))
                     .onErrorMap(java.util.concurrent.TimeoutException.class, e ->
-                        new IOException("Timeout lors de l'appel à l'API Gemini (" + timeoutSeconds + "s dépassés)", e))
+                        new OcrIndisponibleException("Timeout lors de l'appel à l'API Gemini (" + timeoutSeconds + "s dépassés)", e))
                     .block();
 
             // #region agent log
@@ -386,6 +388,7 @@ public class GeminiOcrService implements DocumentOcrProvider {
         }
     }
 
+    @Override
     public String getModelName() {
         return model;
     }
@@ -0,0 +1,291 @@
+package com.bf4invest.service;
+
+import com.bf4invest.model.BandeCommande;
+import com.bf4invest.model.ClientVente;
+import com.bf4invest.model.FournisseurAchat;
+import com.bf4invest.model.LigneAchat;
+import com.bf4invest.model.LigneVente;
+import com.bf4invest.model.LineItem;
+
+import java.util.*;
+
+/**
+ * Agrégats de prix par produit tenus à jour de façon incrémentale depuis les lignes des BC.
+ * <p>
+ * Une ligne correspond à un produit si la référence est identique OU si désignation + unité le sont
+ * (mêmes règles que le recalcul historique). Les lignes sont donc agrégées sous trois clés :
+ * référence seule, désignation + unité, et les trois ensemble. Pour un produit, les sommes s'obtiennent
+ * par inclusion-exclusion (réf + désignation − les deux) et min/max par min/max des deux premiers ensembles.
+ * Chaque agrégat conserve Σqté, Σprix×qté et un multiset des prix, pour pouvoir retirer une ligne
+ * (modification ou suppression de BC) sans reparcourir la collection.
+ * <p>
+ * Les lignes comptées pour chaque BC sont conservées : {@link #remplacerBC} retire la contribution
+ * effectivement indexée, quel que soit l'état lu par l'appelant avant son écriture.
+ * <p>
+ * Non thread-safe : l'appelant sérialise les accès.
+ */
+public class IndexPrixProduits {
+
+    public enum Sens { ACHAT, VENTE }
+
+    /**
+     * Contribution d'une ligne de BC. Le prix n'est agrégé que si quantité et prix sont &gt; 0 ;
+     * la TVA est comptée dès qu'elle est renseignée.
+     */
+    public record LignePrix(String ref, String designation, String unite, Sens sens,
+                            double quantite, double prix, Double tva) {
+
+        boolean prixValide() {
+            return quantite > 0 && prix > 0;
+        }
+    }
+
+    /**
+     * Résultat consolidé pour un produit (prix non arrondis, null si aucune ligne valide).
+     */
+    public record PrixProduit(double quantiteAchetee, Double prixAchatPondere, Double prixAchatMin, Double prixAchatMax,
+                              double quantiteVendue, Double prixVentePondere, Double prixVenteMin, Double prixVenteMax,
+                              Double tva) {
+    }
+
+    /** Agrégat d'un ensemble de lignes pour un sens (achat ou vente). */
+    private static final class Agregat {
+        int lignes;
+        double quantite;
+        double montant;
+        final TreeMap<Double, Integer> prix = new TreeMap<>();
+
+        void ajouter(double qte, double p, int signe) {
+            lignes += signe;
+            quantite += signe * qte;
+            montant += signe * p * qte;
+            prix.merge(p, signe, Integer::sum);
+            if (prix.get(p) <= 0) {
+                prix.remove(p);
+            }
+        }
+
+        boolean vide() {
+            return lignes <= 0;
+        }
+    }
+
+    private static final class Entree {
+        final Agregat achat = new Agregat();
+        final Agregat vente = new Agregat();
+        final Map<Double, Integer> tvas = new HashMap<>();
+
+        boolean vide() {
+            return achat.vide() && vente.vide() && tvas.isEmpty();
+        }
+    }
+
+    private final Map<String, Entree> entrees = new HashMap<>();
+
+    /** Lignes actuellement comptées, par id de BC. */
+    private final Map<String, List<LignePrix>> contributions = new HashMap<>();
+
+    /**
+     * Construit l'index en un seul passage sur les BC.
+     */
+    public static IndexPrixProduits construire(Iterable<BandeCommande> bcs) {
+        IndexPrixProduits index = new IndexPrixProduits();
+        for (BandeCommande bc : bcs) {
+            if (bc.getId() != null) {
+                index.remplacerBC(bc.getId(), extraire(bc));
+            } else {
+                index.appliquer(List.of(), extraire(bc));
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Lignes de prix d'une BC. Achats : fournisseursAchat si renseigné, sinon lignesAchat ;
+     * ventes : clientsVente ; ancien format : lignes (achat + vente).
+     */
+    public static List<LignePrix> extraire(BandeCommande bc) {
+        List<LignePrix> lignes = new ArrayList<>();
+        if (bc == null) {
+            return lignes;
+        }
+        if (bc.getFournisseursAchat() != null && !bc.getFournisseursAchat().isEmpty()) {
+            for (FournisseurAchat fa : bc.getFournisseursAchat()) {
+                if (fa == null || fa.getLignesAchat() == null) continue;
+                for (LigneAchat la : fa.getLignesAchat()) {
+                    ajouterAchat(lignes, la);
+                }
+            }
+        } else if (bc.lignesAchatAncienFormat() != null) {
+            for (LigneAchat la : bc.lignesAchatAncienFormat()) {
+                ajouterAchat(lignes, la);
+            }
+        }
+        if (bc.getClientsVente() != null) {
+            for (ClientVente cv : bc.getClientsVente()) {
+                if (cv == null || cv.getLignesVente() == null) continue;
+                for (LigneVente lv : cv.getLignesVente()) {
+                    if (lv == null) continue;
+                    lignes.add(new LignePrix(lv.getProduitRef(), lv.getDesignation(), lv.getUnite(), Sens.VENTE,
+                            valeur(lv.getQuantiteVendue()), valeur(lv.getPrixVenteUnitaireHT()), null));
+                }
+            }
+        }
+        if (bc.lignesAncienFormat() != null) {
+            for (LineItem li : bc.lignesAncienFormat()) {
+                if (li == null) continue;
+                lignes.add(new LignePrix(li.getProduitRef(), li.getDesignation(), li.getUnite(), Sens.ACHAT,
+                        valeur(li.getQuantiteAchetee()), valeur(li.getPrixAchatUnitaireHT()), li.getTva()));
+                lignes.add(new LignePrix(li.getProduitRef(), li.getDesignation(), li.getUnite(), Sens.VENTE,
+                        valeur(li.getQuantiteVendue()), valeur(li.getPrixVenteUnitaireHT()), null));
+            }
+        }
+        return lignes;
+    }
+
+    private static void ajouterAchat(List<LignePrix> lignes, LigneAchat la) {
+        if (la == null) return;
+        lignes.add(new LignePrix(la.getProduitRef(), la.getDesignation(), la.getUnite(), Sens.ACHAT,
+                valeur(la.getQuantiteAchetee()), valeur(la.getPrixAchatUnitaireHT()), la.getTva()));
+    }
+
+    private static double valeur(Double d) {
+        return d != null ? d : 0.0;
+    }
+
+    /**
+     * Remplace la contribution d'une BC par ses lignes actuelles (vides : BC supprimée).
+     *
+     * @return les lignes précédemment comptées pour cette BC
+     */
+    public List<LignePrix> remplacerBC(String bcId, List<LignePrix> nouvelles) {
+        List<LignePrix> anciennes = nouvelles.isEmpty()
+                ? contributions.remove(bcId)
+                : contributions.put(bcId, List.copyOf(nouvelles));
+        if (anciennes == null) {
+            anciennes = List.of();
+        }
+        appliquer(anciennes, nouvelles);
+        return anciennes;
+    }
+
+    /**
+     * Applique le différentiel d'une BC : retire ses anciennes lignes puis ajoute les nouvelles.
+     */
+    public void appliquer(Collection<LignePrix> anciennes, Collection<LignePrix> nouvelles) {
+        for (LignePrix l : anciennes) {
+            appliquer(l, -1);
+        }
+        for (LignePrix l : nouvelles) {
+            appliquer(l, 1);
+        }
+    }
+
+    private void appliquer(LignePrix ligne, int signe) {
+        if (!ligne.prixValide() && ligne.tva() == null) {
+            return;
+        }
+        for (String cle : cles(ligne.ref(), ligne.designation(), ligne.unite())) {
+            Entree entree = entrees.computeIfAbsent(cle, k -> new Entree());
+            if (ligne.prixValide()) {
+                (ligne.sens() == Sens.ACHAT ? entree.achat : entree.vente).ajouter(ligne.quantite(), ligne.prix(), signe);
+            }
+            if (ligne.tva() != null) {
+                entree.tvas.merge(ligne.tva(), signe, Integer::sum);
+                if (entree.tvas.get(ligne.tva()) <= 0) {
+                    entree.tvas.remove(ligne.tva());
+                }
+            }
+            if (entree.vide()) {
+                entrees.remove(cle);
+            }
+        }
+    }
+
+    /**
+     * Prix consolidés d'un produit (référence, désignation, unité).
+     */
+    public PrixProduit prix(String ref, String designation, String unite) {
+        String r = cleTexte(ref);
+        String d = cleTexte(designation);
+        Entree parRef = r.isEmpty() ? null : entrees.get("R|" + r);
+        Entree parDesignation = d.isEmpty() ? null : entrees.get("D|" + d + "|" + cleUnite(unite));
+        Entree communes = r.isEmpty() || d.isEmpty() ? null : entrees.get("B|" + r + "|" + d + "|" + cleUnite(unite));
+
+        double[] achat = consolider(parRef, parDesignation, communes, Sens.ACHAT);
+        double[] vente = consolider(parRef, parDesignation, communes, Sens.VENTE);
+
+        Map<Double, Integer> tvas = new HashMap<>();
+        if (parRef != null) parRef.tvas.forEach((t, n) -> tvas.merge(t, n, Integer::sum));
+        if (parDesignation != null) parDesignation.tvas.forEach((t, n) -> tvas.merge(t, n, Integer::sum));
+        if (communes != null) communes.tvas.forEach((t, n) -> tvas.merge(t, -n, Integer::sum));
+        // TVA la plus fréquente parmi les lignes du produit (à égalité, la plus faible)
+        Double tva = tvas.entrySet().stream()
+                .filter(e -> e.getValue() > 0)
+                .max(Comparator.<Map.Entry<Double, Integer>>comparingInt(Map.Entry::getValue)
+                        .thenComparing(Map.Entry::getKey, Comparator.reverseOrder()))
+                .map(Map.Entry::getKey)
+                .orElse(null);
+
+        return new PrixProduit(
+                achat[0] > 0 ? achat[1] : 0.0, achat[0] > 0 ? achat[2] / achat[1] : null,
+                achat[0] > 0 ? achat[3] : null, achat[0] > 0 ? achat[4] : null,
+                vente[0] > 0 ? vente[1] : 0.0, vente[0] > 0 ? vente[2] / vente[1] : null,
+                vente[0] > 0 ? vente[3] : null, vente[0] > 0 ? vente[4] : null,
+                tva);
+    }
+
+    /**
+     * {nbLignes, Σqté, Σprix×qté, min, max} sur l'union des lignes par référence et par désignation.
+     */
+    private static double[] consolider(Entree parRef, Entree parDesignation, Entree communes, Sens sens) {
+        double lignes = 0, quantite = 0, montant = 0;
+        Double min = null, max = null;
+        for (Entree e : new Entree[] { parRef, parDesignation }) {
+            if (e == null) continue;
+            Agregat a = sens == Sens.ACHAT ? e.achat : e.vente;
+            if (a.vide()) continue;
+            lignes += a.lignes;
+            quantite += a.quantite;
+            montant += a.montant;
+            min = min == null ? a.prix.firstKey() : Math.min(min, a.prix.firstKey());
+            max = max == null ? a.prix.lastKey() : Math.max(max, a.prix.lastKey());
+        }
+        if (communes != null) {
+            Agregat a = sens == Sens.ACHAT ? communes.achat : communes.vente;
+            lignes -= a.lignes;
+            quantite -= a.quantite;
+            montant -= a.montant;
+        }
+        return new double[] { lignes, quantite, montant, min != null ? min : 0.0, max != null ? max : 0.0 };
+    }
+
+    public int taille() {
+        return entrees.size();
+    }
+
+    private static List<String> cles(String ref, String designation, String unite) {
+        String r = cleTexte(ref);
+        String d = cleTexte(designation);
+        List<String> cles = new ArrayList<>(3);
+        if (!r.isEmpty()) {
+            cles.add("R|" + r);
+        }
+        if (!d.isEmpty()) {
+            cles.add("D|" + d + "|" + cleUnite(unite));
+        }
+        if (!r.isEmpty() && !d.isEmpty()) {
+            cles.add("B|" + r + "|" + d + "|" + cleUnite(unite));
+        }
+        return cles;
+    }
+
+    private static String cleTexte(String s) {
+        return s == null ? "" : s.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static String cleUnite(String unite) {
+        String u = cleTexte(unite);
+        return u.isEmpty() ? "u" : u;
+    }
+}
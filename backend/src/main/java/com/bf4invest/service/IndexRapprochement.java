@@ -0,0 +1,216 @@
+package com.bf4invest.service;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+/**
+ * Index en mémoire des factures candidates au rapprochement bancaire, construit une fois par
+ * passage de mapping. Les montants restant dus sont triés dans un tableau primitif : la recherche
+ * d'un montant (± tolérance) se fait par dichotomie en O(log n + k) au lieu d'un parcours complet.
+ * Les candidats retenus sont notés selon le montant, la fenêtre de dates, la référence et le libellé.
+ */
+public class IndexRapprochement {
+
+    /** Fenêtre de dates (en jours) autour de la date d'opération. */
+    public static final int FENETRE_JOURS = 7;
+    /** Tolérance relative sur le montant (±1%). */
+    public static final double TOLERANCE_MONTANT = 0.01;
+
+    private static final double POIDS_MONTANT = 50.0;
+    private static final double POIDS_DATE = 20.0;
+    private static final double POIDS_NUMERO = 20.0;
+    private static final double POIDS_PARTENAIRE = 10.0;
+
+    /**
+     * Facture candidate : montant restant dû et éléments de comparaison.
+     */
+    @Getter
+    @Builder
+    public static class Candidat {
+        private final String factureId;
+        private final String numero;
+        private final double totalTTC;
+        private final double restant;
+        private final LocalDate dateFacture;
+        private final LocalDate dateEcheance;
+        /** Références des paiements déjà enregistrés sur la facture. */
+        private final Set<String> referencesPaiements;
+        /** Nom du client / fournisseur. */
+        private final String partenaire;
+    }
+
+    /**
+     * Correspondance notée entre une transaction et une facture.
+     */
+    public record Correspondance(String factureId, String numero, double score, double ecartMontant,
+                                 Long ecartJours, boolean numeroTrouve, double correspondancePartenaire) {
+    }
+
+    private final double[] montants;
+    private final Candidat[] candidats;
+    private final String[] numerosNormalises;
+    private final Set<String>[] tokensPartenaires;
+    private final boolean[] consommes;
+    private final Map<String, Integer> positions = new HashMap<>();
+
+    @SuppressWarnings("unchecked")
+    public IndexRapprochement(Collection<Candidat> source) {
+        Candidat[] tries = source.toArray(new Candidat[0]);
+        Arrays.sort(tries, Comparator.comparingDouble(Candidat::getRestant));
+        int n = tries.length;
+        this.candidats = tries;
+        this.montants = new double[n];
+        this.numerosNormalises = new String[n];
+        this.tokensPartenaires = new Set[n];
+        this.consommes = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            montants[i] = tries[i].getRestant();
+            numerosNormalises[i] = normaliser(tries[i].getNumero());
+            tokensPartenaires[i] = tokens(tries[i].getPartenaire());
+            positions.put(tries[i].getFactureId(), i);
+        }
+    }
+
+    public int taille() {
+        return candidats.length;
+    }
+
+    /**
+     * Retourne les factures dont le total TTC et le restant dû correspondent tous deux au montant (±1%),
+     * triées par score décroissant : comme le rapprochement historique, une facture déjà partiellement
+     * payée n'est pas proposée pour le solde. Les factures dont un paiement porte déjà la référence de
+     * la transaction sont exclues.
+     */
+    public List<Correspondance> rechercher(double montant, LocalDate dateOperation, String reference,
+                                           String libelle, int limite) {
+        if (montant <= 0 || candidats.length == 0) {
+            return List.of();
+        }
+        double tolerance = Math.max(montant * TOLERANCE_MONTANT, 0.01);
+        String referenceNormalisee = normaliser(reference);
+        String libelleNormalise = normaliser(libelle);
+        Set<String> tokensLibelle = tokens(libelle);
+
+        List<Correspondance> resultats = new ArrayList<>();
+        for (int i = premierIndexSuperieurOuEgal(montant - tolerance); i < montants.length && montants[i] <= montant + tolerance; i++) {
+            if (consommes[i]) {
+                continue;
+            }
+            Candidat c = candidats[i];
+            if (Math.abs(c.getTotalTTC() - montant) > tolerance) {
+                continue;
+            }
+            if (reference != null && !reference.isEmpty() && c.getReferencesPaiements() != null
+                    && c.getReferencesPaiements().contains(reference)) {
+                continue; // Cette référence est déjà utilisée
+            }
+
+            double ecartMontant = Math.abs(montants[i] - montant);
+            double score = POIDS_MONTANT * (1 - ecartMontant / tolerance);
+
+            Long ecartJours = ecartJours(dateOperation, c);
+            if (ecartJours != null && ecartJours <= FENETRE_JOURS) {
+                score += POIDS_DATE * (1 - ecartJours / (double) (FENETRE_JOURS + 1));
+            }
+
+            String numero = numerosNormalises[i];
+            boolean numeroTrouve = numero.length() >= 3
+                    && (libelleNormalise.contains(numero) || referenceNormalisee.contains(numero));
+            if (numeroTrouve) {
+                score += POIDS_NUMERO;
+            }
+
+            double partenaire = 0.0;
+            Set<String> tokensPartenaire = tokensPartenaires[i];
+            if (!tokensPartenaire.isEmpty() && !tokensLibelle.isEmpty()) {
+                int communs = 0;
+                for (String token : tokensPartenaire) {
+                    if (tokensLibelle.contains(token)) {
+                        communs++;
+                    }
+                }
+                partenaire = communs / (double) tokensPartenaire.size();
+                score += POIDS_PARTENAIRE * partenaire;
+            }
+
+            resultats.add(new Correspondance(c.getFactureId(), c.getNumero(), Math.round(score * 100) / 100.0,
+                    ecartMontant, ecartJours, numeroTrouve, partenaire));
+        }
+
+        resultats.sort(Comparator.comparingDouble(Correspondance::score).reversed()
+                .thenComparingDouble(Correspondance::ecartMontant));
+        return resultats.size() > limite ? new ArrayList<>(resultats.subList(0, limite)) : resultats;
+    }
+
+    /**
+     * Retire une facture des candidats (elle vient d'être rapprochée pendant ce passage).
+     */
+    public void consommer(String factureId) {
+        Integer position = positions.get(factureId);
+        if (position != null) {
+            consommes[position] = true;
+        }
+    }
+
+    private int premierIndexSuperieurOuEgal(double valeur) {
+        int bas = 0;
+        int haut = montants.length;
+        while (bas < haut) {
+            int milieu = (bas + haut) >>> 1;
+            if (montants[milieu] < valeur) {
+                bas = milieu + 1;
+            } else {
+                haut = milieu;
+            }
+        }
+        return bas;
+    }
+
+    private static Long ecartJours(LocalDate dateOperation, Candidat c) {
+        if (dateOperation == null) {
+            return null;
+        }
+        Long ecart = null;
+        for (LocalDate date : new LocalDate[]{c.getDateFacture(), c.getDateEcheance()}) {
+            if (date != null) {
+                long jours = Math.abs(ChronoUnit.DAYS.between(date, dateOperation));
+                ecart = ecart == null ? jours : Math.min(ecart, jours);
+            }
+        }
+        return ecart;
+    }
+
+    /**
+     * Minuscules sans séparateurs : "FV-2024-001" et "fv2024001" se comparent à l'identique.
+     */
+    static String normaliser(String valeur) {
+        if (valeur == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(valeur.length());
+        for (int i = 0; i < valeur.length(); i++) {
+            char ch = Character.toLowerCase(valeur.charAt(i));
+            if (Character.isLetterOrDigit(ch)) {
+                sb.append(ch);
+            }
+        }
+        return sb.toString();
+    }
+
+    static Set<String> tokens(String valeur) {
+        if (valeur == null || valeur.isBlank()) {
+            return Set.of();
+        }
+        Set<String> tokens = new HashSet<>();
+        for (String token : valeur.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (token.length() >= 3) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,88 @@
+package com.bf4invest.service;
+
+import com.bf4invest.model.SuppressionDocument;
+import com.mongodb.client.model.Projections;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.BeforeDeleteEvent;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Enregistre une trace ({@link SuppressionDocument}) pour chaque document supprimé dans les collections couvertes
+ * par la sauvegarde incrémentale, afin que la restauration rejoue aussi les suppressions.
+ * <p>
+ * Les _id visés sont lus avant la suppression (le filtre peut porter sur d'autres champs), puis écrits une fois
+ * la suppression effectuée. Un filtre vide (deleteAll) produit une seule trace de purge de la collection.
+ * Ne couvre que les suppressions passant par MongoTemplate / les repositories.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class JournalSuppressions extends AbstractMongoEventListener<Object> {
+
+    private record SuppressionEnCours(Document filtre, List<Object> ids) {}
+
+    private final MongoTemplate mongoTemplate;
+
+    // Avant et après suppression sont émis par le même thread, autour d'un seul appel au driver
+    private final ThreadLocal<SuppressionEnCours> enCours = new ThreadLocal<>();
+
+    @Override
+    public void onBeforeDelete(BeforeDeleteEvent<Object> event) {
+        enCours.remove();
+        String collection = event.getCollectionName();
+        Document filtre = event.getDocument();
+        if (collection == null || filtre == null || !SauvegardeService.estIncrementale(collection) || filtre.isEmpty()) {
+            return;
+        }
+        List<Object> ids = new ArrayList<>();
+        mongoTemplate.getCollection(collection).find(filtre)
+                .projection(Projections.include("_id"))
+                .forEach(document -> ids.add(document.get("_id")));
+        enCours.set(new SuppressionEnCours(filtre, ids));
+    }
+
+    @Override
+    public void onAfterDelete(AfterDeleteEvent<Object> event) {
+        String collection = event.getCollectionName();
+        Document filtre = event.getDocument();
+        if (collection == null || filtre == null || !SauvegardeService.estIncrementale(collection)) {
+            return;
+        }
+        SuppressionEnCours suppression = enCours.get();
+        enCours.remove();
+        LocalDateTime maintenant = LocalDateTime.now();
+        try {
+            if (filtre.isEmpty()) {
+                mongoTemplate.insert(SuppressionDocument.builder()
+                        .collection(collection)
+                        .purge(true)
+                        .supprimeLe(maintenant)
+                        .build());
+                return;
+            }
+            if (suppression == null || suppression.filtre() != filtre || suppression.ids().isEmpty()) {
+                return;
+            }
+            List<SuppressionDocument> traces = suppression.ids().stream()
+                    .map(id -> SuppressionDocument.builder()
+                            .collection(collection)
+                            .documentId(id)
+                            .supprimeLe(maintenant)
+                            .build())
+                    .toList();
+            mongoTemplate.insertAll(traces);
+        } catch (Exception e) {
+            // La suppression a eu lieu : l'échec de la trace ne doit pas la faire échouer
+            log.error("Trace de suppression non enregistrée pour {} ({}): {}", collection, filtre, e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.bf4invest.service;
+
+import com.bf4invest.model.BandeCommande;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Documents liés consultés pendant la création d'une facture : BC, facture d'origine d'un avoir, client ou
+ * fournisseur, et (ventes) factures déjà émises pour le même BC et le même client. Pour une facture seule, chaque
+ * lien est lu à la demande ; pour une création en masse, chaque collection est lue une fois pour tout le lot
+ * ({@link #charger}), au lieu d'une requête par facture.
+ *
+ * @param <F> type de facture
+ * @param <T> type du tiers (client ou fournisseur)
+ */
+class LiensFactures<F, T> {
+
+    private final Function<String, Optional<BandeCommande>> bcParId;
+    private final Function<String, Optional<BandeCommande>> bcParNumero;
+    private final Function<String, Optional<F>> factureParId;
+    private final Function<String, Optional<T>> tiersParId;
+    private final BiFunction<String, String, List<F>> facturesParBcEtClient;
+
+    LiensFactures(Function<String, Optional<BandeCommande>> bcParId,
+                  Function<String, Optional<BandeCommande>> bcParNumero,
+                  Function<String, Optional<F>> factureParId,
+                  Function<String, Optional<T>> tiersParId,
+                  BiFunction<String, String, List<F>> facturesParBcEtClient) {
+        this.bcParId = bcParId;
+        this.bcParNumero = bcParNumero;
+        this.factureParId = factureParId;
+        this.tiersParId = tiersParId;
+        this.facturesParBcEtClient = facturesParBcEtClient;
+    }
+
+    Optional<BandeCommande> bcParId(String id) {
+        return id != null && !id.isEmpty() ? bcParId.apply(id) : Optional.empty();
+    }
+
+    /** BC par id, sinon par numéro. */
+    Optional<BandeCommande> bc(String id, String numero) {
+        Optional<BandeCommande> bc = bcParId(id);
+        if (bc.isEmpty() && numero != null && !numero.isEmpty()) {
+            bc = bcParNumero.apply(numero);
+        }
+        return bc;
+    }
+
+    Optional<F> facture(String id) {
+        return factureParId.apply(id);
+    }
+
+    Optional<T> tiers(String id) {
+        return tiersParId.apply(id);
+    }
+
+    List<F> facturesParBcEtClient(String bcId, String clientId) {
+        return facturesParBcEtClient.apply(bcId, clientId);
+    }
+
+    /**
+     * Documents dont le champ prend l'une des valeurs, indexés par ce champ (le premier trouvé par valeur).
+     */
+    static <E> Map<String, E> charger(MongoTemplate mongoTemplate, Class<E> type, String champ,
+                                      Collection<String> valeurs, Function<E, String> cle) {
+        List<String> distinctes = valeurs.stream().filter(Objects::nonNull).filter(v -> !v.isEmpty()).distinct().toList();
+        Map<String, E> documents = new HashMap<>();
+        if (!distinctes.isEmpty()) {
+            mongoTemplate.find(new Query(Criteria.where(champ).in(distinctes)), type)
+                    .forEach(document -> documents.putIfAbsent(cle.apply(document), document));
+        }
+        return documents;
+    }
+
+    static <E> Function<String, Optional<E>> depuis(Map<String, E> documents) {
+        return cle -> Optional.ofNullable(cle != null ? documents.get(cle) : null);
+    }
+}
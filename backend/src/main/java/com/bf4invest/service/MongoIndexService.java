@@ -0,0 +1,263 @@
+package com.bf4invest.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mapping.context.MappingContext;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.repository.core.RepositoryInformation;
+import org.springframework.data.repository.query.parser.Part;
+import org.springframework.data.repository.query.parser.PartTree;
+import org.springframework.data.repository.support.Repositories;
+import org.springframework.stereotype.Service;
+
+import java.lang.reflect.Method;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Gestion des index MongoDB déclarés sur les modèles (@Indexed / @CompoundIndex).
+ * L'auto-création d'index de Spring Data étant désactivée par défaut, les index sont créés
+ * explicitement au démarrage. Fournit aussi un diagnostic explain() des requêtes dérivées
+ * des repositories pour détecter les parcours complets de collection (COLLSCAN).
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MongoIndexService {
+
+    private final MongoTemplate mongoTemplate;
+    private final ApplicationContext applicationContext;
+
+    /**
+     * Crée (ou vérifie) les index déclarés sur toutes les entités @Document.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void creerIndexAuDemarrage() {
+        try {
+            Map<String, Object> stats = creerIndex();
+            log.info("Index MongoDB vérifiés: {}", stats);
+        } catch (Exception e) {
+            log.warn("Création des index MongoDB impossible: {}", e.getMessage());
+        }
+    }
+
+    public Map<String, Object> creerIndex() {
+        MappingContext<? extends MongoPersistentEntity<?>, MongoPersistentProperty> mappingContext =
+                mongoTemplate.getConverter().getMappingContext();
+        MongoPersistentEntityIndexResolver resolver = new MongoPersistentEntityIndexResolver(mappingContext);
+
+        int crees = 0;
+        int erreurs = 0;
+        for (MongoPersistentEntity<?> entity : mappingContext.getPersistentEntities()) {
+            if (!entity.isAnnotationPresent(org.springframework.data.mongodb.core.mapping.Document.class)) {
+                continue;
+            }
+            IndexOperations indexOps = mongoTemplate.indexOps(entity.getType());
+            for (MongoPersistentEntityIndexResolver.IndexDefinitionHolder holder :
+                    resolver.resolveIndexForEntity(entity)) {
+                // Ignorer les index hérités des documents embarqués (ex: Paiement dans FactureVente.paiements)
+                if (!estIndexRacine(holder)) {
+                    continue;
+                }
+                try {
+                    indexOps.ensureIndex(holder.getIndexDefinition());
+                    crees++;
+                } catch (Exception e) {
+                    erreurs++;
+                    log.warn("Index {} sur {} non créé: {}", holder.getIndexKeys(), entity.getCollection(), e.getMessage());
+                }
+            }
+        }
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("index", crees);
+        stats.put("erreurs", erreurs);
+        return stats;
+    }
+
+    private boolean estIndexRacine(MongoPersistentEntityIndexResolver.IndexDefinitionHolder holder) {
+        String path = holder.getPath();
+        if (path == null || path.isEmpty()) {
+            return true;
+        }
+        return !path.contains(".") && holder.getIndexKeys().keySet().equals(Set.of(path));
+    }
+
+    // ==================== Diagnostic ====================
+
+    /**
+     * Exécute explain() sur chaque requête dérivée des repositories (filtre et tri reconstruits
+     * à partir du nom de méthode, avec des valeurs fictives) et signale les plans en COLLSCAN.
+     */
+    public Map<String, Object> diagnostiquerRequetes() {
+        Repositories repositories = new Repositories(applicationContext);
+        QueryMapper queryMapper = new QueryMapper(mongoTemplate.getConverter());
+        List<Map<String, Object>> requetes = new ArrayList<>();
+        int collscans = 0;
+
+        for (Class<?> domainType : repositories) {
+            RepositoryInformation info = repositories.getRequiredRepositoryInformation(domainType);
+            MongoPersistentEntity<?> entity = mongoTemplate.getConverter().getMappingContext()
+                    .getRequiredPersistentEntity(domainType);
+
+            for (Method method : info.getQueryMethods()) {
+                Map<String, Object> resultat = new LinkedHashMap<>();
+                resultat.put("repository", info.getRepositoryInterface().getSimpleName());
+                resultat.put("methode", method.getName());
+                resultat.put("collection", entity.getCollection());
+                try {
+                    PartTree tree = new PartTree(method.getName(), domainType);
+                    Query query = construireRequete(tree, method.getParameterTypes());
+                    Document filtre = queryMapper.getMappedObject(query.getQueryObject(), entity);
+                    Document tri = queryMapper.getMappedSort(query.getSortObject(), entity);
+
+                    Document find = new Document("find", entity.getCollection()).append("filter", filtre);
+                    if (!tri.isEmpty()) {
+                        find.append("sort", tri);
+                    }
+                    Document explain = mongoTemplate.getDb().runCommand(
+                            new Document("explain", find).append("verbosity", "queryPlanner"));
+
+                    List<String> etapes = new ArrayList<>();
+                    Object queryPlanner = explain.get("queryPlanner");
+                    if (queryPlanner instanceof Document planner) {
+                        collecterEtapes(planner.get("winningPlan"), etapes);
+                    }
+                    boolean collscan = etapes.contains("COLLSCAN");
+                    if (collscan) {
+                        collscans++;
+                    }
+                    resultat.put("filtre", filtre.toJson());
+                    resultat.put("tri", tri.toJson());
+                    resultat.put("plan", etapes);
+                    resultat.put("collscan", collscan);
+                } catch (Exception e) {
+                    resultat.put("erreur", e.getMessage());
+                }
+                requetes.add(resultat);
+            }
+        }
+
+        Map<String, Object> rapport = new LinkedHashMap<>();
+        rapport.put("requetes", requetes.size());
+        rapport.put("collscans", collscans);
+        rapport.put("details", requetes);
+        return rapport;
+    }
+
+    private Query construireRequete(PartTree tree, Class<?>[] typesParametres) {
+        int indexParametre = 0;
+        List<Criteria> alternatives = new ArrayList<>();
+        for (PartTree.OrPart orPart : tree) {
+            List<Criteria> conditions = new ArrayList<>();
+            for (Part part : orPart) {
+                Object[] valeurs = new Object[part.getNumberOfArguments()];
+                for (int i = 0; i < valeurs.length; i++) {
+                    Class<?> type = indexParametre < typesParametres.length ? typesParametres[indexParametre] : Object.class;
+                    valeurs[i] = valeurFictive(type);
+                    indexParametre++;
+                }
+                conditions.add(construireCondition(part, valeurs));
+            }
+            if (!conditions.isEmpty()) {
+                alternatives.add(conditions.size() == 1 ? conditions.get(0) : new Criteria().andOperator(conditions));
+            }
+        }
+
+        Query query = new Query();
+        if (alternatives.size() == 1) {
+            query.addCriteria(alternatives.get(0));
+        } else if (alternatives.size() > 1) {
+            query.addCriteria(new Criteria().orOperator(alternatives));
+        }
+        Sort sort = tree.getSort();
+        if (sort.isSorted()) {
+            query.with(sort);
+        }
+        return query;
+    }
+
+    private Criteria construireCondition(Part part, Object[] valeurs) {
+        Criteria c = Criteria.where(part.getProperty().toDotPath());
+        boolean ignoreCase = part.shouldIgnoreCase() != Part.IgnoreCaseType.NEVER;
+        return switch (part.getType()) {
+            case SIMPLE_PROPERTY -> ignoreCase && valeurs[0] instanceof String s
+                    ? c.regex("^" + Pattern.quote(s) + "$", "i") : c.is(valeurs[0]);
+            case NEGATING_SIMPLE_PROPERTY -> c.ne(valeurs[0]);
+            case BETWEEN -> c.gte(valeurs[0]).lte(valeurs[1]);
+            case LESS_THAN, BEFORE -> c.lt(valeurs[0]);
+            case LESS_THAN_EQUAL -> c.lte(valeurs[0]);
+            case GREATER_THAN, AFTER -> c.gt(valeurs[0]);
+            case GREATER_THAN_EQUAL -> c.gte(valeurs[0]);
+            case TRUE -> c.is(true);
+            case FALSE -> c.is(false);
+            case IS_NULL -> c.is(null);
+            case IS_NOT_NULL -> c.ne(null);
+            case IN -> c.in(valeurs[0]);
+            case LIKE, CONTAINING, STARTING_WITH, ENDING_WITH -> c.regex(String.valueOf(valeurs[0]));
+            default -> c.exists(true);
+        };
+    }
+
+    private Object valeurFictive(Class<?> type) {
+        if (type == String.class) {
+            return "diagnostic";
+        }
+        if (type == Integer.class || type == int.class) {
+            return 1;
+        }
+        if (type == Long.class || type == long.class) {
+            return 1L;
+        }
+        if (type == Double.class || type == double.class) {
+            return 1.0;
+        }
+        if (type == Boolean.class || type == boolean.class) {
+            return true;
+        }
+        if (type == LocalDate.class) {
+            return LocalDate.now();
+        }
+        if (type == LocalDateTime.class) {
+            return LocalDateTime.now();
+        }
+        if (type.isEnum() && type.getEnumConstants().length > 0) {
+            return type.getEnumConstants()[0];
+        }
+        if (Collection.class.isAssignableFrom(type)) {
+            return List.of();
+        }
+        return null;
+    }
+
+    private void collecterEtapes(Object plan, List<String> etapes) {
+        if (!(plan instanceof Document doc)) {
+            return;
+        }
+        if (doc.get("stage") instanceof String stage) {
+            etapes.add(stage);
+        }
+        // MongoDB 7+ peut encapsuler le plan dans "queryPlan"
+        collecterEtapes(doc.get("queryPlan"), etapes);
+        collecterEtapes(doc.get("inputStage"), etapes);
+        if (doc.get("inputStages") instanceof List<?> inputs) {
+            for (Object input : inputs) {
+                collecterEtapes(input, etapes);
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.bf4invest.service;
+
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+
+import java.io.IOException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Échec temporaire d'un appel OCR (quota HTTP 429, erreur serveur 5xx, délai dépassé, provider injoignable ou saturé
+ * localement) : le même appel peut réussir plus tard. Les autres échecs (clé absente, requête refusée, document
+ * illisible) sont définitifs.
+ */
+public class OcrIndisponibleException extends IOException {
+
+    public OcrIndisponibleException(String message) {
+        super(message);
+    }
+
+    public OcrIndisponibleException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    /** Erreur HTTP d'un provider : temporaire pour 429 et 5xx, définitive sinon. */
+    public static IOException pourStatutHttp(int statut, String message) {
+        return statut == 429 || statut >= 500 ? new OcrIndisponibleException(message) : new IOException(message);
+    }
+
+    /** L'échec ou l'une de ses causes est temporaire. */
+    public static boolean estTemporaire(Throwable erreur) {
+        for (Throwable e = erreur; e != null; e = e.getCause() == e ? null : e.getCause()) {
+            if (e instanceof OcrIndisponibleException || e instanceof TimeoutException
+                    || e instanceof WebClientRequestException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,75 @@
+package com.bf4invest.service;
+
+import com.bf4invest.dto.OcrExtractResult;
+import com.bf4invest.util.FichierTemporaire;
+import com.bf4invest.util.RegistreJobs;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Extraction OCR exécutée hors requête HTTP. L'état est écrit par le thread du job et lu par les requêtes de suivi
+ * (champs volatiles) ; l'image reçue est copiée dans un fichier temporaire, supprimé en fin de job.
+ */
+@Getter
+public class OcrJob implements RegistreJobs.Job {
+
+    public enum Statut { EN_ATTENTE, EN_COURS, REESSAI_PLANIFIE, TERMINE, ECHOUE }
+
+    private final String id;
+    private final String nomFichier;
+    /** Utilisateur ayant envoyé l'image : seul lui (ou un administrateur) voit le job dans la liste. */
+    private final String demandeur;
+    private final FichierTemporaire fichier;
+    private final LocalDateTime creeLe = LocalDateTime.now();
+
+    private volatile Statut statut = Statut.EN_ATTENTE;
+    private volatile LocalDateTime debut;
+    private volatile LocalDateTime fin;
+    private volatile int tentatives;
+    private volatile LocalDateTime prochaineTentative;
+    private volatile String message;
+    private volatile OcrExtractResult resultat;
+    private final CompletableFuture<OcrJob> achevement = new CompletableFuture<>();
+
+    OcrJob(String id, FichierTemporaire fichier, String demandeur) {
+        this.id = id;
+        this.nomFichier = fichier.getOriginalFilename();
+        this.demandeur = demandeur;
+        this.fichier = fichier;
+    }
+
+    @Override
+    public boolean estFini() {
+        return statut == Statut.TERMINE || statut == Statut.ECHOUE;
+    }
+
+    /** Complété (avec le job) quand le job est terminé ou a échoué définitivement. */
+    public CompletableFuture<OcrJob> achevement() {
+        return achevement;
+    }
+
+    void demarrer() {
+        if (debut == null) {
+            debut = LocalDateTime.now();
+        }
+        tentatives++;
+        prochaineTentative = null;
+        statut = Statut.EN_COURS;
+    }
+
+    void planifierReessai(String message, LocalDateTime quand) {
+        this.message = message;
+        this.prochaineTentative = quand;
+        this.statut = Statut.REESSAI_PLANIFIE;
+    }
+
+    void terminer(Statut statutFinal, OcrExtractResult resultat, String message) {
+        this.resultat = resultat;
+        this.message = message;
+        this.fin = LocalDateTime.now();
+        this.statut = statutFinal;
+        achevement.complete(this);
+    }
+}
@@ -0,0 +1,209 @@
+package com.bf4invest.service;
+
+import com.bf4invest.dto.OcrExtractResult;
+import com.bf4invest.util.FichierTemporaire;
+import com.bf4invest.util.RegistreJobs;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Extractions OCR en arrière-plan : un envoi de plusieurs images crée un job par image, suivi par son id.
+ * <p>
+ * Les jobs s'exécutent sur {@code ocr.jobs.threads} threads et passent par {@link OcrOrchestratorService}
+ * (provider principal puis secours, cache des résultats, limite d'appels simultanés par provider). Un job en échec
+ * temporaire ({@link OcrIndisponibleException} : quota, erreur serveur, délai dépassé, saturation) est réessayé
+ * jusqu'à {@code ocr.jobs.max-attempts} tentatives, après un délai qui double à chaque tentative
+ * ({@code ocr.jobs.backoff-ms}, plafonné à {@code ocr.jobs.backoff-max-ms}) ; l'attente ne bloque aucun thread.
+ * Les autres échecs (clé absente, requête refusée, document illisible) sont définitifs dès la première tentative.
+ * Au-delà de {@code ocr.jobs.queue-capacity} jobs non terminés, les envois sont refusés.
+ * Les jobs terminés restent consultables {@code ocr.jobs.retention-minutes} minutes (registre en mémoire).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OcrJobService {
+
+    private final OcrOrchestratorService ocrOrchestratorService;
+
+    @Value("${ocr.jobs.threads:4}")
+    private int threads;
+
+    @Value("${ocr.jobs.queue-capacity:100}")
+    private int queueCapacity;
+
+    @Value("${ocr.jobs.max-attempts:3}")
+    private int maxTentatives;
+
+    @Value("${ocr.jobs.backoff-ms:5000}")
+    private long backoffMs;
+
+    @Value("${ocr.jobs.backoff-max-ms:60000}")
+    private long backoffMaxMs;
+
+    @Value("${ocr.jobs.retention-minutes:60}")
+    private long retentionMinutes;
+
+    private final RegistreJobs<OcrJob> jobs = new RegistreJobs<>();
+    private final AtomicLong reessais = new AtomicLong();
+    private ThreadPoolExecutor executor;
+    private ScheduledExecutorService planificateur;
+
+    @PostConstruct
+    void init() {
+        AtomicInteger compteur = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread thread = new Thread(r, "ocr-job-" + compteur.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        planificateur = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ocr-job-reessai");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void arreter() {
+        planificateur.shutdownNow();
+        executor.shutdownNow();
+        jobs.pourChaqueNonTermine(job -> job.getFichier().supprimer());
+    }
+
+    /**
+     * Copie les images reçues puis crée un job par image, dans l'ordre d'envoi, au nom du demandeur.
+     *
+     * @throws IllegalStateException si les jobs non terminés dépasseraient la capacité de la file
+     */
+    public synchronized List<OcrJob> soumettre(List<MultipartFile> files, String demandeur) throws IOException {
+        long enCours = jobs.nombreNonTermines();
+        if (enCours + files.size() > queueCapacity) {
+            throw new IllegalStateException("Trop d'extractions OCR en attente (" + enCours + "/" + queueCapacity
+                    + "), réessayez plus tard");
+        }
+        List<OcrJob> crees = new ArrayList<>(files.size());
+        try {
+            for (MultipartFile file : files) {
+                crees.add(new OcrJob(UUID.randomUUID().toString(), FichierTemporaire.copier(file, "ocr-job-"), demandeur));
+            }
+        } catch (IOException e) {
+            crees.forEach(job -> job.getFichier().supprimer());
+            throw e;
+        }
+        for (OcrJob job : crees) {
+            jobs.ajouter(job);
+            executor.execute(() -> executer(job));
+        }
+        log.info("📄 [OCR] {} extraction(s) mise(s) en file d'attente ({} en attente)",
+                crees.size(), executor.getQueue().size());
+        return crees;
+    }
+
+    public Optional<OcrJob> trouver(String id) {
+        return jobs.trouver(id);
+    }
+
+    /** Jobs demandés, dans l'ordre des ids (ids inconnus ou purgés ignorés). */
+    public List<OcrJob> trouver(Collection<String> ids) {
+        return jobs.trouver(ids);
+    }
+
+    /** Jobs connus, du plus récent au plus ancien. */
+    public List<OcrJob> lister() {
+        return jobs.lister();
+    }
+
+    /** Jobs envoyés par un utilisateur, du plus récent au plus ancien. */
+    public List<OcrJob> lister(String demandeur) {
+        return jobs.lister().stream().filter(job -> Objects.equals(job.getDemandeur(), demandeur)).toList();
+    }
+
+    public Map<String, Object> statistiques() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        for (OcrJob.Statut statut : OcrJob.Statut.values()) {
+            stats.put(statut.name(), jobs.tous().stream().filter(job -> job.getStatut() == statut).count());
+        }
+        stats.put("threadsActifs", executor.getActiveCount());
+        stats.put("enFile", executor.getQueue().size());
+        stats.put("reessais", reessais.get());
+        stats.put("capacite", queueCapacity);
+        return stats;
+    }
+
+    private void executer(OcrJob job) {
+        job.demarrer();
+        try {
+            OcrExtractResult resultat = ocrOrchestratorService.uploadAndExtract(job.getFichier());
+            log.info("✅ [OCR] Job {} ({}) terminé en {} tentative(s)", job.getId(), job.getNomFichier(), job.getTentatives());
+            terminer(job, OcrJob.Statut.TERMINE, resultat, null);
+        } catch (IOException e) {
+            if (job.getTentatives() < maxTentatives && OcrIndisponibleException.estTemporaire(e)) {
+                planifierReessai(job, e);
+            } else {
+                log.error("❌ [OCR] Job {} ({}) en échec après {} tentative(s): {}",
+                        job.getId(), job.getNomFichier(), job.getTentatives(), e.getMessage());
+                terminer(job, OcrJob.Statut.ECHOUE, null, e.getMessage());
+            }
+        } catch (Exception e) {
+            log.error("❌ [OCR] Erreur inattendue du job {} ({})", job.getId(), job.getNomFichier(), e);
+            terminer(job, OcrJob.Statut.ECHOUE, null,
+                    e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+        } finally {
+            // Une Error (ex: OutOfMemoryError) ne passe par aucun catch : le job est quand même terminé, son fichier
+            // supprimé et sa place dans la file libérée
+            if (job.getStatut() == OcrJob.Statut.EN_COURS) {
+                log.error("❌ [OCR] Job {} ({}) interrompu par une erreur fatale", job.getId(), job.getNomFichier());
+                terminer(job, OcrJob.Statut.ECHOUE, null, "Extraction interrompue par une erreur interne");
+            }
+        }
+    }
+
+    private void planifierReessai(OcrJob job, IOException e) {
+        long delai = Math.min(backoffMaxMs, backoffMs << Math.min(job.getTentatives() - 1, 20));
+        // Jusqu'à +20 % : les jobs d'un même lot en échec ne repartent pas tous au même instant
+        delai += (long) (delai * 0.2 * ThreadLocalRandom.current().nextDouble());
+        reessais.incrementAndGet();
+        log.warn("⚠️ [OCR] Job {} ({}) tentative {} échouée, nouvel essai dans {} ms: {}",
+                job.getId(), job.getNomFichier(), job.getTentatives(), delai, e.getMessage());
+        job.planifierReessai(e.getMessage(), LocalDateTime.now().plusNanos(TimeUnit.MILLISECONDS.toNanos(delai)));
+        try {
+            planificateur.schedule(() -> executor.execute(() -> executer(job)), delai, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException arret) {
+            terminer(job, OcrJob.Statut.ECHOUE, null, e.getMessage());
+        }
+    }
+
+    private void terminer(OcrJob job, OcrJob.Statut statut, OcrExtractResult resultat, String message) {
+        job.getFichier().supprimer();
+        job.terminer(statut, resultat, message);
+    }
+
+    /**
+     * Oublie les jobs terminés depuis plus de la durée de rétention (résultats libérés).
+     */
+    @Scheduled(fixedDelay = 10 * 60 * 1000)
+    public void purgerJobsTermines() {
+        jobs.purger(retentionMinutes);
+    }
+}
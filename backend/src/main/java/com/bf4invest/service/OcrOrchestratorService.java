@@ -1,26 +1,34 @@
 package com.bf4invest.service;
 
 import com.bf4invest.dto.OcrExtractResult;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Orchestre les providers OCR : OpenRouter (principal par défaut) avec repli Gemini.
  * Si la clé du provider principal est absente mais l'autre est présente, utilise automatiquement celui qui est configuré.
+ * Un fichier déjà traité avec les mêmes providers, modèles et prompt est servi par {@link CacheResultatsOcr}.
+ * Les appels simultanés à un même provider sont limités ({@code ocr.concurrency.*}) : au-delà de l'attente maximale,
+ * l'appel échoue comme un quota dépassé et bascule sur le provider de secours.
  */
 @Service
 @Slf4j
-@RequiredArgsConstructor
 public class OcrOrchestratorService {
 
-    private final OpenRouterOcrService openRouterOcrService;
-    private final GeminiOcrService geminiOcrService;
+    private final DocumentOcrProvider openRouterOcrService;
+    private final DocumentOcrProvider geminiOcrService;
+    private final CacheResultatsOcr cacheResultatsOcr;
+    private final OcrJsonParser ocrJsonParser;
 
     @Value("${ocr.provider.primary:openrouter}")
     private String primary;
@@ -28,6 +36,33 @@ public class OcrOrchestratorService {
     @Value("${ocr.provider.fallback-enabled:true}")
     private boolean fallbackEnabled;
 
+    @Value("${ocr.concurrency.openrouter:2}")
+    private int maxAppelsOpenRouter;
+
+    @Value("${ocr.concurrency.gemini:2}")
+    private int maxAppelsGemini;
+
+    @Value("${ocr.concurrency.wait-seconds:120}")
+    private long attenteMaxSecondes;
+
+    private final Map<String, Semaphore> appelsParProvider = new ConcurrentHashMap<>();
+    private volatile String versionPrompt;
+
+    @Autowired
+    public OcrOrchestratorService(OpenRouterOcrService openRouterOcrService, GeminiOcrService geminiOcrService,
+                                  CacheResultatsOcr cacheResultatsOcr, OcrJsonParser ocrJsonParser) {
+        this((DocumentOcrProvider) openRouterOcrService, geminiOcrService, cacheResultatsOcr, ocrJsonParser);
+    }
+
+    /** Providers quelconques (tests avec providers locaux). */
+    OcrOrchestratorService(DocumentOcrProvider openRouterOcrService, DocumentOcrProvider geminiOcrService,
+                           CacheResultatsOcr cacheResultatsOcr, OcrJsonParser ocrJsonParser) {
+        this.openRouterOcrService = openRouterOcrService;
+        this.geminiOcrService = geminiOcrService;
+        this.cacheResultatsOcr = cacheResultatsOcr;
+        this.ocrJsonParser = ocrJsonParser;
+    }
+
     public OcrExtractResult uploadAndExtract(MultipartFile file) throws IOException {
         boolean orOk = openRouterOcrService.isConfigured();
         boolean gOk = geminiOcrService.isConfigured();
@@ -44,13 +79,19 @@ public class OcrOrchestratorService {
 
         String effectivePrimary = resolveEffectivePrimary(primaryNorm, orOk, gOk);
 
+        CacheResultatsOcr.Cle cle = new CacheResultatsOcr.Cle(
+                CacheResultatsOcr.empreinte(file.getBytes()), providersCache(effectivePrimary, orOk, gOk), versionPrompt());
+        return cacheResultatsOcr.obtenir(cle, () -> extract(file, effectivePrimary, orOk, gOk));
+    }
+
+    private OcrExtractResult extract(MultipartFile file, String effectivePrimary, boolean orOk, boolean gOk) throws IOException {
         IOException primaryFailure = null;
 
         if ("gemini".equals(effectivePrimary)) {
             if (gOk) {
                 try {
                     log.info("📄 [OCR] Provider: gemini");
-                    OcrExtractResult r = geminiOcrService.uploadAndExtract(file);
+                    OcrExtractResult r = appeler(geminiOcrService, file);
                     log.info("✅ [OCR] Succès via gemini");
                     return r;
                 } catch (IOException e) {
@@ -65,7 +106,7 @@ public class OcrOrchestratorService {
             if (orOk) {
                 try {
                     log.info("📄 [OCR] Provider: openrouter");
-                    OcrExtractResult r = openRouterOcrService.uploadAndExtract(file);
+                    OcrExtractResult r = appeler(openRouterOcrService, file);
                     log.info("✅ [OCR] Succès via openrouter");
                     return r;
                 } catch (IOException e) {
@@ -89,7 +130,7 @@ public class OcrOrchestratorService {
             if (orOk) {
                 try {
                     log.info("🔄 [OCR] Fallback: openrouter");
-                    OcrExtractResult r = openRouterOcrService.uploadAndExtract(file);
+                    OcrExtractResult r = appeler(openRouterOcrService, file);
                     log.info("✅ [OCR] Succès via fallback openrouter");
                     return r;
                 } catch (IOException e) {
@@ -101,7 +142,7 @@ public class OcrOrchestratorService {
             if (gOk) {
                 try {
                     log.info("🔄 [OCR] Fallback: gemini");
-                    OcrExtractResult r = geminiOcrService.uploadAndExtract(file);
+                    OcrExtractResult r = appeler(geminiOcrService, file);
                     log.info("✅ [OCR] Succès via fallback gemini");
                     return r;
                 } catch (IOException e) {
@@ -115,6 +156,29 @@ public class OcrOrchestratorService {
                 new IOException("Aucun provider de secours disponible. Vérifiez OPENROUTER_API_KEY, OPENROUTER_MODEL et GEMINI_API_KEY."));
     }
 
+    /**
+     * Appel d'un provider dans la limite de ses appels simultanés ; attend une place au plus
+     * {@code ocr.concurrency.wait-seconds} secondes.
+     */
+    private OcrExtractResult appeler(DocumentOcrProvider provider, MultipartFile file) throws IOException {
+        String id = provider.getProviderId();
+        Semaphore places = appelsParProvider.computeIfAbsent(id,
+                p -> new Semaphore(Math.max(1, "gemini".equals(p) ? maxAppelsGemini : maxAppelsOpenRouter), true));
+        try {
+            if (!places.tryAcquire(attenteMaxSecondes, TimeUnit.SECONDS)) {
+                throw new OcrIndisponibleException("Provider " + id + " saturé : trop d'appels OCR simultanés (rate limit local)");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Appel OCR " + id + " interrompu", e);
+        }
+        try {
+            return provider.uploadAndExtract(file);
+        } finally {
+            places.release();
+        }
+    }
+
     /**
      * Si le provider demandé n'a pas de clé mais l'autre oui, bascule pour éviter un 500 inutile en prod (ex. Railway sans OpenRouter).
      */
@@ -130,10 +194,41 @@ public class OcrOrchestratorService {
         return primaryNorm;
     }
 
+    /**
+     * Providers susceptibles de produire le résultat, dans l'ordre d'appel, avec leur modèle
+     * (ex: "openrouter:openrouter/free>gemini:gemini-2.0-flash-001").
+     */
+    private String providersCache(String effectivePrimary, boolean orOk, boolean gOk) {
+        String openRouter = orOk ? "openrouter:" + openRouterOcrService.getModelName() : "openrouter:-";
+        String gemini = gOk ? "gemini:" + geminiOcrService.getModelName() : "gemini:-";
+        boolean geminiPrincipal = "gemini".equals(effectivePrimary);
+        String principal = geminiPrincipal ? gemini : openRouter;
+        if (!fallbackEnabled) {
+            return principal;
+        }
+        return principal + ">" + (geminiPrincipal ? openRouter : gemini);
+    }
+
+    /** Empreinte du prompt d'extraction : le modifier invalide les résultats mis en cache. */
+    private String versionPrompt() {
+        String version = versionPrompt;
+        if (version == null) {
+            version = CacheResultatsOcr.empreinte(ocrJsonParser.buildBcInvoicePrompt()).substring(0, 12);
+            versionPrompt = version;
+        }
+        return version;
+    }
+
     private IOException combinedFailure(IOException primary, IOException secondary) {
         String p = primary != null ? primary.getMessage() : "n/a";
         String s = secondary != null ? secondary.getMessage() : "n/a";
-        return new IOException("Échec OCR principal et secours. Principal: " + p + " | Secours: " + s, secondary != null ? secondary : primary);
+        String message = "Échec OCR principal et secours. Principal: " + p + " | Secours: " + s;
+        IOException cause = secondary != null ? secondary : primary;
+        // Un nouvel essai peut réussir si l'un des deux providers n'a échoué que temporairement
+        if (OcrIndisponibleException.estTemporaire(primary) || OcrIndisponibleException.estTemporaire(secondary)) {
+            return new OcrIndisponibleException(message, cause);
+        }
+        return new IOException(message, cause);
     }
 
     public OcrDiagnosticStatus getDiagnosticStatus() {
@@ -149,8 +244,15 @@ public class OcrOrchestratorService {
         );
     }
 
+    public Map<String, Object> getCacheStatistics() {
+        return cacheResultatsOcr.statistiques();
+    }
+
     public String listGeminiModels() throws IOException {
-        return geminiOcrService.listAvailableModels();
+        if (!(geminiOcrService instanceof GeminiOcrService gemini)) {
+            throw new IOException("Provider Gemini indisponible");
+        }
+        return gemini.listAvailableModels();
     }
 
     public record OcrDiagnosticStatus(
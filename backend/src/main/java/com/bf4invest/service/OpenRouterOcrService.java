@@ -69,6 +69,7 @@ public class OpenRouterOcrService implements DocumentOcrProvider {
         return resolvedApiKey() != null;
     }
 
+    @Override
     public String getModelName() {
         return model;
     }
@@ -159,12 +160,13 @@ public class OpenRouterOcrService implements DocumentOcrProvider {
                                     .flatMap(errorBody -> {
                                         String msg = parseOpenRouterError(errorBody, clientResponse.statusCode().value());
                                         log.error("❌ [OpenRouter OCR] HTTP {} - {}", clientResponse.statusCode(), msg);
-                                        return Mono.error(new IOException(msg));
+                                        return Mono.error(OcrIndisponibleException.pourStatutHttp(
+                                                clientResponse.statusCode().value(), msg));
                                     }))
                     .bodyToMono(String.class)
                     .timeout(Duration.ofSeconds(Math.max(10, timeoutSeconds)))
                     .onErrorMap(java.util.concurrent.TimeoutException.class, e ->
-                            new IOException("Timeout OpenRouter (" + timeoutSeconds + "s)", e))
+                            new OcrIndisponibleException("Timeout OpenRouter (" + timeoutSeconds + "s)", e))
                     .block();
 
             if (response == null || response.trim().isEmpty()) {
@@ -9,6 +9,7 @@ import com.bf4invest.repository.OrdreVirementRepository;
 import com.bf4invest.util.NumberUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -16,6 +17,7 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -29,6 +31,7 @@ public class OrdreVirementService {
     private final AuditService auditService;
     private final PaiementService paiementService;
     private final SoldeService soldeService;
+    private final CompteurService compteurService;
     
     public List<OrdreVirement> findAll() {
         return repository.findAll();
@@ -422,11 +425,10 @@ public class OrdreVirementService {
         }
         
         String year = String.valueOf(date.getYear());
-        long count = repository.findAll().stream()
-                .filter(ov -> ov.getDateOV() != null && ov.getDateOV().getYear() == date.getYear())
-                .count();
-        String sequence = String.format("%03d", count + 1);
-        return String.format("OV-%s-%s", year, sequence);
+        long sequence = compteurService.suivant("OV", "", year, () -> compteurService.amorce(OrdreVirement.class,
+                Criteria.where("dateOV").gte(date.withDayOfYear(1)).lte(date.withDayOfYear(date.lengthOfYear())),
+                "numeroOV", Pattern.compile("OV-" + year + "-(\\d+)")));
+        return String.format("OV-%s-%03d", year, sequence);
     }
     
     private void validateFactures(List<String> facturesIds) {
@@ -3,6 +3,7 @@ package com.bf4invest.service;
 import com.bf4invest.model.Client;
 import com.bf4invest.model.FactureAchat;
 import com.bf4invest.model.FactureVente;
+import com.bf4invest.model.HistoriqueSolde;
 import com.bf4invest.model.Paiement;
 import com.bf4invest.model.Supplier;
 import com.bf4invest.repository.FactureAchatRepository;
@@ -31,6 +32,7 @@ public class PaiementService {
     private final SupplierService supplierService;
     private final AuditService auditService;
     private final ComptabiliteService comptabiliteService;
+    private final DashboardAggregateService dashboardAggregateService;
     
     public Paiement create(Paiement paiement) {
         // Calculer les champs comptables selon les formules Excel
@@ -70,71 +72,56 @@ public class PaiementService {
             factureNumero[0].isEmpty() ? "N/A" : factureNumero[0]);
         auditService.logCreate("Paiement", saved.getId(), details);
         
-        // Enregistrer la transaction dans le solde et mettre à jour les soldes dans le paiement
+        // Enregistrer la transaction dans le solde et mettre à jour les soldes dans le paiement.
+        // Même règle que SoldeService.recalculerSoldeActuel : tout paiement lié à une facture entre dans le solde
+        // global, que le partenaire soit renseigné ou non (sinon sa suppression retirerait un montant jamais ajouté)
         if (saved.getMontant() != null && saved.getMontant() > 0) {
             try {
-                String typeTransaction;
+                HistoriqueSolde historique = null;
                 
                 if (saved.getFactureVenteId() != null) {
                     // Paiement client
-                    typeTransaction = "PAIEMENT_CLIENT";
-                    factureVenteRepository.findById(saved.getFactureVenteId()).ifPresent(facture -> {
-                        if (facture.getClientId() != null) {
-                            clientService.findById(facture.getClientId()).ifPresent(client -> {
-                                // Utiliser le numéro de facture comme référence (pas la référence de l'opération comptable)
-                                String referenceNumero = facture.getNumeroFactureVente() != null 
-                                        ? facture.getNumeroFactureVente() 
-                                        : (saved.getReference() != null ? saved.getReference() : "Paiement");
-                                
-                                var historique = soldeService.enregistrerTransaction(
-                                        typeTransaction,
-                                        saved.getMontant(),
-                                        facture.getClientId(),
-                                        "CLIENT",
-                                        client.getNom(),
-                                        saved.getId(),
-                                        referenceNumero,
-                                        "Paiement client - " + facture.getNumeroFactureVente(),
-                                        saved.getDate() // Utiliser la date du paiement (colonne DATE de l'Excel)
-                                );
-                                
-                                // Mettre à jour les soldes dans le paiement
-                                saved.setSoldeGlobalApres(historique.getSoldeGlobalApres());
-                                saved.setSoldePartenaireApres(historique.getSoldePartenaireApres());
-                                paiementRepository.save(saved);
-                            });
-                        }
-                    });
+                    FactureVente facture = factureVenteRepository.findById(saved.getFactureVenteId()).orElse(null);
+                    String numero = facture != null ? facture.getNumeroFactureVente() : null;
+                    String clientId = facture != null ? facture.getClientId() : null;
+                    String clientNom = clientId != null
+                            ? clientService.findById(clientId).map(Client::getNom).orElse(null) : null;
+                    historique = soldeService.enregistrerTransaction(
+                            "PAIEMENT_CLIENT",
+                            saved.getMontant(),
+                            clientId,
+                            "CLIENT",
+                            clientNom,
+                            saved.getId(),
+                            referenceSolde(numero, saved),
+                            "Paiement client - " + numero,
+                            saved.getDate() // Utiliser la date du paiement (colonne DATE de l'Excel)
+                    );
                 } else if (saved.getFactureAchatId() != null) {
                     // Paiement fournisseur
-                    typeTransaction = "PAIEMENT_FOURNISSEUR";
-                    factureAchatRepository.findById(saved.getFactureAchatId()).ifPresent(facture -> {
-                        if (facture.getFournisseurId() != null) {
-                            supplierService.findById(facture.getFournisseurId()).ifPresent(supplier -> {
-                                // Utiliser le numéro de facture comme référence (pas la référence de l'opération comptable)
-                                String referenceNumero = facture.getNumeroFactureAchat() != null 
-                                        ? facture.getNumeroFactureAchat() 
-                                        : (saved.getReference() != null ? saved.getReference() : "Paiement");
-                                
-                                var historique = soldeService.enregistrerTransaction(
-                                        typeTransaction,
-                                        saved.getMontant(),
-                                        facture.getFournisseurId(),
-                                        "FOURNISSEUR",
-                                        supplier.getNom(),
-                                        saved.getId(),
-                                        referenceNumero,
-                                        "Paiement fournisseur - " + facture.getNumeroFactureAchat(),
-                                        saved.getDate() // Utiliser la date du paiement (colonne DATE de l'Excel)
-                                );
-                                
-                                // Mettre à jour les soldes dans le paiement
-                                saved.setSoldeGlobalApres(historique.getSoldeGlobalApres());
-                                saved.setSoldePartenaireApres(historique.getSoldePartenaireApres());
-                                paiementRepository.save(saved);
-                            });
-                        }
-                    });
+                    FactureAchat facture = factureAchatRepository.findById(saved.getFactureAchatId()).orElse(null);
+                    String numero = facture != null ? facture.getNumeroFactureAchat() : null;
+                    String fournisseurId = facture != null ? facture.getFournisseurId() : null;
+                    String fournisseurNom = fournisseurId != null
+                            ? supplierService.findById(fournisseurId).map(Supplier::getNom).orElse(null) : null;
+                    historique = soldeService.enregistrerTransaction(
+                            "PAIEMENT_FOURNISSEUR",
+                            saved.getMontant(),
+                            fournisseurId,
+                            "FOURNISSEUR",
+                            fournisseurNom,
+                            saved.getId(),
+                            referenceSolde(numero, saved),
+                            "Paiement fournisseur - " + numero,
+                            saved.getDate() // Utiliser la date du paiement (colonne DATE de l'Excel)
+                    );
+                }
+                
+                if (historique != null) {
+                    // Mettre à jour les soldes dans le paiement
+                    saved.setSoldeGlobalApres(historique.getSoldeGlobalApres());
+                    saved.setSoldePartenaireApres(historique.getSoldePartenaireApres());
+                    paiementRepository.save(saved);
                 }
             } catch (Exception e) {
                 log.warn("Erreur lors de l'enregistrement de la transaction solde pour paiement {}: {}", saved.getId(), e.getMessage());
@@ -151,6 +138,16 @@ public class PaiementService {
         return saved;
     }
     
+    /**
+     * Référence de l'historique de solde : le numéro de facture (pas la référence de l'opération comptable).
+     */
+    private static String referenceSolde(String numeroFacture, Paiement paiement) {
+        if (numeroFacture != null) {
+            return numeroFacture;
+        }
+        return paiement.getReference() != null ? paiement.getReference() : "Paiement";
+    }
+    
     public Paiement update(String id, Paiement patch) {
         Paiement existing = paiementRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Paiement not found with id: " + id));
@@ -194,11 +191,19 @@ public class PaiementService {
         
         paiementRepository.deleteById(id);
         
+        // Retirer le paiement du solde global courant
+        try {
+            soldeService.annulerPaiement(paiement);
+        } catch (Exception e) {
+            log.warn("Erreur lors de la mise à jour du solde global pour paiement supprimé {}: {}", id, e.getMessage());
+        }
+        
         // Recalcul de la facture achat si nécessaire
         if (factureAchatId != null) {
             factureAchatRepository.findById(factureAchatId).ifPresent(facture -> {
                 recomputeFactureAchatFromPayments(facture);
                 factureAchatRepository.save(facture);
+                dashboardAggregateService.rafraichirPourFactureAchat(facture);
             });
         }
         
@@ -207,6 +212,7 @@ public class PaiementService {
             factureVenteRepository.findById(factureVenteId).ifPresent(facture -> {
                 recomputeFactureVenteFromPayments(facture);
                 factureVenteRepository.save(facture);
+                dashboardAggregateService.rafraichirPourFactureVente(facture);
             });
         }
         
@@ -227,6 +233,8 @@ public class PaiementService {
                     .ifPresent(facture -> {
                         recomputeFactureAchatFromPayments(facture);
                         factureAchatRepository.save(facture);
+                        // L'encours du mois de la facture change avec le paiement
+                        dashboardAggregateService.rafraichirPourFactureAchat(facture);
                     });
         }
         
@@ -235,6 +243,8 @@ public class PaiementService {
                     .ifPresent(facture -> {
                         recomputeFactureVenteFromPayments(facture);
                         factureVenteRepository.save(facture);
+                        // L'encours du mois de la facture change avec le paiement
+                        dashboardAggregateService.rafraichirPourFactureVente(facture);
                     });
         }
     }
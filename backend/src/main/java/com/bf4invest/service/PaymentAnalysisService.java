@@ -4,11 +4,7 @@ import com.bf4invest.dto.DashboardKpiResponse;
 import com.bf4invest.model.FactureAchat;
 import com.bf4invest.model.FactureVente;
 import com.bf4invest.model.Paiement;
-import com.bf4invest.repository.FactureAchatRepository;
-import com.bf4invest.repository.FactureVenteRepository;
-import com.bf4invest.repository.PaiementRepository;
 import com.bf4invest.util.NumberUtils;
-import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
@@ -17,27 +13,15 @@ import java.util.*;
 import java.util.stream.Collectors;
 
 @Service
-@RequiredArgsConstructor
 public class PaymentAnalysisService {
     
-    private final PaiementRepository paiementRepository;
-    private final FactureVenteRepository factureVenteRepository;
-    private final FactureAchatRepository factureAchatRepository;
-    
-    public DashboardKpiResponse.PaymentAnalysis analyzePayments(LocalDate from, LocalDate to) {
-        List<Paiement> paiements = paiementRepository.findAll();
-        
-        // Filtrer par période si nécessaire
-        if (from != null || to != null) {
-            paiements = paiements.stream()
-                    .filter(p -> {
-                        if (p.getDate() == null) return false;
-                        if (from != null && p.getDate().isBefore(from)) return false;
-                        if (to != null && p.getDate().isAfter(to)) return false;
-                        return true;
-                    })
-                    .collect(Collectors.toList());
-        }
+    public DashboardKpiResponse.PaymentAnalysis analyzePayments(DonneesDashboard donnees) {
+        LocalDate from = donnees.from();
+        LocalDate to = donnees.to();
+        // Paiements (date) et factures (dateFacture) de la période, déjà filtrés au chargement
+        List<Paiement> paiements = donnees.paiements();
+        List<FactureVente> facturesVente = donnees.facturesVente();
+        List<FactureAchat> facturesAchat = donnees.facturesAchat();
         
         // Séparer encaissements (clients) et décaissements (fournisseurs)
         double totalEncaissements = NumberUtils.roundTo2Decimals(paiements.stream()
@@ -68,12 +52,12 @@ public class PaymentAnalysisService {
                 .collect(Collectors.toList());
         
         // Délais moyens de paiement
-        double delaiMoyenPaiementClient = NumberUtils.roundTo2Decimals(calculateDelaiMoyenPaiementClient(from, to));
-        double delaiMoyenPaiementFournisseur = NumberUtils.roundTo2Decimals(calculateDelaiMoyenPaiementFournisseur(from, to));
+        double delaiMoyenPaiementClient = NumberUtils.roundTo2Decimals(calculateDelaiMoyenPaiementClient(facturesVente));
+        double delaiMoyenPaiementFournisseur = NumberUtils.roundTo2Decimals(calculateDelaiMoyenPaiementFournisseur(facturesAchat));
         
         // DSO et DPO
-        double dso = NumberUtils.roundTo2Decimals(calculateDSO(from, to));
-        double dpo = NumberUtils.roundTo2Decimals(calculateDPO(from, to));
+        double dso = NumberUtils.roundTo2Decimals(calculateDSO(facturesVente, from, to));
+        double dpo = NumberUtils.roundTo2Decimals(calculateDPO(facturesAchat, from, to));
         
         // Evolution mensuelle
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM");
@@ -116,19 +100,7 @@ public class PaymentAnalysisService {
                 .build();
     }
     
-    private double calculateDelaiMoyenPaiementClient(LocalDate from, LocalDate to) {
-        List<FactureVente> factures = factureVenteRepository.findAll();
-        if (from != null || to != null) {
-            factures = factures.stream()
-                    .filter(f -> {
-                        if (f.getDateFacture() == null) return false;
-                        if (from != null && f.getDateFacture().isBefore(from)) return false;
-                        if (to != null && f.getDateFacture().isAfter(to)) return false;
-                        return true;
-                    })
-                    .collect(Collectors.toList());
-        }
-        
+    private double calculateDelaiMoyenPaiementClient(List<FactureVente> factures) {
         List<Long> delais = new ArrayList<>();
         for (FactureVente fv : factures) {
             if (fv.getDateFacture() != null && fv.getPaiements() != null && !fv.getPaiements().isEmpty()) {
@@ -144,19 +116,7 @@ public class PaymentAnalysisService {
         return delais.isEmpty() ? 0.0 : delais.stream().mapToLong(Long::longValue).average().orElse(0.0);
     }
     
-    private double calculateDelaiMoyenPaiementFournisseur(LocalDate from, LocalDate to) {
-        List<FactureAchat> factures = factureAchatRepository.findAll();
-        if (from != null || to != null) {
-            factures = factures.stream()
-                    .filter(f -> {
-                        if (f.getDateFacture() == null) return false;
-                        if (from != null && f.getDateFacture().isBefore(from)) return false;
-                        if (to != null && f.getDateFacture().isAfter(to)) return false;
-                        return true;
-                    })
-                    .collect(Collectors.toList());
-        }
-        
+    private double calculateDelaiMoyenPaiementFournisseur(List<FactureAchat> factures) {
         List<Long> delais = new ArrayList<>();
         for (FactureAchat fa : factures) {
             if (fa.getDateFacture() != null && fa.getPaiements() != null && !fa.getPaiements().isEmpty()) {
@@ -172,20 +132,8 @@ public class PaymentAnalysisService {
         return delais.isEmpty() ? 0.0 : delais.stream().mapToLong(Long::longValue).average().orElse(0.0);
     }
     
-    private double calculateDSO(LocalDate from, LocalDate to) {
+    private double calculateDSO(List<FactureVente> factures, LocalDate from, LocalDate to) {
         // Days Sales Outstanding = (Comptes clients / CA) * nombre de jours
-        List<FactureVente> factures = factureVenteRepository.findAll();
-        if (from != null || to != null) {
-            factures = factures.stream()
-                    .filter(f -> {
-                        if (f.getDateFacture() == null) return false;
-                        if (from != null && f.getDateFacture().isBefore(from)) return false;
-                        if (to != null && f.getDateFacture().isAfter(to)) return false;
-                        return true;
-                    })
-                    .collect(Collectors.toList());
-        }
-        
         double totalCA = NumberUtils.roundTo2Decimals(factures.stream()
                 .mapToDouble(f -> f.getTotalHT() != null ? f.getTotalHT() : 0.0)
                 .sum());
@@ -203,20 +151,8 @@ public class PaymentAnalysisService {
         return NumberUtils.roundTo2Decimals((comptesClients / totalCA) * daysInPeriod);
     }
     
-    private double calculateDPO(LocalDate from, LocalDate to) {
+    private double calculateDPO(List<FactureAchat> factures, LocalDate from, LocalDate to) {
         // Days Payable Outstanding = (Comptes fournisseurs / Achats) * nombre de jours
-        List<FactureAchat> factures = factureAchatRepository.findAll();
-        if (from != null || to != null) {
-            factures = factures.stream()
-                    .filter(f -> {
-                        if (f.getDateFacture() == null) return false;
-                        if (from != null && f.getDateFacture().isBefore(from)) return false;
-                        if (to != null && f.getDateFacture().isAfter(to)) return false;
-                        return true;
-                    })
-                    .collect(Collectors.toList());
-        }
-        
         double totalAchats = NumberUtils.roundTo2Decimals(factures.stream()
                 .mapToDouble(f -> f.getTotalHT() != null ? f.getTotalHT() : 0.0)
                 .sum());
@@ -0,0 +1,350 @@
+package com.bf4invest.service;
+
+import com.bf4invest.model.Product;
+import com.mongodb.client.gridfs.model.GridFSFile;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Images produits stockées dans GridFS : l'original et une miniature générée une seule fois à l'envoi.
+ * Le document produit ne garde que les identifiants ({@code imageId}, {@code imageMiniatureId}), ce qui réduit
+ * chaque lecture du catalogue à quelques Ko. Un identifiant désigne un contenu qui ne change jamais (une nouvelle
+ * image reçoit un nouvel id) : les images peuvent être servies avec un cache immuable.
+ * <p>
+ * Seuls les formats PNG, JPEG, GIF et WebP sont acceptés, vérifiés sur les premiers octets du contenu (pas de SVG :
+ * l'endpoint d'images est public et un SVG peut contenir du script). Les dimensions sont lues dans l'en-tête avant
+ * tout décodage : une image de quelques Ko annonçant des dizaines de milliers de pixels de côté est refusée sans
+ * allouer sa matrice de pixels.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProductImageService {
+
+    private final FileStorageService fileStorageService;
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${app.products.images.max-bytes:5242880}")
+    private long tailleMaxOctets;
+
+    @Value("${app.products.images.thumbnail-size:320}")
+    private int tailleMiniature;
+
+    @Value("${app.products.images.max-pixels:25000000}")
+    private long pixelsMax;
+
+    /** Types servis par l'endpoint public d'images. */
+    static final Set<String> TYPES_AUTORISES = Set.of("image/png", "image/jpeg", "image/gif", "image/webp");
+
+    /** Identifiants GridFS de l'image d'un produit (miniature null si le format n'est pas lisible par ImageIO). */
+    public record ImagesProduit(String imageId, String miniatureId, String contentType) {}
+
+    /** Contenu d'une image à servir. */
+    public record ImageStockee(String id, String contentType, long taille, InputStream contenu) {}
+
+    /**
+     * Stocke une image reçue en base64 (avec ou sans préfixe data URL).
+     *
+     * @throws IllegalArgumentException si le contenu n'est pas une image valide ou dépasse la taille maximale
+     */
+    public ImagesProduit enregistrerBase64(String base64, String contentType) {
+        String donnees = base64.trim();
+        int virgule = donnees.indexOf("base64,");
+        if (virgule >= 0) {
+            donnees = donnees.substring(virgule + 7);
+        }
+        byte[] contenu;
+        try {
+            contenu = Base64.getMimeDecoder().decode(donnees);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Image invalide : contenu base64 illisible");
+        }
+        return enregistrer(contenu, contentType);
+    }
+
+    /**
+     * Stocke l'original puis sa miniature. En cas d'échec après le stockage de l'original, les fichiers déjà écrits
+     * sont supprimés : rien ne reste orphelin dans GridFS.
+     *
+     * @throws IllegalArgumentException si le contenu n'est pas une image PNG, JPEG, GIF ou WebP, ou dépasse la taille
+     *                                  ou le nombre de pixels maximal
+     */
+    public ImagesProduit enregistrer(byte[] contenu, String contentType) {
+        if (contenu.length == 0 || contenu.length > tailleMaxOctets) {
+            throw new IllegalArgumentException("Taille d'image invalide (" + contenu.length + " octets, maximum "
+                    + tailleMaxOctets + ")");
+        }
+        String type = formatReel(contenu);
+        if (type == null) {
+            throw new IllegalArgumentException("Type d'image non supporté: " + contentType
+                    + " (formats acceptés : PNG, JPEG, GIF, WebP)");
+        }
+        verifierDimensions(contenu);
+        String imageId = fileStorageService.storeBytes(contenu, "produit-image", type,
+                Map.of("type", "produit_image"));
+        String miniatureId = null;
+        try {
+            byte[] miniature = null;
+            try {
+                miniature = genererMiniature(contenu, type);
+            } catch (IOException e) {
+                // L'original reste servi à la place de la miniature
+                log.warn("Miniature non générée pour l'image {}: {}", imageId, e.getMessage());
+            }
+            if (miniature != null) {
+                miniatureId = fileStorageService.storeBytes(miniature, "produit-miniature", typeMiniature(type),
+                        Map.of("type", "produit_miniature", "originalId", imageId));
+            }
+            return new ImagesProduit(imageId, miniatureId, type);
+        } catch (RuntimeException | Error e) {
+            supprimerSansEchec(imageId, miniatureId);
+            throw e;
+        }
+    }
+
+    /**
+     * Supprime des images qui viennent d'être stockées mais ne seront pas utilisées (échec de l'enregistrement
+     * du produit) ; une erreur de suppression est journalisée sans masquer l'erreur d'origine.
+     */
+    public void supprimerSansEchec(String imageId, String miniatureId) {
+        try {
+            supprimer(imageId, miniatureId);
+        } catch (RuntimeException e) {
+            log.warn("Images orphelines non supprimées ({}, {}): {}", imageId, miniatureId, e.getMessage());
+        }
+    }
+
+    /**
+     * Supprime l'original et la miniature (identifiants null ignorés).
+     */
+    public void supprimer(String imageId, String miniatureId) {
+        if (imageId != null) {
+            fileStorageService.deleteFile(imageId);
+        }
+        if (miniatureId != null) {
+            fileStorageService.deleteFile(miniatureId);
+        }
+    }
+
+    /**
+     * Lit une image produit. Les autres fichiers GridFS (factures, relevés...) ne sont jamais renvoyés :
+     * l'endpoint d'images est public.
+     */
+    public Optional<ImageStockee> lire(String id) throws IOException {
+        Optional<GridFSFile> fichier = fileStorageService.getFile(id);
+        if (fichier.isEmpty() || fichier.get().getMetadata() == null) {
+            return Optional.empty();
+        }
+        GridFSFile file = fichier.get();
+        String type = file.getMetadata().getString("type");
+        if (!"produit_image".equals(type) && !"produit_miniature".equals(type)) {
+            return Optional.empty();
+        }
+        String contentType = file.getMetadata().getString("contentType");
+        if (contentType == null || !TYPES_AUTORISES.contains(contentType.toLowerCase(Locale.ROOT))) {
+            // Stockée avant la restriction des formats (ex: SVG) : jamais servie
+            return Optional.empty();
+        }
+        return Optional.of(new ImageStockee(id, contentType, file.getLength(), fileStorageService.getFileContent(id)));
+    }
+
+    /**
+     * Refuse l'image si ses dimensions dépassent {@code app.products.images.max-pixels}. Un format non lisible par
+     * ImageIO (ou un en-tête illisible) passe : il ne sera jamais décodé, l'original sera servi sans miniature.
+     */
+    private void verifierDimensions(byte[] contenu) {
+        try (ImageInputStream entree = ImageIO.createImageInputStream(new ByteArrayInputStream(contenu))) {
+            ImageReader lecteur = lecteur(entree);
+            if (lecteur != null) {
+                lecteur.dispose();
+            }
+        } catch (IOException e) {
+            log.debug("Dimensions d'image illisibles: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Lecteur ImageIO positionné sur l'image, après contrôle des dimensions lues dans l'en-tête (sans décodage).
+     * L'appelant libère le lecteur ({@link ImageReader#dispose()}).
+     *
+     * @return le lecteur, ou null si aucun lecteur ImageIO ne reconnaît le format
+     * @throws IllegalArgumentException si largeur × hauteur dépasse {@code app.products.images.max-pixels}
+     */
+    private ImageReader lecteur(ImageInputStream entree) throws IOException {
+        if (entree == null) {
+            return null;
+        }
+        Iterator<ImageReader> lecteurs = ImageIO.getImageReaders(entree);
+        if (!lecteurs.hasNext()) {
+            return null;
+        }
+        ImageReader lecteur = lecteurs.next();
+        try {
+            lecteur.setInput(entree, true, true);
+            long pixels = (long) lecteur.getWidth(0) * lecteur.getHeight(0);
+            if (pixels > pixelsMax) {
+                throw new IllegalArgumentException("Image trop grande (" + lecteur.getWidth(0) + "x"
+                        + lecteur.getHeight(0) + " pixels, maximum " + pixelsMax + " pixels)");
+            }
+            return lecteur;
+        } catch (IOException | RuntimeException e) {
+            lecteur.dispose();
+            throw e;
+        }
+    }
+
+    /**
+     * Réduit l'image pour que son plus grand côté fasse au plus {@code app.products.images.thumbnail-size} pixels.
+     *
+     * @return la miniature, ou null si le format n'est pas lisible (l'original sera servi)
+     */
+    byte[] genererMiniature(byte[] contenu, String contentType) throws IOException {
+        BufferedImage source;
+        try (ImageInputStream entree = ImageIO.createImageInputStream(new ByteArrayInputStream(contenu))) {
+            ImageReader lecteur = lecteur(entree);
+            if (lecteur == null) {
+                return null;
+            }
+            try {
+                source = lecteur.read(0);
+            } finally {
+                lecteur.dispose();
+            }
+        }
+        double ratio = Math.min(1.0, (double) tailleMiniature / Math.max(source.getWidth(), source.getHeight()));
+        int largeur = Math.max(1, (int) Math.round(source.getWidth() * ratio));
+        int hauteur = Math.max(1, (int) Math.round(source.getHeight() * ratio));
+
+        boolean png = "image/png".equals(typeMiniature(contentType));
+        BufferedImage miniature = new BufferedImage(largeur, hauteur,
+                png ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = miniature.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            if (!png) {
+                // JPEG sans transparence : fond blanc plutôt que noir
+                g.setColor(java.awt.Color.WHITE);
+                g.fillRect(0, 0, largeur, hauteur);
+            }
+            g.drawImage(source, 0, 0, largeur, hauteur, null);
+        } finally {
+            g.dispose();
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(miniature, png ? "png" : "jpeg", out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Format déterminé par la signature du contenu, quel que soit le type annoncé par le client.
+     *
+     * @return le type MIME, ou null si ce n'est ni du PNG, ni du JPEG, ni du GIF, ni du WebP
+     */
+    static String formatReel(byte[] contenu) {
+        if (commencePar(contenu, 0, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)) {
+            return "image/png";
+        }
+        if (commencePar(contenu, 0, 0xFF, 0xD8, 0xFF)) {
+            return "image/jpeg";
+        }
+        if (commencePar(contenu, 0, 'G', 'I', 'F', '8')) {
+            return "image/gif";
+        }
+        if (commencePar(contenu, 0, 'R', 'I', 'F', 'F') && commencePar(contenu, 8, 'W', 'E', 'B', 'P')) {
+            return "image/webp";
+        }
+        return null;
+    }
+
+    private static boolean commencePar(byte[] contenu, int position, int... signature) {
+        if (contenu.length < position + signature.length) {
+            return false;
+        }
+        for (int i = 0; i < signature.length; i++) {
+            if ((contenu[position + i] & 0xFF) != signature[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // La transparence (png, gif) est conservée en PNG, le reste en JPEG
+    private static String typeMiniature(String contentType) {
+        return contentType.contains("png") || contentType.contains("gif") ? "image/png" : "image/jpeg";
+    }
+
+    /**
+     * Migre les images encore stockées en base64 dans les documents produits vers GridFS.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrerImagesBase64() {
+        try {
+            Query query = new Query(Criteria.where("imageBase64").exists(true).ne(null));
+            query.fields().include("imageBase64", "imageContentType");
+            int migrees = 0;
+            try (Stream<Document> produits = mongoTemplate.stream(query, Document.class, mongoTemplate.getCollectionName(Product.class))) {
+                for (Document produit : (Iterable<Document>) produits::iterator) {
+                    if (migrerProduit(produit)) {
+                        migrees++;
+                    }
+                }
+            }
+            if (migrees > 0) {
+                log.info("Images produits migrées vers GridFS: {}", migrees);
+            }
+        } catch (Exception e) {
+            log.warn("Migration des images produits impossible: {}", e.getMessage());
+        }
+    }
+
+    private boolean migrerProduit(Document produit) {
+        Object id = produit.get("_id");
+        String base64 = produit.getString("imageBase64");
+        Update update = new Update().unset("imageBase64").set("updatedAt", LocalDateTime.now());
+        boolean migree = false;
+        if (base64 != null && !base64.isBlank()) {
+            try {
+                ImagesProduit images = enregistrerBase64(base64, produit.getString("imageContentType"));
+                update.set("imageId", images.imageId())
+                        .set("imageMiniatureId", images.miniatureId())
+                        .set("imageContentType", images.contentType());
+                migree = true;
+            } catch (IllegalArgumentException e) {
+                // Image illisible : conservée en base pour correction manuelle
+                log.warn("Image du produit {} non migrée: {}", id, e.getMessage());
+                return false;
+            }
+        }
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(id)), update, Product.class);
+        return migree;
+    }
+}
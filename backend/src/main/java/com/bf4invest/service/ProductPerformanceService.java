@@ -5,37 +5,18 @@ import com.bf4invest.model.BandeCommande;
 import com.bf4invest.model.LigneAchat;
 import com.bf4invest.model.LigneVente;
 import com.bf4invest.model.Product;
-import com.bf4invest.repository.BandeCommandeRepository;
-import com.bf4invest.repository.ProductRepository;
-import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDate;
 import java.util.*;
 import java.util.stream.Collectors;
 
 @Service
-@RequiredArgsConstructor
 public class ProductPerformanceService {
     
-    private final ProductRepository productRepository;
-    private final BandeCommandeRepository bcRepository;
-    
-    public DashboardKpiResponse.ProductPerformance analyzeProducts(LocalDate from, LocalDate to) {
-        List<Product> products = productRepository.findAll();
-        List<BandeCommande> bcs = bcRepository.findAll();
-        
-        // Filtrer BCs par période si nécessaire
-        if (from != null || to != null) {
-            bcs = bcs.stream()
-                    .filter(bc -> {
-                        if (bc.getDateBC() == null) return false;
-                        if (from != null && bc.getDateBC().isBefore(from)) return false;
-                        if (to != null && bc.getDateBC().isAfter(to)) return false;
-                        return true;
-                    })
-                    .collect(Collectors.toList());
-        }
+    public DashboardKpiResponse.ProductPerformance analyzeProducts(DonneesDashboard donnees) {
+        List<Product> products = donnees.produits();
+        // BCs de la période (dateBC), déjà filtrées au chargement
+        List<BandeCommande> bcs = donnees.bandesCommande();
         
         // Calculer les statistiques par produit
         Map<String, ProductStats> productStatsMap = new HashMap<>();
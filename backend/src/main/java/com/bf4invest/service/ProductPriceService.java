@@ -18,9 +18,12 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -36,7 +39,58 @@ public class ProductPriceService {
     private final BandeCommandeRepository bcRepository;
     
     /**
-     * Recalcule les prix pondérés d'un produit depuis toutes les BC.
+     * Index incrémental des prix par produit, construit au premier usage en un seul passage sur les BC.
+     * Accès sérialisés par le moniteur du service (construction et différentiels).
+     */
+    private IndexPrixProduits index;
+
+    /**
+     * Relit les BC enregistrées et remplace leur contribution dans l'index (BC absente : contribution retirée).
+     * La lecture se fait sous le moniteur du service : deux écritures concurrentes sur la même BC ne peuvent
+     * pas retirer deux fois la même contribution ni appliquer un état périmé.
+     * Sans effet sur l'index tant qu'il n'est pas construit : la construction lira l'état enregistré.
+     *
+     * @return les lignes retirées et ajoutées (produits à recalculer)
+     */
+    public synchronized List<IndexPrixProduits.LignePrix> synchroniserBCs(Collection<String> bcIds) {
+        Map<String, BandeCommande> actuelles = new HashMap<>();
+        bcRepository.findAllById(bcIds).forEach(bc -> actuelles.put(bc.getId(), bc));
+        List<IndexPrixProduits.LignePrix> touchees = new ArrayList<>();
+        for (String bcId : bcIds) {
+            List<IndexPrixProduits.LignePrix> nouvelles = IndexPrixProduits.extraire(actuelles.get(bcId));
+            if (index != null) {
+                touchees.addAll(index.remplacerBC(bcId, nouvelles));
+            }
+            touchees.addAll(nouvelles);
+        }
+        return touchees;
+    }
+
+    /**
+     * Reconstruit l'index depuis toutes les BC (un seul parcours, tous produits confondus).
+     */
+    public synchronized void reconstruireIndex() {
+        long debut = System.currentTimeMillis();
+        index = IndexPrixProduits.construire(bcRepository.findAll());
+        log.info("Index des prix produits reconstruit: {} clés en {} ms", index.taille(), System.currentTimeMillis() - debut);
+    }
+
+    /**
+     * Invalide l'index après une écriture massive hors BandeCommandeService (migration, suppression de collection).
+     */
+    public synchronized void invaliderIndex() {
+        index = null;
+    }
+
+    private synchronized IndexPrixProduits.PrixProduit prixDepuisIndex(String productRef, String designation, String unite) {
+        if (index == null) {
+            reconstruireIndex();
+        }
+        return index.prix(productRef, designation, unite);
+    }
+
+    /**
+     * Recalcule les prix pondérés d'un produit depuis l'index des lignes de BC.
      * 
      * @param productRef Référence article du produit
      * @param designation Désignation du produit
@@ -58,139 +112,21 @@ public class ProductPriceService {
             return;
         }
         
-        Product product = productOpt.get();
-        
-        // Trouver toutes les BC contenant ce produit
-        List<BandeCommande> allBCs = bcRepository.findAll();
-        
-        double sommePrixAchatPondere = 0.0;
-        double quantiteAcheteeTotale = 0.0;
-        double sommePrixVentePondere = 0.0;
-        double quantiteVendueTotale = 0.0;
-        Double tva = null;
-        
-        Double prixAchatMin = null;
-        Double prixAchatMax = null;
-        Double prixVenteMin = null;
-        Double prixVenteMax = null;
-        
-        // Parcourir toutes les BC
-        for (BandeCommande bc : allBCs) {
-            // --- ACHATS ---
-            // Nouvelle structure: fournisseursAchat[].lignesAchat
-            if (bc.getFournisseursAchat() != null && !bc.getFournisseursAchat().isEmpty()) {
-                for (FournisseurAchat fa : bc.getFournisseursAchat()) {
-                    if (fa == null || fa.getLignesAchat() == null) continue;
-                    for (LigneAchat ligneAchat : fa.getLignesAchat()) {
-                        if (matchesProduct(ligneAchat, productRef, designation, unite)) {
-                            if (ligneAchat.getQuantiteAchetee() != null && ligneAchat.getQuantiteAchetee() > 0 &&
-                                ligneAchat.getPrixAchatUnitaireHT() != null && ligneAchat.getPrixAchatUnitaireHT() > 0) {
-                                double qty = ligneAchat.getQuantiteAchetee();
-                                double prix = ligneAchat.getPrixAchatUnitaireHT();
-                                quantiteAcheteeTotale += qty;
-                                sommePrixAchatPondere += prix * qty;
-
-                                prixAchatMin = prixAchatMin == null ? prix : Math.min(prixAchatMin, prix);
-                                prixAchatMax = prixAchatMax == null ? prix : Math.max(prixAchatMax, prix);
-                            }
-
-                            if (ligneAchat.getTva() != null && tva == null) {
-                                tva = ligneAchat.getTva();
-                            }
-                        }
-                    }
-                }
-            } else if (bc.getLignesAchat() != null) {
-                // Ancienne structure: bc.lignesAchat
-                for (LigneAchat ligneAchat : bc.getLignesAchat()) {
-                    if (matchesProduct(ligneAchat, productRef, designation, unite)) {
-                        if (ligneAchat.getQuantiteAchetee() != null && ligneAchat.getQuantiteAchetee() > 0 &&
-                            ligneAchat.getPrixAchatUnitaireHT() != null && ligneAchat.getPrixAchatUnitaireHT() > 0) {
-                            double qty = ligneAchat.getQuantiteAchetee();
-                            double prix = ligneAchat.getPrixAchatUnitaireHT();
-                            quantiteAcheteeTotale += qty;
-                            sommePrixAchatPondere += prix * qty;
-
-                            prixAchatMin = prixAchatMin == null ? prix : Math.min(prixAchatMin, prix);
-                            prixAchatMax = prixAchatMax == null ? prix : Math.max(prixAchatMax, prix);
-                        }
-
-                        if (ligneAchat.getTva() != null && tva == null) {
-                            tva = ligneAchat.getTva();
-                        }
-                    }
-                }
-            }
-            
-            // Chercher ce produit dans les lignes de vente (tous clients confondus)
-            if (bc.getClientsVente() != null) {
-                for (var clientVente : bc.getClientsVente()) {
-                    if (clientVente.getLignesVente() != null) {
-                        for (LigneVente ligneVente : clientVente.getLignesVente()) {
-                            if (matchesProduct(ligneVente, productRef, designation, unite)) {
-                                // Agréger les données de vente
-                                if (ligneVente.getQuantiteVendue() != null && ligneVente.getQuantiteVendue() > 0 &&
-                                    ligneVente.getPrixVenteUnitaireHT() != null && ligneVente.getPrixVenteUnitaireHT() > 0) {
-                                    double qty = ligneVente.getQuantiteVendue();
-                                    double prix = ligneVente.getPrixVenteUnitaireHT();
-                                    quantiteVendueTotale += qty;
-                                    sommePrixVentePondere += prix * qty;
-                                    
-                                    prixVenteMin = prixVenteMin == null ? prix : Math.min(prixVenteMin, prix);
-                                    prixVenteMax = prixVenteMax == null ? prix : Math.max(prixVenteMax, prix);
-                                }
-                            }
-                        }
-                    }
-                }
-            }
+        appliquerPrix(productOpt.get(), prixDepuisIndex(productRef, designation, unite));
+    }
 
-            // --- LEGACY: bc.lignes (LineItem) — achat + vente dans le même objet (anciens BC)
-            if (bc.getLignes() != null) {
-                for (LineItem li : bc.getLignes()) {
-                    if (li == null || !matchesProductLineItem(li, productRef, designation, unite)) {
-                        continue;
-                    }
-                    if (li.getQuantiteAchetee() != null && li.getQuantiteAchetee() > 0
-                        && li.getPrixAchatUnitaireHT() != null && li.getPrixAchatUnitaireHT() > 0) {
-                        double qty = li.getQuantiteAchetee();
-                        double prix = li.getPrixAchatUnitaireHT();
-                        quantiteAcheteeTotale += qty;
-                        sommePrixAchatPondere += prix * qty;
-                        prixAchatMin = prixAchatMin == null ? prix : Math.min(prixAchatMin, prix);
-                        prixAchatMax = prixAchatMax == null ? prix : Math.max(prixAchatMax, prix);
-                    }
-                    if (li.getQuantiteVendue() != null && li.getQuantiteVendue() > 0
-                        && li.getPrixVenteUnitaireHT() != null && li.getPrixVenteUnitaireHT() > 0) {
-                        double qty = li.getQuantiteVendue();
-                        double prix = li.getPrixVenteUnitaireHT();
-                        quantiteVendueTotale += qty;
-                        sommePrixVentePondere += prix * qty;
-                        prixVenteMin = prixVenteMin == null ? prix : Math.min(prixVenteMin, prix);
-                        prixVenteMax = prixVenteMax == null ? prix : Math.max(prixVenteMax, prix);
-                    }
-                    if (li.getTva() != null && tva == null) {
-                        tva = li.getTva();
-                    }
-                }
-            }
-        }
+    private void appliquerPrix(Product product, IndexPrixProduits.PrixProduit prix) {
+        double quantiteAcheteeTotale = prix.quantiteAchetee();
+        double quantiteVendueTotale = prix.quantiteVendue();
+        Double tva = prix.tva();
         
-        // Calculer les prix pondérés globaux (arrondis à 2 décimales)
-        Double prixAchatPondere = null;
-        if (quantiteAcheteeTotale > 0) {
-            double prix = sommePrixAchatPondere / quantiteAcheteeTotale;
-            prixAchatPondere = BigDecimal.valueOf(prix)
-                .setScale(2, RoundingMode.HALF_UP)
-                .doubleValue();
-        }
-        Double prixVentePondere = null;
-        if (quantiteVendueTotale > 0) {
-            double prix = sommePrixVentePondere / quantiteVendueTotale;
-            prixVentePondere = BigDecimal.valueOf(prix)
-                .setScale(2, RoundingMode.HALF_UP)
-                .doubleValue();
-        }
+        // Prix pondérés globaux (arrondis à 2 décimales)
+        Double prixAchatPondere = prix.prixAchatPondere() != null ? round2(prix.prixAchatPondere()) : null;
+        Double prixVentePondere = prix.prixVentePondere() != null ? round2(prix.prixVentePondere()) : null;
+        Double prixAchatMin = prix.prixAchatMin();
+        Double prixAchatMax = prix.prixAchatMax();
+        Double prixVenteMin = prix.prixVenteMin();
+        Double prixVenteMax = prix.prixVenteMax();
         
         // Ne pas écraser avec null si aucune ligne BC ne matche (évite régression après backfill)
         boolean anyUpdate = false;
@@ -465,20 +401,18 @@ public class ProductPriceService {
     
     /**
      * Recalcule les prix pondérés pour tous les produits.
-     * Utile après une migration ou un import massif.
+     * Utile après une migration ou un import massif : les BC ne sont parcourues qu'une fois.
      */
     public void recalculateAllProductPrices() {
         log.info("Démarrage du recalcul des prix pondérés pour tous les produits...");
+        reconstruireIndex();
         List<Product> allProducts = productRepository.findAll();
         int count = 0;
         
         for (Product product : allProducts) {
             try {
-                recalculateProductWeightedPrices(
-                    product.getRefArticle(),
-                    product.getDesignation(),
-                    product.getUnite()
-                );
+                String unite = product.getUnite() == null || product.getUnite().isEmpty() ? "U" : product.getUnite();
+                appliquerPrix(product, prixDepuisIndex(product.getRefArticle(), product.getDesignation(), unite));
                 count++;
                 
                 if (count % 100 == 0) {
@@ -493,4 +427,3 @@ public class ProductPriceService {
         log.info("Recalcul terminé: {} produits traités", count);
     }
 }
-
@@ -15,6 +15,8 @@ public class ProductService {
     
     private final ProductRepository productRepository;
     private final AuditService auditService;
+    private final ProductImageService productImageService;
+    private final CatalogueVitrineService catalogueVitrineService;
     
     public List<Product> findAll() {
         return productRepository.findAll();
@@ -33,9 +35,24 @@ public class ProductService {
         if (product.getCategorie() == null || product.getCategorie().trim().isEmpty()) {
             product.setCategorie("Matériaux de Construction");
         }
+        product.setImageId(null);
+        product.setImageMiniatureId(null);
+        if (product.getImageBase64() != null && !product.getImageBase64().isBlank()) {
+            appliquerImage(product, productImageService.enregistrerBase64(product.getImageBase64(), product.getImageContentType()));
+        } else {
+            product.setImageContentType(null);
+        }
+        product.setImageBase64(null);
         product.setCreatedAt(LocalDateTime.now());
         product.setUpdatedAt(LocalDateTime.now());
-        Product saved = productRepository.save(product);
+        Product saved;
+        try {
+            saved = productRepository.save(product);
+        } catch (RuntimeException e) {
+            productImageService.supprimerSansEchec(product.getImageId(), product.getImageMiniatureId());
+            throw e;
+        }
+        catalogueVitrineService.invalider();
         
         // Log d'audit
         auditService.logCreate("Produit", saved.getId(), 
@@ -68,20 +85,36 @@ public class ProductService {
                     if (product.getQuantiteEnStock() != null) {
                         existing.setQuantiteEnStock(product.getQuantiteEnStock());
                     }
-                    // Mettre à jour ou supprimer l'image
+                    // Mettre à jour ou supprimer l'image (les fichiers remplacés sont supprimés après l'enregistrement)
+                    String ancienneImageId = existing.getImageId();
+                    String ancienneMiniatureId = existing.getImageMiniatureId();
+                    boolean imageRemplacee = false;
                     if (product.getImageBase64() != null) {
                         if (product.getImageBase64().isEmpty()) {
                             // Instruction explicite de suppression de l'image
-                            existing.setImageBase64(null);
-                            existing.setImageContentType(null);
+                            appliquerImage(existing, null);
                         } else {
                             // Nouvelle image fournie
-                            existing.setImageBase64(product.getImageBase64());
-                            existing.setImageContentType(product.getImageContentType());
+                            appliquerImage(existing, productImageService.enregistrerBase64(
+                                    product.getImageBase64(), product.getImageContentType()));
                         }
+                        imageRemplacee = true;
                     }
+                    existing.setImageBase64(null);
                     existing.setUpdatedAt(LocalDateTime.now());
-                    Product saved = productRepository.save(existing);
+                    Product saved;
+                    try {
+                        saved = productRepository.save(existing);
+                    } catch (RuntimeException e) {
+                        if (imageRemplacee) {
+                            productImageService.supprimerSansEchec(existing.getImageId(), existing.getImageMiniatureId());
+                        }
+                        throw e;
+                    }
+                    if (imageRemplacee) {
+                        productImageService.supprimer(ancienneImageId, ancienneMiniatureId);
+                    }
+                    catalogueVitrineService.invalider();
                     
                     // Log d'audit
                     String newName = saved.getDesignation() != null ? saved.getDesignation() : saved.getRefArticle();
@@ -96,12 +129,20 @@ public class ProductService {
         productRepository.findById(id).ifPresent(product -> {
             String productName = product.getDesignation() != null ? product.getDesignation() : product.getRefArticle();
             productRepository.deleteById(id);
+            productImageService.supprimer(product.getImageId(), product.getImageMiniatureId());
+            catalogueVitrineService.invalider();
             
             // Log d'audit
             auditService.logDelete("Produit", id, "Produit " + productName + " supprimé");
         });
     }
     
+    private static void appliquerImage(Product product, ProductImageService.ImagesProduit images) {
+        product.setImageId(images != null ? images.imageId() : null);
+        product.setImageMiniatureId(images != null ? images.miniatureId() : null);
+        product.setImageContentType(images != null ? images.contentType() : null);
+    }
+    
     /**
      * Met à jour le stock d'un produit en ajoutant ou soustrayant une quantité
      * @param productId ID du produit
@@ -0,0 +1,55 @@
+package com.bf4invest.service;
+
+import com.bf4invest.util.RegistreJobs;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Recalcul des champs comptables de toutes les factures, exécuté hors requête HTTP après une modification des
+ * paramètres de calcul. L'état est écrit par le thread du job et lu par les requêtes de suivi (champs volatiles).
+ */
+@Getter
+public class RecalculComptableJob implements RegistreJobs.Job {
+
+    public enum Statut { EN_ATTENTE, EN_COURS, TERMINE, ECHOUE }
+
+    private final String id;
+    private final LocalDateTime creeLe = LocalDateTime.now();
+
+    private volatile Statut statut = Statut.EN_ATTENTE;
+    private volatile LocalDateTime debut;
+    private volatile LocalDateTime fin;
+    private volatile String message;
+    private volatile Map<String, Integer> statistiques;
+    private final CompletableFuture<RecalculComptableJob> achevement = new CompletableFuture<>();
+
+    RecalculComptableJob(String id) {
+        this.id = id;
+    }
+
+    @Override
+    public boolean estFini() {
+        return statut == Statut.TERMINE || statut == Statut.ECHOUE;
+    }
+
+    /** Complété (avec le job) quand le recalcul est terminé ou a échoué. */
+    public CompletableFuture<RecalculComptableJob> achevement() {
+        return achevement;
+    }
+
+    void demarrer() {
+        debut = LocalDateTime.now();
+        statut = Statut.EN_COURS;
+    }
+
+    void terminer(Statut statutFinal, Map<String, Integer> statistiques, String message) {
+        this.statistiques = statistiques;
+        this.message = message;
+        this.fin = LocalDateTime.now();
+        this.statut = statutFinal;
+        achevement.complete(this);
+    }
+}
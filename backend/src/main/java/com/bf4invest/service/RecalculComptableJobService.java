@@ -0,0 +1,99 @@
+package com.bf4invest.service;
+
+import com.bf4invest.util.RegistreJobs;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Recalcul des champs comptables persistés en arrière-plan, après une modification des paramètres de calcul.
+ * <p>
+ * Un seul recalcul s'exécute à la fois. Un recalcul encore en attente lit les paramètres au démarrage : une
+ * nouvelle demande le réutilise au lieu d'en empiler un second. Les jobs terminés restent consultables
+ * {@code app.recalcul.jobs.retention-minutes} minutes (registre en mémoire).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RecalculComptableJobService {
+
+    private final DataMigrationService dataMigrationService;
+
+    @Value("${app.recalcul.jobs.retention-minutes:60}")
+    private long retentionMinutes;
+
+    private final RegistreJobs<RecalculComptableJob> jobs = new RegistreJobs<>();
+    private RecalculComptableJob enAttente;
+    private ExecutorService executor;
+
+    @PostConstruct
+    void init() {
+        executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "recalcul-comptable");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void arreter() {
+        executor.shutdownNow();
+    }
+
+    /** Met un recalcul de toutes les factures en file d'attente, ou renvoie celui qui n'a pas encore démarré. */
+    public synchronized RecalculComptableJob soumettre() {
+        if (enAttente != null) {
+            return enAttente;
+        }
+        RecalculComptableJob job = new RecalculComptableJob(UUID.randomUUID().toString());
+        jobs.ajouter(job);
+        enAttente = job;
+        executor.submit(() -> executer(job));
+        log.info("Recalcul des champs comptables mis en file d'attente (job {})", job.getId());
+        return job;
+    }
+
+    public Optional<RecalculComptableJob> trouver(String id) {
+        return jobs.trouver(id);
+    }
+
+    /** Jobs connus, du plus récent au plus ancien. */
+    public List<RecalculComptableJob> lister() {
+        return jobs.lister();
+    }
+
+    private void executer(RecalculComptableJob job) {
+        synchronized (this) {
+            if (enAttente == job) {
+                enAttente = null;
+            }
+        }
+        job.demarrer();
+        try {
+            Map<String, Integer> statistiques = dataMigrationService.recalculerTousChampsComptables();
+            job.terminer(RecalculComptableJob.Statut.TERMINE, statistiques, null);
+        } catch (Exception e) {
+            log.error("Erreur lors du recalcul des champs comptables (job {}): {}", job.getId(), e.getMessage(), e);
+            job.terminer(RecalculComptableJob.Statut.ECHOUE, null, e.getMessage());
+        }
+    }
+
+    /**
+     * Oublie les jobs terminés depuis plus de la durée de rétention.
+     */
+    @Scheduled(fixedDelay = 10 * 60 * 1000)
+    public void purgerJobsTermines() {
+        jobs.purger(retentionMinutes);
+    }
+}
@@ -0,0 +1,612 @@
+package com.bf4invest.service;
+
+import com.bf4invest.excel.ExcelExportService;
+import com.bf4invest.model.BandeCommande;
+import com.bf4invest.model.Charge;
+import com.bf4invest.model.Client;
+import com.bf4invest.model.OperationComptable;
+import com.bf4invest.model.Product;
+import com.bf4invest.model.Sauvegarde;
+import com.bf4invest.model.Supplier;
+import com.bf4invest.model.TransactionBancaire;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.WriteModel;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonWriterSettings;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Sauvegarde complète écrite en flux dans la réponse.
+ * <p>
+ * Format XLSX : les sept classeurs sont générés en parallèle sur un pool borné ({@code app.backup.threads})
+ * dans des fichiers temporaires, puis recopiés dans le ZIP dans un ordre fixe dès qu'ils sont prêts. Au plus
+ * {@code app.backup.threads} classeurs sont en mémoire à la fois, et l'archive n'est jamais assemblée en mémoire.
+ * <p>
+ * Format NDJSON : une entrée {@code <collection>.ndjson} par collection, un document par ligne en Extended JSON
+ * (types BSON conservés), lue par curseur. Beaucoup moins coûteux à produire que les classeurs, et restaurable
+ * tel quel par {@link #restaurerArchive}.
+ * <p>
+ * Sauvegarde incrémentale : à partir du filigrane de la sauvegarde NDJSON précédente, seuls les documents créés
+ * ou modifiés ({@code createdAt}/{@code updatedAt}) des {@link #COLLECTIONS_INCREMENTALES} sont exportés, avec les
+ * suppressions tracées par {@link JournalSuppressions}. Chaque archive NDJSON commence par un {@code manifest.json}
+ * (id, type, parent, période) qui permet à {@link #restaurerChaine} de rejouer complète + incrémentales dans l'ordre.
+ * <p>
+ * Une restauration écrit directement dans les collections : les données dérivées (agrégats KPI, balance par
+ * période, solde global) sont ensuite reconstruites et les caches (index des prix, catalogue vitrine, KPIs du
+ * dashboard) invalidés, une seule fois par restauration.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SauvegardeService {
+
+    public enum Format { XLSX, NDJSON }
+
+    /** Collections couvertes par la sauvegarde incrémentale (celles des exports de {@code /backup}). */
+    public static final Set<String> COLLECTIONS_INCREMENTALES = Set.of(
+            "produits", "bandes_commandes", "operations_comptables", "transactions_bancaires",
+            "clients", "fournisseurs", "charges");
+
+    private static final String COLLECTION_SAUVEGARDES = "sauvegardes";
+    private static final String COLLECTION_SUPPRESSIONS = "suppressions_documents";
+    private static final String ENTREE_MANIFESTE = "manifest.json";
+    private static final String ENTREE_SUPPRESSIONS = "suppressions.ndjson";
+
+    private static final JsonWriterSettings JSON_SETTINGS = JsonWriterSettings.builder()
+            .outputMode(JsonMode.EXTENDED)
+            .build();
+    private static final String EXTENSION_NDJSON = ".ndjson";
+
+    private final ExcelExportService excelExportService;
+    private final MongoTemplate mongoTemplate;
+    private final DashboardAggregateService dashboardAggregateService;
+    private final BalancePeriodeService balancePeriodeService;
+    private final SoldeService soldeService;
+    private final ProductPriceService productPriceService;
+    private final CatalogueVitrineService catalogueVitrineService;
+    private final CacheKpisDashboard cacheKpisDashboard;
+    private final VersionDonneesDashboard versionDonneesDashboard;
+
+    @Value("${app.backup.threads:2}")
+    private int threads;
+
+    @Value("${app.backup.restore-batch-size:500}")
+    private int tailleLotRestauration;
+
+    @Value("${app.backup.incremental-overlap-seconds:60}")
+    private long margeIncrementaleSecondes;
+
+    private ExecutorService executor;
+
+    /** Génère le contenu d'un classeur de la sauvegarde. */
+    @FunctionalInterface
+    private interface Classeur {
+        byte[] generer() throws IOException;
+    }
+
+    /** Classeur généré dans un fichier temporaire, prêt à être recopié tel quel dans le ZIP. */
+    private record FichierGenere(String nom, Path fichier, long taille, long crc) {}
+
+    @PostConstruct
+    void init() {
+        AtomicInteger compteur = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread thread = new Thread(r, "backup-" + compteur.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void arreter() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Écrit l'archive ZIP de sauvegarde complète dans le flux (le flux n'est pas fermé). Une sauvegarde NDJSON
+     * écrite entièrement devient le point de départ de la sauvegarde incrémentale suivante.
+     */
+    public void ecrireArchive(Format format, OutputStream out) throws IOException {
+        long debut = System.currentTimeMillis();
+        ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(out, 64 * 1024));
+        if (format == Format.NDJSON) {
+            Sauvegarde sauvegarde = ecrireNdjsonComplet(zos);
+            zos.finish();
+            zos.flush();
+            mongoTemplate.insert(sauvegarde);
+            log.info("Sauvegarde NDJSON {} écrite: {} documents en {} ms", sauvegarde.getId(),
+                    total(sauvegarde.getDocuments()), System.currentTimeMillis() - debut);
+            return;
+        }
+        int entrees = ecrireClasseurs(zos);
+        zos.finish();
+        zos.flush();
+        log.info("Sauvegarde {} écrite: {} entrées en {} ms", format, entrees, System.currentTimeMillis() - debut);
+    }
+
+    /**
+     * Dernière sauvegarde NDJSON (complète ou incrémentale), base de la prochaine incrémentale.
+     */
+    public Optional<Sauvegarde> derniereSauvegarde() {
+        Query query = new Query().with(Sort.by(Sort.Direction.DESC, "jusqua")).limit(1);
+        return Optional.ofNullable(mongoTemplate.findOne(query, Sauvegarde.class));
+    }
+
+    /**
+     * Écrit l'archive incrémentale depuis la dernière sauvegarde (le flux n'est pas fermé).
+     *
+     * @throws IllegalStateException si aucune sauvegarde NDJSON n'a encore été faite
+     */
+    public Sauvegarde ecrireIncrementale(OutputStream out) throws IOException {
+        Sauvegarde parent = derniereSauvegarde().orElseThrow(() -> new IllegalStateException(
+                "Aucune sauvegarde précédente : générez d'abord une sauvegarde complète au format NDJSON"));
+        long debut = System.currentTimeMillis();
+        LocalDateTime jusqua = LocalDateTime.now();
+        // Recouvrement : une écriture horodatée juste avant le filigrane précédent peut avoir été validée après
+        // sa lecture. Les documents repris deux fois sont simplement réécrits à la restauration.
+        LocalDateTime depuis = parent.getJusqua().minusSeconds(margeIncrementaleSecondes);
+        Date depuisDate = enDate(depuis);
+
+        Sauvegarde sauvegarde = Sauvegarde.builder()
+                .id(new ObjectId().toHexString())
+                .type(Sauvegarde.Type.INCREMENTALE)
+                .parentId(parent.getId())
+                .depuis(depuis)
+                .jusqua(jusqua)
+                .documents(new TreeMap<>())
+                .createdAt(jusqua)
+                .build();
+
+        ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(out, 64 * 1024));
+        ecrireManifeste(zos, sauvegarde);
+
+        zos.putNextEntry(new ZipEntry(ENTREE_SUPPRESSIONS));
+        Bson filtreSuppressions = Filters.and(
+                Filters.gte("supprimeLe", depuisDate),
+                Filters.in("collection", COLLECTIONS_INCREMENTALES));
+        sauvegarde.setSuppressions(ecrireDocuments(zos, mongoTemplate.getCollection(COLLECTION_SUPPRESSIONS)
+                .find(filtreSuppressions)
+                .projection(Projections.fields(Projections.excludeId(),
+                        Projections.include("collection", "documentId", "purge")))
+                .sort(Sorts.ascending("supprimeLe"))));
+        zos.closeEntry();
+
+        Bson filtreModifies = Filters.or(Filters.gte("updatedAt", depuisDate), Filters.gte("createdAt", depuisDate));
+        for (String collection : new TreeSet<>(COLLECTIONS_INCREMENTALES)) {
+            zos.putNextEntry(new ZipEntry(collection + EXTENSION_NDJSON));
+            sauvegarde.getDocuments().put(collection,
+                    ecrireDocuments(zos, mongoTemplate.getCollection(collection).find(filtreModifies)));
+            zos.closeEntry();
+        }
+        zos.finish();
+        zos.flush();
+        mongoTemplate.insert(sauvegarde);
+        log.info("Sauvegarde incrémentale {} écrite depuis {}: {} documents, {} suppressions en {} ms",
+                sauvegarde.getId(), depuis, total(sauvegarde.getDocuments()), sauvegarde.getSuppressions(),
+                System.currentTimeMillis() - debut);
+        return sauvegarde;
+    }
+
+    private int ecrireClasseurs(ZipOutputStream zos) throws IOException {
+        Map<String, Classeur> classeurs = new LinkedHashMap<>();
+        // Fichiers réimportables
+        classeurs.put("Catalogue_Produits.xlsx", () -> excelExportService.exportProductsToImportFormat(produitsSansImage()));
+        classeurs.put("Historique_BC.xlsx", () -> excelExportService.exportBCsToImportFormat(lire(BandeCommande.class)));
+        classeurs.put("Operations_Comptables.xlsx", () -> excelExportService.exportOperationsToImportFormat(lire(OperationComptable.class)));
+        classeurs.put("Releve_Bancaire.xlsx", () -> excelExportService.exportReleveBancaireToImportFormat(lire(TransactionBancaire.class)));
+        // Fichiers de référence
+        classeurs.put("Clients.xlsx", () -> excelExportService.exportClientsToExcel(lire(Client.class)));
+        classeurs.put("Fournisseurs.xlsx", () -> excelExportService.exportSuppliersToExcel(lire(Supplier.class)));
+        classeurs.put("Charges.xlsx", () -> excelExportService.exportChargesToExcel(lire(Charge.class)));
+
+        List<Future<FichierGenere>> generations = new ArrayList<>();
+        classeurs.forEach((nom, classeur) -> generations.add(executor.submit(() -> genererFichier(nom, classeur))));
+        try {
+            for (Future<FichierGenere> generation : generations) {
+                FichierGenere fichier = attendre(generation);
+                try {
+                    ajouterFichierStocke(zos, fichier);
+                } finally {
+                    Files.deleteIfExists(fichier.fichier());
+                }
+            }
+            return generations.size();
+        } finally {
+            // Client déconnecté ou génération en échec : les classeurs restants sont abandonnés et nettoyés
+            for (Future<FichierGenere> generation : generations) {
+                if (!generation.cancel(true) && generation.isDone()) {
+                    supprimerSiGenere(generation);
+                }
+            }
+        }
+    }
+
+    private FichierGenere genererFichier(String nom, Classeur classeur) throws IOException {
+        long debut = System.currentTimeMillis();
+        byte[] contenu = classeur.generer();
+        Path fichier = Files.createTempFile("backup-", ".xlsx");
+        CRC32 crc = new CRC32();
+        try (OutputStream os = new CheckedOutputStream(Files.newOutputStream(fichier), crc)) {
+            os.write(contenu);
+        } catch (IOException e) {
+            Files.deleteIfExists(fichier);
+            throw e;
+        }
+        log.debug("Classeur {} généré en {} ms ({} octets)", nom, System.currentTimeMillis() - debut, contenu.length);
+        return new FichierGenere(nom, fichier, contenu.length, crc.getValue());
+    }
+
+    /**
+     * Un .xlsx est déjà une archive compressée : entrée STORED, sans seconde compression.
+     */
+    private void ajouterFichierStocke(ZipOutputStream zos, FichierGenere fichier) throws IOException {
+        ZipEntry entry = new ZipEntry(fichier.nom());
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(fichier.taille());
+        entry.setCompressedSize(fichier.taille());
+        entry.setCrc(fichier.crc());
+        zos.putNextEntry(entry);
+        Files.copy(fichier.fichier(), zos);
+        zos.closeEntry();
+    }
+
+    private Sauvegarde ecrireNdjsonComplet(ZipOutputStream zos) throws IOException {
+        LocalDateTime jusqua = LocalDateTime.now();
+        Sauvegarde sauvegarde = Sauvegarde.builder()
+                .id(new ObjectId().toHexString())
+                .type(Sauvegarde.Type.COMPLETE)
+                .jusqua(jusqua)
+                .documents(new TreeMap<>())
+                .createdAt(jusqua)
+                .build();
+        ecrireManifeste(zos, sauvegarde);
+        for (String collection : new TreeSet<>(mongoTemplate.getCollectionNames())) {
+            // Les métadonnées de sauvegarde ne font pas partie des données restaurées
+            if (collection.startsWith("system.") || collection.equals(COLLECTION_SAUVEGARDES)
+                    || collection.equals(COLLECTION_SUPPRESSIONS)) {
+                continue;
+            }
+            zos.putNextEntry(new ZipEntry(collection + EXTENSION_NDJSON));
+            sauvegarde.getDocuments().put(collection,
+                    ecrireDocuments(zos, mongoTemplate.getCollection(collection).find()));
+            zos.closeEntry();
+        }
+        return sauvegarde;
+    }
+
+    private void ecrireManifeste(ZipOutputStream zos, Sauvegarde sauvegarde) throws IOException {
+        Document manifeste = new Document("id", sauvegarde.getId())
+                .append("type", sauvegarde.getType().name())
+                .append("parentId", sauvegarde.getParentId())
+                .append("depuis", sauvegarde.getDepuis() != null ? enDate(sauvegarde.getDepuis()) : null)
+                .append("jusqua", enDate(sauvegarde.getJusqua()));
+        zos.putNextEntry(new ZipEntry(ENTREE_MANIFESTE));
+        zos.write(manifeste.toJson(JSON_SETTINGS).getBytes(StandardCharsets.UTF_8));
+        zos.closeEntry();
+    }
+
+    /**
+     * Écrit les documents du curseur dans l'entrée courante, un par ligne.
+     */
+    private long ecrireDocuments(ZipOutputStream zos, FindIterable<Document> documents) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(zos, StandardCharsets.UTF_8), 64 * 1024);
+        long nombre = 0;
+        try (MongoCursor<Document> curseur = documents.batchSize(1000).iterator()) {
+            while (curseur.hasNext()) {
+                writer.write(curseur.next().toJson(JSON_SETTINGS));
+                writer.write('\n');
+                nombre++;
+            }
+        }
+        writer.flush();
+        return nombre;
+    }
+
+    /**
+     * Restaure une archive NDJSON (complète ou incrémentale) : suppressions rejouées d'abord, puis chaque document
+     * remplacé (ou créé) par son _id, par lots. Les documents absents de l'archive ne sont pas supprimés.
+     * Les données dérivées sont ensuite reconstruites et les caches invalidés.
+     *
+     * @return nombre de documents restaurés par collection (et de suppressions rejouées)
+     */
+    public Map<String, Long> restaurerArchive(InputStream archive) throws IOException {
+        Map<String, Long> restaures = restaurerEntrees(archive);
+        apresRestauration();
+        return restaures;
+    }
+
+    private Map<String, Long> restaurerEntrees(InputStream archive) throws IOException {
+        Map<String, Long> restaures = new LinkedHashMap<>();
+        ZipInputStream zis = new ZipInputStream(new BufferedInputStream(archive, 64 * 1024), StandardCharsets.UTF_8);
+        ZipEntry entry;
+        while ((entry = zis.getNextEntry()) != null) {
+            String nom = entry.getName();
+            if (entry.isDirectory() || !nom.endsWith(EXTENSION_NDJSON) || nom.contains("/")) {
+                continue;
+            }
+            // Lecture ligne à ligne sans fermer le flux ZIP (entrée suivante)
+            BufferedReader reader = new BufferedReader(new InputStreamReader(zis, StandardCharsets.UTF_8));
+            if (nom.equals(ENTREE_SUPPRESSIONS)) {
+                restaures.put("suppressions", rejouerSuppressions(reader));
+                continue;
+            }
+            String collection = nom.substring(0, nom.length() - EXTENSION_NDJSON.length());
+            if (collection.isBlank() || collection.startsWith("system.")) {
+                continue;
+            }
+            restaures.put(collection, restaurerCollection(mongoTemplate.getCollection(collection), reader));
+        }
+        log.info("Restauration NDJSON terminée: {}", restaures);
+        return restaures;
+    }
+
+    /**
+     * Rejoue une sauvegarde complète NDJSON puis ses incrémentales, dans l'ordre de la chaîne (archives fournies
+     * dans n'importe quel ordre). Destinée à une base vide : refusée si une collection couverte contient déjà des
+     * documents, sauf {@code forcer}.
+     *
+     * @return résultat de restauration par archive, dans l'ordre appliqué
+     * @throws IllegalArgumentException si les archives ne forment pas une chaîne complète
+     * @throws IllegalStateException    si la base n'est pas vide
+     */
+    public List<Map<String, Object>> restaurerChaine(List<MultipartFile> archives, boolean forcer) throws IOException {
+        Map<String, Document> manifestes = new HashMap<>();
+        Map<String, MultipartFile> parId = new HashMap<>();
+        for (MultipartFile archive : archives) {
+            Document manifeste;
+            try (InputStream is = archive.getInputStream()) {
+                manifeste = lireManifeste(is);
+            }
+            if (manifeste == null) {
+                throw new IllegalArgumentException("Archive sans manifest.json : " + archive.getOriginalFilename());
+            }
+            String id = manifeste.getString("id");
+            if (parId.put(id, archive) != null) {
+                throw new IllegalArgumentException("Sauvegarde fournie deux fois : " + id);
+            }
+            manifestes.put(id, manifeste);
+        }
+        List<String> chaine = ordonnerChaine(manifestes);
+
+        if (!forcer) {
+            for (String collection : COLLECTIONS_INCREMENTALES) {
+                if (mongoTemplate.getCollection(collection).estimatedDocumentCount() > 0) {
+                    throw new IllegalStateException("La collection " + collection
+                            + " contient déjà des documents : restauration de chaîne réservée à une base vide");
+                }
+            }
+        }
+
+        List<Map<String, Object>> resultats = new ArrayList<>();
+        for (String id : chaine) {
+            MultipartFile archive = parId.get(id);
+            Map<String, Long> restaures;
+            try (InputStream is = archive.getInputStream()) {
+                restaures = restaurerEntrees(is);
+            }
+            Map<String, Object> resultat = new LinkedHashMap<>();
+            resultat.put("id", id);
+            resultat.put("type", manifestes.get(id).getString("type"));
+            resultat.put("fichier", archive.getOriginalFilename());
+            resultat.put("documents", restaures);
+            resultats.add(resultat);
+        }
+        apresRestauration();
+        return resultats;
+    }
+
+    /**
+     * Reconstruit les données dérivées des collections restaurées (agrégats KPI, balance par période, solde global)
+     * puis invalide les caches en mémoire. Chaque étape est indépendante : un échec est journalisé sans empêcher
+     * les suivantes.
+     */
+    private void apresRestauration() {
+        try {
+            dashboardAggregateService.reconstruireTout();
+        } catch (Exception e) {
+            log.error("Erreur lors de la reconstruction des agrégats KPI après restauration: {}", e.getMessage(), e);
+        }
+        try {
+            balancePeriodeService.reconcilier(true);
+        } catch (Exception e) {
+            log.error("Erreur lors de la reconstruction de la balance par période après restauration: {}", e.getMessage(), e);
+        }
+        try {
+            soldeService.auditerSoldeActuel(true);
+        } catch (Exception e) {
+            log.error("Erreur lors de la réparation du solde global après restauration: {}", e.getMessage(), e);
+        }
+        productPriceService.invaliderIndex();
+        catalogueVitrineService.invalider();
+        // Écritures directes sur les collections : aucun événement Mongo n'a fait évoluer la version
+        versionDonneesDashboard.incrementer();
+        cacheKpisDashboard.vider();
+    }
+
+    /**
+     * Ordre de restauration : la complète, puis chaque incrémentale dont le parent vient d'être appliqué.
+     */
+    static List<String> ordonnerChaine(Map<String, Document> manifestes) {
+        List<String> completes = manifestes.values().stream()
+                .filter(m -> Sauvegarde.Type.COMPLETE.name().equals(m.getString("type")))
+                .map(m -> m.getString("id"))
+                .toList();
+        if (completes.size() != 1) {
+            throw new IllegalArgumentException("Une et une seule sauvegarde complète attendue (" + completes.size() + " fournie(s))");
+        }
+        Map<String, String> enfants = new HashMap<>();
+        for (Document manifeste : manifestes.values()) {
+            String parentId = manifeste.getString("parentId");
+            if (parentId != null && enfants.put(parentId, manifeste.getString("id")) != null) {
+                throw new IllegalArgumentException("Plusieurs sauvegardes incrémentales à partir de " + parentId);
+            }
+        }
+        List<String> chaine = new ArrayList<>();
+        String courant = completes.get(0);
+        while (courant != null) {
+            chaine.add(courant);
+            courant = enfants.get(courant);
+        }
+        if (chaine.size() != manifestes.size()) {
+            throw new IllegalArgumentException("Chaîne incomplète : " + (manifestes.size() - chaine.size())
+                    + " sauvegarde(s) incrémentale(s) sans parent fourni");
+        }
+        return chaine;
+    }
+
+    private Document lireManifeste(InputStream archive) throws IOException {
+        ZipInputStream zis = new ZipInputStream(new BufferedInputStream(archive), StandardCharsets.UTF_8);
+        ZipEntry entry;
+        while ((entry = zis.getNextEntry()) != null) {
+            if (entry.getName().equals(ENTREE_MANIFESTE)) {
+                return Document.parse(new String(zis.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+        return null;
+    }
+
+    private long rejouerSuppressions(BufferedReader reader) throws IOException {
+        Map<String, List<WriteModel<Document>>> lots = new HashMap<>();
+        long total = 0;
+        String ligne;
+        while ((ligne = reader.readLine()) != null) {
+            if (ligne.isBlank()) {
+                continue;
+            }
+            Document suppression = Document.parse(ligne);
+            String collection = suppression.getString("collection");
+            if (collection == null || !COLLECTIONS_INCREMENTALES.contains(collection)) {
+                continue;
+            }
+            if (Boolean.TRUE.equals(suppression.getBoolean("purge"))) {
+                ecrireLot(collection, lots.remove(collection));
+                mongoTemplate.getCollection(collection).deleteMany(new Document());
+            } else {
+                List<WriteModel<Document>> lot = lots.computeIfAbsent(collection, c -> new ArrayList<>());
+                lot.add(new DeleteOneModel<>(new Document("_id", suppression.get("documentId"))));
+                if (lot.size() >= tailleLotRestauration) {
+                    ecrireLot(collection, lots.remove(collection));
+                }
+            }
+            total++;
+        }
+        lots.forEach(this::ecrireLot);
+        return total;
+    }
+
+    private void ecrireLot(String collection, List<WriteModel<Document>> lot) {
+        if (lot != null && !lot.isEmpty()) {
+            mongoTemplate.getCollection(collection).bulkWrite(lot);
+        }
+    }
+
+    private long restaurerCollection(MongoCollection<Document> collection, BufferedReader reader) throws IOException {
+        ReplaceOptions upsert = new ReplaceOptions().upsert(true);
+        List<WriteModel<Document>> lot = new ArrayList<>(tailleLotRestauration);
+        long total = 0;
+        String ligne;
+        while ((ligne = reader.readLine()) != null) {
+            if (ligne.isBlank()) {
+                continue;
+            }
+            Document document = Document.parse(ligne);
+            Object id = document.get("_id");
+            if (id == null) {
+                throw new IllegalArgumentException("Document sans _id dans " + collection.getNamespace().getCollectionName());
+            }
+            lot.add(new ReplaceOneModel<>(new Document("_id", id), document, upsert));
+            if (lot.size() >= tailleLotRestauration) {
+                collection.bulkWrite(lot);
+                total += lot.size();
+                lot.clear();
+            }
+        }
+        if (!lot.isEmpty()) {
+            collection.bulkWrite(lot);
+            total += lot.size();
+        }
+        return total;
+    }
+
+    static boolean estIncrementale(String collection) {
+        return COLLECTIONS_INCREMENTALES.contains(collection);
+    }
+
+    // Même conversion que le mapping Spring Data des LocalDateTime (fuseau du serveur)
+    private static Date enDate(LocalDateTime dateTime) {
+        return Date.from(dateTime.atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+    private static long total(Map<String, Long> documents) {
+        return documents.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    private List<Product> produitsSansImage() {
+        Query query = new Query();
+        query.fields().exclude("imageBase64");
+        return mongoTemplate.find(query, Product.class);
+    }
+
+    private <T> List<T> lire(Class<T> type) {
+        return mongoTemplate.findAll(type);
+    }
+
+    private static FichierGenere attendre(Future<FichierGenere> generation) throws IOException {
+        try {
+            return generation.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Sauvegarde interrompue");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IllegalStateException("Erreur lors de la génération de la sauvegarde", e.getCause());
+        }
+    }
+
+    private static void supprimerSiGenere(Future<FichierGenere> generation) {
+        try {
+            if (!generation.isCancelled()) {
+                Files.deleteIfExists(generation.get().fichier());
+            }
+        } catch (Exception e) {
+            // Génération en échec : aucun fichier à supprimer
+        }
+    }
+}
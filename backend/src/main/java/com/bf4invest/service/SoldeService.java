@@ -19,13 +19,26 @@ import com.bf4invest.repository.SupplierRepository;
 import com.bf4invest.util.NumberUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
@@ -40,78 +53,74 @@ public class SoldeService {
     private final FactureVenteRepository factureVenteRepository;
     private final FactureAchatRepository factureAchatRepository;
     private final ChargeRepository chargeRepository;
+    private final MongoTemplate mongoTemplate;
+    
+    private static final int MAX_TENTATIVES = 5;
     
     /**
-     * Initialise le solde de départ
+     * Initialise le solde de départ.
+     * Le solde courant est décalé de la différence avec l'ancien solde initial (mise à jour conditionnelle
+     * sur la version pour ne pas perdre un mouvement concurrent).
      */
     @Transactional
     public SoldeGlobal initialiserSoldeDepart(Double montant, LocalDate dateDebut) {
-        List<SoldeGlobal> existing = soldeGlobalRepository.findAll();
-        SoldeGlobal soldeGlobal;
-        
         Double montantArrondi = NumberUtils.roundTo2Decimals(montant);
         
-        if (existing.isEmpty()) {
-            // Créer un nouveau solde global
-            soldeGlobal = SoldeGlobal.builder()
-                    .soldeInitial(montantArrondi)
-                    .soldeActuel(montantArrondi)
-                    .dateDebut(dateDebut != null ? dateDebut : LocalDate.now())
-                    .createdAt(LocalDateTime.now())
-                    .updatedAt(LocalDateTime.now())
-                    .build();
-        } else {
-            // Mettre à jour le solde existant
-            soldeGlobal = existing.get(0);
-            soldeGlobal.setSoldeInitial(montantArrondi);
-            soldeGlobal.setSoldeActuel(montantArrondi);
+        for (int tentative = 0; tentative < MAX_TENTATIVES; tentative++) {
+            SoldeGlobal existant = lireSoldeCourant();
+            if (existant == null) {
+                // Créer un nouveau solde global puis calculer le solde courant depuis les données sources
+                soldeGlobalRepository.save(SoldeGlobal.builder()
+                        .soldeInitial(montantArrondi)
+                        .soldeActuel(montantArrondi)
+                        .dateDebut(dateDebut != null ? dateDebut : LocalDate.now())
+                        .createdAt(LocalDateTime.now())
+                        .updatedAt(LocalDateTime.now())
+                        .build());
+                auditerSoldeActuel(true);
+                return lireSoldeCourant();
+            }
+            
+            double ancienInitial = existant.getSoldeInitial() != null ? existant.getSoldeInitial() : 0.0;
+            Update update = new Update()
+                    .set("soldeInitial", montantArrondi)
+                    .inc("soldeActuel", NumberUtils.roundTo2Decimals(montantArrondi - ancienInitial))
+                    .inc("version", 1)
+                    .set("updatedAt", LocalDateTime.now());
             if (dateDebut != null) {
-                soldeGlobal.setDateDebut(dateDebut);
+                update.set("dateDebut", dateDebut);
+            }
+            SoldeGlobal modifie = mongoTemplate.findAndModify(requeteVersion(existant), update,
+                    FindAndModifyOptions.options().returnNew(true), SoldeGlobal.class);
+            if (modifie != null) {
+                return modifie;
             }
-            soldeGlobal.setUpdatedAt(LocalDateTime.now());
         }
-        
-        return soldeGlobalRepository.save(soldeGlobal);
+        throw new IllegalStateException("Le solde global a été modifié simultanément, veuillez réessayer");
     }
     
     /**
-     * Recalcule dynamiquement le solde bancaire actuel à partir des données sources.
+     * Recalcule le solde bancaire à partir des données sources (paiements, charges payées, virements, apports).
+     * Utilisé uniquement pour l'audit / la réparation du solde courant : les mouvements l'incrémentent directement.
      */
     public Double recalculerSoldeActuel() {
-        Double soldeInitial = soldeGlobalRepository.findAll().stream()
-                .findFirst()
-                .map(SoldeGlobal::getSoldeInitial)
-                .orElse(0.0);
-
-        double paiementsClients = paiementRepository.findAll().stream()
-                .filter(p -> p.getFactureVenteId() != null)
-                .filter(p -> p.getMontant() != null && p.getMontant() > 0)
-                .mapToDouble(Paiement::getMontant)
-                .sum();
-
-        double paiementsFournisseurs = paiementRepository.findAll().stream()
-                .filter(p -> p.getFactureAchatId() != null)
-                .filter(p -> p.getMontant() != null && p.getMontant() > 0)
-                .mapToDouble(Paiement::getMontant)
-                .sum();
-
-        double chargesPayees = chargeRepository.findAll().stream()
-                .filter(c -> "PAYEE".equalsIgnoreCase(c.getStatut()))
-                .filter(c -> c.getMontant() != null && c.getMontant() > 0)
-                .mapToDouble(Charge::getMontant)
-                .sum();
-
-        double virementsDirects = historiqueSoldeRepository.findAll().stream()
-                .filter(h -> "ORDRE_VIREMENT".equals(h.getType()))
-                .filter(h -> h.getMontant() != null && h.getMontant() > 0)
-                .mapToDouble(HistoriqueSolde::getMontant)
-                .sum();
-
-        double apportsExternes = historiqueSoldeRepository.findAll().stream()
-                .filter(h -> "APPORT_EXTERNE".equals(h.getType()))
-                .filter(h -> h.getMontant() != null && h.getMontant() > 0)
-                .mapToDouble(HistoriqueSolde::getMontant)
-                .sum();
+        SoldeGlobal existant = lireSoldeCourant();
+        Double soldeInitial = existant != null && existant.getSoldeInitial() != null ? existant.getSoldeInitial() : 0.0;
+
+        double paiementsClients = sommer(Paiement.class,
+                Criteria.where("factureVenteId").ne(null).and("montant").gt(0), "montant");
+
+        double paiementsFournisseurs = sommer(Paiement.class,
+                Criteria.where("factureAchatId").ne(null).and("montant").gt(0), "montant");
+
+        double chargesPayees = sommer(Charge.class,
+                Criteria.where("statut").regex("^PAYEE$", "i").and("montant").gt(0), "montant");
+
+        double virementsDirects = sommer(HistoriqueSolde.class,
+                Criteria.where("type").is("ORDRE_VIREMENT").and("montant").gt(0), "montant");
+
+        double apportsExternes = sommer(HistoriqueSolde.class,
+                Criteria.where("type").is("APPORT_EXTERNE").and("montant").gt(0), "montant");
 
         return NumberUtils.roundTo2Decimals(
                 soldeInitial
@@ -123,17 +132,151 @@ public class SoldeService {
         );
     }
 
+    private double sommer(Class<?> type, Criteria criteria, String champ) {
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(criteria),
+                Aggregation.group().sum(champ).as("total"));
+        Document resultat = mongoTemplate.aggregate(aggregation, type, Document.class).getUniqueMappedResult();
+        return resultat != null && resultat.get("total") instanceof Number n ? n.doubleValue() : 0.0;
+    }
+
     /**
-     * Récupère le solde global actuel (wrapper conservé pour compatibilité).
+     * Récupère le solde global actuel (solde courant tenu à jour par les mouvements).
      */
     public Double getSoldeGlobalActuel() {
-        return recalculerSoldeActuel();
+        SoldeGlobal solde = lireSoldeCourant();
+        if (solde == null || solde.getVersion() == null) {
+            auditerSoldeActuel(true);
+            solde = lireSoldeCourant();
+        }
+        return solde != null && solde.getSoldeActuel() != null
+                ? NumberUtils.roundTo2Decimals(solde.getSoldeActuel()) : 0.0;
+    }
+
+    /**
+     * Compare le solde courant au recalcul complet. Si reparer est vrai et qu'un écart existe,
+     * le solde courant est remplacé par la valeur recalculée, à condition qu'aucun mouvement
+     * ne soit intervenu entre-temps (version inchangée, sinon nouvelle tentative).
+     */
+    public Map<String, Object> auditerSoldeActuel(boolean reparer) {
+        for (int tentative = 0; tentative < MAX_TENTATIVES; tentative++) {
+            SoldeGlobal courant = lireSoldeCourant();
+            double recalcule = recalculerSoldeActuel();
+            double stocke = courant != null && courant.getSoldeActuel() != null
+                    ? NumberUtils.roundTo2Decimals(courant.getSoldeActuel()) : 0.0;
+            double ecart = NumberUtils.roundTo2Decimals(stocke - recalcule);
+            boolean coherent = courant != null && courant.getVersion() != null && Math.abs(ecart) < 0.01;
+
+            Map<String, Object> rapport = new LinkedHashMap<>();
+            rapport.put("soldeCourant", stocke);
+            rapport.put("soldeRecalcule", recalcule);
+            rapport.put("ecart", ecart);
+            rapport.put("coherent", coherent);
+            rapport.put("version", courant != null ? courant.getVersion() : null);
+            rapport.put("repare", false);
+
+            if (!reparer || coherent) {
+                return rapport;
+            }
+
+            if (courant == null) {
+                soldeGlobalRepository.save(SoldeGlobal.builder()
+                        .soldeInitial(0.0)
+                        .soldeActuel(recalcule)
+                        .dateDebut(LocalDate.now())
+                        .version(0L)
+                        .createdAt(LocalDateTime.now())
+                        .updatedAt(LocalDateTime.now())
+                        .build());
+                rapport.put("repare", true);
+                return rapport;
+            }
+
+            Update update = new Update()
+                    .set("soldeActuel", recalcule)
+                    .inc("version", 1)
+                    .set("updatedAt", LocalDateTime.now());
+            if (mongoTemplate.updateFirst(requeteVersion(courant), update, SoldeGlobal.class).getMatchedCount() > 0) {
+                if (Math.abs(ecart) >= 0.01) {
+                    log.warn("Solde global réparé: {} -> {} (écart {})", stocke, recalcule, ecart);
+                }
+                rapport.put("repare", true);
+                return rapport;
+            }
+        }
+        throw new IllegalStateException("Le solde global a été modifié pendant la réparation, veuillez réessayer");
+    }
+
+    /**
+     * Au démarrage, initialise le solde courant à partir des données sources s'il n'a jamais été tenu à jour.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialiserSoldeCourant() {
+        try {
+            SoldeGlobal solde = lireSoldeCourant();
+            if (solde == null || solde.getVersion() == null) {
+                Map<String, Object> rapport = auditerSoldeActuel(true);
+                log.info("Solde global courant initialisé: {}", rapport);
+            }
+        } catch (Exception e) {
+            log.warn("Initialisation du solde global courant impossible: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Annule l'effet trésorerie d'un paiement supprimé.
+     */
+    public void annulerPaiement(Paiement paiement) {
+        if (paiement.getMontant() == null || paiement.getMontant() <= 0) {
+            return;
+        }
+        double montant = NumberUtils.roundTo2Decimals(paiement.getMontant());
+        double delta = 0.0;
+        if (paiement.getFactureVenteId() != null) {
+            delta -= montant;
+        }
+        if (paiement.getFactureAchatId() != null) {
+            delta += montant;
+        }
+        if (delta != 0.0) {
+            appliquerMouvement(delta);
+        }
+    }
+
+    /**
+     * Applique un mouvement au solde courant par $inc atomique et renvoie le document mis à jour.
+     */
+    private SoldeGlobal appliquerMouvement(double delta) {
+        Update update = new Update()
+                .inc("soldeActuel", delta)
+                .inc("version", 1)
+                .set("updatedAt", LocalDateTime.now());
+        SoldeGlobal solde = mongoTemplate.findAndModify(new Query(), update,
+                FindAndModifyOptions.options().returnNew(true), SoldeGlobal.class);
+        if (solde == null) {
+            // Aucun solde courant (ex: collection vidée) : le reconstruire depuis les données sources
+            log.warn("Solde global courant absent, reconstruction depuis les données sources");
+            auditerSoldeActuel(true);
+            solde = lireSoldeCourant();
+        }
+        return solde;
+    }
+
+    private SoldeGlobal lireSoldeCourant() {
+        return mongoTemplate.findOne(new Query(), SoldeGlobal.class);
+    }
+
+    private Query requeteVersion(SoldeGlobal solde) {
+        return new Query(Criteria.where("id").is(solde.getId()).and("version").is(solde.getVersion()));
     }
     
     /**
      * Récupère le solde d'un partenaire (client ou fournisseur)
      */
     public Double getSoldePartenaire(String id, String type) {
+        if (id == null) {
+            return 0.0;
+        }
         if ("CLIENT".equals(type)) {
             return clientRepository.findById(id)
                     .map(client -> client.getSoldeClient() != null ? client.getSoldeClient() : 0.0)
@@ -179,20 +322,19 @@ public class SoldeService {
             String description,
             LocalDate dateTransaction // Date de la transaction (colonne DATE de l'Excel)
     ) {
-        // Récupérer le solde global actuel
-        Double soldeGlobalAvant = getSoldeGlobalActuel();
         Double soldePartenaireAvant = getSoldePartenaire(partenaireId, partenaireType);
         
         // Arrondir le montant
         Double montantArrondi = NumberUtils.roundTo2Decimals(montant);
         
-        // Calculer les nouveaux soldes selon le type de transaction
-        Double soldeGlobalApres = NumberUtils.roundTo2Decimals(calculerSoldeGlobal(type, soldeGlobalAvant, montantArrondi));
+        // Mettre à jour le solde global ($inc atomique) selon le type de transaction
+        double variation = calculerVariationSoldeGlobal(type, montantArrondi);
+        Double soldeGlobalApres = variation != 0.0
+                ? NumberUtils.roundTo2Decimals(appliquerMouvement(variation).getSoldeActuel())
+                : getSoldeGlobalActuel();
+        Double soldeGlobalAvant = NumberUtils.roundTo2Decimals(soldeGlobalApres - variation);
         Double soldePartenaireApres = NumberUtils.roundTo2Decimals(calculerSoldePartenaire(type, soldePartenaireAvant, montantArrondi));
         
-        // Mettre à jour le solde global
-        mettreAJourSoldeGlobal(soldeGlobalApres);
-        
         // Mettre à jour le solde partenaire
         mettreAJourSoldePartenaire(partenaireId, partenaireType, soldePartenaireApres);
         
@@ -222,37 +364,37 @@ public class SoldeService {
     }
     
     /**
-     * Calcule le nouveau solde global selon le type de transaction
+     * Calcule la variation du solde global selon le type de transaction
      */
-    private Double calculerSoldeGlobal(String type, Double soldeAvant, Double montant) {
+    private double calculerVariationSoldeGlobal(String type, Double montant) {
         switch (type) {
             case "FACTURE_VENTE":
                 // Facture vente : le client nous doit de l'argent, mais ça n'augmente pas la trésorerie immédiatement
                 // Le solde global ne change pas jusqu'au paiement
-                return soldeAvant;
+                return 0.0;
             case "AVOIR_VENTE":
                 // Avoir vente : même logique que facture vente (montant déjà négatif)
                 // Le solde global ne change pas jusqu'au paiement
-                return soldeAvant;
+                return 0.0;
             case "PAIEMENT_CLIENT":
                 // Paiement client : entrée d'argent, augmente la trésorerie
-                return NumberUtils.roundTo2Decimals(soldeAvant + montant);
+                return montant;
             case "FACTURE_ACHAT":
                 // Facture achat : nous devons au fournisseur, mais ça ne diminue pas la trésorerie immédiatement
                 // Le solde global ne change pas jusqu'au paiement
-                return soldeAvant;
+                return 0.0;
             case "AVOIR_ACHAT":
                 // Avoir achat : même logique que facture achat (montant déjà négatif)
                 // Le solde global ne change pas jusqu'au paiement
-                return soldeAvant;
+                return 0.0;
             case "PAIEMENT_FOURNISSEUR":
                 // Paiement fournisseur : sortie d'argent, diminue la trésorerie
-                return NumberUtils.roundTo2Decimals(soldeAvant - montant);
+                return -montant;
             case "APPORT_EXTERNE":
                 // Apport externe : entrée d'argent depuis l'extérieur, augmente la trésorerie
-                return NumberUtils.roundTo2Decimals(soldeAvant + montant);
+                return montant;
             default:
-                return soldeAvant;
+                return 0.0;
         }
     }
     
@@ -286,36 +428,14 @@ public class SoldeService {
         }
     }
     
-    /**
-     * Met à jour le solde global
-     */
-    private void mettreAJourSoldeGlobal(Double nouveauSolde) {
-        List<SoldeGlobal> existing = soldeGlobalRepository.findAll();
-        SoldeGlobal soldeGlobal;
-        
-        Double soldeArrondi = NumberUtils.roundTo2Decimals(nouveauSolde);
-        
-        if (existing.isEmpty()) {
-            soldeGlobal = SoldeGlobal.builder()
-                    .soldeInitial(0.0)
-                    .soldeActuel(soldeArrondi)
-                    .dateDebut(LocalDate.now())
-                    .createdAt(LocalDateTime.now())
-                    .updatedAt(LocalDateTime.now())
-                    .build();
-        } else {
-            soldeGlobal = existing.get(0);
-            soldeGlobal.setSoldeActuel(soldeArrondi);
-            soldeGlobal.setUpdatedAt(LocalDateTime.now());
-        }
-        
-        soldeGlobalRepository.save(soldeGlobal);
-    }
-    
     /**
      * Met à jour le solde d'un partenaire
      */
     private void mettreAJourSoldePartenaire(String partenaireId, String partenaireType, Double nouveauSolde) {
+        if (partenaireId == null) {
+            // Transaction sans partenaire (ex: paiement d'une facture sans client) : seul le solde global bouge
+            return;
+        }
         Double soldeArrondi = NumberUtils.roundTo2Decimals(nouveauSolde);
         
         if ("CLIENT".equals(partenaireType)) {
@@ -355,13 +475,37 @@ public class SoldeService {
     }
     
     /**
-     * Récupère le solde global complet (avec solde initial et solde projeté)
-     * en utilisant un recalcul dynamique du solde actuel.
+     * Flux (curseur MongoDB) de l'historique filtré, du plus récent au plus ancien, pour les exports volumineux.
+     * Le flux doit être fermé par l'appelant.
+     */
+    public Stream<HistoriqueSolde> streamHistorique(
+            String partenaireId,
+            String partenaireType,
+            String type,
+            LocalDateTime dateDebut,
+            LocalDateTime dateFin
+    ) {
+        Criteria criteria = new Criteria();
+        if (partenaireId != null && partenaireType != null) {
+            criteria.and("partenaireId").is(partenaireId).and("partenaireType").is(partenaireType);
+        }
+        if (type != null) {
+            criteria.and("type").is(type);
+        }
+        if (dateDebut != null && dateFin != null) {
+            criteria.and("date").gte(dateDebut).lte(dateFin);
+        }
+        Query query = new Query(criteria).with(Sort.by(Sort.Direction.DESC, "date"));
+        return mongoTemplate.stream(query, HistoriqueSolde.class);
+    }
+    
+    /**
+     * Récupère le solde global complet (avec solde initial et solde projeté).
      */
     public Optional<SoldeGlobal> getSoldeGlobal() {
-        Double soldeActuelRecalcule = recalculerSoldeActuel();
+        Double soldeActuel = getSoldeGlobalActuel();
 
-        Optional<SoldeGlobal> soldeOpt = soldeGlobalRepository.findAll().stream().findFirst();
+        Optional<SoldeGlobal> soldeOpt = Optional.ofNullable(lireSoldeCourant());
 
         SoldeGlobal soldeGlobal = soldeOpt.orElseGet(() -> SoldeGlobal.builder()
                 .soldeInitial(0.0)
@@ -370,7 +514,7 @@ public class SoldeService {
                 .updatedAt(LocalDateTime.now())
                 .build());
 
-        soldeGlobal.setSoldeActuel(soldeActuelRecalcule);
+        soldeGlobal.setSoldeActuel(soldeActuel);
         soldeGlobal.setSoldeActuelProjete(calculerSoldeActuelProjete());
 
         return Optional.of(soldeGlobal);
@@ -393,13 +537,10 @@ public class SoldeService {
             throw new IllegalArgumentException("Le motif est requis");
         }
         
-        // Récupérer le solde global actuel
-        Double soldeGlobalAvant = getSoldeGlobalActuel();
-        Double montantArrondi = NumberUtils.roundTo2Decimals(montant);
-        Double soldeGlobalApres = NumberUtils.roundTo2Decimals(soldeGlobalAvant + montantArrondi);
-        
         // Mettre à jour le solde global
-        mettreAJourSoldeGlobal(soldeGlobalApres);
+        Double montantArrondi = NumberUtils.roundTo2Decimals(montant);
+        Double soldeGlobalApres = NumberUtils.roundTo2Decimals(appliquerMouvement(montantArrondi).getSoldeActuel());
+        Double soldeGlobalAvant = NumberUtils.roundTo2Decimals(soldeGlobalApres - montantArrondi);
         
         // Créer l'historique
         HistoriqueSolde historique = HistoriqueSolde.builder()
@@ -437,12 +578,10 @@ public class SoldeService {
             throw new IllegalArgumentException("Le libellé est requis");
         }
 
-        Double soldeGlobalAvant = getSoldeGlobalActuel();
-        Double montantArrondi = NumberUtils.roundTo2Decimals(montant);
-        Double soldeGlobalApres = NumberUtils.roundTo2Decimals(soldeGlobalAvant - montantArrondi);
-
         // Mettre à jour le solde global
-        mettreAJourSoldeGlobal(soldeGlobalApres);
+        Double montantArrondi = NumberUtils.roundTo2Decimals(montant);
+        Double soldeGlobalApres = NumberUtils.roundTo2Decimals(appliquerMouvement(-montantArrondi).getSoldeActuel());
+        Double soldeGlobalAvant = NumberUtils.roundTo2Decimals(soldeGlobalApres + montantArrondi);
 
         String type = Boolean.TRUE.equals(imposable) ? "CHARGE_IMPOSABLE" : "CHARGE_NON_IMPOSABLE";
 
@@ -498,14 +637,10 @@ public class SoldeService {
             throw new IllegalArgumentException("Le numéro OV est requis");
         }
 
-        // Récupérer le solde global actuel
-        Double soldeGlobalAvant = getSoldeGlobalActuel();
-        Double montantArrondi = NumberUtils.roundTo2Decimals(montant);
         // Un virement est une sortie de trésorerie (diminue le solde)
-        Double soldeGlobalApres = NumberUtils.roundTo2Decimals(soldeGlobalAvant - montantArrondi);
-
-        // Mettre à jour le solde global
-        mettreAJourSoldeGlobal(soldeGlobalApres);
+        Double montantArrondi = NumberUtils.roundTo2Decimals(montant);
+        Double soldeGlobalApres = NumberUtils.roundTo2Decimals(appliquerMouvement(-montantArrondi).getSoldeActuel());
+        Double soldeGlobalAvant = NumberUtils.roundTo2Decimals(soldeGlobalApres + montantArrondi);
 
         // Construire la description
         String description = "Ordre de virement " + numeroOV;
@@ -547,8 +682,8 @@ public class SoldeService {
      * @return Le solde projeté (solde global)
      */
     public Double calculerSoldeActuelProjete() {
-        // Recalculer le solde banque actuel
-        Double soldeBanque = recalculerSoldeActuel();
+        // Solde banque courant
+        Double soldeBanque = getSoldeGlobalActuel();
         
         // Ce que les clients me doivent (factures vente non payées)
         double creancesClients = NumberUtils.roundTo2Decimals(factureVenteRepository.findAll().stream()
@@ -5,6 +5,11 @@ import com.bf4invest.repository.*;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -20,12 +25,19 @@ public class TransactionMappingService {
     private final TransactionBancaireRepository transactionRepository;
     private final FactureVenteRepository factureVenteRepository;
     private final FactureAchatRepository factureAchatRepository;
-    private final PaiementRepository paiementRepository;
     private final PaiementService paiementService;
     private final EcritureComptableRepository ecritureComptableRepository;
+    private final ClientRepository clientRepository;
+    private final SupplierRepository supplierRepository;
+    private final MongoTemplate mongoTemplate;
+    
+    /** Nombre maximal de candidats essayés par transaction. */
+    private static final int MAX_CANDIDATS = 5;
     
     /**
-     * Mappe automatiquement les transactions bancaires aux factures/paiements
+     * Mappe automatiquement les transactions bancaires aux factures/paiements.
+     * Les factures candidates et les totaux de paiements sont chargés une seule fois par passage
+     * (IndexRapprochement), puis chaque transaction est rapprochée de la meilleure correspondance.
      */
     @Transactional
     public Map<String, Integer> mapperTransactions(Integer mois, Integer annee) {
@@ -35,9 +47,11 @@ public class TransactionMappingService {
         int paiementsCrees = 0;
         int errors = 0;
         
+        ContexteRapprochement contexte = new ContexteRapprochement();
+        
         for (TransactionBancaire transaction : transactions) {
             try {
-                boolean mapped = mapperTransactionToFacture(transaction);
+                boolean mapped = mapperTransactionToFacture(transaction, contexte);
                 if (mapped) {
                     mappedCount++;
                     if (transaction.getPaiementId() != null) {
@@ -63,10 +77,27 @@ public class TransactionMappingService {
         return stats;
     }
     
+    /**
+     * Propose les factures correspondant à une transaction, triées par score décroissant (sans rien enregistrer).
+     */
+    public List<IndexRapprochement.Correspondance> proposerCorrespondances(String transactionId, int limite) {
+        TransactionBancaire transaction = transactionRepository.findById(transactionId)
+                .orElseThrow(() -> new RuntimeException("Transaction non trouvée: " + transactionId));
+        double montant = getMontantTransaction(transaction);
+        if (montant == 0.0) {
+            return List.of();
+        }
+        IndexRapprochement index = transaction.getCredit() != null && transaction.getCredit() > 0
+                ? construireIndexVente(new HashMap<>())
+                : construireIndexAchat(new HashMap<>());
+        return index.rechercher(montant, transaction.getDateOperation(), transaction.getReference(),
+                transaction.getLibelle(), limite);
+    }
+    
     /**
      * Tente de mapper une transaction à une facture
      */
-    private boolean mapperTransactionToFacture(TransactionBancaire transaction) {
+    private boolean mapperTransactionToFacture(TransactionBancaire transaction, ContexteRapprochement contexte) {
         // Déterminer le montant de la transaction
         Double montantTransaction = getMontantTransaction(transaction);
         
@@ -76,67 +107,33 @@ public class TransactionMappingService {
         
         // Si c'est un crédit, c'est probablement un paiement client (vente)
         if (transaction.getCredit() != null && transaction.getCredit() > 0) {
-            return mapperTransactionToFactureVente(transaction, montantTransaction);
+            return mapperTransactionToFactureVente(transaction, montantTransaction, contexte);
         }
         
         // Si c'est un débit, c'est probablement un paiement fournisseur (achat)
         if (transaction.getDebit() != null && transaction.getDebit() > 0) {
-            return mapperTransactionToFactureAchat(transaction, montantTransaction);
+            return mapperTransactionToFactureAchat(transaction, montantTransaction, contexte);
         }
         
         return false;
     }
     
     /**
-     * Mappe une transaction à une facture vente
+     * Mappe une transaction à la facture vente la mieux notée
      */
-    private boolean mapperTransactionToFactureVente(TransactionBancaire transaction, Double montant) {
-        // Rechercher par montant correspondant (±1% de tolérance)
-        double tolerance = montant * 0.01;
-        LocalDate dateTransaction = transaction.getDateOperation();
-        LocalDate dateDebut = dateTransaction.minusDays(7);
-        LocalDate dateFin = dateTransaction.plusDays(7);
-        
-        List<FactureVente> factures = factureVenteRepository.findAll();
+    private boolean mapperTransactionToFactureVente(TransactionBancaire transaction, Double montant,
+                                                    ContexteRapprochement contexte) {
+        IndexRapprochement index = contexte.indexVente();
+        List<IndexRapprochement.Correspondance> correspondances = index.rechercher(montant,
+                transaction.getDateOperation(), transaction.getReference(), transaction.getLibelle(), MAX_CANDIDATS);
         
-        for (FactureVente facture : factures) {
-            // Vérifier le montant
-            if (facture.getTotalTTC() == null) continue;
-            
-            double difference = Math.abs(facture.getTotalTTC() - montant);
-            if (difference > tolerance) continue;
-            
-            // Vérifier si la facture n'est pas déjà payée
-            List<Paiement> paiementsExistants = paiementRepository.findByFactureVenteId(facture.getId());
-            double totalPaiements = paiementsExistants.stream()
-                    .mapToDouble(p -> p.getMontant() != null ? p.getMontant() : 0.0)
-                    .sum();
-            
-            double montantRestant = facture.getTotalTTC() - totalPaiements;
-            if (Math.abs(montantRestant - montant) > tolerance) continue;
-            
-            // Vérifier la référence si disponible
-            if (transaction.getReference() != null && !transaction.getReference().isEmpty()) {
-                // Chercher dans les paiements existants si la référence correspond
-                boolean referenceMatch = paiementsExistants.stream()
-                        .anyMatch(p -> transaction.getReference().equals(p.getReference()));
-                if (referenceMatch) continue; // Cette référence est déjà utilisée
-            }
-            
-            // Vérifier le libellé pour des indices (numéro de facture, nom client)
-            if (transaction.getLibelle() != null) {
-                String libelle = transaction.getLibelle().toLowerCase();
-                boolean libelleMatch = libelle.contains(facture.getNumeroFactureVente().toLowerCase());
-                
-                if (!libelleMatch && facture.getClientId() != null) {
-                    // Optionnel: chercher le nom du client dans le libellé
-                    // (nécessiterait d'injecter ClientService, à faire si nécessaire)
-                }
-            }
+        for (IndexRapprochement.Correspondance correspondance : correspondances) {
+            FactureVente facture = contexte.facturesVente.get(correspondance.factureId());
             
             // Créer le paiement et lier la transaction
             Paiement paiement = creerPaiementDepuisTransaction(transaction, facture, null);
             if (paiement != null) {
+                index.consommer(facture.getId());
                 transaction.setFactureVenteId(facture.getId());
                 transaction.setPaiementId(paiement.getId());
                 transaction.setMapped(true);
@@ -150,50 +147,21 @@ public class TransactionMappingService {
     }
     
     /**
-     * Mappe une transaction à une facture achat
+     * Mappe une transaction à la facture achat la mieux notée
      */
-    private boolean mapperTransactionToFactureAchat(TransactionBancaire transaction, Double montant) {
-        // Rechercher par montant correspondant (±1% de tolérance)
-        double tolerance = montant * 0.01;
-        LocalDate dateTransaction = transaction.getDateOperation();
-        LocalDate dateDebut = dateTransaction.minusDays(7);
-        LocalDate dateFin = dateTransaction.plusDays(7);
+    private boolean mapperTransactionToFactureAchat(TransactionBancaire transaction, Double montant,
+                                                    ContexteRapprochement contexte) {
+        IndexRapprochement index = contexte.indexAchat();
+        List<IndexRapprochement.Correspondance> correspondances = index.rechercher(montant,
+                transaction.getDateOperation(), transaction.getReference(), transaction.getLibelle(), MAX_CANDIDATS);
         
-        List<FactureAchat> factures = factureAchatRepository.findAll();
-        
-        for (FactureAchat facture : factures) {
-            // Vérifier le montant
-            if (facture.getTotalTTC() == null) continue;
-            
-            double difference = Math.abs(facture.getTotalTTC() - montant);
-            if (difference > tolerance) continue;
-            
-            // Vérifier si la facture n'est pas déjà payée
-            List<Paiement> paiementsExistants = paiementRepository.findByFactureAchatId(facture.getId());
-            double totalPaiements = paiementsExistants.stream()
-                    .mapToDouble(p -> p.getMontant() != null ? p.getMontant() : 0.0)
-                    .sum();
-            
-            double montantRestant = facture.getTotalTTC() - totalPaiements;
-            if (Math.abs(montantRestant - montant) > tolerance) continue;
-            
-            // Vérifier la référence si disponible
-            if (transaction.getReference() != null && !transaction.getReference().isEmpty()) {
-                boolean referenceMatch = paiementsExistants.stream()
-                        .anyMatch(p -> transaction.getReference().equals(p.getReference()));
-                if (referenceMatch) continue;
-            }
-            
-            // Vérifier le libellé
-            if (transaction.getLibelle() != null) {
-                String libelle = transaction.getLibelle().toLowerCase();
-                boolean libelleMatch = libelle.contains(facture.getNumeroFactureAchat().toLowerCase());
-                // Optionnel: chercher le nom du fournisseur
-            }
+        for (IndexRapprochement.Correspondance correspondance : correspondances) {
+            FactureAchat facture = contexte.facturesAchat.get(correspondance.factureId());
             
             // Créer le paiement et lier la transaction
             Paiement paiement = creerPaiementDepuisTransaction(transaction, null, facture);
             if (paiement != null) {
+                index.consommer(facture.getId());
                 transaction.setFactureAchatId(facture.getId());
                 transaction.setPaiementId(paiement.getId());
                 transaction.setMapped(true);
@@ -206,6 +174,119 @@ public class TransactionMappingService {
         return false;
     }
     
+    /**
+     * Index des factures vente : restant dû = totalTTC - somme des paiements (une seule agrégation).
+     */
+    private IndexRapprochement construireIndexVente(Map<String, FactureVente> factures) {
+        Query query = new Query();
+        query.fields().include("numeroFactureVente", "totalTTC", "dateFacture", "dateEcheance", "clientId", "tvaRate");
+        mongoTemplate.find(query, FactureVente.class).forEach(f -> factures.put(f.getId(), f));
+        
+        Map<String, TotalPaiements> paiements = totauxPaiementsParFacture("factureVenteId");
+        Map<String, String> clients = new HashMap<>();
+        clientRepository.findAll().forEach(c -> clients.put(c.getId(), c.getNom()));
+        
+        List<IndexRapprochement.Candidat> candidats = new ArrayList<>(factures.size());
+        for (FactureVente f : factures.values()) {
+            if (f.getTotalTTC() == null) continue;
+            TotalPaiements p = paiements.getOrDefault(f.getId(), TotalPaiements.AUCUN);
+            candidats.add(IndexRapprochement.Candidat.builder()
+                    .factureId(f.getId())
+                    .numero(f.getNumeroFactureVente())
+                    .totalTTC(f.getTotalTTC())
+                    .restant(f.getTotalTTC() - p.total())
+                    .dateFacture(f.getDateFacture())
+                    .dateEcheance(f.getDateEcheance())
+                    .referencesPaiements(p.references())
+                    .partenaire(f.getClientId() != null ? clients.get(f.getClientId()) : null)
+                    .build());
+        }
+        return new IndexRapprochement(candidats);
+    }
+    
+    /**
+     * Index des factures achat : restant dû = totalTTC - somme des paiements (une seule agrégation).
+     */
+    private IndexRapprochement construireIndexAchat(Map<String, FactureAchat> factures) {
+        Query query = new Query();
+        query.fields().include("numeroFactureAchat", "totalTTC", "dateFacture", "dateEcheance", "fournisseurId", "tvaRate");
+        mongoTemplate.find(query, FactureAchat.class).forEach(f -> factures.put(f.getId(), f));
+        
+        Map<String, TotalPaiements> paiements = totauxPaiementsParFacture("factureAchatId");
+        Map<String, String> fournisseurs = new HashMap<>();
+        supplierRepository.findAll().forEach(s -> fournisseurs.put(s.getId(), s.getNom()));
+        
+        List<IndexRapprochement.Candidat> candidats = new ArrayList<>(factures.size());
+        for (FactureAchat f : factures.values()) {
+            if (f.getTotalTTC() == null) continue;
+            TotalPaiements p = paiements.getOrDefault(f.getId(), TotalPaiements.AUCUN);
+            candidats.add(IndexRapprochement.Candidat.builder()
+                    .factureId(f.getId())
+                    .numero(f.getNumeroFactureAchat())
+                    .totalTTC(f.getTotalTTC())
+                    .restant(f.getTotalTTC() - p.total())
+                    .dateFacture(f.getDateFacture())
+                    .dateEcheance(f.getDateEcheance())
+                    .referencesPaiements(p.references())
+                    .partenaire(f.getFournisseurId() != null ? fournisseurs.get(f.getFournisseurId()) : null)
+                    .build());
+        }
+        return new IndexRapprochement(candidats);
+    }
+    
+    /**
+     * Somme des paiements et références utilisées, groupées par facture, en une agrégation.
+     */
+    private Map<String, TotalPaiements> totauxPaiementsParFacture(String champFacture) {
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where(champFacture).ne(null)),
+                Aggregation.group(champFacture)
+                        .sum("montant").as("total")
+                        .addToSet("reference").as("references"));
+        
+        Map<String, TotalPaiements> totaux = new HashMap<>();
+        for (Document doc : mongoTemplate.aggregate(aggregation, Paiement.class, Document.class).getMappedResults()) {
+            Object id = doc.get("_id");
+            if (id == null) continue;
+            Number total = doc.get("total", Number.class);
+            Set<String> references = new HashSet<>();
+            List<?> refs = doc.get("references", List.class);
+            if (refs != null) {
+                refs.stream().filter(Objects::nonNull).forEach(r -> references.add(r.toString()));
+            }
+            totaux.put(id.toString(), new TotalPaiements(total != null ? total.doubleValue() : 0.0, references));
+        }
+        return totaux;
+    }
+    
+    private record TotalPaiements(double total, Set<String> references) {
+        static final TotalPaiements AUCUN = new TotalPaiements(0.0, Set.of());
+    }
+    
+    /**
+     * Index construits à la demande, une seule fois par passage de mapping.
+     */
+    private class ContexteRapprochement {
+        private final Map<String, FactureVente> facturesVente = new HashMap<>();
+        private final Map<String, FactureAchat> facturesAchat = new HashMap<>();
+        private IndexRapprochement indexVente;
+        private IndexRapprochement indexAchat;
+        
+        IndexRapprochement indexVente() {
+            if (indexVente == null) {
+                indexVente = construireIndexVente(facturesVente);
+            }
+            return indexVente;
+        }
+        
+        IndexRapprochement indexAchat() {
+            if (indexAchat == null) {
+                indexAchat = construireIndexAchat(facturesAchat);
+            }
+            return indexAchat;
+        }
+    }
+    
     /**
      * Crée un paiement depuis une transaction bancaire et une facture
      */
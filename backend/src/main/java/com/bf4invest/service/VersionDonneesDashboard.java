@@ -0,0 +1,70 @@
+package com.bf4invest.service;
+
+import com.bf4invest.model.BandeCommande;
+import com.bf4invest.model.Charge;
+import com.bf4invest.model.FactureAchat;
+import com.bf4invest.model.FactureVente;
+import com.bf4invest.model.Paiement;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Compteur de version des données du tableau de bord : incrémenté à chaque écriture (save, insert, insertion ou
+ * remplacement par lots, suppression) d'une facture, BC, paiement ou charge. Les KPIs mis en cache pour une
+ * version antérieure ne sont plus servis.
+ * <p>
+ * Les mises à jour partielles (updateFirst / updateMulti) n'émettent pas d'événement : elles sont couvertes par
+ * la durée de vie du cache, ou par un appel explicite à {@link #incrementer()}.
+ */
+@Component
+@RequiredArgsConstructor
+public class VersionDonneesDashboard extends AbstractMongoEventListener<Object> {
+
+    private final MongoTemplate mongoTemplate;
+
+    private final AtomicLong version = new AtomicLong();
+
+    private volatile Set<String> collections;
+
+    public long courante() {
+        return version.get();
+    }
+
+    public long incrementer() {
+        return version.incrementAndGet();
+    }
+
+    @Override
+    public void onAfterSave(AfterSaveEvent<Object> event) {
+        if (estSuivie(event.getCollectionName())) {
+            incrementer();
+        }
+    }
+
+    @Override
+    public void onAfterDelete(AfterDeleteEvent<Object> event) {
+        if (estSuivie(event.getCollectionName())) {
+            incrementer();
+        }
+    }
+
+    private boolean estSuivie(String collection) {
+        Set<String> suivies = collections;
+        if (suivies == null) {
+            suivies = Stream.of(FactureVente.class, FactureAchat.class, BandeCommande.class, Paiement.class, Charge.class)
+                    .map(mongoTemplate::getCollectionName)
+                    .collect(Collectors.toUnmodifiableSet());
+            collections = suivies;
+        }
+        return collection != null && suivies.contains(collection);
+    }
+}
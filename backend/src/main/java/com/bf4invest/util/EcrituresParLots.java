@@ -0,0 +1,205 @@
+package com.bf4invest.util;
+
+import com.mongodb.bulk.BulkWriteError;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.data.util.Pair;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Écritures MongoDB groupées (BulkOperations) découpées en lots de taille fixe.
+ * Un lot = un aller-retour serveur, au lieu d'un par document.
+ */
+public class EcrituresParLots {
+
+    /** Taille de lot par défaut. */
+    public static final int TAILLE_LOT_DEFAUT = 500;
+
+    private EcrituresParLots() {
+    }
+
+    /**
+     * Identifiant attribué avant insertion : BulkOperations ne renseigne pas l'id des objets insérés.
+     */
+    public static String nouvelId() {
+        return new ObjectId().toHexString();
+    }
+
+    /**
+     * Insère les documents par lots (les ids doivent être attribués au préalable si l'appelant en a besoin).
+     *
+     * @return nombre de documents insérés
+     */
+    public static <T> int inserer(MongoTemplate mongoTemplate, Class<T> type, List<? extends T> documents, int tailleLot) {
+        int inseres = 0;
+        for (List<? extends T> lot : decouper(documents, tailleLot)) {
+            inseres += mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, type)
+                    .insert(lot)
+                    .execute()
+                    .getInsertedCount();
+        }
+        return inseres;
+    }
+
+    /**
+     * Insère les documents par lots sans s'arrêter au premier échec (mode UNORDERED) : les documents refusés
+     * (doublon, validation...) sont signalés un par un avec leur erreur et les autres sont insérés. Si un lot échoue
+     * sans détail par document (connexion perdue...), les ids présents en base désignent les documents insérés.
+     *
+     * @param id identifiant attribué à chaque document avant l'appel
+     * @param surEchec appelé pour chaque document non inséré
+     * @return documents insérés, dans l'ordre reçu
+     */
+    public static <T> List<T> insererEnContinuant(MongoTemplate mongoTemplate, Class<T> type, List<? extends T> documents,
+                                                  Function<T, String> id, int tailleLot,
+                                                  BiConsumer<T, Exception> surEchec) {
+        List<T> inseres = new ArrayList<>();
+        for (List<? extends T> lot : decouper(documents, tailleLot)) {
+            try {
+                mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, type).insert(lot).execute();
+                inseres.addAll(lot);
+            } catch (BulkOperationException e) {
+                repartir(lot, e, inseres, surEchec);
+            } catch (RuntimeException e) {
+                Set<String> presents = idsPresents(mongoTemplate, type, lot, id);
+                for (T document : lot) {
+                    if (presents.contains(id.apply(document))) {
+                        inseres.add(document);
+                    } else {
+                        surEchec.accept(document, e);
+                    }
+                }
+            }
+        }
+        return inseres;
+    }
+
+    /**
+     * Remplace les documents par lots sans s'arrêter au premier échec, comme {@link #insererEnContinuant}.
+     * Si un lot échoue sans détail par document, tous ses documents sont signalés en échec : leur remplacement
+     * est incertain.
+     *
+     * @param surEchec appelé pour chaque document non remplacé
+     * @return documents remplacés, dans l'ordre reçu
+     */
+    public static <T> List<T> remplacerEnContinuant(MongoTemplate mongoTemplate, Class<T> type,
+                                                    List<? extends T> documents, Function<T, String> id,
+                                                    int tailleLot, BiConsumer<T, Exception> surEchec) {
+        List<T> remplaces = new ArrayList<>();
+        for (List<? extends T> lot : decouper(documents, tailleLot)) {
+            BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, type);
+            for (T document : lot) {
+                ops.replaceOne(new Query(Criteria.where("_id").is(id.apply(document))), document);
+            }
+            try {
+                ops.execute();
+                remplaces.addAll(lot);
+            } catch (BulkOperationException e) {
+                repartir(lot, e, remplaces, surEchec);
+            } catch (RuntimeException e) {
+                lot.forEach(document -> surEchec.accept(document, e));
+            }
+        }
+        return remplaces;
+    }
+
+    /**
+     * Remplace les documents existants (par _id) par lots.
+     *
+     * @return nombre de documents remplacés
+     */
+    public static <T> int remplacer(MongoTemplate mongoTemplate, Class<T> type, List<? extends T> documents,
+                                    Function<T, String> id, int tailleLot) {
+        int remplaces = 0;
+        for (List<? extends T> lot : decouper(documents, tailleLot)) {
+            BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, type);
+            for (T document : lot) {
+                ops.replaceOne(new Query(Criteria.where("_id").is(id.apply(document))), document);
+            }
+            remplaces += ops.execute().getMatchedCount();
+        }
+        return remplaces;
+    }
+
+    /**
+     * Applique des mises à jour ciblées (updateOne) par lots.
+     *
+     * @return nombre de documents trouvés
+     */
+    public static int modifier(MongoTemplate mongoTemplate, Class<?> type,
+                               List<Pair<Query, UpdateDefinition>> modifications, int tailleLot) {
+        int modifies = 0;
+        for (List<Pair<Query, UpdateDefinition>> lot : decouper(modifications, tailleLot)) {
+            modifies += mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, type)
+                    .updateOne(lot)
+                    .execute()
+                    .getMatchedCount();
+        }
+        return modifies;
+    }
+
+    /**
+     * Upserts par lots : les documents trouvés par la requête reçoivent la mise à jour, les autres sont créés.
+     *
+     * @return nombre de documents créés
+     */
+    public static int upsert(MongoTemplate mongoTemplate, Class<?> type, List<Pair<Query, Update>> upserts,
+                             int tailleLot) {
+        int crees = 0;
+        for (List<Pair<Query, Update>> lot : decouper(upserts, tailleLot)) {
+            crees += mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, type)
+                    .upsert(lot)
+                    .execute()
+                    .getUpserts()
+                    .size();
+        }
+        return crees;
+    }
+
+    /** Sépare un lot en échec partiel : les index des erreurs d'écriture désignent les documents refusés. */
+    private static <T> void repartir(List<? extends T> lot, BulkOperationException e, List<T> ecrits,
+                                     BiConsumer<T, Exception> surEchec) {
+        Map<Integer, BulkWriteError> erreurs = new HashMap<>();
+        e.getErrors().forEach(erreur -> erreurs.put(erreur.getIndex(), erreur));
+        for (int i = 0; i < lot.size(); i++) {
+            BulkWriteError erreur = erreurs.get(i);
+            if (erreur == null) {
+                ecrits.add(lot.get(i));
+            } else {
+                surEchec.accept(lot.get(i), new IllegalStateException(erreur.getMessage(), e));
+            }
+        }
+    }
+
+    private static <T> Set<String> idsPresents(MongoTemplate mongoTemplate, Class<T> type, List<? extends T> lot,
+                                               Function<T, String> id) {
+        Query query = new Query(Criteria.where("_id").in(lot.stream().map(id).toList()));
+        query.fields().include("_id");
+        Set<String> presents = new HashSet<>();
+        mongoTemplate.find(query, type).forEach(document -> presents.add(id.apply(document)));
+        return presents;
+    }
+
+    private static <T> List<List<T>> decouper(List<T> elements, int tailleLot) {
+        int taille = tailleLot > 0 ? tailleLot : TAILLE_LOT_DEFAUT;
+        List<List<T>> lots = new ArrayList<>();
+        for (int i = 0; i < elements.size(); i += taille) {
+            lots.add(elements.subList(i, Math.min(elements.size(), i + taille)));
+        }
+        return lots;
+    }
+}
@@ -0,0 +1,104 @@
+package com.bf4invest.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Fichier reçu copié sur disque : le MultipartFile de la requête n'est plus lisible une fois la réponse envoyée,
+ * les traitements en arrière-plan (imports Excel, extractions OCR) relisent cette copie, autant de fois que
+ * nécessaire (réessais). La copie est supprimée par {@link #supprimer()} en fin de traitement.
+ */
+@Slf4j
+public class FichierTemporaire implements MultipartFile {
+
+    private final Path chemin;
+    private final String nomOriginal;
+    private final String contentType;
+
+    private FichierTemporaire(Path chemin, String nomOriginal, String contentType) {
+        this.chemin = chemin;
+        this.nomOriginal = nomOriginal;
+        this.contentType = contentType;
+    }
+
+    /** Copie le fichier reçu dans un fichier temporaire ({@code prefixe} : ex. "import-job-"). */
+    public static FichierTemporaire copier(MultipartFile file, String prefixe) throws IOException {
+        Path copie = Files.createTempFile(prefixe, ".tmp");
+        try (InputStream is = file.getInputStream()) {
+            Files.copy(is, copie, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(copie);
+            throw e;
+        }
+        return new FichierTemporaire(copie, file.getOriginalFilename(), file.getContentType());
+    }
+
+    public Path getChemin() {
+        return chemin;
+    }
+
+    /** Supprime la copie (sans erreur si elle n'existe plus). */
+    public void supprimer() {
+        try {
+            Files.deleteIfExists(chemin);
+        } catch (IOException e) {
+            log.warn("Fichier temporaire non supprimé {}: {}", chemin, e.getMessage());
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "file";
+    }
+
+    @Override
+    public String getOriginalFilename() {
+        return nomOriginal;
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return getSize() == 0;
+    }
+
+    @Override
+    public long getSize() {
+        try {
+            return Files.size(chemin);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    @Override
+    public byte[] getBytes() throws IOException {
+        return Files.readAllBytes(chemin);
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return Files.newInputStream(chemin);
+    }
+
+    @Override
+    public void transferTo(File dest) throws IOException {
+        Files.copy(chemin, dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @Override
+    public void transferTo(Path dest) throws IOException {
+        Files.copy(chemin, dest, StandardCopyOption.REPLACE_EXISTING);
+    }
+}
@@ -0,0 +1,74 @@
+package com.bf4invest.util;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Registre en mémoire des traitements en arrière-plan (imports Excel, extractions OCR) : suivi par id, liste du plus
+ * récent au plus ancien, purge des jobs terminés après la durée de rétention.
+ */
+public class RegistreJobs<J extends RegistreJobs.Job> {
+
+    /** Ce que le registre doit savoir d'un job. */
+    public interface Job {
+        String getId();
+
+        LocalDateTime getCreeLe();
+
+        /** Fin du job, null tant qu'il n'est pas terminé. */
+        LocalDateTime getFin();
+
+        boolean estFini();
+    }
+
+    private final Map<String, J> jobs = new ConcurrentHashMap<>();
+
+    public void ajouter(J job) {
+        jobs.put(job.getId(), job);
+    }
+
+    public void retirer(String id) {
+        jobs.remove(id);
+    }
+
+    public Optional<J> trouver(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    /** Jobs demandés, dans l'ordre des ids (ids inconnus ou purgés ignorés). */
+    public List<J> trouver(Collection<String> ids) {
+        return ids.stream().map(jobs::get).filter(Objects::nonNull).toList();
+    }
+
+    /** Jobs connus, du plus récent au plus ancien. */
+    public List<J> lister() {
+        return jobs.values().stream()
+                .sorted(Comparator.comparing(Job::getCreeLe).reversed())
+                .toList();
+    }
+
+    public Collection<J> tous() {
+        return jobs.values();
+    }
+
+    public long nombreNonTermines() {
+        return jobs.values().stream().filter(job -> !job.estFini()).count();
+    }
+
+    public void pourChaqueNonTermine(Consumer<J> action) {
+        jobs.values().stream().filter(job -> !job.estFini()).forEach(action);
+    }
+
+    /** Oublie les jobs terminés depuis plus de {@code retentionMinutes} minutes. */
+    public void purger(long retentionMinutes) {
+        LocalDateTime limite = LocalDateTime.now().minusMinutes(retentionMinutes);
+        jobs.values().removeIf(job -> job.estFini() && job.getFin() != null && job.getFin().isBefore(limite));
+    }
+}
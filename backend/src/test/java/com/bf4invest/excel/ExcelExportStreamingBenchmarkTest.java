@@ -0,0 +1,209 @@
+package com.bf4invest.excel;
+
+import com.bf4invest.model.BandeCommande;
+import com.bf4invest.model.Client;
+import com.bf4invest.model.ClientVente;
+import com.bf4invest.model.EcritureComptable;
+import com.bf4invest.model.FournisseurAchat;
+import com.bf4invest.model.LigneAchat;
+import com.bf4invest.model.LigneEcriture;
+import com.bf4invest.model.LigneVente;
+import com.bf4invest.model.Supplier;
+import com.bf4invest.repository.ClientRepository;
+import com.bf4invest.repository.FactureAchatRepository;
+import com.bf4invest.repository.FactureVenteRepository;
+import com.bf4invest.repository.SupplierRepository;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.apache.poi.xssf.usermodel.XSSFColor;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ExcelExportStreamingBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(ExcelExportStreamingBenchmarkTest.class);
+
+    /** Tailles mesurées, ex: -Dbenchmark.export.lignes=10000,100000,500000 */
+    private static final String TAILLES = System.getProperty("benchmark.export.lignes", "10000");
+    /** Au-delà, l'export XSSF en mémoire n'est pas mesuré (heap et autoSizeColumn prohibitifs). */
+    private static final int MAX_LIGNES_XSSF = 100_000;
+
+    private final ExcelExportService service =
+            new ExcelExportService(null, null, null, null, null, null, null, null, null);
+
+    private static EcritureComptable ecriture(int i) {
+        double montant = 100 + (i % 1000) * 1.5;
+        return EcritureComptable.builder()
+                .dateEcriture(LocalDate.of(2025, 1, 1).plusDays(i % 365))
+                .journal(i % 2 == 0 ? "VT" : "AC")
+                .numeroPiece("FV-2025-" + i)
+                .lignes(List.of(
+                        LigneEcriture.builder().compteCode("3421").libelle("Client " + (i % 500)).debit(montant).credit(0.0).build(),
+                        LigneEcriture.builder().compteCode("7111").libelle("Ventes " + i).debit(0.0).credit(montant).build()))
+                .build();
+    }
+
+    /** Écritures générées à la demande, comme un curseur MongoDB. */
+    private static Stream<EcritureComptable> curseur(int nbEcritures) {
+        return IntStream.range(0, nbEcritures).mapToObj(ExcelExportStreamingBenchmarkTest::ecriture);
+    }
+
+    @Test
+    void testExportJournalStreaming_ContenuIdentiqueAuFormatExistant() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int lignes = service.exportJournalComptableStreaming(curseur(50), out);
+
+        assertEquals(100, lignes);
+        try (Workbook workbook = WorkbookFactory.create(new ByteArrayInputStream(out.toByteArray()))) {
+            Sheet sheet = workbook.getSheet("Journal Comptable");
+            assertEquals(100, sheet.getLastRowNum());
+            assertEquals("Compte", sheet.getRow(0).getCell(3).getStringCellValue());
+            assertEquals("3421", sheet.getRow(1).getCell(3).getStringCellValue());
+            assertEquals(100.0, sheet.getRow(1).getCell(5).getNumericCellValue());
+            assertNull(sheet.getRow(1).getCell(6));
+            assertEquals("01/01/2025", sheet.getRow(1).getCell(0).getStringCellValue());
+        }
+    }
+
+    @Test
+    void testExportBCsImportFormatStreaming_UneLigneParProduitEtClient() throws Exception {
+        ClientRepository clientRepository = mock(ClientRepository.class);
+        SupplierRepository supplierRepository = mock(SupplierRepository.class);
+        FactureVenteRepository factureVenteRepository = mock(FactureVenteRepository.class);
+        FactureAchatRepository factureAchatRepository = mock(FactureAchatRepository.class);
+        when(clientRepository.findAll()).thenReturn(List.of(
+                Client.builder().id("c1").nom("Client A").ice("ICE-A").build(),
+                Client.builder().id("c2").nom("Client B").build()));
+        when(supplierRepository.findAll()).thenReturn(List.of(Supplier.builder().id("s1").nom("Fournisseur X").build()));
+        ExcelExportService export = new ExcelExportService(clientRepository, supplierRepository, factureVenteRepository,
+                factureAchatRepository, null, null, null, null, null);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int lignes = export.exportBCsToImportFormatStreaming(IntStream.range(0, 3).mapToObj(i -> BandeCommande.builder()
+                .id("bc" + i)
+                .numeroBC("BC-" + i)
+                .fournisseursAchat(List.of(FournisseurAchat.builder().fournisseurId("s1")
+                        .lignesAchat(List.of(LigneAchat.builder().produitRef("P1").designation("Ciment").unite("SAC")
+                                .quantiteAchetee(10.0).prixAchatUnitaireHT(50.0).tva(20.0).build())).build()))
+                .clientsVente(List.of(
+                        ClientVente.builder().clientId("c1").lignesVente(List.of(LigneVente.builder()
+                                .produitRef("P1").designation("Ciment").unite("SAC").quantiteVendue(4.0).build())).build(),
+                        ClientVente.builder().clientId("c2").lignesVente(List.of(LigneVente.builder()
+                                .produitRef("P1").designation("Ciment").unite("SAC").quantiteVendue(6.0).build())).build()))
+                .build()), out);
+
+        // 3 BCs lus au fil du flux, une ligne par client de chaque produit
+        assertEquals(6, lignes);
+        try (Workbook workbook = WorkbookFactory.create(new ByteArrayInputStream(out.toByteArray()))) {
+            Sheet sheet = workbook.getSheet("Export Import Format");
+            assertEquals(6, sheet.getLastRowNum());
+            assertEquals("N° BC", sheet.getRow(0).getCell(0).getStringCellValue());
+            assertEquals("BC-0", sheet.getRow(1).getCell(0).getStringCellValue());
+            assertEquals("Fournisseur X", sheet.getRow(1).getCell(1).getStringCellValue());
+            assertEquals("BC-2", sheet.getRow(6).getCell(0).getStringCellValue());
+            assertEquals(10.0, sheet.getRow(1).getCell(10).getNumericCellValue());
+            // Couleurs de colonnes conservées en SXSSF
+            XSSFColor couleur = ((XSSFCellStyle) sheet.getRow(0).getCell(0).getCellStyle()).getFillForegroundXSSFColor();
+            assertArrayEquals(new byte[]{(byte) 0xDA, (byte) 0xE9, (byte) 0xF8}, couleur.getRGB());
+        }
+    }
+
+    @Test
+    void testExportGrandLivreStreaming_SoldeProgressif() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int lignes = service.exportGrandLivreStreaming(curseur(3), "3421", out);
+
+        assertEquals(3, lignes);
+        try (Workbook workbook = WorkbookFactory.create(new ByteArrayInputStream(out.toByteArray()))) {
+            Sheet sheet = workbook.getSheetAt(0);
+            assertEquals(100.0 + 101.5 + 103.0, sheet.getRow(3).getCell(6).getNumericCellValue(), 0.001);
+        }
+    }
+
+    /**
+     * Compare temps et pic de heap entre l'export XSSF en mémoire et l'export en flux SXSSF.
+     */
+    @Test
+    @Tag("benchmark")
+    void benchmarkExportJournal() throws Exception {
+        for (String taille : TAILLES.split(",")) {
+            int nbLignes = Integer.parseInt(taille.trim());
+            int nbEcritures = nbLignes / 2;
+
+            if (nbLignes <= MAX_LIGNES_XSSF) {
+                Mesure xssf = mesurer(() -> {
+                    List<EcritureComptable> ecritures = new ArrayList<>(nbEcritures);
+                    curseur(nbEcritures).forEach(ecritures::add);
+                    return service.exportJournalComptable(ecritures).length;
+                });
+                log.info(String.format("Export journal XSSF   %,9d lignes: %,6d ms, pic heap %,5d Mo, %,d octets",
+                        nbLignes, xssf.dureeMs, xssf.picHeapMo, xssf.taille));
+            }
+
+            Mesure sxssf = mesurer(() -> {
+                CompteurOctets out = new CompteurOctets();
+                service.exportJournalComptableStreaming(curseur(nbEcritures), out);
+                return out.octets;
+            });
+            log.info(String.format("Export journal SXSSF  %,9d lignes: %,6d ms, pic heap %,5d Mo, %,d octets",
+                    nbLignes, sxssf.dureeMs, sxssf.picHeapMo, sxssf.taille));
+
+            assertTrue(sxssf.taille > 0);
+        }
+    }
+
+    private interface Export {
+        long executer() throws Exception;
+    }
+
+    private record Mesure(long dureeMs, long picHeapMo, long taille) {
+    }
+
+    private static Mesure mesurer(Export export) throws Exception {
+        System.gc();
+        List<MemoryPoolMXBean> pools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(p -> p.getType() == MemoryType.HEAP)
+                .toList();
+        pools.forEach(MemoryPoolMXBean::resetPeakUsage);
+        long debut = System.nanoTime();
+        long taille = export.executer();
+        long duree = (System.nanoTime() - debut) / 1_000_000;
+        long pic = pools.stream().mapToLong(p -> p.getPeakUsage().getUsed()).sum();
+        return new Mesure(duree, pic / (1024 * 1024), taille);
+    }
+
+    /** Flux de sortie qui ne conserve rien (simule la réponse HTTP). */
+    private static class CompteurOctets extends OutputStream {
+        long octets;
+
+        @Override
+        public void write(int b) {
+            octets++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            octets += len;
+        }
+    }
+}
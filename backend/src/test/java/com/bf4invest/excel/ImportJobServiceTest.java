@@ -0,0 +1,107 @@
+package com.bf4invest.excel;
+
+import com.bf4invest.dto.ImportResult;
+import com.bf4invest.repository.ImportLogRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ImportJobServiceTest {
+
+    @Mock
+    private ExcelImportService excelImportService;
+
+    @Mock
+    private ImportLogRepository importLogRepository;
+
+    @InjectMocks
+    private ImportJobService importJobService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(importJobService, "maxConcurrent", 1);
+        ReflectionTestUtils.setField(importJobService, "queueCapacity", 1);
+        ReflectionTestUtils.setField(importJobService, "retentionMinutes", 60L);
+        ReflectionTestUtils.setField(importJobService, "attenteMaxMinutes", 1L);
+        importJobService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        importJobService.arreter();
+    }
+
+    private static MultipartFile fichier(String nom) throws IOException {
+        MultipartFile file = mock(MultipartFile.class);
+        when(file.getOriginalFilename()).thenReturn(nom);
+        when(file.getInputStream()).thenReturn(new ByteArrayInputStream(new byte[] { 1, 2, 3 }));
+        return file;
+    }
+
+    @Test
+    void testFileAttente_AnnulationEnAttenteEtEnCours() throws Exception {
+        CountDownLatch demarre = new CountDownLatch(1);
+        // Premier import : avance jusqu'à ce que l'annulation soit demandée
+        when(excelImportService.importExcel(any(), any())).thenAnswer(invocation -> {
+            ImportProgression progression = invocation.getArgument(1);
+            progression.avancer(10, 40);
+            demarre.countDown();
+            while (!progression.annulationDemandee()) {
+                Thread.sleep(5);
+            }
+            return new ImportResult();
+        });
+
+        ImportJob enCours = importJobService.soumettre(ImportJob.Type.BC, fichier("a.xlsx"));
+        assertTrue(demarre.await(5, TimeUnit.SECONDS));
+        ImportJob enAttente = importJobService.soumettre(ImportJob.Type.PRODUITS, fichier("b.xlsx"));
+
+        // Pool d'un thread et file d'une place : le troisième envoi est refusé
+        MultipartFile troisieme = fichier("c.xlsx");
+        assertThrows(IllegalStateException.class, () -> importJobService.soumettre(ImportJob.Type.BC, troisieme));
+
+        assertEquals(ImportJob.Statut.EN_COURS, enCours.getStatut());
+        assertEquals(25, enCours.getPourcentage());
+        assertEquals(ImportJob.Statut.EN_ATTENTE, enAttente.getStatut());
+
+        // Annulé avant démarrage : jamais exécuté
+        importJobService.annuler(enAttente.getId());
+        assertEquals(ImportJob.Statut.ANNULE, enAttente.getStatut());
+        verify(excelImportService, never()).importProductCatalog(any(), any());
+
+        // Annulé en cours : l'import s'arrête à la ligne suivante
+        importJobService.annuler(enCours.getId());
+        importJobService.attendre(enCours);
+        assertEquals(ImportJob.Statut.ANNULE, enCours.getStatut());
+        assertFalse(enCours.isRapportDisponible());
+        assertFalse(java.nio.file.Files.exists(enCours.getFichier().getChemin()));
+    }
+
+    @Test
+    void testExecution_ErreurFataleTermineLeJob() throws Exception {
+        when(excelImportService.importExcel(any(), any())).thenThrow(new OutOfMemoryError("Java heap space"));
+
+        ImportJob job = importJobService.attendre(importJobService.soumettre(ImportJob.Type.BC, fichier("gros.xlsx")));
+
+        assertEquals(ImportJob.Statut.ECHOUE, job.getStatut());
+        assertNotNull(job.getFin());
+        assertFalse(job.getResultat().getErrors().isEmpty());
+        assertFalse(java.nio.file.Files.exists(job.getFichier().getChemin()));
+    }
+}
@@ -0,0 +1,131 @@
+package com.bf4invest.excel;
+
+import com.bf4invest.dto.ImportResult;
+import com.bf4invest.model.TransactionBancaire;
+import com.bf4invest.repository.TransactionBancaireRepository;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.bson.BsonObjectId;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.Pair;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ReleveBancaireImportServiceTest {
+
+    private static TransactionBancaire transaction(String libelle, Double debit, String reference) {
+        return TransactionBancaire.builder()
+                .dateOperation(LocalDate.of(2025, 3, 4))
+                .libelle(libelle).debit(debit).reference(reference)
+                .mois(3).annee(2025)
+                .build();
+    }
+
+    @Test
+    void testEmpreinte_StableMalgreFormatEtDistincteParRang() {
+        String cle = ReleveBancaireImportService.cleEmpreinte(transaction("VIR  recu client X ", 1500.0, "R1"));
+        // Espaces, casse et écriture du montant ne changent pas l'empreinte
+        assertEquals(cle, ReleveBancaireImportService.cleEmpreinte(transaction("vir recu CLIENT x", 1500.004, "R1")));
+        assertNotEquals(cle, ReleveBancaireImportService.cleEmpreinte(transaction("VIR recu client X", 1500.1, "R1")));
+
+        // Deux lignes identiques dans un même relevé restent deux transactions distinctes
+        String premiere = ReleveBancaireImportService.empreinte(cle, 1);
+        assertEquals(premiere, ReleveBancaireImportService.empreinte(cle, 1));
+        assertNotEquals(premiere, ReleveBancaireImportService.empreinte(cle, 2));
+        assertEquals(64, premiere.length());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testImport_LignesExistantesMisesAJourEtTransactionsRapprocheesConservees() throws Exception {
+        TransactionBancaire presente = transaction("VIR recu client X", 1500.0, "R1");
+        presente.setId("presente");
+        presente.setEmpreinte(ReleveBancaireImportService.empreinte(ReleveBancaireImportService.cleEmpreinte(presente), 1));
+        presente.setMapped(true);
+        TransactionBancaire rapprochee = transaction("PRLV fournisseur", 800.0, "R2");
+        rapprochee.setId("rapprochee");
+        rapprochee.setEmpreinte("e-rapprochee");
+        rapprochee.setPaiementId("paiement-1");
+        TransactionBancaire libre = transaction("FRAIS", 12.0, "R3");
+        libre.setId("libre");
+        libre.setEmpreinte("e-libre");
+
+        TransactionBancaireRepository repository = mock(TransactionBancaireRepository.class);
+        when(repository.findByMoisAndAnnee(3, 2025)).thenReturn(List.of(presente, rapprochee, libre));
+        MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+        BulkOperations ops = mock(BulkOperations.class);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, TransactionBancaire.class)).thenReturn(ops);
+        when(ops.upsert(anyList())).thenReturn(ops);
+        when(ops.execute()).thenReturn(BulkWriteResult.acknowledged(0, 0, 0, 0,
+                List.of(new BulkWriteUpsert(1, new BsonObjectId())), List.of()));
+
+        // Ligne déjà importée (libellé réécrit, date de valeur ajoutée) et une ligne nouvelle
+        ImportResult result = new ReleveBancaireImportService(repository, mongoTemplate).importReleveBancaire(
+                releve(new Object[]{"04/03/2025", "05/03/2025", "Vir recu  CLIENT x", 1500.0, "R1"},
+                        new Object[]{"06/03/2025", "", "CHQ 123", 250.0, "R4"}), 3, 2025);
+
+        ArgumentCaptor<List<Pair<Query, Update>>> upserts = ArgumentCaptor.forClass(List.class);
+        verify(ops).upsert(upserts.capture());
+        Update miseAJour = upserts.getValue().get(0).getSecond();
+        assertEquals(presente.getEmpreinte(), upserts.getValue().get(0).getFirst().getQueryObject().get("empreinte"));
+        Document set = (Document) miseAJour.getUpdateObject().get("$set");
+        Document setOnInsert = (Document) miseAJour.getUpdateObject().get("$setOnInsert");
+        assertEquals("Vir recu  CLIENT x", set.get("libelle"));
+        assertEquals(LocalDate.of(2025, 3, 5), set.get("dateValeur"));
+        // Le rapprochement n'est écrit qu'à la création
+        assertEquals(false, setOnInsert.get("mapped"));
+        assertFalse(set.containsKey("mapped"));
+
+        // Seule la transaction absente et non rapprochée est supprimée
+        ArgumentCaptor<Query> suppression = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).remove(suppression.capture(), eq(TransactionBancaire.class));
+        assertEquals(new Document("$in", List.of("libre")), suppression.getValue().getQueryObject().get("_id"));
+        verify(mongoTemplate, never()).remove(any(TransactionBancaire.class));
+        assertEquals(2, result.getSuccessCount());
+        assertTrue(result.getWarnings().stream().anyMatch(w -> w.startsWith("1 transaction(s) rapprochée(s)")));
+        assertTrue(result.getWarnings().contains(
+                "1 nouvelle(s) transaction(s), 1 mise(s) à jour (rapprochements conservés), 1 supprimée(s)"));
+    }
+
+    private static MockMultipartFile releve(Object[]... lignes) throws Exception {
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            Sheet sheet = workbook.createSheet();
+            String[] entetes = {"Date", "Valeur", "Libellé", "Débit", "Référence"};
+            Row entete = sheet.createRow(0);
+            for (int i = 0; i < entetes.length; i++) {
+                entete.createCell(i).setCellValue(entetes[i]);
+            }
+            for (int l = 0; l < lignes.length; l++) {
+                Row row = sheet.createRow(l + 1);
+                for (int i = 0; i < lignes[l].length; i++) {
+                    if (lignes[l][i] instanceof Double montant) {
+                        row.createCell(i).setCellValue(montant);
+                    } else {
+                        row.createCell(i).setCellValue((String) lignes[l][i]);
+                    }
+                }
+            }
+            workbook.write(out);
+            return new MockMultipartFile("file", "releve.xlsx",
+                    "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet", out.toByteArray());
+        }
+    }
+}
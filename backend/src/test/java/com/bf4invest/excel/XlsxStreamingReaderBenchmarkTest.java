@@ -0,0 +1,213 @@
+package com.bf4invest.excel;
+
+import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class XlsxStreamingReaderBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(XlsxStreamingReaderBenchmarkTest.class);
+
+    /** Tailles mesurées, ex: -Dbenchmark.import.lignes=10000,100000,500000 */
+    private static final String TAILLES = System.getProperty("benchmark.import.lignes", "10000");
+    /** Au-delà, la lecture WorkbookFactory n'est pas mesurée (heap prohibitif). */
+    private static final int MAX_LIGNES_DOM = 100_000;
+
+    private static final String[] ENTETES = {
+            "N° BC", "FRS", "N FAC FRS", "N° FAC VTE", "DATE FAC VTF", "ICE", "CLENT",
+            "N° ARTI", "DESIGNATION", "U", "QT ACHAT", "PRIX ACHAT U HT",
+            "PRIX ACHAT U TTC", "PRIX ACHAT T HT", "TX TVA", "FACTURE ACHAT TTC",
+            "QT LIVREE CLT", "PRIX DE VENTE U HT", "FACTURE VENTE T TTC"
+    };
+
+    /**
+     * Génère un fichier d'import synthétique au format historique BC.
+     */
+    private static File genererFichier(int nbLignes) throws Exception {
+        File fichier = Files.createTempFile("import-bench-", ".xlsx").toFile();
+        fichier.deleteOnExit();
+        try (SXSSFWorkbook workbook = new SXSSFWorkbook(200);
+             OutputStream out = new FileOutputStream(fichier)) {
+            Sheet sheet = workbook.createSheet("Historique BC");
+            CellStyle dateStyle = workbook.createCellStyle();
+            dateStyle.setDataFormat(workbook.createDataFormat().getFormat("dd/mm/yyyy"));
+
+            Row header = sheet.createRow(0);
+            for (int i = 0; i < ENTETES.length; i++) {
+                header.createCell(i).setCellValue(ENTETES[i]);
+            }
+            LocalDate base = LocalDate.of(2024, 1, 1);
+            for (int r = 1; r <= nbLignes; r++) {
+                Row row = sheet.createRow(r);
+                int bc = r / 5;
+                double qte = 1 + r % 20;
+                double prix = 10 + (r % 300) * 0.75;
+                row.createCell(0).setCellValue("BC-" + bc);
+                row.createCell(1).setCellValue("Fournisseur " + (bc % 40));
+                row.createCell(2).setCellValue("FA-" + bc);
+                row.createCell(3).setCellValue("FV-" + bc);
+                Cell date = row.createCell(4);
+                date.setCellValue(Date.from(base.plusDays(bc % 365).atStartOfDay(ZoneId.systemDefault()).toInstant()));
+                date.setCellStyle(dateStyle);
+                row.createCell(5).setCellValue("00" + (1000000 + bc % 200));
+                row.createCell(6).setCellValue("Client " + (bc % 200));
+                row.createCell(7).setCellValue("ART-" + (r % 1000));
+                row.createCell(8).setCellValue("Article " + (r % 1000));
+                row.createCell(9).setCellValue("U");
+                row.createCell(10).setCellValue(qte);
+                row.createCell(11).setCellValue(prix);
+                row.createCell(12).setCellValue(prix * 1.2);
+                row.createCell(13).setCellValue(prix * qte);
+                row.createCell(14).setCellValue(0.2);
+                row.createCell(15).setCellValue(prix * qte * 1.2);
+                row.createCell(16).setCellValue(qte);
+                row.createCell(17).setCellValue(prix * 1.3);
+                row.createCell(18).setCellFormula("R" + (r + 1) + "*Q" + (r + 1) + "*1.2");
+            }
+            workbook.write(out);
+            workbook.dispose();
+        }
+        return fichier;
+    }
+
+    @Test
+    void testLectureFlux_IdentiqueALaLectureComplete() throws Exception {
+        File fichier = genererFichier(50);
+        DataFormatter formatter = new DataFormatter();
+
+        try (Workbook workbook = WorkbookFactory.create(fichier, null, true);
+             XlsxStreamingReader reader = new XlsxStreamingReader(fichier)) {
+            Sheet sheet = workbook.getSheetAt(0);
+            assertEquals(sheet.getLastRowNum(), reader.getDerniereLigne());
+            assertEquals("N° BC", reader.getEntete().getCell(0).getStringCellValue());
+
+            int lignes = 0;
+            while (reader.hasNext()) {
+                Row flux = reader.next();
+                Row dom = sheet.getRow(flux.getRowNum());
+                for (int c = 0; c < 18; c++) {
+                    Cell attendu = dom.getCell(c);
+                    Cell lu = flux.getCell(c);
+                    assertEquals(attendu.getCellType(), lu.getCellType(), "colonne " + c);
+                    assertEquals(formatter.formatCellValue(attendu), formatter.formatCellValue(lu), "colonne " + c);
+                }
+                assertTrue(DateUtil.isCellDateFormatted(flux.getCell(4)));
+                lignes++;
+            }
+            assertEquals(50, lignes);
+        }
+    }
+
+    @Test
+    void testLectureFlux_LigneVideEtTexteInline() throws Exception {
+        File fichier = Files.createTempFile("import-inline-", ".xlsx").toFile();
+        fichier.deleteOnExit();
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); OutputStream out = new FileOutputStream(fichier)) {
+            Sheet sheet = workbook.createSheet();
+            sheet.createRow(0).createCell(0).setCellValue("N° BC");
+            sheet.createRow(3).createCell(2).setCellValue(true);
+            workbook.write(out);
+        }
+
+        try (XlsxStreamingReader reader = new XlsxStreamingReader(fichier)) {
+            Row row = reader.next();
+            assertEquals(3, row.getRowNum());
+            assertNull(row.getCell(0));
+            assertTrue(row.getCell(2).getBooleanCellValue());
+            assertFalse(reader.hasNext());
+        }
+    }
+
+    /**
+     * Compare temps et pic de heap : WorkbookFactory (DOM) vs lecture en flux, toutes cellules lues.
+     */
+    @Test
+    @Tag("benchmark")
+    void benchmarkLectureImport() throws Exception {
+        for (String taille : TAILLES.split(",")) {
+            int nbLignes = Integer.parseInt(taille.trim());
+            File fichier = genererFichier(nbLignes);
+
+            if (nbLignes <= MAX_LIGNES_DOM) {
+                Mesure dom = mesurer(() -> {
+                    long cellules = 0;
+                    try (Workbook workbook = WorkbookFactory.create(fichier, null, true)) {
+                        for (Row row : workbook.getSheetAt(0)) {
+                            cellules += lire(row);
+                        }
+                    }
+                    return cellules;
+                });
+                log.info(String.format("Lecture import DOM    %,9d lignes (%,d Ko): %,6d ms, pic heap %,5d Mo",
+                        nbLignes, fichier.length() / 1024, dom.dureeMs, dom.picHeapMo));
+            }
+
+            Mesure flux = mesurer(() -> {
+                long cellules = 0;
+                try (XlsxStreamingReader reader = new XlsxStreamingReader(fichier)) {
+                    while (reader.hasNext()) {
+                        cellules += lire(reader.next());
+                    }
+                }
+                return cellules;
+            });
+            log.info(String.format("Lecture import FLUX   %,9d lignes (%,d Ko): %,6d ms, pic heap %,5d Mo",
+                    nbLignes, fichier.length() / 1024, flux.dureeMs, flux.picHeapMo));
+
+            assertTrue(flux.valeur >= nbLignes * 18L);
+            fichier.delete();
+        }
+    }
+
+    private static long lire(Row row) {
+        long cellules = 0;
+        for (Cell cell : row) {
+            switch (cell.getCellType()) {
+                case NUMERIC -> cell.getNumericCellValue();
+                case STRING -> cell.getStringCellValue();
+                default -> {
+                }
+            }
+            cellules++;
+        }
+        return cellules;
+    }
+
+    private interface Lecture {
+        long executer() throws Exception;
+    }
+
+    private record Mesure(long dureeMs, long picHeapMo, long valeur) {
+    }
+
+    private static Mesure mesurer(Lecture lecture) throws Exception {
+        System.gc();
+        List<MemoryPoolMXBean> pools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(p -> p.getType() == MemoryType.HEAP)
+                .toList();
+        pools.forEach(MemoryPoolMXBean::resetPeakUsage);
+        long debut = System.nanoTime();
+        long valeur = lecture.executer();
+        long duree = (System.nanoTime() - debut) / 1_000_000;
+        long pic = pools.stream().mapToLong(p -> p.getPeakUsage().getUsed()).sum();
+        return new Mesure(duree, pic / (1024 * 1024), valeur);
+    }
+}
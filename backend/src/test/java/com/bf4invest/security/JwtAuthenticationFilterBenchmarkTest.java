@@ -0,0 +1,159 @@
+package com.bf4invest.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtAuthenticationFilterBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(JwtAuthenticationFilterBenchmarkTest.class);
+
+    /** Requêtes mesurées par variante, ex: -Dbenchmark.jwt.requetes=200000 */
+    private static final int REQUETES = Integer.getInteger("benchmark.jwt.requetes", 20_000);
+
+    private static final String SECRET = "benchmark-secret-key-with-at-least-256-bits-0123456789";
+
+    private JwtUtil jwtUtil;
+    private VerifiedTokenCache cache;
+    private JwtAuthenticationFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        jwtUtil = new JwtUtil(new MockEnvironment());
+        ReflectionTestUtils.setField(jwtUtil, "secret", SECRET);
+        ReflectionTestUtils.setField(jwtUtil, "expiration", 3_600_000L);
+        ReflectionTestUtils.setField(jwtUtil, "refreshExpiration", 604_800_000L);
+        cache = new VerifiedTokenCache();
+        ReflectionTestUtils.setField(cache, "maxEntries", 100);
+        filter = new JwtAuthenticationFilter(jwtUtil, cache);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private Authentication filtrer(String token) throws Exception {
+        SecurityContextHolder.clearContext();
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/dashboard/kpis");
+        request.addHeader("Authorization", "Bearer " + token);
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+
+    @Test
+    void testFiltre_AuthentifieEtMetEnCacheJusquaExpiration() throws Exception {
+        String token = jwtUtil.generateToken("admin@bf4.ma", "ADMIN");
+
+        Authentication auth = filtrer(token);
+        assertNotNull(auth);
+        assertEquals("admin@bf4.ma", auth.getPrincipal());
+        assertTrue(auth.getAuthorities().stream().anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN")));
+        assertEquals(1, cache.size());
+
+        AtomicInteger verifications = new AtomicInteger();
+        cache.get(token, t -> {
+            verifications.incrementAndGet();
+            return jwtUtil.verifier(t);
+        });
+        assertEquals(0, verifications.get());
+    }
+
+    @Test
+    void testFiltre_TokenAltereOuExpireRefuse() throws Exception {
+        String token = jwtUtil.generateToken("admin@bf4.ma", "ADMIN");
+        String altere = token.substring(0, token.length() - 2) + (token.endsWith("A") ? "BB" : "AA");
+        assertNull(filtrer(altere));
+
+        ReflectionTestUtils.setField(jwtUtil, "expiration", -1_000L);
+        assertNull(filtrer(jwtUtil.generateToken("admin@bf4.ma", "ADMIN")));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testCache_EntreeExpireeReverifiee() throws Exception {
+        String token = jwtUtil.generateToken("user@bf4.ma", "USER");
+        cache.get(token, t -> new JwtUtil.JetonVerifie("user@bf4.ma", "USER", null, System.currentTimeMillis() + 20));
+        Thread.sleep(50);
+
+        AtomicInteger verifications = new AtomicInteger();
+        JwtUtil.JetonVerifie jeton = cache.get(token, t -> {
+            verifications.incrementAndGet();
+            return jwtUtil.verifier(t);
+        });
+        assertEquals(1, verifications.get());
+        assertEquals("user@bf4.ma", jeton.username());
+    }
+
+    /**
+     * Coût du filtre par requête : ancien chemin (clé HMAC dérivée et token vérifié 4 fois), vérification unique,
+     * puis token déjà vérifié (cache). Les durées sont affichées, pas comparées (machines de CI hétérogènes).
+     */
+    @Test
+    @Tag("benchmark")
+    void benchmarkSurcoutParRequete() throws Exception {
+        String token = jwtUtil.generateToken("admin@bf4.ma", "ADMIN");
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/dashboard/kpis");
+        request.addHeader("Authorization", "Bearer " + token);
+
+        long ancien = mesurer(() -> ancienneVerification(token));
+        long unique = mesurer(() -> jwtUtil.verifier(token));
+        long filtreAvecCache = mesurer(() -> {
+            SecurityContextHolder.clearContext();
+            filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+            assertNotNull(SecurityContextHolder.getContext().getAuthentication());
+        });
+
+        log.info(String.format("JWT ancien (4 vérifications)  %,8d ns/requête", ancien / REQUETES));
+        log.info(String.format("JWT vérification unique       %,8d ns/requête", unique / REQUETES));
+        log.info(String.format("Filtre JWT (token en cache)   %,8d ns/requête", filtreAvecCache / REQUETES));
+    }
+
+    // Reproduit l'ancien filtre : extractUsername, extractClaim(role), validateToken (extractUsername + extractExpiration)
+    private static void ancienneVerification(String token) {
+        for (int i = 0; i < 4; i++) {
+            Claims claims = Jwts.parser()
+                    .verifyWith(Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8)))
+                    .build()
+                    .parseSignedClaims(token)
+                    .getPayload();
+            assertTrue(claims.getExpiration().after(new Date()));
+        }
+    }
+
+    @FunctionalInterface
+    private interface Requete {
+        void executer() throws Exception;
+    }
+
+    private static long mesurer(Requete requete) throws Exception {
+        // Chauffe du JIT
+        for (int i = 0; i < Math.min(REQUETES, 5_000); i++) {
+            requete.executer();
+        }
+        long debut = System.nanoTime();
+        for (int i = 0; i < REQUETES; i++) {
+            requete.executer();
+        }
+        return System.nanoTime() - debut;
+    }
+}
@@ -0,0 +1,53 @@
+package com.bf4invest.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PublicRateLimitFilterTest {
+
+    private static PublicRateLimitFilter filtre(String proxies) {
+        PublicRateLimitFilter filtre = new PublicRateLimitFilter();
+        ReflectionTestUtils.setField(filtre, "trustedProxiesConfig", proxies);
+        filtre.init();
+        return filtre;
+    }
+
+    private static MockHttpServletRequest requete(String remoteAddr, String xForwardedFor) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/public/produits");
+        request.setRemoteAddr(remoteAddr);
+        if (xForwardedFor != null) {
+            request.addHeader("X-Forwarded-For", xForwardedFor);
+        }
+        return request;
+    }
+
+    @Test
+    void testCleClient_XForwardedForLuSeulementDepuisUnProxyDeConfiance() {
+        PublicRateLimitFilter filtre = filtre("10.0.0.1, 10.0.0.2");
+
+        // Client direct : l'en-tête est ignoré
+        assertEquals("203.0.113.9", filtre.resolveClientKey(requete("203.0.113.9", "1.2.3.4")));
+        // Derrière les proxies : la première adresse en partant de la fin qui n'est pas un proxy
+        assertEquals("198.51.100.7", filtre.resolveClientKey(requete("10.0.0.1", "1.2.3.4, 198.51.100.7, 10.0.0.2")));
+    }
+
+    @Test
+    void testLimite_XForwardedForDifferentAChaqueRequeteSansEffet() throws Exception {
+        PublicRateLimitFilter filtre = filtre("");
+
+        int refusees = 0;
+        for (int i = 0; i < 70; i++) {
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            filtre.doFilter(requete("203.0.113.9", "192.0.2." + i), response, new MockFilterChain());
+            if (response.getStatus() == 429) {
+                refusees++;
+            }
+        }
+        assertEquals(10, refusees);
+    }
+}
@@ -0,0 +1,76 @@
+package com.bf4invest.service;
+
+import com.bf4invest.model.AuditLog;
+import com.bf4invest.model.Charge;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class AuditServiceTest {
+
+    private EcrivainAuditLogs ecrivain;
+    private AuditService auditService;
+
+    @BeforeEach
+    void setUp() {
+        ecrivain = mock(EcrivainAuditLogs.class);
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules()
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        auditService = new AuditService(ecrivain, mock(MongoTemplate.class), objectMapper);
+        ReflectionTestUtils.setField(auditService, "modeDiff", true);
+    }
+
+    @Test
+    void testLogUpdate_ModeDiff_ConserveUniquementLesChampsModifies() {
+        Charge avant = Charge.builder().id("c1").libelle("Loyer").montant(1000.0)
+                .dateEcheance(LocalDate.of(2025, 1, 31)).statut("PREVUE").build();
+        Charge apres = Charge.builder().id("c1").libelle("Loyer").montant(1200.0)
+                .dateEcheance(LocalDate.of(2025, 1, 31)).statut("PAYEE").build();
+
+        auditService.logUpdate("Charge", "c1", avant, apres);
+
+        AuditLog entree = capturer();
+        assertEquals(Map.of("montant", 1000.0, "statut", "PREVUE"), entree.getOldValue());
+        assertEquals(Map.of("montant", 1200.0, "statut", "PAYEE"), entree.getNewValue());
+        assertEquals("SYSTEM", entree.getUserId());
+    }
+
+    @Test
+    void testLogUpdate_ValeursSimplesConserveesTellesQuelles() {
+        auditService.logUpdate("Client", "cl1", "ACME", "Client ACME SARL modifié");
+
+        AuditLog entree = capturer();
+        assertEquals("ACME", entree.getOldValue());
+        assertEquals("Client ACME SARL modifié", entree.getNewValue());
+    }
+
+    @Test
+    void testLogUpdate_SansModeDiff_ObjetsComplets() {
+        ReflectionTestUtils.setField(auditService, "modeDiff", false);
+        Charge avant = Charge.builder().id("c1").montant(1000.0).build();
+        Charge apres = Charge.builder().id("c1").montant(1200.0).build();
+
+        auditService.logUpdate("Charge", "c1", avant, apres);
+
+        AuditLog entree = capturer();
+        assertSame(avant, entree.getOldValue());
+        assertSame(apres, entree.getNewValue());
+    }
+
+    private AuditLog capturer() {
+        ArgumentCaptor<AuditLog> captor = ArgumentCaptor.forClass(AuditLog.class);
+        verify(ecrivain).ajouter(captor.capture());
+        return captor.getValue();
+    }
+}
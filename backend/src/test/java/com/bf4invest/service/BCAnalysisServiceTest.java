@@ -0,0 +1,45 @@
+package com.bf4invest.service;
+
+import com.bf4invest.dto.DashboardKpiResponse;
+import com.bf4invest.model.BandeCommande;
+import com.bf4invest.model.ClientVente;
+import com.bf4invest.model.FournisseurAchat;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BCAnalysisServiceTest {
+
+    @Test
+    void testAnalyzeBCs_PartenairesMultiEtAncienneStructure() {
+        BandeCommande multi = BandeCommande.builder().id("bc-1")
+                .fournisseursAchat(List.of(
+                        FournisseurAchat.builder().fournisseurId("f1").totalAchatHT(100.0).build(),
+                        FournisseurAchat.builder().fournisseurId("f2").totalAchatHT(50.0).build()))
+                .clientsVente(List.of(ClientVente.builder().clientId("c1").totalVenteHT(200.0).build()))
+                .build();
+        BandeCommande ancienne = BandeCommande.builder().id("bc-2").totalAchatHT(30.0).totalVenteHT(60.0).build();
+        ReflectionTestUtils.setField(ancienne, "fournisseurId", "f1");
+        ReflectionTestUtils.setField(ancienne, "clientId", "c2");
+        DonneesDashboard donnees = new DonneesDashboard(LocalDate.of(2026, 1, 1), LocalDate.of(2026, 12, 31),
+                List.of(), List.of(), List.of(), List.of(), List.of(multi, ancienne), List.of(), List.of(),
+                Map.of(), Map.of(), List.of());
+
+        DashboardKpiResponse.BCAnalysis analyse = new BCAnalysisService().analyzeBCs(donnees);
+
+        Map<String, Double> parFournisseur = analyse.getPerformanceParFournisseur().stream()
+                .collect(Collectors.toMap(DashboardKpiResponse.BCPerformance::getPartenaireId,
+                        DashboardKpiResponse.BCPerformance::getMontantTotal));
+        assertEquals(Map.of("f1", 130.0, "f2", 50.0), parFournisseur);
+        Map<String, Double> parClient = analyse.getPerformanceParClient().stream()
+                .collect(Collectors.toMap(DashboardKpiResponse.BCPerformance::getPartenaireId,
+                        DashboardKpiResponse.BCPerformance::getMontantTotal));
+        assertEquals(Map.of("c1", 200.0, "c2", 60.0), parClient);
+    }
+}
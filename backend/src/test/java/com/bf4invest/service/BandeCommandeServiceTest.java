@@ -0,0 +1,81 @@
+package com.bf4invest.service;
+
+import com.bf4invest.model.BandeCommande;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BandeCommandeServiceTest {
+
+    @Mock
+    private AuditService auditService;
+    @Mock
+    private ProductPriceService productPriceService;
+    @Mock
+    private DashboardAggregateService dashboardAggregateService;
+    @Mock
+    private MongoTemplate mongoTemplate;
+    @Mock
+    private BulkOperations ops;
+
+    @InjectMocks
+    private BandeCommandeService bandeCommandeService;
+
+    @Test
+    void testEnregistrerEnMasse_BCsRefuseesSignaleesLesAutresEnregistrees() {
+        BandeCommande ancienne = BandeCommande.builder().id("bc-existante").numeroBC("BC-0").etat("envoyee")
+                .dateBC(LocalDate.of(2026, 1, 5)).build();
+        when(mongoTemplate.find(any(Query.class), eq(BandeCommande.class))).thenReturn(List.of(ancienne));
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, BandeCommande.class)).thenReturn(ops);
+        when(ops.insert(anyList())).thenReturn(ops);
+        when(ops.replaceOne(any(Query.class), any())).thenReturn(ops);
+        // Insertion : la première nouvelle BC est refusée (numéro en doublon) ; remplacement accepté
+        when(ops.execute())
+                .thenThrow(new BulkOperationException("E11000", new MongoBulkWriteException(
+                        BulkWriteResult.acknowledged(1, 0, 0, 0, List.of(), List.of()),
+                        List.of(new BulkWriteError(11000, "E11000 duplicate key numeroBC", new BsonDocument(), 0)),
+                        null, new ServerAddress(), Set.of())))
+                .thenReturn(BulkWriteResult.acknowledged(0, 1, 0, 1, List.of(), List.of()));
+
+        BandeCommande doublon = BandeCommande.builder().numeroBC("BC-1").dateBC(LocalDate.of(2026, 2, 1)).build();
+        BandeCommande nouvelle = BandeCommande.builder().numeroBC("BC-2").dateBC(LocalDate.of(2026, 2, 2)).build();
+        BandeCommande modifiee = BandeCommande.builder().id("bc-existante").numeroBC("BC-0")
+                .dateBC(LocalDate.of(2026, 1, 5)).build();
+        Map<BandeCommande, Exception> echecs = new LinkedHashMap<>();
+
+        List<BandeCommande> enregistrees = bandeCommandeService.enregistrerEnMasse(
+                List.of(doublon, nouvelle, modifiee), 500, echecs::put);
+
+        assertEquals(List.of("BC-2", "BC-0"), enregistrees.stream().map(BandeCommande::getNumeroBC).toList());
+        assertEquals(List.of("BC-1"), echecs.keySet().stream().map(BandeCommande::getNumeroBC).toList());
+        assertNotNull(nouvelle.getId());
+        verify(auditService).logCreate(eq("BandeCommande"), eq(nouvelle.getId()), any());
+        verify(auditService, never()).logCreate(eq("BandeCommande"), eq(doublon.getId()), any());
+        verify(auditService).logUpdate(eq("BandeCommande"), eq("bc-existante"), eq("envoyee"), any());
+        verify(productPriceService).synchroniserBCs(List.of(nouvelle.getId(), "bc-existante"));
+    }
+}
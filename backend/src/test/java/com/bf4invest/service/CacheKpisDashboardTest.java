@@ -0,0 +1,131 @@
+package com.bf4invest.service;
+
+import com.bf4invest.dto.DashboardKpiResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class CacheKpisDashboardTest {
+
+    private static final LocalDate FROM = LocalDate.of(2025, 1, 1);
+    private static final LocalDate TO = LocalDate.of(2025, 3, 31);
+
+    private VersionDonneesDashboard version;
+    private CacheKpisDashboard cache;
+
+    @BeforeEach
+    void setUp() {
+        version = new VersionDonneesDashboard(mock(MongoTemplate.class));
+        cache = new CacheKpisDashboard(version);
+        ReflectionTestUtils.setField(cache, "dureeVieSecondes", 300L);
+    }
+
+    @Test
+    void testObtenir_ResultatReutiliseJusquaChangementDeVersion() {
+        AtomicInteger calculs = new AtomicInteger();
+
+        DashboardKpiResponse premier = cache.obtenir(FROM, TO, () -> kpis(calculs.incrementAndGet()));
+        DashboardKpiResponse second = cache.obtenir(FROM, TO, () -> kpis(calculs.incrementAndGet()));
+        assertSame(premier, second);
+        assertEquals(1, calculs.get());
+
+        // Autre période : calcul séparé
+        cache.obtenir(FROM, null, () -> kpis(calculs.incrementAndGet()));
+        assertEquals(2, calculs.get());
+
+        // Écriture d'une facture / BC / paiement / charge
+        version.incrementer();
+        DashboardKpiResponse apresEcriture = cache.obtenir(FROM, TO, () -> kpis(calculs.incrementAndGet()));
+        assertNotSame(premier, apresEcriture);
+        assertEquals(3, calculs.get());
+
+        Map<String, Object> stats = cache.statistiques();
+        assertEquals(1L, stats.get("hits"));
+        assertEquals(3L, stats.get("misses"));
+    }
+
+    @Test
+    void testObtenir_DureeDeVieExpiree() {
+        ReflectionTestUtils.setField(cache, "dureeVieSecondes", 0L);
+        AtomicInteger calculs = new AtomicInteger();
+
+        cache.obtenir(FROM, TO, () -> kpis(calculs.incrementAndGet()));
+        cache.obtenir(FROM, TO, () -> kpis(calculs.incrementAndGet()));
+
+        assertEquals(2, calculs.get());
+    }
+
+    @Test
+    void testObtenir_RequetesSimultaneesPartagentUnCalcul() throws Exception {
+        int requetes = 8;
+        AtomicInteger calculs = new AtomicInteger();
+        CountDownLatch calculDemarre = new CountDownLatch(1);
+        CountDownLatch liberer = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(requetes);
+        try {
+            Future<DashboardKpiResponse> meneur = pool.submit(() -> cache.obtenir(FROM, TO, () -> {
+                calculDemarre.countDown();
+                attendre(liberer);
+                return kpis(calculs.incrementAndGet());
+            }));
+            assertTrue(calculDemarre.await(5, TimeUnit.SECONDS));
+
+            Future<?>[] suiveurs = new Future<?>[requetes - 1];
+            for (int i = 0; i < suiveurs.length; i++) {
+                suiveurs[i] = pool.submit(() -> cache.obtenir(FROM, TO, () -> kpis(calculs.incrementAndGet())));
+            }
+            // Les suiveurs doivent être en attente du calcul en cours avant qu'il ne se termine
+            long limite = System.currentTimeMillis() + 5000;
+            while ((long) cache.statistiques().get("partages") < suiveurs.length && System.currentTimeMillis() < limite) {
+                Thread.sleep(5);
+            }
+            liberer.countDown();
+
+            DashboardKpiResponse resultat = meneur.get(5, TimeUnit.SECONDS);
+            for (Future<?> suiveur : suiveurs) {
+                assertSame(resultat, suiveur.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, calculs.get());
+            assertEquals((long) suiveurs.length, cache.statistiques().get("partages"));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void testObtenir_EchecPropageSansMiseEnCache() {
+        assertThrows(IllegalStateException.class, () -> cache.obtenir(FROM, TO, () -> {
+            throw new IllegalStateException("Mongo indisponible");
+        }));
+
+        AtomicInteger calculs = new AtomicInteger();
+        cache.obtenir(FROM, TO, () -> kpis(calculs.incrementAndGet()));
+        assertEquals(1, calculs.get());
+        assertEquals(1L, cache.statistiques().get("echecs"));
+    }
+
+    private static DashboardKpiResponse kpis(int numero) {
+        return DashboardKpiResponse.builder().caHT((double) numero).build();
+    }
+
+    private static void attendre(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.bf4invest.service;
+
+import com.bf4invest.dto.OcrExtractResult;
+import com.bf4invest.model.OcrResultatCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class CacheResultatsOcrTest {
+
+    private static final CacheResultatsOcr.Cle CLE = new CacheResultatsOcr.Cle(
+            CacheResultatsOcr.empreinte("facture-sorimac.jpg".getBytes()), "openrouter:openrouter/free>gemini:-", "v1");
+
+    private MongoTemplate mongoTemplate;
+    private CacheResultatsOcr cache;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        cache = new CacheResultatsOcr(mongoTemplate);
+        ReflectionTestUtils.setField(cache, "actif", true);
+        ReflectionTestUtils.setField(cache, "entreesMemoireMax", 2);
+    }
+
+    @Test
+    void testObtenir_FichierIdentiqueServiSansNouvelAppel() throws Exception {
+        AtomicInteger appels = new AtomicInteger();
+
+        OcrExtractResult premier = cache.obtenir(CLE, () -> resultat(appels.incrementAndGet()));
+        OcrExtractResult second = cache.obtenir(CLE, () -> resultat(appels.incrementAndGet()));
+
+        assertEquals(premier, second);
+        assertNotSame(premier, second);
+        assertEquals(1, appels.get());
+        verify(mongoTemplate).save(any(OcrResultatCache.class));
+
+        // Autre prompt : nouvel appel
+        cache.obtenir(new CacheResultatsOcr.Cle(CLE.sha256(), CLE.providers(), "v2"), () -> resultat(appels.incrementAndGet()));
+        assertEquals(2, appels.get());
+
+        Map<String, Object> stats = cache.statistiques();
+        assertEquals(1L, stats.get("hitsMemoire"));
+        assertEquals(2L, stats.get("misses"));
+    }
+
+    @Test
+    void testObtenir_ResultatPersisteApresRedemarrage() throws Exception {
+        OcrExtractResult stocke = resultat(7);
+        when(mongoTemplate.findById(anyString(), eq(OcrResultatCache.class))).thenReturn(
+                OcrResultatCache.builder().resultat(stocke).dureeMs(42_000).build());
+
+        OcrExtractResult obtenu = cache.obtenir(CLE, () -> fail("aucun appel OCR attendu"));
+
+        assertEquals(stocke, obtenu);
+        Map<String, Object> stats = cache.statistiques();
+        assertEquals(1L, stats.get("hitsMongo"));
+        assertEquals(42_000L, stats.get("latenceEconomiseeMs"));
+        verify(mongoTemplate, never()).save(any(OcrResultatCache.class));
+    }
+
+    @Test
+    void testObtenir_EnvoisSimultanesPartagentUnAppel() throws Exception {
+        int envois = 6;
+        AtomicInteger appels = new AtomicInteger();
+        CountDownLatch appelDemarre = new CountDownLatch(1);
+        CountDownLatch liberer = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(envois);
+        try {
+            Future<OcrExtractResult> meneur = pool.submit(() -> cache.obtenir(CLE, () -> {
+                appelDemarre.countDown();
+                attendre(liberer);
+                return resultat(appels.incrementAndGet());
+            }));
+            assertTrue(appelDemarre.await(5, TimeUnit.SECONDS));
+
+            Future<?>[] suiveurs = new Future<?>[envois - 1];
+            for (int i = 0; i < suiveurs.length; i++) {
+                suiveurs[i] = pool.submit(() -> cache.obtenir(CLE, () -> resultat(appels.incrementAndGet())));
+            }
+            long limite = System.currentTimeMillis() + 5000;
+            while ((long) cache.statistiques().get("partages") < suiveurs.length && System.currentTimeMillis() < limite) {
+                Thread.sleep(5);
+            }
+            liberer.countDown();
+
+            OcrExtractResult resultat = meneur.get(5, TimeUnit.SECONDS);
+            for (Future<?> suiveur : suiveurs) {
+                assertEquals(resultat, suiveur.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, appels.get());
+            assertEquals((long) suiveurs.length, cache.statistiques().get("partages"));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void testObtenir_ModificationDuResultatSansEffetSurLeCache() throws Exception {
+        OcrExtractResult premier = cache.obtenir(CLE, () -> OcrExtractResult.builder()
+                .numeroDocument("F01054/25")
+                .lignes(new ArrayList<>(List.of(OcrExtractResult.OcrProductLine.builder()
+                        .designation("FER TOR/500 DIAM 12").quantite(10.0).build())))
+                .build());
+
+        // Correction des lignes avant création du BC
+        premier.setNumeroDocument("F01055/25");
+        premier.getLignes().get(0).setQuantite(12.0);
+        premier.getLignes().clear();
+
+        OcrExtractResult second = cache.obtenir(CLE, () -> fail("aucun appel OCR attendu"));
+        assertEquals("F01054/25", second.getNumeroDocument());
+        assertEquals(1, second.getLignes().size());
+        assertEquals(10.0, second.getLignes().get(0).getQuantite());
+    }
+
+    @Test
+    void testObtenir_EchecPropageSansMiseEnCache() throws Exception {
+        assertThrows(IOException.class, () -> cache.obtenir(CLE, () -> {
+            throw new IOException("OpenRouter 429 rate limit");
+        }));
+
+        AtomicInteger appels = new AtomicInteger();
+        cache.obtenir(CLE, () -> resultat(appels.incrementAndGet()));
+        assertEquals(1, appels.get());
+        assertEquals(1L, cache.statistiques().get("echecs"));
+    }
+
+    @Test
+    void testObtenir_MemoireLimiteeAuxEntreesLesPlusRecentes() throws Exception {
+        for (String sha : new String[]{"a", "b", "c"}) {
+            cache.obtenir(new CacheResultatsOcr.Cle(sha, CLE.providers(), "v1"), () -> resultat(1));
+        }
+        assertEquals(2, cache.statistiques().get("entreesMemoire"));
+    }
+
+    private static OcrExtractResult resultat(int numero) {
+        return OcrExtractResult.builder().numeroDocument("F" + numero).fournisseurNom("SORIMAC S.A.R.L").build();
+    }
+
+    private static void attendre(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.bf4invest.service;
+
+import com.bf4invest.dto.PageResponse;
+import com.bf4invest.dto.PublicProductDto;
+import com.bf4invest.model.Product;
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CatalogueVitrineServiceTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private MongoCollection<Document> collection;
+
+    @InjectMocks
+    private CatalogueVitrineService catalogueVitrineService;
+
+    private static Product produit(String id, String designation, String categorie) {
+        return Product.builder().id(id).designation(designation).categorie(categorie).build();
+    }
+
+    @Test
+    void testInstantane_ReconstruitUniquementSiLesProduitsChangent() {
+        // Vérification à chaque lecture
+        ReflectionTestUtils.setField(catalogueVitrineService, "intervalleVerificationSecondes", 0L);
+        LocalDateTime modification = LocalDateTime.of(2025, 1, 1, 10, 0);
+        when(mongoTemplate.getCollectionName(Product.class)).thenReturn("produits");
+        when(mongoTemplate.getCollection("produits")).thenReturn(collection);
+        when(collection.estimatedDocumentCount()).thenReturn(3L);
+        when(mongoTemplate.findOne(any(Query.class), eq(Product.class)))
+                .thenReturn(Product.builder().updatedAt(modification).build());
+        when(mongoTemplate.find(any(Query.class), eq(Product.class))).thenReturn(List.of(
+                produit("1", "Ciment", "Liants"),
+                produit("2", "Sable", null),
+                produit("3", "Chaux", "Liants")));
+
+        CatalogueVitrineService.Instantane premier = catalogueVitrineService.instantane();
+        CatalogueVitrineService.Instantane second = catalogueVitrineService.instantane();
+
+        assertSame(premier, second);
+        verify(mongoTemplate, times(1)).find(any(Query.class), eq(Product.class));
+        assertTrue(premier.etag().startsWith("\""));
+
+        // Tri catégorie puis désignation, catégorie par défaut, filtre insensible à la casse
+        assertEquals(List.of("Chaux", "Ciment"), catalogueVitrineService.produits(premier, "liants").stream()
+                .map(PublicProductDto::getDesignation).toList());
+        PageResponse<PublicProductDto> page = catalogueVitrineService.page(premier, null, 1, 2);
+        assertEquals(3, page.getTotalElements());
+        assertEquals(CatalogueVitrineService.CATEGORIE_DEFAUT, page.getContent().get(0).getCategorie());
+        assertFalse(page.isHasNext());
+
+        // Produit modifié : nouvel instantané
+        when(mongoTemplate.findOne(any(Query.class), eq(Product.class)))
+                .thenReturn(Product.builder().updatedAt(modification.plusMinutes(1)).build());
+        assertNotSame(premier, catalogueVitrineService.instantane());
+        verify(mongoTemplate, times(2)).find(any(Query.class), eq(Product.class));
+    }
+
+    @Test
+    void testInstantane_UrlsImagesIndependantesDeLEnTeteHost() {
+        ReflectionTestUtils.setField(catalogueVitrineService, "urlPublique", "");
+        when(mongoTemplate.getCollectionName(Product.class)).thenReturn("produits");
+        when(mongoTemplate.getCollection("produits")).thenReturn(collection);
+        when(collection.estimatedDocumentCount()).thenReturn(1L);
+        when(mongoTemplate.find(any(Query.class), eq(Product.class))).thenReturn(List.of(
+                Product.builder().id("1").designation("Ciment").imageId("img1").imageMiniatureId("mini1").build()));
+
+        // Reconstruction déclenchée par une requête dont l'en-tête Host est forgé
+        MockHttpServletRequest requete = new MockHttpServletRequest();
+        requete.setServerName("attaquant.example");
+        requete.addHeader("Host", "attaquant.example");
+        requete.addHeader("X-Forwarded-Host", "attaquant.example");
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(requete));
+        try {
+            PublicProductDto produit = catalogueVitrineService.instantane().produits().get(0);
+
+            assertEquals("/public/images/img1", produit.getImageUrl());
+            assertEquals("/public/images/mini1", produit.getImageMiniatureUrl());
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+        }
+
+        // URL publique configurée : préfixe fixe, toujours indépendant de la requête
+        ReflectionTestUtils.setField(catalogueVitrineService, "urlPublique", "https://api.bf4invest.ma/api/");
+        catalogueVitrineService.invalider();
+        when(collection.estimatedDocumentCount()).thenReturn(2L);
+        assertEquals("https://api.bf4invest.ma/api/public/images/img1",
+                catalogueVitrineService.instantane().produits().get(0).getImageUrl());
+    }
+}
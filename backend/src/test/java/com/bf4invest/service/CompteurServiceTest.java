@@ -0,0 +1,94 @@
+package com.bf4invest.service;
+
+import com.bf4invest.model.BandeCommande;
+import com.bf4invest.model.Compteur;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CompteurServiceTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @InjectMocks
+    private CompteurService compteurService;
+
+    private static Compteur compteur(long valeur) {
+        return Compteur.builder().valeur(valeur).build();
+    }
+
+    @Test
+    void testSuivant_CompteurExistant_SansAmorce() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Compteur.class)))
+                .thenReturn(compteur(12));
+        AtomicInteger amorces = new AtomicInteger();
+
+        long numero = compteurService.suivant("OV", "", "2025", () -> amorces.incrementAndGet());
+
+        assertEquals(12, numero);
+        assertEquals(0, amorces.get());
+        verify(mongoTemplate, never()).insert(any(Compteur.class));
+    }
+
+    @Test
+    void testSuivant_CompteurAbsent_AmorceUneFoisPuisIncremente() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Compteur.class)))
+                .thenReturn(null, compteur(8));
+
+        long numero = compteurService.suivant("BC", "CLI03FOU", "2025", () -> 7);
+
+        assertEquals(8, numero);
+        ArgumentCaptor<Compteur> cree = ArgumentCaptor.forClass(Compteur.class);
+        verify(mongoTemplate).insert(cree.capture());
+        assertEquals("BC|CLI03FOU|2025", cree.getValue().getId());
+        assertEquals(7, cree.getValue().getValeur());
+    }
+
+    @Test
+    void testSuivant_AmorceConcurrente_IncrementeLeCompteurDejaCree() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Compteur.class)))
+                .thenReturn(null, compteur(4));
+        when(mongoTemplate.insert(any(Compteur.class))).thenThrow(new DuplicateKeyException("compteurs"));
+
+        assertEquals(4, compteurService.suivant("FV", "", "2025-03", () -> 2));
+    }
+
+    @Test
+    void testAmorce_PlusGrandNumeroOuNombreDeDocuments() {
+        when(mongoTemplate.getCollectionName(BandeCommande.class)).thenReturn("bandes_commandes");
+        when(mongoTemplate.stream(any(Query.class), eq(Document.class), eq("bandes_commandes"))).thenAnswer(i -> Stream.of(
+                new Document("numeroBC", "CLI03FOU01/25"),
+                new Document("numeroBC", "cli03fou07/25"),
+                new Document("numeroBC", "saisie libre"),
+                new Document()));
+        Pattern motif = Pattern.compile(Pattern.quote("CLI03FOU") + "(\\d{2,})/25", Pattern.CASE_INSENSITIVE);
+
+        assertEquals(7, compteurService.amorce(BandeCommande.class, new Criteria(), "numeroBC", motif));
+
+        // Numéros hors format uniquement : l'ancienne règle (nombre de documents) s'applique
+        when(mongoTemplate.stream(any(Query.class), eq(Document.class), eq("bandes_commandes"))).thenAnswer(i -> Stream.of(
+                new Document("numeroBC", "A"), new Document("numeroBC", "B")));
+        assertEquals(2, compteurService.amorce(BandeCommande.class, new Criteria(), "numeroBC", motif));
+    }
+}
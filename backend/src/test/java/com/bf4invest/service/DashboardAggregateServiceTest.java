@@ -0,0 +1,146 @@
+package com.bf4invest.service;
+
+import com.bf4invest.model.BandeCommande;
+import com.bf4invest.model.FactureAchat;
+import com.bf4invest.model.FactureVente;
+import com.bf4invest.model.KpiMensuel;
+import com.bf4invest.repository.KpiMensuelRepository;
+import com.mongodb.client.result.DeleteResult;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class DashboardAggregateServiceTest {
+
+    /** Factures "en base" et agrégats stockés, simulés en mémoire. */
+    private final List<FactureVente> factures = new ArrayList<>();
+    private final Map<String, KpiMensuel> kpis = new HashMap<>();
+    /** Action exécutée pendant la prochaine lecture des factures (écriture concurrente simulée). */
+    private Runnable pendantLecture;
+    private DashboardAggregateService service;
+
+    @BeforeEach
+    void setUp() {
+        MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+        when(mongoTemplate.find(any(Query.class), eq(FactureVente.class))).thenAnswer(i -> {
+            List<FactureVente> lues = factures.stream().filter(f -> correspond(i.getArgument(0), f.getDateFacture())).toList();
+            if (pendantLecture != null) {
+                Runnable action = pendantLecture;
+                pendantLecture = null;
+                action.run();
+            }
+            return lues;
+        });
+        when(mongoTemplate.find(any(Query.class), eq(FactureAchat.class))).thenReturn(List.of());
+        when(mongoTemplate.find(any(Query.class), eq(BandeCommande.class))).thenReturn(List.of());
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(KpiMensuel.class))).thenAnswer(i -> {
+            String periode = (String) ((Query) i.getArgument(0)).getQueryObject().get("_id");
+            KpiMensuel k = kpis.computeIfAbsent(periode, p -> KpiMensuel.builder().id(p).periode(p).revision(0L).build());
+            k.setRevision(k.getRevision() + 1);
+            return KpiMensuel.builder().id(periode).periode(periode).revision(k.getRevision()).build();
+        });
+        when(mongoTemplate.findAndReplace(any(Query.class), any(KpiMensuel.class))).thenAnswer(i -> {
+            KpiMensuel remplacant = i.getArgument(1);
+            KpiMensuel actuel = kpis.get(remplacant.getId());
+            if (actuel == null || !Objects.equals(actuel.getRevision(), revisionDemandee(i.getArgument(0)))) {
+                return null;
+            }
+            kpis.put(remplacant.getId(), remplacant);
+            return actuel;
+        });
+        when(mongoTemplate.remove(any(Query.class), eq(KpiMensuel.class))).thenAnswer(i -> {
+            Query query = i.getArgument(0);
+            String periode = (String) query.getQueryObject().get("_id");
+            KpiMensuel actuel = kpis.get(periode);
+            if (actuel == null || !Objects.equals(actuel.getRevision(), revisionDemandee(query))) {
+                return DeleteResult.acknowledged(0);
+            }
+            kpis.remove(periode);
+            return DeleteResult.acknowledged(1);
+        });
+        service = new DashboardAggregateService(mock(KpiMensuelRepository.class), mongoTemplate);
+    }
+
+    private static Long revisionDemandee(Query query) {
+        return ((Number) query.getQueryObject().get("revision")).longValue();
+    }
+
+    /** Filtre dateFacture d'une requête : null, ou bornes $gte / $lte. */
+    private static boolean correspond(Query query, LocalDate date) {
+        Object critere = query.getQueryObject().get("dateFacture");
+        if (!(critere instanceof Document bornes)) {
+            return date == null;
+        }
+        return date != null && !date.isBefore((LocalDate) bornes.get("$gte")) && !date.isAfter((LocalDate) bornes.get("$lte"));
+    }
+
+    private static FactureVente facture(String id, LocalDate date, double ttc) {
+        return FactureVente.builder().id(id).dateFacture(date).totalHT(ttc / 1.2).totalTTC(ttc)
+                .totalTVA(ttc - ttc / 1.2).etatPaiement("non_regle").montantRestant(ttc).clientId("c1").build();
+    }
+
+    @Test
+    void testMaintenance_CreationModificationPaiementSuppression() {
+        // Création
+        FactureVente f = facture("f1", LocalDate.of(2025, 3, 10), 1200.0);
+        factures.add(f);
+        service.rafraichirPourFactureVente(f);
+        assertEquals(1200.0, kpis.get("2025-03").getCaTTC(), 0.001);
+        assertEquals(1200.0, kpis.get("2025-03").getEncoursClientsTTC(), 0.001);
+
+        // Modification : la facture passe en avril, mars est vidé
+        LocalDate ancienneDate = f.getDateFacture();
+        f.setDateFacture(LocalDate.of(2025, 4, 2));
+        service.rafraichirPourFactureVente(f, ancienneDate, null);
+        assertFalse(kpis.containsKey("2025-03"));
+        assertEquals(1, kpis.get("2025-04").getNbFacturesVente());
+
+        // Paiement partiel : l'encours du mois suit le restant
+        f.setEtatPaiement("partiellement_regle");
+        f.setMontantRestant(500.0);
+        service.rafraichirPourFactureVente(f);
+        assertEquals(500.0, kpis.get("2025-04").getEncoursClientsTTC(), 0.001);
+        assertEquals(1200.0, kpis.get("2025-04").getCaTTC(), 0.001);
+
+        // Suppression
+        factures.remove(f);
+        service.rafraichirPourFactureVente(null, f.getDateFacture(), null);
+        assertFalse(kpis.containsKey("2025-04"));
+    }
+
+    @Test
+    void testRecalcul_ResultatPerimeNEcrasePasUnRecalculPlusRecent() {
+        FactureVente premiere = facture("f1", LocalDate.of(2025, 3, 10), 1200.0);
+        factures.add(premiere);
+        // Pendant la lecture du premier recalcul, une seconde facture est créée et son propre recalcul se termine
+        pendantLecture = () -> {
+            FactureVente seconde = facture("f2", LocalDate.of(2025, 3, 20), 600.0);
+            factures.add(seconde);
+            service.rafraichirPourFactureVente(seconde);
+        };
+
+        service.rafraichirPourFactureVente(premiere);
+
+        // Le premier recalcul n'a vu qu'une facture : son résultat est ignoré
+        KpiMensuel mars = kpis.get("2025-03");
+        assertEquals(2, mars.getNbFacturesVente());
+        assertEquals(1800.0, mars.getCaTTC(), 0.001);
+    }
+}
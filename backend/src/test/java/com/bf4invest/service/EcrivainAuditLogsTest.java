@@ -0,0 +1,169 @@
+package com.bf4invest.service;
+
+import com.bf4invest.model.AuditLog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class EcrivainAuditLogsTest {
+
+    private MongoTemplate mongoTemplate;
+    private EcrivainAuditLogs ecrivain;
+    private final List<Integer> lotsEcrits = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        when(mongoTemplate.insert(any(Collection.class), eq(AuditLog.class))).thenAnswer(i -> {
+            Collection<?> lot = i.getArgument(0);
+            lotsEcrits.add(lot.size());
+            return lot;
+        });
+        ecrivain = new EcrivainAuditLogs(mongoTemplate);
+        ReflectionTestUtils.setField(ecrivain, "asynchrone", true);
+        ReflectionTestUtils.setField(ecrivain, "capacite", 100);
+        ReflectionTestUtils.setField(ecrivain, "tailleLot", 10);
+        ReflectionTestUtils.setField(ecrivain, "intervalleMs", 50L);
+        ReflectionTestUtils.setField(ecrivain, "attenteMaxMs", 10L);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        ecrivain.arreter();
+    }
+
+    @Test
+    void testAjouter_EcritParLotsSurSeuilDeTailleEtDeTemps() throws Exception {
+        ecrivain.init();
+
+        for (int i = 0; i < 25; i++) {
+            ecrivain.ajouter(entree(i));
+        }
+        attendreEcrites(25);
+
+        assertEquals(25, lotsEcrits.stream().mapToInt(Integer::intValue).sum());
+        assertTrue(lotsEcrits.size() < 25, "entrées regroupées en lots : " + lotsEcrits);
+        assertTrue(lotsEcrits.stream().allMatch(taille -> taille <= 10));
+        assertEquals(0L, ecrivain.statistiques().get("ecrituresDirectes"));
+    }
+
+    @Test
+    void testAjouter_FilePleineEcritureDirecteSansPerte() throws Exception {
+        ReflectionTestUtils.setField(ecrivain, "capacite", 2);
+        CountDownLatch ecritureBloquee = new CountDownLatch(1);
+        CountDownLatch liberer = new CountDownLatch(1);
+        when(mongoTemplate.insert(any(Collection.class), eq(AuditLog.class))).thenAnswer(i -> {
+            Collection<?> lot = i.getArgument(0);
+            if (Thread.currentThread().getName().equals("audit-writer")) {
+                ecritureBloquee.countDown();
+                liberer.await(5, TimeUnit.SECONDS);
+            }
+            lotsEcrits.add(lot.size());
+            return lot;
+        });
+        ecrivain.init();
+
+        // Le thread d'écriture reste bloqué sur la première entrée : la file se remplit
+        ecrivain.ajouter(entree(0));
+        assertTrue(ecritureBloquee.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i <= 5; i++) {
+            ecrivain.ajouter(entree(i));
+        }
+        Map<String, Object> stats = ecrivain.statistiques();
+        assertEquals(3L, stats.get("saturations"));
+        assertEquals(3L, stats.get("ecrituresDirectes"));
+        assertEquals(2, stats.get("enAttente"));
+
+        liberer.countDown();
+        attendreEcrites(6);
+        assertEquals(0L, ecrivain.statistiques().get("echecs"));
+    }
+
+    @Test
+    void testArreter_VideLaFile() throws Exception {
+        ReflectionTestUtils.setField(ecrivain, "intervalleMs", 60_000L);
+        ReflectionTestUtils.setField(ecrivain, "tailleLot", 1000);
+        ecrivain.init();
+        for (int i = 0; i < 7; i++) {
+            ecrivain.ajouter(entree(i));
+        }
+
+        ecrivain.arreter();
+
+        assertEquals(7, lotsEcrits.stream().mapToInt(Integer::intValue).sum());
+        // Après l'arrêt, les entrées sont écrites directement
+        ecrivain.ajouter(entree(8));
+        assertEquals(8, lotsEcrits.stream().mapToInt(Integer::intValue).sum());
+    }
+
+    @Test
+    void testArreter_EntreesConcurrentesToutesEcrites() throws Exception {
+        ecrivain.init();
+        int producteurs = 4;
+        int parProducteur = 500;
+        CountDownLatch depart = new CountDownLatch(1);
+        List<Thread> threads = new CopyOnWriteArrayList<>();
+        for (int p = 0; p < producteurs; p++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    depart.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < parProducteur; i++) {
+                    ecrivain.ajouter(entree(i));
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        depart.countDown();
+        // Arrêt pendant que les producteurs écrivent encore
+        ecrivain.arreter();
+        for (Thread thread : threads) {
+            thread.join(5000);
+        }
+
+        assertEquals(producteurs * parProducteur, lotsEcrits.stream().mapToInt(Integer::intValue).sum());
+        assertEquals(0, ecrivain.statistiques().get("enAttente"));
+    }
+
+    @Test
+    void testAjouter_EchecDEcritureComptabilise() throws Exception {
+        when(mongoTemplate.insert(any(Collection.class), eq(AuditLog.class)))
+                .thenThrow(new IllegalStateException("Mongo indisponible"));
+        ReflectionTestUtils.setField(ecrivain, "asynchrone", false);
+        ecrivain.init();
+
+        ecrivain.ajouter(entree(1));
+
+        assertEquals(1L, ecrivain.statistiques().get("echecs"));
+    }
+
+    private void attendreEcrites(long attendu) throws InterruptedException {
+        long limite = System.currentTimeMillis() + 5000;
+        while ((long) ecrivain.statistiques().get("ecrites") < attendu && System.currentTimeMillis() < limite) {
+            Thread.sleep(5);
+        }
+        assertEquals(attendu, ecrivain.statistiques().get("ecrites"));
+    }
+
+    private static AuditLog entree(int numero) {
+        return AuditLog.builder().action("UPDATE").entityType("Charge").entityId("c" + numero).build();
+    }
+}
@@ -0,0 +1,96 @@
+package com.bf4invest.service;
+
+import com.bf4invest.model.BandeCommande;
+import com.bf4invest.model.FactureAchat;
+import com.bf4invest.model.Supplier;
+import com.bf4invest.repository.BandeCommandeRepository;
+import com.bf4invest.repository.FactureAchatRepository;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FactureAchatServiceTest {
+
+    @Mock
+    private FactureAchatRepository factureRepository;
+    @Mock
+    private BandeCommandeRepository bandeCommandeRepository;
+    @Mock
+    private AuditService auditService;
+    @Mock
+    private CalculComptableService calculComptableService;
+    @Mock
+    private SoldeService soldeService;
+    @Mock
+    private SupplierService supplierService;
+    @Mock
+    private ComptabiliteService comptabiliteService;
+    @Mock
+    private DashboardAggregateService dashboardAggregateService;
+    @Mock
+    private MongoTemplate mongoTemplate;
+    @Mock
+    private BulkOperations ops;
+
+    @InjectMocks
+    private FactureAchatService factureAchatService;
+
+    @Test
+    void testCreerEnMasse_EffetsAppliquesAuxSeulesFacturesInserees() {
+        Supplier fournisseur = Supplier.builder().id("f1").nom("Fournisseur 1").build();
+        BandeCommande bc = BandeCommande.builder().id("bc1").numeroBC("BC-1").totalAchatHT(100.0).totalAchatTTC(120.0).build();
+        when(mongoTemplate.find(any(Query.class), eq(Supplier.class))).thenReturn(List.of(fournisseur));
+        when(mongoTemplate.find(any(Query.class), eq(BandeCommande.class))).thenReturn(List.of(bc));
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, FactureAchat.class)).thenReturn(ops);
+        when(ops.insert(anyList())).thenReturn(ops);
+        // La deuxième facture est refusée par MongoDB (doublon)
+        when(ops.execute()).thenThrow(new BulkOperationException("E11000", new MongoBulkWriteException(
+                BulkWriteResult.acknowledged(2, 0, 0, 0, List.of(), List.of()),
+                List.of(new BulkWriteError(11000, "E11000 duplicate key", new BsonDocument(), 1)),
+                null, new ServerAddress(), Set.of())));
+
+        List<FactureAchat> factures = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            factures.add(FactureAchat.builder().numeroFactureAchat("FA-" + i).dateFacture(LocalDate.of(2026, 3, 1))
+                    .fournisseurId("f1").bandeCommandeId("bc1").build());
+        }
+        Map<FactureAchat, Exception> echecs = new LinkedHashMap<>();
+
+        List<FactureAchat> enregistrees = factureAchatService.creerEnMasse(factures, 500, echecs::put);
+
+        assertEquals(List.of("FA-0", "FA-2"), enregistrees.stream().map(FactureAchat::getNumeroFactureAchat).toList());
+        assertEquals(List.of("FA-1"), echecs.keySet().stream().map(FactureAchat::getNumeroFactureAchat).toList());
+        assertEquals(120.0, enregistrees.get(0).getTotalTTC());
+        verify(comptabiliteService, times(2)).genererEcritureFactureAchat(any());
+        verify(soldeService, times(2)).enregistrerTransaction(any(), any(), eq("f1"), eq("FOURNISSEUR"),
+                eq("Fournisseur 1"), any(), any(), any(), any());
+        verify(auditService, never()).logCreate(eq("FactureAchat"), eq(factures.get(1).getId()), any());
+        // Liens lus une fois pour le lot, pas par facture
+        verifyNoInteractions(bandeCommandeRepository, supplierService, factureRepository);
+    }
+}
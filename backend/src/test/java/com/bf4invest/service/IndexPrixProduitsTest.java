@@ -0,0 +1,153 @@
+package com.bf4invest.service;
+
+import com.bf4invest.model.BandeCommande;
+import com.bf4invest.model.ClientVente;
+import com.bf4invest.model.FournisseurAchat;
+import com.bf4invest.model.LigneAchat;
+import com.bf4invest.model.LigneVente;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IndexPrixProduitsTest {
+
+    private static LigneAchat achat(String ref, String designation, double qte, double prix, Double tva) {
+        return LigneAchat.builder().produitRef(ref).designation(designation).unite("U")
+                .quantiteAchetee(qte).prixAchatUnitaireHT(prix).tva(tva).build();
+    }
+
+    private static LigneVente vente(String ref, String designation, double qte, double prix) {
+        return LigneVente.builder().produitRef(ref).designation(designation).unite("U")
+                .quantiteVendue(qte).prixVenteUnitaireHT(prix).build();
+    }
+
+    private static BandeCommande bc(List<LigneAchat> achats, List<LigneVente> ventes) {
+        BandeCommande bc = new BandeCommande();
+        bc.setFournisseursAchat(List.of(FournisseurAchat.builder().fournisseurId("f1").lignesAchat(achats).build()));
+        bc.setClientsVente(List.of(ClientVente.builder().clientId("c1").lignesVente(ventes).build()));
+        return bc;
+    }
+
+    @Test
+    void testPrix_MoyennePondereeEtRetraitDuMinimum() {
+        BandeCommande bc1 = bc(List.of(achat("A1", "Ciment", 10, 50.0, 20.0)), List.of(vente("A1", "Ciment", 10, 70.0)));
+        BandeCommande bc2 = bc(List.of(achat("A1", "Ciment", 30, 40.0, 20.0)), List.of());
+        IndexPrixProduits index = IndexPrixProduits.construire(List.of(bc1, bc2));
+
+        IndexPrixProduits.PrixProduit prix = index.prix("A1", "Ciment", "U");
+        assertEquals(40.0, prix.quantiteAchetee());
+        assertEquals((10 * 50.0 + 30 * 40.0) / 40, prix.prixAchatPondere(), 1e-9);
+        assertEquals(40.0, prix.prixAchatMin());
+        assertEquals(50.0, prix.prixAchatMax());
+        assertEquals(70.0, prix.prixVentePondere());
+        assertEquals(20.0, prix.tva());
+
+        // Suppression de la BC portant le minimum : le min se rétracte sur la valeur suivante
+        index.appliquer(IndexPrixProduits.extraire(bc2), List.of());
+        prix = index.prix("A1", "Ciment", "U");
+        assertEquals(50.0, prix.prixAchatMin());
+        assertEquals(50.0, prix.prixAchatPondere(), 1e-9);
+
+        index.appliquer(IndexPrixProduits.extraire(bc1), List.of());
+        assertNull(index.prix("A1", "Ciment", "U").prixAchatPondere());
+        assertEquals(0, index.taille());
+    }
+
+    @Test
+    void testPrix_UnionReferenceOuDesignationSansDoubleComptage() {
+        // Ligne 1 : même réf et même désignation ; ligne 2 : réf différente, même désignation ; ligne 3 : même réf seule
+        BandeCommande bc = bc(List.of(
+                achat("2", "CIMENT CPJ45", 10, 60.0, null),
+                achat("2 - CIMENT", "ciment cpj45", 5, 66.0, null),
+                achat("2", "Autre libellé", 1, 90.0, null),
+                achat("9", "Sable", 3, 10.0, null)), List.of());
+        IndexPrixProduits index = IndexPrixProduits.construire(List.of(bc));
+
+        IndexPrixProduits.PrixProduit prix = index.prix("2", "CIMENT CPJ45", "U");
+        assertEquals(16.0, prix.quantiteAchetee(), 1e-9);
+        assertEquals((600 + 330 + 90) / 16.0, prix.prixAchatPondere(), 1e-9);
+        assertEquals(60.0, prix.prixAchatMin());
+        assertEquals(90.0, prix.prixAchatMax());
+    }
+
+    @Test
+    void testRemplacerBC_RetireLaContributionIndexeeUneSeuleFois() {
+        BandeCommande bc1 = bc(List.of(achat("A1", "Ciment", 10, 50.0, 20.0)), List.of());
+        bc1.setId("bc-1");
+        BandeCommande bc2 = bc(List.of(achat("A1", "Ciment", 30, 40.0, 20.0)), List.of());
+        bc2.setId("bc-2");
+        IndexPrixProduits index = IndexPrixProduits.construire(List.of(bc1, bc2));
+
+        // Deux synchronisations de la même modification : la seconde ne retire rien de plus
+        List<IndexPrixProduits.LignePrix> modifiee = IndexPrixProduits.extraire(
+                bc(List.of(achat("A1", "Ciment", 10, 60.0, 20.0)), List.of()));
+        assertEquals(1, index.remplacerBC("bc-1", modifiee).size());
+        assertEquals(modifiee, index.remplacerBC("bc-1", modifiee));
+        IndexPrixProduits.PrixProduit prix = index.prix("A1", "Ciment", "U");
+        assertEquals(40.0, prix.quantiteAchetee());
+        assertEquals(60.0, prix.prixAchatMax());
+
+        // Suppression répétée : la contribution n'est retirée qu'une fois
+        index.remplacerBC("bc-2", List.of());
+        assertTrue(index.remplacerBC("bc-2", List.of()).isEmpty());
+        prix = index.prix("A1", "Ciment", "U");
+        assertEquals(10.0, prix.quantiteAchetee());
+        assertEquals(60.0, prix.prixAchatPondere(), 1e-9);
+    }
+
+    @Test
+    void testDifferentielAleatoire_IdentiqueALaReconstruction() {
+        Random random = new Random(7);
+        String[] refs = { "A", "B", "C", "" };
+        String[] designations = { "Ciment", "Sable", "Gravette", "" };
+        List<BandeCommande> bcs = new ArrayList<>();
+        IndexPrixProduits index = new IndexPrixProduits();
+
+        for (int etape = 0; etape < 2000; etape++) {
+            int action = random.nextInt(3);
+            if (action == 0 || bcs.isEmpty()) {
+                List<LigneAchat> achats = new ArrayList<>();
+                List<LigneVente> ventes = new ArrayList<>();
+                for (int l = random.nextInt(4); l >= 0; l--) {
+                    achats.add(achat(refs[random.nextInt(4)], designations[random.nextInt(4)],
+                            random.nextInt(5), 10 + random.nextInt(20), random.nextBoolean() ? 20.0 : 10.0));
+                    ventes.add(vente(refs[random.nextInt(4)], designations[random.nextInt(4)],
+                            1 + random.nextInt(5), 15 + random.nextInt(20)));
+                }
+                BandeCommande nouvelle = bc(achats, ventes);
+                index.appliquer(List.of(), IndexPrixProduits.extraire(nouvelle));
+                bcs.add(nouvelle);
+            } else if (action == 1) {
+                BandeCommande supprimee = bcs.remove(random.nextInt(bcs.size()));
+                index.appliquer(IndexPrixProduits.extraire(supprimee), List.of());
+            } else {
+                int i = random.nextInt(bcs.size());
+                BandeCommande modifiee = bc(List.of(achat(refs[random.nextInt(4)], designations[random.nextInt(4)],
+                        1 + random.nextInt(5), 10 + random.nextInt(20), 20.0)), List.of());
+                index.appliquer(IndexPrixProduits.extraire(bcs.get(i)), IndexPrixProduits.extraire(modifiee));
+                bcs.set(i, modifiee);
+            }
+        }
+
+        IndexPrixProduits reconstruit = IndexPrixProduits.construire(bcs);
+        for (String ref : refs) {
+            for (String designation : designations) {
+                IndexPrixProduits.PrixProduit attendu = reconstruit.prix(ref, designation, "U");
+                IndexPrixProduits.PrixProduit obtenu = index.prix(ref, designation, "U");
+                assertEquals(attendu.quantiteAchetee(), obtenu.quantiteAchetee(), 1e-6);
+                assertEquals(attendu.quantiteVendue(), obtenu.quantiteVendue(), 1e-6);
+                assertEquals(attendu.prixAchatMin(), obtenu.prixAchatMin());
+                assertEquals(attendu.prixAchatMax(), obtenu.prixAchatMax());
+                assertEquals(attendu.prixVenteMin(), obtenu.prixVenteMin());
+                assertEquals(attendu.tva(), obtenu.tva());
+                if (attendu.prixAchatPondere() != null) {
+                    assertEquals(attendu.prixAchatPondere(), obtenu.prixAchatPondere(), 1e-6);
+                }
+            }
+        }
+    }
+}
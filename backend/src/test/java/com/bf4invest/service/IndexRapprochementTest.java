@@ -0,0 +1,128 @@
+package com.bf4invest.service;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IndexRapprochementTest {
+
+    private static final Logger log = LoggerFactory.getLogger(IndexRapprochementTest.class);
+
+    private static IndexRapprochement.Candidat candidat(String id, String numero, double total, double paye,
+                                                        LocalDate dateFacture, String partenaire, Set<String> refs) {
+        return IndexRapprochement.Candidat.builder()
+                .factureId(id)
+                .numero(numero)
+                .totalTTC(total)
+                .restant(total - paye)
+                .dateFacture(dateFacture)
+                .dateEcheance(dateFacture != null ? dateFacture.plusDays(30) : null)
+                .referencesPaiements(refs)
+                .partenaire(partenaire)
+                .build();
+    }
+
+    @Test
+    void testRechercher_MeilleurScoreSelonNumeroEtPartenaire() {
+        LocalDate date = LocalDate.of(2025, 3, 10);
+        IndexRapprochement index = new IndexRapprochement(List.of(
+                candidat("a", "FV-2025-001", 1200.0, 0.0, date.minusDays(60), "Alpha Industrie", Set.of()),
+                candidat("b", "FV-2025-002", 1200.0, 0.0, date.minusDays(2), "Beta Services", Set.of()),
+                candidat("c", "FV-2025-003", 5000.0, 0.0, date, "Gamma", Set.of())
+        ));
+
+        List<IndexRapprochement.Correspondance> resultats =
+                index.rechercher(1200.0, date, null, "VIR RECU BETA SERVICES FV2025002", 5);
+
+        assertEquals(2, resultats.size());
+        assertEquals("b", resultats.get(0).factureId());
+        assertTrue(resultats.get(0).numeroTrouve());
+        assertTrue(resultats.get(0).score() > resultats.get(1).score());
+    }
+
+    @Test
+    void testRechercher_TotalEtRestantDuDoiventCorrespondre() {
+        LocalDate date = LocalDate.of(2025, 3, 10);
+        IndexRapprochement index = new IndexRapprochement(List.of(
+                candidat("a", "FA-1", 1000.0, 600.0, date, null, Set.of()),
+                candidat("b", "FA-2", 1000.0, 5.0, date, null, Set.of())
+        ));
+
+        // Solde d'une facture partiellement payée : le restant correspond mais pas le total
+        assertTrue(index.rechercher(400.0, date, null, null, 5).isEmpty());
+        // Total seul : le restant dû ne correspond plus
+        assertTrue(index.rechercher(1000.0, date, null, null, 5).stream().noneMatch(c -> c.factureId().equals("a")));
+        // Total et restant dans la tolérance de 1%
+        List<IndexRapprochement.Correspondance> resultats = index.rechercher(995.0, date, null, null, 5);
+        assertEquals(1, resultats.size());
+        assertEquals("b", resultats.get(0).factureId());
+    }
+
+    @Test
+    void testRechercher_ReferenceDejaUtiliseeEtConsommation() {
+        LocalDate date = LocalDate.of(2025, 3, 10);
+        IndexRapprochement index = new IndexRapprochement(List.of(
+                candidat("a", "FV-1", 500.0, 0.0, date, null, Set.of("CHQ123")),
+                candidat("b", "FV-2", 500.0, 0.0, date, null, Set.of())
+        ));
+
+        List<IndexRapprochement.Correspondance> resultats = index.rechercher(500.0, date, "CHQ123", null, 5);
+        assertEquals(1, resultats.size());
+        assertEquals("b", resultats.get(0).factureId());
+
+        index.consommer("b");
+        assertTrue(index.rechercher(500.0, date, "CHQ123", null, 5).isEmpty());
+    }
+
+    /**
+     * Benchmark de débit : 50 000 factures, 20 000 transactions.
+     */
+    @Test
+    @Tag("benchmark")
+    void benchmarkDebitRapprochement() {
+        Random random = new Random(42);
+        LocalDate base = LocalDate.of(2025, 1, 1);
+        int nbFactures = 50_000;
+        int nbTransactions = 20_000;
+
+        List<IndexRapprochement.Candidat> candidats = new ArrayList<>(nbFactures);
+        double[] montants = new double[nbFactures];
+        for (int i = 0; i < nbFactures; i++) {
+            montants[i] = Math.round((100 + random.nextDouble() * 100_000) * 100) / 100.0;
+            candidats.add(candidat("f" + i, "FV-2025-" + i, montants[i], 0.0,
+                    base.plusDays(random.nextInt(365)), "Client " + (i % 500), Set.of()));
+        }
+
+        long debut = System.nanoTime();
+        IndexRapprochement index = new IndexRapprochement(candidats);
+        long construction = System.nanoTime() - debut;
+
+        debut = System.nanoTime();
+        int trouves = 0;
+        for (int t = 0; t < nbTransactions; t++) {
+            int cible = random.nextInt(nbFactures);
+            List<IndexRapprochement.Correspondance> resultats = index.rechercher(montants[cible],
+                    base.plusDays(random.nextInt(365)), null, "VIR CLIENT " + (cible % 500) + " FV-2025-" + cible, 5);
+            if (!resultats.isEmpty()) {
+                trouves++;
+                index.consommer(resultats.get(0).factureId());
+            }
+        }
+        long recherche = System.nanoTime() - debut;
+
+        double transactionsParSeconde = nbTransactions / (recherche / 1_000_000_000.0);
+        log.info(String.format("Rapprochement: index de %d factures construit en %d ms, %d transactions en %d ms (%.0f tx/s)",
+                nbFactures, construction / 1_000_000, nbTransactions, recherche / 1_000_000, transactionsParSeconde));
+
+        assertTrue(trouves > nbTransactions * 0.9);
+    }
+}
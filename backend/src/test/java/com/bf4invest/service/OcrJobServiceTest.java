@@ -0,0 +1,266 @@
+package com.bf4invest.service;
+
+import com.bf4invest.dto.OcrExtractResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class OcrJobServiceTest {
+
+    /** Provider local : durée d'appel, nombre d'échecs (429, ou 401 si définitifs) avant succès, appels simultanés observés. */
+    private static class ProviderLocal implements DocumentOcrProvider {
+        private final String id;
+        private final long dureeMs;
+        private final AtomicInteger echecsRestants;
+        private final boolean echecsDefinitifs;
+        private final AtomicInteger appels = new AtomicInteger();
+        private final AtomicInteger enCours = new AtomicInteger();
+        private final AtomicInteger enCoursMax = new AtomicInteger();
+
+        ProviderLocal(String id, long dureeMs, int echecs) {
+            this(id, dureeMs, echecs, false);
+        }
+
+        ProviderLocal(String id, long dureeMs, int echecs, boolean echecsDefinitifs) {
+            this.id = id;
+            this.dureeMs = dureeMs;
+            this.echecsRestants = new AtomicInteger(echecs);
+            this.echecsDefinitifs = echecsDefinitifs;
+        }
+
+        @Override
+        public String getProviderId() {
+            return id;
+        }
+
+        @Override
+        public String getModelName() {
+            return id + "-local";
+        }
+
+        @Override
+        public boolean isConfigured() {
+            return true;
+        }
+
+        @Override
+        public OcrExtractResult uploadAndExtract(MultipartFile file) throws IOException {
+            appels.incrementAndGet();
+            enCoursMax.accumulateAndGet(enCours.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(dureeMs);
+                if (echecsRestants.getAndDecrement() > 0) {
+                    throw OcrIndisponibleException.pourStatutHttp(echecsDefinitifs ? 401 : 429,
+                            id + " HTTP " + (echecsDefinitifs ? "401 clé invalide" : "429 rate limit"));
+                }
+                return OcrExtractResult.builder()
+                        .numeroDocument(file.getOriginalFilename())
+                        .fournisseurNom(id)
+                        .rawText(new String(file.getBytes()))
+                        .build();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrompu", e);
+            } finally {
+                enCours.decrementAndGet();
+            }
+        }
+    }
+
+    /** Provider dont l'appel lève une Error (ex: mémoire épuisée au décodage d'une image). */
+    private static class ProviderEnErreurFatale extends ProviderLocal {
+        ProviderEnErreurFatale(String id) {
+            super(id, 0, 0);
+        }
+
+        @Override
+        public OcrExtractResult uploadAndExtract(MultipartFile file) {
+            throw new OutOfMemoryError("Java heap space");
+        }
+    }
+
+    private OcrJobService ocrJobService;
+
+    private OcrJobService service(ProviderLocal principal, ProviderLocal secours, boolean repli) {
+        CacheResultatsOcr cache = new CacheResultatsOcr(mock(MongoTemplate.class));
+        ReflectionTestUtils.setField(cache, "actif", false);
+        OcrOrchestratorService orchestrateur = new OcrOrchestratorService(principal, secours, cache, new OcrJsonParser());
+        ReflectionTestUtils.setField(orchestrateur, "primary", "openrouter");
+        ReflectionTestUtils.setField(orchestrateur, "fallbackEnabled", repli);
+        ReflectionTestUtils.setField(orchestrateur, "maxAppelsOpenRouter", 2);
+        ReflectionTestUtils.setField(orchestrateur, "maxAppelsGemini", 2);
+        ReflectionTestUtils.setField(orchestrateur, "attenteMaxSecondes", 30L);
+
+        ocrJobService = new OcrJobService(orchestrateur);
+        ReflectionTestUtils.setField(ocrJobService, "threads", 6);
+        ReflectionTestUtils.setField(ocrJobService, "queueCapacity", 10);
+        ReflectionTestUtils.setField(ocrJobService, "maxTentatives", 3);
+        ReflectionTestUtils.setField(ocrJobService, "backoffMs", 20L);
+        ReflectionTestUtils.setField(ocrJobService, "backoffMaxMs", 100L);
+        ReflectionTestUtils.setField(ocrJobService, "retentionMinutes", 60L);
+        ocrJobService.init();
+        return ocrJobService;
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (ocrJobService != null) {
+            ocrJobService.arreter();
+        }
+    }
+
+    private static List<MultipartFile> images(int nombre) {
+        List<MultipartFile> images = new ArrayList<>();
+        for (int i = 0; i < nombre; i++) {
+            images.add(new MockMultipartFile("files", "facture-" + i + ".jpg", "image/jpeg", ("image " + i).getBytes()));
+        }
+        return images;
+    }
+
+    private static List<OcrJob> attendre(List<OcrJob> jobs) throws Exception {
+        CompletableFuture.allOf(jobs.stream().map(OcrJob::achevement).toArray(CompletableFuture[]::new))
+                .get(10, TimeUnit.SECONDS);
+        return jobs;
+    }
+
+    @Test
+    void testSoumettre_LotLimiteAuxAppelsSimultanesDuProvider() throws Exception {
+        ProviderLocal openRouter = new ProviderLocal("openrouter", 50, 0);
+        ProviderLocal gemini = new ProviderLocal("gemini", 0, 0);
+        OcrJobService service = service(openRouter, gemini, true);
+
+        List<OcrJob> jobs = attendre(service.soumettre(images(6), "alice"));
+
+        for (int i = 0; i < jobs.size(); i++) {
+            OcrJob job = jobs.get(i);
+            assertEquals(OcrJob.Statut.TERMINE, job.getStatut());
+            assertEquals("facture-" + i + ".jpg", job.getResultat().getNumeroDocument());
+            assertEquals("image " + i, job.getResultat().getRawText());
+            assertFalse(Files.exists(job.getFichier().getChemin()));
+        }
+        // 6 threads de jobs, mais au plus 2 appels simultanés au provider
+        assertEquals(6, openRouter.appels.get());
+        assertTrue(openRouter.enCoursMax.get() <= 2, "appels simultanés: " + openRouter.enCoursMax.get());
+        assertEquals(0, gemini.appels.get());
+    }
+
+    @Test
+    void testSoumettre_EchecTransitoireReessayeAvecDelai() throws Exception {
+        ProviderLocal openRouter = new ProviderLocal("openrouter", 0, 2);
+        ProviderLocal gemini = new ProviderLocal("gemini", 0, 0);
+        OcrJobService service = service(openRouter, gemini, false);
+
+        OcrJob job = attendre(service.soumettre(images(1), "alice")).get(0);
+
+        assertEquals(OcrJob.Statut.TERMINE, job.getStatut());
+        assertEquals(3, job.getTentatives());
+        assertEquals(2L, service.statistiques().get("reessais"));
+        // Délais de 20 puis 40 ms au minimum entre les tentatives
+        assertTrue(Duration.between(job.getDebut(), job.getFin()).toMillis() >= 60);
+    }
+
+    @Test
+    void testSoumettre_RepliSurLeProviderDeSecoursSansReessai() throws Exception {
+        ProviderLocal openRouter = new ProviderLocal("openrouter", 0, Integer.MAX_VALUE);
+        ProviderLocal gemini = new ProviderLocal("gemini", 0, 0);
+        OcrJobService service = service(openRouter, gemini, true);
+
+        OcrJob job = attendre(service.soumettre(images(1), "alice")).get(0);
+
+        assertEquals(OcrJob.Statut.TERMINE, job.getStatut());
+        assertEquals(1, job.getTentatives());
+        assertEquals("gemini", job.getResultat().getFournisseurNom());
+    }
+
+    @Test
+    void testSoumettre_EchecDefinitifApresTentativesMax() throws Exception {
+        ProviderLocal openRouter = new ProviderLocal("openrouter", 0, Integer.MAX_VALUE);
+        ProviderLocal gemini = new ProviderLocal("gemini", 0, Integer.MAX_VALUE);
+        OcrJobService service = service(openRouter, gemini, true);
+
+        OcrJob job = attendre(service.soumettre(images(1), "alice")).get(0);
+
+        assertEquals(OcrJob.Statut.ECHOUE, job.getStatut());
+        assertEquals(3, job.getTentatives());
+        assertTrue(job.getMessage().contains("429"), job.getMessage());
+        assertEquals(3, openRouter.appels.get());
+        assertEquals(3, gemini.appels.get());
+    }
+
+    @Test
+    void testSoumettre_EchecDefinitifSansReessai() throws Exception {
+        ProviderLocal openRouter = new ProviderLocal("openrouter", 0, Integer.MAX_VALUE, true);
+        ProviderLocal gemini = new ProviderLocal("gemini", 0, Integer.MAX_VALUE, true);
+        OcrJobService service = service(openRouter, gemini, true);
+
+        OcrJob job = attendre(service.soumettre(images(1), "alice")).get(0);
+
+        assertEquals(OcrJob.Statut.ECHOUE, job.getStatut());
+        assertEquals(1, job.getTentatives());
+        assertTrue(job.getMessage().contains("401"), job.getMessage());
+        assertEquals(0L, service.statistiques().get("reessais"));
+        assertEquals(1, openRouter.appels.get());
+    }
+
+    @Test
+    void testSoumettre_EchecTemporaireDuSecoursReessaye() throws Exception {
+        // Principal refusé définitivement, secours en quota dépassé une fois : le nouvel essai passe par le secours
+        ProviderLocal openRouter = new ProviderLocal("openrouter", 0, Integer.MAX_VALUE, true);
+        ProviderLocal gemini = new ProviderLocal("gemini", 0, 1);
+        OcrJobService service = service(openRouter, gemini, true);
+
+        OcrJob job = attendre(service.soumettre(images(1), "alice")).get(0);
+
+        assertEquals(OcrJob.Statut.TERMINE, job.getStatut());
+        assertEquals(2, job.getTentatives());
+        assertEquals("gemini", job.getResultat().getFournisseurNom());
+    }
+
+    @Test
+    void testSoumettre_FileSatureeRefusee() throws Exception {
+        ProviderLocal openRouter = new ProviderLocal("openrouter", 200, 0);
+        OcrJobService service = service(openRouter, new ProviderLocal("gemini", 0, 0), true);
+
+        List<OcrJob> jobs = service.soumettre(images(8), "alice");
+        assertThrows(IllegalStateException.class, () -> service.soumettre(images(3), "alice"));
+        attendre(jobs);
+    }
+
+    @Test
+    void testSoumettre_ErreurFataleTermineLeJob() throws Exception {
+        OcrJobService service = service(new ProviderEnErreurFatale("openrouter"), new ProviderLocal("gemini", 0, 0), false);
+
+        OcrJob job = attendre(service.soumettre(images(1), "alice")).get(0);
+
+        assertEquals(OcrJob.Statut.ECHOUE, job.getStatut());
+        assertFalse(Files.exists(job.getFichier().getChemin()));
+        assertEquals(0L, service.statistiques().get(OcrJob.Statut.EN_COURS.name()));
+    }
+
+    @Test
+    void testLister_JobsDuDemandeurSeulement() throws Exception {
+        OcrJobService service = service(new ProviderLocal("openrouter", 0, 0), new ProviderLocal("gemini", 0, 0), false);
+
+        List<OcrJob> alice = attendre(service.soumettre(images(2), "alice"));
+        attendre(service.soumettre(images(1), "bob"));
+
+        assertEquals(Set.copyOf(alice), Set.copyOf(service.lister("alice")));
+        assertEquals(3, service.lister().size());
+    }
+}
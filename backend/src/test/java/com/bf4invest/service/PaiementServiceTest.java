@@ -0,0 +1,104 @@
+package com.bf4invest.service;
+
+import com.bf4invest.model.FactureVente;
+import com.bf4invest.model.HistoriqueSolde;
+import com.bf4invest.model.Paiement;
+import com.bf4invest.model.SoldeGlobal;
+import com.bf4invest.repository.ChargeRepository;
+import com.bf4invest.repository.ClientRepository;
+import com.bf4invest.repository.FactureAchatRepository;
+import com.bf4invest.repository.FactureVenteRepository;
+import com.bf4invest.repository.HistoriqueSoldeRepository;
+import com.bf4invest.repository.PaiementRepository;
+import com.bf4invest.repository.SoldeGlobalRepository;
+import com.bf4invest.repository.SupplierRepository;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class PaiementServiceTest {
+
+    private PaiementRepository paiementRepository;
+    private FactureVenteRepository factureVenteRepository;
+    private ClientService clientService;
+    private MongoTemplate mongoTemplate;
+    private PaiementService paiementService;
+    /** Mouvements appliqués au solde global par $inc. */
+    private final List<Double> mouvements = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        paiementRepository = mock(PaiementRepository.class);
+        factureVenteRepository = mock(FactureVenteRepository.class);
+        FactureAchatRepository factureAchatRepository = mock(FactureAchatRepository.class);
+        ClientRepository clientRepository = mock(ClientRepository.class);
+        HistoriqueSoldeRepository historiqueSoldeRepository = mock(HistoriqueSoldeRepository.class);
+        clientService = mock(ClientService.class);
+        mongoTemplate = mock(MongoTemplate.class);
+
+        when(paiementRepository.save(any(Paiement.class))).thenAnswer(i -> {
+            Paiement paiement = i.getArgument(0);
+            if (paiement.getId() == null) {
+                paiement.setId("p1");
+            }
+            return paiement;
+        });
+        when(historiqueSoldeRepository.save(any(HistoriqueSolde.class))).thenAnswer(i -> i.getArgument(0));
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(SoldeGlobal.class))).thenAnswer(i -> {
+            Update update = i.getArgument(1);
+            double delta = ((Number) ((Document) update.getUpdateObject().get("$inc")).get("soldeActuel")).doubleValue();
+            mouvements.add(delta);
+            SoldeGlobal solde = new SoldeGlobal();
+            solde.setSoldeActuel(1000.0 + mouvements.stream().mapToDouble(Double::doubleValue).sum());
+            return solde;
+        });
+
+        SoldeService soldeService = new SoldeService(mock(SoldeGlobalRepository.class), historiqueSoldeRepository,
+                paiementRepository, clientRepository, mock(SupplierRepository.class), factureVenteRepository,
+                factureAchatRepository, mock(ChargeRepository.class), mongoTemplate);
+        paiementService = new PaiementService(paiementRepository, factureAchatRepository, factureVenteRepository,
+                mock(CalculComptableService.class), soldeService, clientService, mock(SupplierService.class),
+                mock(AuditService.class), mock(ComptabiliteService.class), mock(DashboardAggregateService.class));
+    }
+
+    @Test
+    void testCreerPuisSupprimer_FactureSansClientSoldeGlobalInchange() {
+        FactureVente facture = new FactureVente();
+        facture.setId("fv1");
+        facture.setNumeroFactureVente("FV-001");
+        facture.setTotalTTC(500.0);
+        when(factureVenteRepository.findById("fv1")).thenReturn(Optional.of(facture));
+        Paiement paiement = new Paiement();
+        paiement.setFactureVenteId("fv1");
+        paiement.setMontant(200.0);
+        paiement.setDate(LocalDate.of(2025, 3, 4));
+
+        Paiement cree = paiementService.create(paiement);
+
+        // Le paiement entre dans le solde global même sans client, comme dans recalculerSoldeActuel
+        assertEquals(List.of(200.0), mouvements);
+        assertEquals(1200.0, cree.getSoldeGlobalApres());
+        verify(clientService, never()).findById(anyString());
+
+        when(paiementRepository.findById("p1")).thenReturn(Optional.of(cree));
+        paiementService.delete("p1");
+
+        assertEquals(List.of(200.0, -200.0), mouvements);
+    }
+}
@@ -0,0 +1,106 @@
+package com.bf4invest.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProductImageServiceTest {
+
+    @Mock
+    private FileStorageService fileStorageService;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @InjectMocks
+    private ProductImageService productImageService;
+
+    @Test
+    void testEnregistrer_OriginalEtMiniatureReduite() throws Exception {
+        ReflectionTestUtils.setField(productImageService, "tailleMaxOctets", 5_000_000L);
+        ReflectionTestUtils.setField(productImageService, "tailleMiniature", 100);
+        ReflectionTestUtils.setField(productImageService, "pixelsMax", 25_000_000L);
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(800, 400, BufferedImage.TYPE_INT_ARGB), "png", png);
+
+        when(fileStorageService.storeBytes(any(), eq("produit-image"), eq("image/png"), any())).thenReturn("orig");
+        when(fileStorageService.storeBytes(any(), eq("produit-miniature"), eq("image/png"), any())).thenReturn("mini");
+
+        ProductImageService.ImagesProduit images = productImageService.enregistrer(png.toByteArray(), "image/png");
+
+        assertEquals("orig", images.imageId());
+        assertEquals("mini", images.miniatureId());
+        // Plus grand côté ramené à 100 px, proportions conservées
+        BufferedImage miniature = ImageIO.read(new ByteArrayInputStream(
+                productImageService.genererMiniature(png.toByteArray(), "image/png")));
+        assertEquals(100, miniature.getWidth());
+        assertEquals(50, miniature.getHeight());
+        verify(fileStorageService).storeBytes(any(), eq("produit-miniature"), eq("image/png"),
+                eq(Map.of("type", "produit_miniature", "originalId", "orig")));
+
+        assertThrows(IllegalArgumentException.class, () -> productImageService.enregistrer(new byte[] { 1 }, "application/pdf"));
+    }
+
+    @Test
+    void testEnregistrer_FormatVerifieSurLeContenu() {
+        ReflectionTestUtils.setField(productImageService, "tailleMaxOctets", 5_000_000L);
+        byte[] svg = "<svg xmlns=\"http://www.w3.org/2000/svg\"><script>alert(1)</script></svg>".getBytes();
+
+        assertThrows(IllegalArgumentException.class, () -> productImageService.enregistrer(svg, "image/svg+xml"));
+        // Type annoncé mensonger : le contenu fait foi
+        assertThrows(IllegalArgumentException.class, () -> productImageService.enregistrer(svg, "image/png"));
+        verifyNoInteractions(fileStorageService);
+
+        assertEquals("image/webp", ProductImageService.formatReel("RIFF\0\0\0\0WEBPVP8 ".getBytes()));
+        assertEquals("image/gif", ProductImageService.formatReel("GIF89a".getBytes()));
+    }
+
+    @Test
+    void testEnregistrer_DimensionsRefuseesAvantDecodage() throws Exception {
+        ReflectionTestUtils.setField(productImageService, "tailleMaxOctets", 5_000_000L);
+        ReflectionTestUtils.setField(productImageService, "pixelsMax", 25_000_000L);
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB), "png", png);
+        // En-tête IHDR annonçant 100 000 x 100 000 pixels : décoder allouerait des dizaines de Go
+        byte[] bombe = png.toByteArray();
+        ByteBuffer.wrap(bombe, 16, 8).putInt(100_000).putInt(100_000);
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> productImageService.enregistrer(bombe, "image/png"));
+        assertTrue(e.getMessage().contains("100000x100000"));
+        verifyNoInteractions(fileStorageService);
+    }
+
+    @Test
+    void testEnregistrer_OriginalSupprimeSiLaMiniatureEchoue() throws Exception {
+        ReflectionTestUtils.setField(productImageService, "tailleMaxOctets", 5_000_000L);
+        ReflectionTestUtils.setField(productImageService, "tailleMiniature", 100);
+        ReflectionTestUtils.setField(productImageService, "pixelsMax", 25_000_000L);
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(800, 400, BufferedImage.TYPE_INT_ARGB), "png", png);
+
+        when(fileStorageService.storeBytes(any(), eq("produit-image"), eq("image/png"), any())).thenReturn("orig");
+        when(fileStorageService.storeBytes(any(), eq("produit-miniature"), any(), any()))
+                .thenThrow(new IllegalStateException("GridFS indisponible"));
+
+        assertThrows(IllegalStateException.class, () -> productImageService.enregistrer(png.toByteArray(), "image/png"));
+        verify(fileStorageService).deleteFile("orig");
+    }
+}
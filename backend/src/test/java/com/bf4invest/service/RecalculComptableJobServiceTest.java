@@ -0,0 +1,71 @@
+package com.bf4invest.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class RecalculComptableJobServiceTest {
+
+    private DataMigrationService dataMigrationService;
+    private RecalculComptableJobService service;
+
+    @BeforeEach
+    void setUp() {
+        dataMigrationService = mock(DataMigrationService.class);
+        service = new RecalculComptableJobService(dataMigrationService);
+        service.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.arreter();
+    }
+
+    @Test
+    void testSoumettre_DemandesPendantUnRecalculRegroupees() throws Exception {
+        CountDownLatch demarre = new CountDownLatch(1);
+        CountDownLatch libere = new CountDownLatch(1);
+        when(dataMigrationService.recalculerTousChampsComptables()).thenAnswer(i -> {
+            demarre.countDown();
+            libere.await(5, TimeUnit.SECONDS);
+            return Map.of("facturesVenteRecalculees", 3);
+        });
+
+        RecalculComptableJob enCours = service.soumettre();
+        assertTrue(demarre.await(5, TimeUnit.SECONDS));
+        // Le premier recalcul a démarré avec les anciens paramètres : une nouvelle demande est mise en attente,
+        // les suivantes la réutilisent
+        RecalculComptableJob suivant = service.soumettre();
+        assertNotSame(enCours, suivant);
+        assertSame(suivant, service.soumettre());
+        assertEquals(RecalculComptableJob.Statut.EN_COURS, enCours.getStatut());
+        assertEquals(RecalculComptableJob.Statut.EN_ATTENTE, suivant.getStatut());
+
+        libere.countDown();
+        suivant.achevement().get(5, TimeUnit.SECONDS);
+        assertEquals(RecalculComptableJob.Statut.TERMINE, enCours.getStatut());
+        assertEquals(RecalculComptableJob.Statut.TERMINE, suivant.getStatut());
+        assertEquals(3, suivant.getStatistiques().get("facturesVenteRecalculees"));
+        verify(dataMigrationService, times(2)).recalculerTousChampsComptables();
+        assertEquals(2, service.lister().size());
+        assertSame(suivant, service.trouver(suivant.getId()).orElseThrow());
+    }
+
+    @Test
+    void testSoumettre_EchecConserveDansLeStatut() throws Exception {
+        when(dataMigrationService.recalculerTousChampsComptables()).thenThrow(new IllegalStateException("base indisponible"));
+
+        RecalculComptableJob job = service.soumettre().achevement().get(5, TimeUnit.SECONDS);
+
+        assertEquals(RecalculComptableJob.Statut.ECHOUE, job.getStatut());
+        assertEquals("base indisponible", job.getMessage());
+        assertNotNull(job.getFin());
+    }
+}
@@ -0,0 +1,139 @@
+package com.bf4invest.service;
+
+import com.bf4invest.excel.ExcelExportService;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SauvegardeServiceTest {
+
+    @Mock
+    private ExcelExportService excelExportService;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private DashboardAggregateService dashboardAggregateService;
+
+    @Mock
+    private BalancePeriodeService balancePeriodeService;
+
+    @Mock
+    private SoldeService soldeService;
+
+    @Mock
+    private ProductPriceService productPriceService;
+
+    @Mock
+    private CatalogueVitrineService catalogueVitrineService;
+
+    @Mock
+    private CacheKpisDashboard cacheKpisDashboard;
+
+    @Mock
+    private VersionDonneesDashboard versionDonneesDashboard;
+
+    @InjectMocks
+    private SauvegardeService sauvegardeService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(sauvegardeService, "threads", 3);
+        sauvegardeService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        sauvegardeService.arreter();
+    }
+
+    @Test
+    void testArchiveXlsx_EntreesStockeesDansLOrdre() throws Exception {
+        when(excelExportService.exportProductsToImportFormat(any())).thenAnswer(invocation -> {
+            // Le classeur le plus lent ne doit pas changer l'ordre des entrées
+            Thread.sleep(50);
+            return new byte[] { 1 };
+        });
+        when(excelExportService.exportBCsToImportFormat(any())).thenReturn(new byte[] { 2, 2 });
+        when(excelExportService.exportOperationsToImportFormat(any())).thenReturn(new byte[] { 3 });
+        when(excelExportService.exportReleveBancaireToImportFormat(any())).thenReturn(new byte[] { 4 });
+        when(excelExportService.exportClientsToExcel(any())).thenReturn(new byte[] { 5 });
+        when(excelExportService.exportSuppliersToExcel(any())).thenReturn(new byte[] { 6 });
+        when(excelExportService.exportChargesToExcel(any())).thenReturn(new byte[] { 7 });
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        sauvegardeService.ecrireArchive(SauvegardeService.Format.XLSX, out);
+
+        List<String> noms = new ArrayList<>();
+        try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null) {
+                noms.add(entry.getName());
+                assertEquals(ZipEntry.STORED, entry.getMethod());
+                if (entry.getName().equals("Historique_BC.xlsx")) {
+                    assertArrayEquals(new byte[] { 2, 2 }, zis.readAllBytes());
+                }
+            }
+        }
+        assertEquals(List.of("Catalogue_Produits.xlsx", "Historique_BC.xlsx", "Operations_Comptables.xlsx",
+                "Releve_Bancaire.xlsx", "Clients.xlsx", "Fournisseurs.xlsx", "Charges.xlsx"), noms);
+    }
+
+    @Test
+    void testOrdonnerChaine_CompletePuisIncrementales() {
+        Map<String, Document> manifestes = new HashMap<>();
+        manifestes.put("c", new Document("id", "c").append("type", "INCREMENTALE").append("parentId", "b"));
+        manifestes.put("a", new Document("id", "a").append("type", "COMPLETE"));
+        manifestes.put("b", new Document("id", "b").append("type", "INCREMENTALE").append("parentId", "a"));
+
+        assertEquals(List.of("a", "b", "c"), SauvegardeService.ordonnerChaine(manifestes));
+
+        // Maillon manquant : l'incrémentale "c" ne peut pas être appliquée sans "b"
+        manifestes.remove("b");
+        assertThrows(IllegalArgumentException.class, () -> SauvegardeService.ordonnerChaine(manifestes));
+    }
+
+    @Test
+    void testRestaurerArchive_DonneesDeriveesReconstruitesEtCachesInvalides() throws Exception {
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        try (ZipOutputStream zos = new ZipOutputStream(archive)) {
+            zos.putNextEntry(new ZipEntry("manifest.json"));
+            zos.write("{}".getBytes());
+            zos.closeEntry();
+        }
+        when(dashboardAggregateService.reconstruireTout()).thenThrow(new IllegalStateException("Mongo indisponible"));
+
+        sauvegardeService.restaurerArchive(new ByteArrayInputStream(archive.toByteArray()));
+
+        // L'échec d'une reconstruction n'empêche pas les suivantes
+        verify(balancePeriodeService).reconcilier(true);
+        verify(soldeService).auditerSoldeActuel(true);
+        verify(productPriceService).invaliderIndex();
+        verify(catalogueVitrineService).invalider();
+        verify(versionDonneesDashboard).incrementer();
+        verify(cacheKpisDashboard).vider();
+    }
+}
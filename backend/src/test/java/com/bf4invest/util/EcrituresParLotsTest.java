@@ -0,0 +1,103 @@
+package com.bf4invest.util;
+
+import com.bf4invest.model.Client;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class EcrituresParLotsTest {
+
+    private MongoTemplate mongoTemplate;
+    private BulkOperations ops;
+    private final List<Integer> lots = new ArrayList<>();
+    private final Map<Client, Exception> echecs = new LinkedHashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        ops = mock(BulkOperations.class);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Client.class)).thenReturn(ops);
+        when(ops.insert(anyList())).thenAnswer(i -> {
+            lots.add(((List<?>) i.getArgument(0)).size());
+            return ops;
+        });
+    }
+
+    @Test
+    void testInsererEnContinuant_ToutInsereParLots() {
+        when(ops.execute()).thenReturn(BulkWriteResult.acknowledged(0, 0, 0, 0, List.of(), List.of()));
+
+        List<Client> inseres = EcrituresParLots.insererEnContinuant(mongoTemplate, Client.class, clients(5),
+                Client::getId, 2, echecs::put);
+
+        assertEquals(5, inseres.size());
+        assertEquals(List.of(2, 2, 1), lots);
+        assertTrue(echecs.isEmpty());
+    }
+
+    @Test
+    void testInsererEnContinuant_LotEnEchecPartiel() {
+        // Deuxième document du premier lot refusé (doublon) ; le second lot passe
+        MongoBulkWriteException refus = new MongoBulkWriteException(
+                BulkWriteResult.acknowledged(1, 0, 0, 0, List.of(), List.of()),
+                List.of(new BulkWriteError(11000, "E11000 duplicate key", new BsonDocument(), 1)),
+                null, new ServerAddress(), Set.of());
+        when(ops.execute())
+                .thenThrow(new BulkOperationException("E11000", refus))
+                .thenReturn(BulkWriteResult.acknowledged(0, 0, 0, 0, List.of(), List.of()));
+        List<Client> clients = clients(3);
+
+        List<Client> inseres = EcrituresParLots.insererEnContinuant(mongoTemplate, Client.class, clients,
+                Client::getId, 2, echecs::put);
+
+        assertEquals(List.of(clients.get(0), clients.get(2)), inseres);
+        assertEquals(Set.of(clients.get(1)), echecs.keySet());
+        assertTrue(echecs.get(clients.get(1)).getMessage().contains("E11000"));
+    }
+
+    @Test
+    void testInsererEnContinuant_EchecSansDetailVerifieLesIdsEnBase() {
+        when(ops.execute()).thenThrow(new DataAccessResourceFailureException("connexion perdue"));
+        List<Client> clients = clients(3);
+        // Seul le premier document a été écrit avant la coupure
+        when(mongoTemplate.find(any(Query.class), eq(Client.class))).thenReturn(List.of(clients.get(0)));
+
+        List<Client> inseres = EcrituresParLots.insererEnContinuant(mongoTemplate, Client.class, clients,
+                Client::getId, 10, echecs::put);
+
+        assertEquals(List.of(clients.get(0)), inseres);
+        assertEquals(List.of(clients.get(1), clients.get(2)), new ArrayList<>(echecs.keySet()));
+    }
+
+    private static List<Client> clients(int nombre) {
+        List<Client> clients = new ArrayList<>();
+        for (int i = 0; i < nombre; i++) {
+            Client client = new Client();
+            client.setId(EcrituresParLots.nouvelId());
+            client.setNom("Client " + i);
+            clients.add(client);
+        }
+        return clients;
+    }
+}
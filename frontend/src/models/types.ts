@@ -11,7 +11,7 @@ export interface Product {
   priceSellMinHT?: number;
   priceSellMaxHT?: number;
   stock?: number; // Quantité en stock
-  imageUrl?: string; // URL de l'image (base64 data URL)
+  imageUrl?: string; // URL de l'image (API, ou data URL pour une nouvelle image)
 }
 
 export interface Client {
@@ -17,12 +17,22 @@ interface ImportLog {
   time?: string;
 }
 
-interface ImportResult {
-  totalRows: number;
-  successCount: number;
-  errorCount: number;
-  errors: string[];
-  warnings: string[];
+interface ImportJob {
+  id: string;
+  type: 'BC' | 'PRODUITS' | 'OPERATIONS';
+  fileName: string;
+  statut: 'EN_ATTENTE' | 'EN_COURS' | 'TERMINE' | 'ECHOUE' | 'ANNULE';
+  pourcentage: number;
+  lignesTraitees: number;
+  totalLignes: number;
+  message?: string;
+  rapportDisponible: boolean;
+  // Présents une fois l'import terminé
+  totalRows?: number;
+  successCount?: number;
+  errorCount?: number;
+  errors?: string[];
+  warnings?: string[];
 }
 
 @Component({
@@ -63,7 +73,8 @@ interface ImportResult {
                     <div class="w-2/3 bg-slate-200 rounded-full h-2 mb-2">
                        <div class="bg-blue-600 h-2 rounded-full transition-all duration-300" [style.width.%]="progress()"></div>
                     </div>
-                    <span class="text-xs font-bold text-blue-600">Traitement... {{ progress() }}%</span>
+                    <span class="text-xs font-bold text-blue-600">{{ jobStatut() === 'EN_ATTENTE' ? 'En attente...' : 'Traitement...' }} {{ progress() }}%</span>
+                    <button type="button" class="mt-2 text-xs text-slate-500 hover:text-red-600 underline" (click)="cancelImport($event)">Annuler</button>
                  </div>
                } @else {
                  <svg class="w-12 h-12 mb-3 group-hover:scale-110 transition-transform" fill="none" stroke="currentColor" viewBox="0 0 24 24"><path stroke-linecap="round" stroke-linejoin="round" stroke-width="2" d="M7 16a4 4 0 01-.88-7.903A5 5 0 1115.9 6L16 6a5 5 0 011 9.9M15 13l-3-3m0 0l-3 3m3-3v12"></path></svg>
@@ -108,7 +119,8 @@ interface ImportResult {
                     <div class="w-2/3 bg-slate-200 rounded-full h-2 mb-2">
                        <div class="bg-emerald-600 h-2 rounded-full transition-all duration-300" [style.width.%]="progress()"></div>
                     </div>
-                    <span class="text-xs font-bold text-emerald-600">Chargement... {{ progress() }}%</span>
+                    <span class="text-xs font-bold text-emerald-600">{{ jobStatut() === 'EN_ATTENTE' ? 'En attente...' : 'Chargement...' }} {{ progress() }}%</span>
+                    <button type="button" class="mt-2 text-xs text-slate-500 hover:text-red-600 underline" (click)="cancelImport($event)">Annuler</button>
                  </div>
                } @else {
                  <svg class="w-12 h-12 mb-3 group-hover:scale-110 transition-transform" fill="none" stroke="currentColor" viewBox="0 0 24 24"><path stroke-linecap="round" stroke-linejoin="round" stroke-width="2" d="M7 16a4 4 0 01-.88-7.903A5 5 0 1115.9 6L16 6a5 5 0 011 9.9M15 13l-3-3m0 0l-3 3m3-3v12"></path></svg>
@@ -153,7 +165,8 @@ interface ImportResult {
                     <div class="w-2/3 bg-slate-200 rounded-full h-2 mb-2">
                        <div class="bg-purple-600 h-2 rounded-full transition-all duration-300" [style.width.%]="progress()"></div>
                     </div>
-                    <span class="text-xs font-bold text-purple-600">Traitement... {{ progress() }}%</span>
+                    <span class="text-xs font-bold text-purple-600">{{ jobStatut() === 'EN_ATTENTE' ? 'En attente...' : 'Traitement...' }} {{ progress() }}%</span>
+                    <button type="button" class="mt-2 text-xs text-slate-500 hover:text-red-600 underline" (click)="cancelImport($event)">Annuler</button>
                  </div>
                } @else {
                  <svg class="w-12 h-12 mb-3 group-hover:scale-110 transition-transform" fill="none" stroke="currentColor" viewBox="0 0 24 24"><path stroke-linecap="round" stroke-linejoin="round" stroke-width="2" d="M7 16a4 4 0 01-.88-7.903A5 5 0 1115.9 6L16 6a5 5 0 011 9.9M15 13l-3-3m0 0l-3 3m3-3v12"></path></svg>
@@ -228,6 +241,8 @@ export class ImportComponent implements OnInit {
   isImporting = signal(false);
   currentType = signal<string>('');
   progress = signal(0);
+  jobId = signal<string | null>(null);
+  jobStatut = signal<string>('');
   selectedFiles: Record<string, File | null> = {
     'produits': null,
     'bc': null,
@@ -314,120 +329,104 @@ export class ImportComponent implements OnInit {
     this.isImporting.set(true);
     this.currentType.set(type);
     this.progress.set(0);
+    this.jobStatut.set('EN_ATTENTE');
 
     try {
-      // Simulate progress (real progress would require XMLHttpRequest with upload events)
-      const progressInterval = setInterval(() => {
-        this.progress.update(p => {
-          if (p >= 90) {
-            clearInterval(progressInterval);
-            return 90;
-          }
-          return p + Math.floor(Math.random() * 10) + 5;
-        });
-      }, 200);
-
-      // Utiliser le bon endpoint selon le type
-      let endpoint = '/import/excel';
-      if (type === 'produits') {
-        endpoint = '/import/produits';
-      } else if (type === 'operations') {
-        endpoint = '/import/operations';
+      // L'import s'exécute côté serveur en arrière-plan : on soumet le fichier puis on suit l'avancement réel
+      const jobType = type === 'produits' ? 'PRODUITS' : type === 'operations' ? 'OPERATIONS' : 'BC';
+      let job = await this.api.uploadFileWithParams<ImportJob>('/import/jobs', file, { type: jobType }).toPromise() as ImportJob;
+      this.jobId.set(job.id);
+
+      while (!['TERMINE', 'ECHOUE', 'ANNULE'].includes(job.statut)) {
+        await new Promise(resolve => setTimeout(resolve, 1000));
+        job = await this.api.get<ImportJob>(`/import/jobs/${job.id}`).toPromise() as ImportJob;
+        this.jobStatut.set(job.statut);
+        this.progress.set(job.pourcentage);
       }
-      const response = await this.api.uploadFile(endpoint, file).toPromise() as any;
-      
-      clearInterval(progressInterval);
       this.progress.set(100);
 
-      // Vérifier si c'est un fichier Excel (rapport)
-      if (response && response.isFile && response.blob) {
-        // Télécharger le fichier de rapport
-        const url = window.URL.createObjectURL(response.blob);
-        const a = document.createElement('a');
-        a.href = url;
-        a.download = response.filename || 'rapport_import.xlsx';
-        document.body.appendChild(a);
-        a.click();
-        document.body.removeChild(a);
-        window.URL.revokeObjectURL(url);
-        
-        this.store.showToast('Rapport d\'import téléchargé avec les lignes en erreur et les lignes importées', 'success');
-        
-        // Reload import history from backend
-        await this.loadImportHistory();
-        
-        // Reload data
-        if (type === 'produits') {
-          await this.store.loadProducts();
-        } else if (type === 'operations') {
-          await this.store.loadDashboardKPIs();
-        } else {
-          await this.store.loadBCs();
-          await this.store.loadInvoices();
-          await this.store.loadDashboardKPIs();
-        }
+      // Reload import history from backend
+      await this.loadImportHistory();
+
+      if (job.statut === 'ECHOUE') {
+        const errorDetails = (job.errors || []).slice(0, 5).join('; ');
+        this.store.showToast('Erreur lors de l\'import: ' + (errorDetails || job.message || 'Erreur inconnue'), 'error');
+      } else if (job.statut === 'ANNULE') {
+        this.store.showToast('Import annulé', 'info');
       } else {
-        // C'est un ImportResult JSON (ancien format ou pas d'erreurs)
-        const result = response as ImportResult;
-        
-        // Process result
-        const details: string[] = [];
-        if (result.successCount > 0) {
-          details.push(`${result.successCount} ligne(s) importée(s) avec succès`);
-        }
-        if (result.errorCount > 0) {
-          details.push(`${result.errorCount} erreur(s) détectée(s)`);
-        }
-        if (result.warnings && result.warnings.length > 0) {
-          details.push(`${result.warnings.length} avertissement(s)`);
+        // Rapport Excel avec les lignes en erreur et les lignes importées
+        if (job.rapportDisponible) {
+          const blob = await this.api.downloadFile(`/import/jobs/${job.id}/rapport`).toPromise();
+          if (blob) {
+            const url = window.URL.createObjectURL(blob);
+            const a = document.createElement('a');
+            a.href = url;
+            a.download = job.fileName ? job.fileName.replace(/\.xlsx?$/, '_rapport.xlsx') : 'rapport_import.xlsx';
+            document.body.appendChild(a);
+            a.click();
+            document.body.removeChild(a);
+            window.URL.revokeObjectURL(url);
+          }
         }
 
-        const success = result.errorCount === 0 && result.successCount > 0;
-        const detailText = details.length > 0 ? details.join(', ') : 'Import effectué';
-
-        // Reload import history from backend
-        await this.loadImportHistory();
-
+        const success = job.errorCount === 0 && job.successCount > 0;
         if (success) {
           this.store.showToast('Importation réussie ! Données mises à jour.', 'success');
-          // Reload data
-          if (type === 'produits') {
-            await this.store.loadProducts();
-          } else if (type === 'operations') {
-            await this.store.loadDashboardKPIs();
-          } else {
-            await this.store.loadBCs();
-            await this.store.loadInvoices();
-            await this.store.loadDashboardKPIs();
-          }
         } else {
-          this.store.showToast(`Import terminé avec ${result.errorCount} erreur(s)`, 'error');
+          this.store.showToast(`Import terminé avec ${job.errorCount} erreur(s)`, 'error');
         }
 
         // Show errors if any
-        if (result.errors && result.errors.length > 0) {
-          const errorDetails = result.errors.slice(0, 5).join('; ');
+        if (job.errors && job.errors.length > 0) {
+          const errorDetails = job.errors.slice(0, 5).join('; ');
           this.store.showToast(`Erreurs: ${errorDetails}`, 'error');
         }
+
+        // Reload data
+        if (type === 'produits') {
+          await this.store.loadProducts();
+        } else if (type === 'operations') {
+          await this.store.loadDashboardKPIs();
+        } else {
+          await this.store.loadBCs();
+          await this.store.loadInvoices();
+          await this.store.loadDashboardKPIs();
+        }
       }
 
       // Reset
       setTimeout(() => {
         this.isImporting.set(false);
         this.progress.set(0);
+        this.jobId.set(null);
         this.selectedFiles[type] = null;
       }, 1000);
 
     } catch (error: any) {
       this.progress.set(0);
       this.isImporting.set(false);
-      this.store.showToast('Erreur lors de l\'import: ' + (error.message || 'Erreur inconnue'), 'error');
+      this.jobId.set(null);
+      const message = error?.status === 429
+        ? 'Trop d\'imports en attente, réessayez dans quelques minutes'
+        : (error?.error?.error || error.message || 'Erreur inconnue');
+      this.store.showToast('Erreur lors de l\'import: ' + message, 'error');
       
       // Reload import history from backend (will include error if backend logged it)
       await this.loadImportHistory();
     }
   }
 
+  async cancelImport(event: Event) {
+    event.stopPropagation();
+    const id = this.jobId();
+    if (!id) return;
+    try {
+      await this.api.delete(`/import/jobs/${id}`).toPromise();
+    } catch (error: any) {
+      this.store.showToast('Annulation impossible: ' + (error.message || 'Erreur inconnue'), 'error');
+    }
+  }
+
   async downloadTemplate(type: string) {
     try {
       // Utiliser le bon endpoint selon le type
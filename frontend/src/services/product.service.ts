@@ -1,6 +1,7 @@
 import { Injectable, inject } from '@angular/core';
 import { ApiService } from './api.service';
 import { Product } from '../models/types';
+import { getApiBaseUrlDynamic } from '../config/environment';
 
 /** Fallback affichage : ignore null/undefined et 0 (prix corrompu en base). */
 function pickPrice(...vals: (number | null | undefined)[]): number {
@@ -65,7 +66,7 @@ export class ProductService {
       tva: 20.0
     };
     // Inclure l'image si présente (extraire base64 depuis data URL)
-    if (product.imageUrl) {
+    if (product.imageUrl && product.imageUrl.startsWith('data:')) {
       const base64Data = this.extractBase64FromDataUrl(product.imageUrl);
       const contentType = this.extractContentTypeFromDataUrl(product.imageUrl);
       payload.imageBase64 = base64Data;
@@ -89,15 +90,16 @@ export class ProductService {
       quantiteEnStock: product.stock !== undefined ? product.stock : 0
     };
     // Gestion de l'image :
-    // - si imageUrl est présent : on met à jour l'image
+    // - si imageUrl est une data URL : nouvelle image à envoyer
+    // - si imageUrl est l'URL de l'image stockée : inchangée, rien à envoyer
     // - si imageUrl est absent (et qu'on est en édition) : on envoie une valeur vide pour demander la suppression
-    if (product.imageUrl) {
+    if (product.imageUrl?.startsWith('data:')) {
       // Inclure l'image si présente (extraire base64 depuis data URL)
       const base64Data = this.extractBase64FromDataUrl(product.imageUrl);
       const contentType = this.extractContentTypeFromDataUrl(product.imageUrl);
       payload.imageBase64 = base64Data;
       payload.imageContentType = contentType;
-    } else {
+    } else if (!product.imageUrl) {
       // Instruction explicite : supprimer l'image côté backend
       payload.imageBase64 = '';
       payload.imageContentType = '';
@@ -124,12 +126,11 @@ export class ProductService {
   }
 
   private mapProduct(p: any): Product {
-    // Construire l'URL de l'image depuis base64 si présente
-    let imageUrl: string | undefined;
-    if (p.imageBase64) {
-      const contentType = p.imageContentType || 'image/png';
-      imageUrl = `data:${contentType};base64,${p.imageBase64}`;
-    }
+    // Images servies par l'API (miniature si disponible), avec cache navigateur immuable
+    const imageId = p.imageMiniatureId || p.imageId;
+    const imageUrl: string | undefined = imageId
+      ? `${getApiBaseUrlDynamic()}/public/images/${imageId}`
+      : undefined;
     
     return {
       id: p.id,
@@ -29,7 +29,7 @@ export interface Product {
   priceSellMinHT?: number;
   priceSellMaxHT?: number;
   stock?: number; // Quantit├® en stock
-  imageUrl?: string; // URL de l'image (base64 data URL)
+  imageUrl?: string; // URL de l'image (API, ou data URL pour une nouvelle image)
 }
 
 export interface Client {
@@ -1393,7 +1393,7 @@ export class StoreService {
   async saveParametresCalcul(params: any): Promise<void> {
     try {
       await this.api.put('/parametres-calcul', params).toPromise();
-      this.showToast('Paramètres de calcul mis à jour avec succès', 'success');
+      this.showToast('Paramètres de calcul mis à jour, recalcul des factures en cours', 'success');
     } catch (error) {
       console.error('Error saving parametres calcul:', error);
       this.showToast('Erreur lors de la sauvegarde des paramètres', 'error');
@@ -8,6 +8,10 @@ import { useNavigate } from 'react-router-dom';
 const API_BASE_URL = (import.meta as any).env.VITE_API_BASE_URL || 'https://bf4investapp-production.up.railway.app/api';
 const PUBLIC_PRODUCTS_URL = `${API_BASE_URL}/public/produits`;
 
+// Les URLs d'images renvoyées par le backend sont relatives à l'API si aucune URL publique n'est configurée
+const resolveApiUrl = (url?: string): string | undefined =>
+  url && url.startsWith('/') ? `${API_BASE_URL}${url}` : url || undefined;
+
 const DEFAULT_CATEGORY: ProductCategory = 'Matériaux de Construction';
 
 const mapCategorieToProductCategory = (categorie?: string): ProductCategory => {
@@ -186,10 +190,8 @@ const ProductsTeaserSection: React.FC = () => {
           unit: item.unite || 'U',
           price: typeof item.prixVentePondereHT === 'number' ? item.prixVentePondereHT : 'Sur demande',
           category: mapCategorieToProductCategory(item.categorie),
-          imageUrl:
-            item.imageBase64 && item.imageContentType
-              ? `data:${item.imageContentType};base64,${item.imageBase64}`
-              : undefined,
+          imageUrl: resolveApiUrl(item.imageUrl),
+          imageMiniatureUrl: resolveApiUrl(item.imageMiniatureUrl),
         }));
 
         if (mapped.length > 0) setTeaserProducts(mapped);
@@ -7,6 +7,10 @@ import { useNavigate } from 'react-router-dom';
 const API_BASE_URL = (import.meta as any).env.VITE_API_BASE_URL || 'https://bf4investapp-production.up.railway.app/api';
 const PUBLIC_PRODUCTS_URL = `${API_BASE_URL}/public/produits`;
 
+// Les URLs d'images renvoyées par le backend sont relatives à l'API si aucune URL publique n'est configurée
+const resolveApiUrl = (url?: string): string | undefined =>
+  url && url.startsWith('/') ? `${API_BASE_URL}${url}` : url || undefined;
+
 type PublicProductDto = {
   id: string;
   refArticle?: string;
@@ -15,8 +19,8 @@ type PublicProductDto = {
   prixVentePondereHT?: number;
   tva?: number;
   quantiteEnStock?: number;
-  imageBase64?: string;
-  imageContentType?: string;
+  imageUrl?: string;
+  imageMiniatureUrl?: string;
   categorie?: string;
 };
 
@@ -40,8 +44,9 @@ const mapCategorieToProductCategory = (categorie?: string): ProductCategory => {
 
 const getProductImage = (product: Product): string => {
   // Si une image vient du backend, la privilégier
-  if (product.imageUrl) {
-    return product.imageUrl;
+  const backendImage = product.imageMiniatureUrl || product.imageUrl;
+  if (backendImage) {
+    return backendImage;
   }
 
   const categoryImages: Record<ProductCategory, string> = {
@@ -95,11 +100,23 @@ const ProductCard: React.FC<ProductCardProps> = ({ product, onContactClick }) =>
 
       {/* Image */}
       <div className="relative mt-3 h-40 overflow-hidden bg-slate-100">
-        <img
-          src={getProductImage(product)}
-          alt={product.name}
-          className="h-full w-full object-cover transition-transform duration-700 group-hover:scale-105"
-        />
+        {/* Miniature dans la carte, image pleine taille au clic */}
+        {product.imageUrl ? (
+          <a href={product.imageUrl} target="_blank" rel="noopener noreferrer" className="block h-full">
+            <img
+              src={getProductImage(product)}
+              alt={product.name}
+              loading="lazy"
+              className="h-full w-full object-cover transition-transform duration-700 group-hover:scale-105"
+            />
+          </a>
+        ) : (
+          <img
+            src={getProductImage(product)}
+            alt={product.name}
+            className="h-full w-full object-cover transition-transform duration-700 group-hover:scale-105"
+          />
+        )}
       </div>
 
       {/* Infos */}
@@ -168,14 +185,12 @@ export const ProductsPage: React.FC = () => {
           const name = p.designation || p.refArticle || 'Produit BF4 Invest';
           const unit = p.unite || 'U';
           const price = typeof p.prixVentePondereHT === 'number' ? p.prixVentePondereHT : 'Sur demande';
-          const imageUrl =
-            p.imageBase64 && p.imageContentType
-              ? `data:${p.imageContentType};base64,${p.imageBase64}`
-              : undefined;
+          const imageUrl = resolveApiUrl(p.imageUrl);
+          const imageMiniatureUrl = resolveApiUrl(p.imageMiniatureUrl);
 
           const category: ProductCategory = mapCategorieToProductCategory(p.categorie);
 
-          return { name, ref: p.refArticle, unit, price, category, imageUrl };
+          return { name, ref: p.refArticle, unit, price, category, imageUrl, imageMiniatureUrl };
         });
         setApiProducts(mapped);
         setSource('api');
@@ -46,8 +46,10 @@ export interface Product {
   unit: string;
   price: number | 'Sur demande';
   category: ProductCategory;
-  // URL d'image optionnelle issue du backend (data URL ou HTTP)
+  // Image pleine taille issue du backend (HTTP)
   imageUrl?: string;
+  // Miniature pour les cartes produit (l'image pleine taille sinon)
+  imageMiniatureUrl?: string;
 }
 
 export interface FaqItem {